@@ -44,7 +44,8 @@ android {
         jvmTarget = "17"
     }
     buildFeatures {
-        viewBinding = true 
+        viewBinding = true
+        buildConfig = true
     }
 
     lint {
@@ -70,6 +71,9 @@ android {
 
 dependencies {
 
+    // Android-free OTA download/verify engine
+    implementation(project(":ota-core"))
+
     implementation(libs.androidx.core.ktx)
     implementation(libs.androidx.appcompat)
     implementation(libs.material)
@@ -108,6 +112,7 @@ dependencies {
     testImplementation(libs.androidx.core)
     testImplementation(libs.androidx.junit.v115)
     testImplementation(libs.robolectric)
+    testImplementation(libs.okhttp.mockwebserver)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
 
@@ -123,4 +128,10 @@ detekt {
     // Use the generated baseline to ignore historical issues
     baseline = file("${projectDir}/detekt-baseline.xml")
     allRules = false
-}
\ No newline at end of file
+}
+// Opt-in benchmark suites (com.bearmod.loader.benchmark) read -Pbenchmark* properties
+tasks.withType<Test>().configureEach {
+    project.properties
+        .filterKeys { it.startsWith("benchmark") }
+        .forEach { (name, value) -> systemProperty(name, value.toString()) }
+}
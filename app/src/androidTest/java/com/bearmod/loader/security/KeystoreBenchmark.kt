@@ -0,0 +1,62 @@
+package com.bearmod.loader.security
+
+import android.content.Context
+import android.util.Log
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.bearmod.loader.metrics.LatencyRecorder
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Per-field encrypt/decrypt cost on a real device: AndroidKeystoreProvider (one keystore
+ * operation per field) against EnvelopeKeystoreProvider (software AES-GCM under a DEK).
+ * Results are logged under the "KeystoreBenchmark" tag, e.g.
+ * `adb logcat -s KeystoreBenchmark` while running connectedAndroidTest.
+ */
+@RunWith(AndroidJUnit4::class)
+class KeystoreBenchmark {
+
+    companion object {
+        private const val TAG = "KeystoreBenchmark"
+        private const val ALIAS = "keyauth_benchmark_key"
+        private const val WARMUP = 20
+        private const val ITERATIONS = 200
+
+        // Representative SecurePreferences fields
+        private val FIELDS = mapOf(
+            "license_key" to "KEYAUTH-XXXX-XXXX-XXXX-XXXX",
+            "device_hwid" to "a1b2c3d4e5f60718",
+            "session_token" to "0123456789abcdef0123456789abcdef",
+            "refresh_token" to "fedcba9876543210fedcba9876543210"
+        )
+    }
+
+    @Test
+    fun perFieldCost() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        val recorder = LatencyRecorder(ITERATIONS)
+
+        measure("keystore", AndroidKeystoreProvider(), recorder)
+        measure("envelope", EnvelopeKeystoreProvider(context, AndroidKeystoreProvider()), recorder)
+
+        for ((name, stats) in recorder.snapshots()) {
+            Log.i(TAG, "$name: ${stats.format()}")
+        }
+    }
+
+    private fun measure(label: String, provider: KeystoreProvider, recorder: LatencyRecorder) {
+        assertTrue(provider.ensureKey(ALIAS))
+        for ((field, value) in FIELDS) {
+            val plaintext = value.toByteArray(Charsets.UTF_8)
+            repeat(WARMUP) { provider.decrypt(ALIAS, provider.encrypt(ALIAS, plaintext)!!) }
+            repeat(ITERATIONS) {
+                val encrypted = recorder.time("$label.encrypt.$field") { provider.encrypt(ALIAS, plaintext)!! }
+                val decrypted = recorder.time("$label.decrypt.$field") { provider.decrypt(ALIAS, encrypted)!! }
+                assertEquals(value, String(decrypted, Charsets.UTF_8))
+            }
+        }
+    }
+}
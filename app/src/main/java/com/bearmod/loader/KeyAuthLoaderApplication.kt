@@ -2,6 +2,10 @@ package com.bearmod.loader
 
 import android.app.Application
 import android.util.Log
+import com.bearmod.loader.di.AppContainer
+import com.bearmod.loader.update.OtaPrefetchScheduler
+import com.bearmod.loader.utils.BitmapLoader
+import com.bearmod.loader.utils.SecurePreferences
 
 /**
  * Application class for KeyAuth Loader
@@ -32,6 +36,9 @@ class KeyAuthLoaderApplication : Application() {
         }
     }
 
+    /** Process-wide singletons; see [AppContainer.from]. */
+    val container: AppContainer by lazy { AppContainer(this) }
+
     override fun onCreate() {
         super.onCreate()
 
@@ -45,6 +52,8 @@ class KeyAuthLoaderApplication : Application() {
 
         // Initialize any app-wide components here
         // For example: crash reporting, analytics, etc.
+        SecurePreferences.preload(this)
+        OtaPrefetchScheduler.sync(this)
 
         // CRITICAL: KeyAuth initialization is handled per-activity following C++ pattern
         // This ensures proper KeyAuthApp.init() -> KeyAuthApp.response.success sequence
@@ -52,6 +61,12 @@ class KeyAuthLoaderApplication : Application() {
         Log.d(TAG, "✅ Application initialization complete")
     }
 
+    override fun onTrimMemory(level: Int) {
+        super.onTrimMemory(level)
+        BitmapLoader.trimMemory(level)
+        SecurePreferences.onTrimMemory(level)
+    }
+
     override fun onTerminate() {
         super.onTerminate()
         instance = null
@@ -56,7 +56,8 @@ object KeyAuthConfig {
 
     /**
      * JSON endpoint for version information
-     * Should return version, build, and variants information
+     * Either a version manifest (version, build, variants) or a GitHub releases API URL,
+     * whose release is mapped by GitHubReleaseAdapter
      */
     const val OTA_VERSION_ENDPOINT = "https://api.github.com/repos/kothar-1992/BearMod/releases/latest"
 
@@ -80,4 +81,24 @@ object KeyAuthConfig {
      * Default variant
      */
     const val DEFAULT_VARIANT = "GL"
+
+    /**
+     * Session Configuration
+     */
+
+    /**
+     * How long a successful session check is reused before checkSession() goes back to the
+     * server (5 minutes). Errors, re-initialization and logout discard it earlier.
+     */
+    const val SESSION_VALIDATION_TTL_MS = 5 * 60 * 1000L
+
+    /**
+     * Storage Configuration
+     */
+
+    /**
+     * Back SecurePreferences with the binary append-only store instead of SharedPreferences XML.
+     * Existing XML data is migrated once on first use.
+     */
+    const val USE_BINARY_PREFERENCE_STORE = false
 }
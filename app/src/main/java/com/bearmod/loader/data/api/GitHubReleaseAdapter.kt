@@ -0,0 +1,122 @@
+package com.bearmod.loader.data.api
+
+import com.bearmod.loader.config.KeyAuthConfig
+import com.bearmod.loader.data.model.FileInfo
+import com.bearmod.loader.data.model.GitHubRelease
+import com.bearmod.loader.data.model.GitHubReleaseAsset
+import com.bearmod.loader.data.model.OTAResponse
+import com.bearmod.loader.data.model.SplitApkInfo
+import com.bearmod.loader.data.model.VariantInfo
+import com.bearmod.loader.install.SplitApkResolver
+import java.util.Locale
+
+/**
+ * Maps a GitHub release and its assets to an [OTAResponse].
+ *
+ * The tag gives the version and build (`v3`, `v3.2`, `v3-build2`). Assets are grouped by
+ * the variant key they start with (`GL.apk`, `GL-main.obb`, `KR_split_config.arm64_v8a.apk`):
+ * each variant needs one base APK and one OBB; other APKs whose names contain `split_` are
+ * its splits, classified from bundletool's `split_config.<abi|density|language>` naming.
+ *
+ * Hashes come from each asset's `digest`, or else from a `SHA256SUMS` asset (see
+ * [checksumAsset] and [parseChecksums]). Assets without a hash are left out, since the
+ * download engine cannot verify them.
+ */
+object GitHubReleaseAdapter {
+
+    private const val API_HOST_PREFIX = "https://api.github.com/repos/"
+    private const val SPLIT_PREFIX = "split_"
+    private const val SPLIT_CONFIG_MARKER = "split_config."
+    private const val DIGEST_PREFIX = "sha256:"
+    private val CHECKSUM_ASSET_NAMES = setOf("sha256sums", "sha256sums.txt", "checksums.txt")
+    private val ABIS = setOf("armeabi", "armeabi-v7a", "arm64-v8a", "x86", "x86_64")
+    private val VERSION_PATTERN = Regex("(\\d+)(?:\\D+(\\d+))?")
+    private val SHA256_PATTERN = Regex("[0-9a-fA-F]{64}")
+
+    /**
+     * True if [url] is a GitHub releases API endpoint rather than a plain version manifest
+     */
+    fun isReleaseEndpoint(url: String): Boolean =
+        url.startsWith(API_HOST_PREFIX) && url.contains("/releases")
+
+    /**
+     * Checksum file to fetch, if some artifact has no `digest` of its own
+     */
+    fun checksumAsset(release: GitHubRelease): GitHubReleaseAsset? {
+        if (release.assets.none { isArtifact(it) && it.digest == null }) return null
+        return release.assets.firstOrNull { it.name.lowercase(Locale.US) in CHECKSUM_ASSET_NAMES }
+    }
+
+    /**
+     * Parse `sha256sum` output (`<hex>  <name>` or `<hex> *<name>`) into name to hash
+     */
+    fun parseChecksums(text: String): Map<String, String> =
+        text.lineSequence()
+            .map { it.trim().split(Regex("\\s+"), limit = 2) }
+            .filter { it.size == 2 && SHA256_PATTERN.matches(it[0]) }
+            .associate { it[1].removePrefix("*").substringAfterLast('/') to it[0].lowercase(Locale.US) }
+
+    /**
+     * Version and build from a tag such as `v3.2`; null if the tag has no number
+     */
+    fun parseVersion(tag: String): Pair<Int, Int>? {
+        val match = VERSION_PATTERN.find(tag) ?: return null
+        val version = match.groupValues[1].toIntOrNull() ?: return null
+        val build = match.groupValues[2].toIntOrNull() ?: 0
+        return version to build
+    }
+
+    /**
+     * The release as an [OTAResponse], or null if its tag has no version. Variants missing
+     * a verifiable base APK or OBB are omitted.
+     */
+    fun toOtaResponse(
+        release: GitHubRelease,
+        checksums: Map<String, String> = emptyMap(),
+        variants: List<String> = KeyAuthConfig.AVAILABLE_VARIANTS
+    ): OTAResponse? {
+        val (version, build) = parseVersion(release.tagName) ?: return null
+        val byVariant = release.assets
+            .filter { isArtifact(it) }
+            .groupBy { variantOf(it.name, variants) }
+        val mapped = LinkedHashMap<String, VariantInfo>()
+        for (variant in variants) {
+            val files = byVariant[variant].orEmpty().mapNotNull { asset ->
+                sha256Of(asset, checksums)?.let { asset to FileInfo(asset.name, asset.browserDownloadUrl, it, asset.size) }
+            }
+            val apks = files.filter { it.first.name.endsWith(".apk", ignoreCase = true) }
+            val base = apks.firstOrNull { !it.first.name.contains(SPLIT_PREFIX) }?.second ?: continue
+            val obb = files.firstOrNull { it.first.name.endsWith(".obb", ignoreCase = true) }?.second ?: continue
+            val splits = apks.filter { it.first.name.contains(SPLIT_PREFIX) }.map { toSplit(it.second) }
+            mapped[variant] = VariantInfo(base, obb, splits.ifEmpty { null })
+        }
+        return OTAResponse(version, build, mapped)
+    }
+
+    private fun isArtifact(asset: GitHubReleaseAsset): Boolean =
+        asset.name.endsWith(".apk", ignoreCase = true) || asset.name.endsWith(".obb", ignoreCase = true)
+
+    private fun variantOf(name: String, variants: List<String>): String? {
+        val prefix = name.takeWhile { it != '-' && it != '_' && it != '.' }.uppercase(Locale.US)
+        return variants.firstOrNull { it.equals(prefix, ignoreCase = true) }
+    }
+
+    private fun sha256Of(asset: GitHubReleaseAsset, checksums: Map<String, String>): String? =
+        asset.digest?.takeIf { it.startsWith(DIGEST_PREFIX) }?.removePrefix(DIGEST_PREFIX)
+            ?: checksums[asset.name]
+
+    private fun toSplit(file: FileInfo): SplitApkInfo {
+        if (!file.name.contains(SPLIT_CONFIG_MARKER)) {
+            // Feature splits are always installed
+            return SplitApkInfo("feature", "", file.name, file.url, file.sha256, file.size)
+        }
+        val value = file.name.substringAfter(SPLIT_CONFIG_MARKER).removeSuffix(".apk")
+        val abi = value.replace('_', '-').let { if (it == "x86-64") "x86_64" else it }
+        val (type, typedValue) = when {
+            abi in ABIS -> SplitApkInfo.TYPE_ABI to abi
+            SplitApkResolver.densityOf(value) != null -> SplitApkInfo.TYPE_DENSITY to value
+            else -> SplitApkInfo.TYPE_LANGUAGE to value
+        }
+        return SplitApkInfo(type, typedValue, file.name, file.url, file.sha256, file.size)
+    }
+}
@@ -1,9 +1,12 @@
 package com.bearmod.loader.data.api
 
+import com.bearmod.loader.data.model.GitHubRelease
 import com.bearmod.loader.data.model.OTAResponse
 import okhttp3.ResponseBody
 import retrofit2.Response
 import retrofit2.http.GET
+import retrofit2.http.Header
+import retrofit2.http.Headers
 import retrofit2.http.Streaming
 import retrofit2.http.Url
 
@@ -13,15 +16,25 @@ import retrofit2.http.Url
 interface OTAApiService {
     
     /**
-     * Get version information from the configured endpoint
+     * Get version information from the configured endpoint. With [ifNoneMatch] set to the
+     * last ETag, an unchanged resource answers 304 with no body.
      */
     @GET
-    suspend fun getVersionInfo(@Url url: String): Response<OTAResponse>
+    suspend fun getVersionInfo(@Url url: String, @Header("If-None-Match") ifNoneMatch: String? = null): Response<OTAResponse>
     
     /**
-     * Download a file with streaming support for progress tracking
+     * Get a GitHub release (see [GitHubReleaseAdapter]). Conditional like [getVersionInfo];
+     * GitHub does not count 304 answers against the rate limit.
+     */
+    @GET
+    @Headers("Accept: application/vnd.github+json")
+    suspend fun getLatestRelease(@Url url: String, @Header("If-None-Match") ifNoneMatch: String? = null): Response<GitHubRelease>
+    
+    /**
+     * Download a file with streaming support for progress tracking. [range] (e.g.
+     * `bytes=1024-`) requests only the rest of a partially downloaded file.
      */
     @Streaming
     @GET
-    suspend fun downloadFile(@Url url: String): Response<ResponseBody>
+    suspend fun downloadFile(@Url url: String, @Header("Range") range: String? = null): Response<ResponseBody>
 }
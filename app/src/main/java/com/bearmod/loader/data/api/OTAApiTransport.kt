@@ -0,0 +1,46 @@
+package com.bearmod.loader.data.api
+
+import com.bearmod.loader.ota.OtaStream
+import com.bearmod.loader.ota.OtaTransport
+import java.io.IOException
+
+/**
+ * [OtaTransport] over the Retrofit [OTAApiService] streaming download.
+ */
+class OTAApiTransport(private val apiService: OTAApiService) : OtaTransport {
+
+    companion object {
+        private const val HTTP_PARTIAL_CONTENT = 206
+        private const val HTTP_RANGE_NOT_SATISFIABLE = 416
+    }
+
+    override suspend fun open(url: String): OtaStream {
+        val response = apiService.downloadFile(url)
+        if (!response.isSuccessful) {
+            response.errorBody()?.close()
+            throw IOException("Download failed: ${response.code()}")
+        }
+        val body = response.body() ?: throw IOException("Empty response body")
+        return OtaStream(body.contentLength(), body.byteStream(), onClose = body::close)
+    }
+
+    /**
+     * Ranged request; a 200 means the server ignored the range and sends the whole file,
+     * and a 416 (partial file no longer matches) falls back to a full download.
+     */
+    override suspend fun open(url: String, offset: Long): OtaStream {
+        if (offset <= 0L) return open(url)
+        val response = apiService.downloadFile(url, "bytes=$offset-")
+        if (response.code() == HTTP_RANGE_NOT_SATISFIABLE) {
+            response.errorBody()?.close()
+            return open(url)
+        }
+        if (!response.isSuccessful) {
+            response.errorBody()?.close()
+            throw IOException("Download failed: ${response.code()}")
+        }
+        val body = response.body() ?: throw IOException("Empty response body")
+        val start = if (response.code() == HTTP_PARTIAL_CONTENT) offset else 0L
+        return OtaStream(body.contentLength(), body.byteStream(), onClose = body::close, offset = start)
+    }
+}
@@ -1,5 +1,6 @@
 package com.bearmod.loader.data.model
 
+import com.bearmod.loader.config.KeyAuthConfig
 import com.google.gson.annotations.SerializedName
 
 /**
@@ -18,7 +19,8 @@ data class AuthenticationState(
     val licenseKey: String? = null,
     val userInfo: UserInfo? = null,
     val deviceTrustLevel: Int = 0,
-    val isDeviceRegistered: Boolean = false
+    val isDeviceRegistered: Boolean = false,
+    val sessionValidatedAt: Long = 0L
 ) {
     /**
      * Check if session is expired
@@ -34,6 +36,13 @@ data class AuthenticationState(
         return isAuthenticated && !sessionToken.isNullOrEmpty() && !isSessionExpired()
     }
 
+    /**
+     * Check if the server confirmed this session within [ttlMs]
+     */
+    fun isSessionValidationFresh(ttlMs: Long = KeyAuthConfig.SESSION_VALIDATION_TTL_MS): Boolean {
+        return sessionValidatedAt > 0L && System.currentTimeMillis() - sessionValidatedAt < ttlMs
+    }
+
     /**
      * Get time until expiry in milliseconds
      */
@@ -0,0 +1,36 @@
+package com.bearmod.loader.data.model
+
+import com.google.gson.annotations.SerializedName
+
+/**
+ * Subset of a GitHub `releases/latest` response used to build an [OTAResponse]
+ */
+data class GitHubRelease(
+    @SerializedName("tag_name")
+    val tagName: String,
+
+    @SerializedName("name")
+    val name: String? = null,
+
+    @SerializedName("assets")
+    val assets: List<GitHubReleaseAsset> = emptyList()
+)
+
+/**
+ * File attached to a [GitHubRelease]
+ */
+data class GitHubReleaseAsset(
+    @SerializedName("name")
+    val name: String,
+
+    /** Direct download URL; served from GitHub's CDN, not counted against the API rate limit */
+    @SerializedName("browser_download_url")
+    val browserDownloadUrl: String,
+
+    @SerializedName("size")
+    val size: Long? = null,
+
+    /** `sha256:<hex>` on releases uploaded since GitHub started recording asset digests */
+    @SerializedName("digest")
+    val digest: String? = null
+)
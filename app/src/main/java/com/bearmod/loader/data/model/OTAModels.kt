@@ -21,14 +21,18 @@ data class OTAResponse(
 )
 
 /**
- * Information about a specific variant
+ * Information about a specific variant. When [splits] are listed, [apk] is the base APK and
+ * only the splits matching the device are downloaded alongside it.
  */
 data class VariantInfo(
     @SerializedName("apk")
     val apk: FileInfo,
     
     @SerializedName("obb")
-    val obb: FileInfo
+    val obb: FileInfo,
+    
+    @SerializedName("splits")
+    val splits: List<SplitApkInfo>? = null
 )
 
 /**
@@ -48,6 +52,39 @@ data class FileInfo(
     val size: Long? = null
 )
 
+/**
+ * Configuration split of a variant's base APK
+ */
+data class SplitApkInfo(
+    /** One of [TYPE_ABI], [TYPE_DENSITY] or [TYPE_LANGUAGE]; other types are always installed */
+    @SerializedName("type")
+    val type: String,
+    
+    /** ABI (`arm64-v8a`), density bucket (`xxhdpi`) or language (`en`) the split targets */
+    @SerializedName("value")
+    val value: String,
+    
+    @SerializedName("name")
+    val name: String,
+    
+    @SerializedName("url")
+    val url: String,
+    
+    @SerializedName("sha256")
+    val sha256: String,
+    
+    @SerializedName("size")
+    val size: Long? = null
+) {
+    companion object {
+        const val TYPE_ABI = "abi"
+        const val TYPE_DENSITY = "density"
+        const val TYPE_LANGUAGE = "language"
+    }
+    
+    fun toFileInfo(): FileInfo = FileInfo(name, url, sha256, size)
+}
+
 /**
  * Download progress information
  */
@@ -83,6 +120,15 @@ enum class DownloadStatus {
     VERIFICATION_FAILED
 }
 
+/**
+ * Why a scheduled download is waiting; it resumes on its own once the condition clears
+ */
+enum class DownloadPauseReason {
+    NO_NETWORK,
+    METERED_NETWORK,
+    LOW_BATTERY
+}
+
 /**
  * Variant selection item for UI
  */
@@ -114,6 +160,7 @@ sealed class OTAUpdateState {
     object NoUpdateAvailable : OTAUpdateState()
     data class VariantSelection(val otaResponse: OTAResponse) : OTAUpdateState()
     data class Downloading(val apkProgress: DownloadProgress?, val obbProgress: DownloadProgress?) : OTAUpdateState()
+    data class DownloadPaused(val reason: DownloadPauseReason) : OTAUpdateState()
     data class DownloadCompleted(val apkPath: String, val obbPath: String) : OTAUpdateState()
     data class Installing(val message: String) : OTAUpdateState()
     data class InstallationCompleted(val result: InstallationResult) : OTAUpdateState()
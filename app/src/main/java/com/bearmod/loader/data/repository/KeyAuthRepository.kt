@@ -3,8 +3,17 @@ package com.bearmod.loader.data.repository
 import android.content.Context
 import android.os.Build
 import android.provider.Settings
-import android.util.Log
 import com.bearmod.loader.config.KeyAuthConfig
+import com.bearmod.loader.logging.LogLevel
+import com.bearmod.loader.logging.Logger
+import com.bearmod.loader.logging.NoOpLogger
+import com.bearmod.loader.logging.RingBufferLogger
+import com.bearmod.loader.logging.d
+import com.bearmod.loader.logging.e
+import com.bearmod.loader.logging.w
+import com.bearmod.loader.metrics.LatencyRecorder
+import com.bearmod.loader.network.NetworkMetrics
+import com.bearmod.loader.network.ResilientKeyAuthApi
 import com.bearmod.loader.data.api.KeyAuthApiService
 import com.bearmod.loader.data.model.KeyAuthResponse
 import com.bearmod.loader.data.model.AuthenticationState
@@ -18,12 +27,21 @@ import com.bearmod.loader.utils.SecurePreferences
 import com.bearmod.loader.security.AndroidHWIDProvider
 import com.bearmod.loader.security.HWIDProvider
 import com.bearmod.loader.utils.SessionDebugger
+import com.bearmod.loader.utils.SingleFlight
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
 import retrofit2.Response
+import java.net.URI
 import java.security.MessageDigest
 /**
  * Repository for KeyAuth API operations
@@ -31,10 +49,26 @@ import java.security.MessageDigest
 class KeyAuthRepository(
     private val apiService: KeyAuthApiService,
     private val context: Context,
-    private val enableLogging: Boolean = true,
-    private val hwidProvider: HWIDProvider = AndroidHWIDProvider(context)
+    enableLogging: Boolean = true,
+    private val hwidProvider: HWIDProvider = AndroidHWIDProvider(context),
+    private val securePreferences: SecurePreferences = SecurePreferences(context, hwidProvider = hwidProvider),
+    private val sessionValidationTtlMs: Long = KeyAuthConfig.SESSION_VALIDATION_TTL_MS
 ) {
 
+    companion object {
+        private const val TAG = "KeyAuthRepository"
+
+        /**
+         * Per-stage durations of [restoreSessionPipelined]: `restore.storedValues`,
+         * `restore.hwid`, `restore.init`, `restore.checkSession` and `restore.total`
+         */
+        @JvmStatic
+        val startupTimings = LatencyRecorder()
+    }
+
+    // Messages are built lazily, only when the shared logger's level admits them
+    private val logger: Logger = if (enableLogging) RingBufferLogger.shared else NoOpLogger
+
     // KeyAuth application configuration from config
     private val appName = KeyAuthConfig.APP_NAME
     private val ownerId = KeyAuthConfig.OWNER_ID
@@ -42,15 +76,35 @@ class KeyAuthRepository(
     private val customHash = KeyAuthConfig.CUSTOM_HASH
     private val apiBaseUrl = KeyAuthConfig.API_BASE_URL
 
-    // Secure preferences and a session service for session/token operations
-    private val securePreferences = SecurePreferences(context, hwidProvider = hwidProvider)
-    private val sessionService = com.bearmod.loader.utils.SessionService(context)
+    // Session service for session/token operations, sharing the repository's SecurePreferences
+    private val sessionService = com.bearmod.loader.utils.SessionService(
+        com.bearmod.loader.utils.SessionManager(securePreferences)
+    )
 
     private var sessionId: String? = null
     @Volatile
     private var isInitialized = false
     private val initializationLock = Any()
 
+    // Concurrency rules for the network operations:
+    //  - initialize, checkSession and restoreSession are joinable: a caller arriving while the
+    //    same operation is in flight awaits that run instead of starting another round-trip.
+    //    initialize is keyed by preserveSession and checkSession by the session ID it checks,
+    //    so callers only ever join a run with identical inputs.
+    //  - license authentication is never joined (each call carries its own key) but is
+    //    serialized, since each call consumes and replaces the current session ID.
+    private val flightScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val initFlight = SingleFlight<Boolean, NetworkResult<KeyAuthResponse>>(flightScope)
+    private val checkSessionFlight = SingleFlight<String, NetworkResult<KeyAuthResponse>>(flightScope)
+    private val restoreFlight = SingleFlight<Unit, SessionRestoreResult>(flightScope)
+    private val licenseMutex = Mutex()
+
+    // Most recent successful check(), reused for sessionValidationTtlMs while the session ID matches
+    private class SessionValidation(val sessionId: String, val response: KeyAuthResponse, val validatedAt: Long)
+
+    @Volatile
+    private var sessionValidation: SessionValidation? = null
+
     // Enhanced authentication state management
     private val _authenticationState = MutableStateFlow(AuthenticationState())
     val authenticationState: StateFlow<AuthenticationState> = _authenticationState.asStateFlow()
@@ -67,8 +121,12 @@ class KeyAuthRepository(
      * CRITICAL: This MUST be called FIRST before any other KeyAuth functions
      * and success MUST be checked using KeyAuthApp.response.success pattern
      * Enhanced: Supports session preservation during restoration
+     * Concurrent calls with the same [preserveSession] share one init() round-trip
      */
-    suspend fun initialize(preserveSession: Boolean = false): NetworkResult<KeyAuthResponse> = withContext(Dispatchers.IO) {
+    suspend fun initialize(preserveSession: Boolean = false): NetworkResult<KeyAuthResponse> =
+        initFlight.run(preserveSession) { performInitialize(preserveSession) }
+
+    private suspend fun performInitialize(preserveSession: Boolean): NetworkResult<KeyAuthResponse> = withContext(Dispatchers.IO) {
         try {
             // CRITICAL FIX: Always clear session state before initialization
             // KeyAuth API v1.3 init() must NEVER receive existing session tokens
@@ -78,19 +136,20 @@ class KeyAuthRepository(
                 }
                 isInitialized = false
             }
+            if (!preserveSession) invalidateSessionValidation()
 
             // Call KeyAuth init API (equivalent to KeyAuthApp.init() in C++)
             // Include custom hash for integrity checking
-            if (enableLogging) {
-                Log.d("KeyAuthRepository", "🔄 Calling KeyAuth API init() with parameters:")
-                Log.d("KeyAuthRepository", "   - type: init")
-                Log.d("KeyAuthRepository", "   - version: $version")
-                Log.d("KeyAuthRepository", "   - name: $appName")
-                Log.d("KeyAuthRepository", "   - ownerId: $ownerId")
-                Log.d("KeyAuthRepository", "   - hash: ${customHash?.take(8)}...")
-                Log.d("KeyAuthRepository", "   - preserveSession: $preserveSession")
-                Log.d("KeyAuthRepository", "   - current sessionId: ${sessionId?.take(8) ?: "null"}")
-                Log.d("KeyAuthRepository", "   - API endpoint: $apiBaseUrl")
+            if (logger.isLoggable(LogLevel.DEBUG)) {
+                logger.d(TAG, "🔄 Calling KeyAuth API init() with parameters:")
+                logger.d(TAG, "   - type: init")
+                logger.d(TAG, "   - version: $version")
+                logger.d(TAG, "   - name: $appName")
+                logger.d(TAG, "   - ownerId: $ownerId")
+                logger.d(TAG, "   - hash: ${customHash?.take(8)}...")
+                logger.d(TAG, "   - preserveSession: $preserveSession")
+                logger.d(TAG, "   - current sessionId: ${sessionId?.take(8) ?: "null"}")
+                logger.d(TAG, "   - API endpoint: $apiBaseUrl")
             }
 
             val response = apiService.init(
@@ -101,20 +160,20 @@ class KeyAuthRepository(
             )
 
             // Check response following C++ pattern: if (!KeyAuthApp.response.success)
-            if (enableLogging) {
-                Log.d("KeyAuthRepository", "📡 KeyAuth API response received:")
-                Log.d("KeyAuthRepository", "   - HTTP Status: ${response.code()}")
-                Log.d("KeyAuthRepository", "   - isSuccessful: ${response.isSuccessful}")
+            if (logger.isLoggable(LogLevel.DEBUG)) {
+                logger.d(TAG, "📡 KeyAuth API response received:")
+                logger.d(TAG, "   - HTTP Status: ${response.code()}")
+                logger.d(TAG, "   - isSuccessful: ${response.isSuccessful}")
             }
 
             if (response.isSuccessful) {
                 val body = response.body()
 
-                if (enableLogging) {
-                    Log.d("KeyAuthRepository", "📋 Response body:")
-                    Log.d("KeyAuthRepository", "   - success: ${body?.success}")
-                    Log.d("KeyAuthRepository", "   - message: ${body?.message}")
-                    Log.d("KeyAuthRepository", "   - sessionId: ${body?.sessionId?.take(8) ?: "null"}")
+                if (logger.isLoggable(LogLevel.DEBUG)) {
+                    logger.d(TAG, "📋 Response body:")
+                    logger.d(TAG, "   - success: ${body?.success}")
+                    logger.d(TAG, "   - message: ${body?.message}")
+                    logger.d(TAG, "   - sessionId: ${body?.sessionId?.take(8) ?: "null"}")
                 }
 
                 // STRICT success checking following C++ library v1.3 pattern
@@ -125,7 +184,7 @@ class KeyAuthRepository(
                         isInitialized = true
                     }
 
-                    if (enableLogging) Log.d("KeyAuthRepository", "✅ KeyAuth initialization successful")
+                    logger.d(TAG) { "✅ KeyAuth initialization successful" }
                     NetworkResult.Success(body)
                 } else {
                     // Initialization failed - following C++ pattern behavior
@@ -134,10 +193,10 @@ class KeyAuthRepository(
                     // ENHANCED ERROR HANDLING: Check for specific KeyAuth errors
                     if (errorMessage.contains("session not found", ignoreCase = true) ||
                         errorMessage.contains("last code", ignoreCase = true)) {
-                        if (enableLogging) {
-                            Log.e("KeyAuthRepository", "🚨 CRITICAL: KeyAuth session error during init")
-                            Log.e("KeyAuthRepository", "   This suggests session state corruption")
-                            Log.e("KeyAuthRepository", "   Clearing all session data...")
+                        if (logger.isLoggable(LogLevel.ERROR)) {
+                            logger.e(TAG, "🚨 CRITICAL: KeyAuth session error during init")
+                            logger.e(TAG, "   This suggests session state corruption")
+                            logger.e(TAG, "   Clearing all session data...")
                         }
 
                         // Clear all session data to force fresh authentication
@@ -150,7 +209,7 @@ class KeyAuthRepository(
                         isInitialized = false
                     }
 
-                    if (enableLogging) Log.e("KeyAuthRepository", "❌ KeyAuth Init Failed: $errorMessage")
+                    logger.e(TAG) { "❌ KeyAuth Init Failed: $errorMessage" }
                     NetworkResult.Error("KeyAuth Init Failed: $errorMessage")
                 }
             } else {
@@ -169,16 +228,16 @@ class KeyAuthRepository(
 
                 val errorMessage = "HTTP ${response.code()}: ${response.message()}"
 
-                if (enableLogging) {
-                    Log.e("KeyAuthRepository", "❌ KeyAuth Init HTTP Error: $errorMessage")
-                    Log.e("KeyAuthRepository", "   - Error Body: $errorBody")
-                    Log.e("KeyAuthRepository", "   - Request URL: ${response.raw().request.url}")
+                if (logger.isLoggable(LogLevel.ERROR)) {
+                    logger.e(TAG, "❌ KeyAuth Init HTTP Error: $errorMessage")
+                    logger.e(TAG, "   - Error Body: $errorBody")
+                    logger.e(TAG, "   - Request URL: ${response.raw().request.url}")
 
                     // Check if this is the "Token given" error
                     if (errorBody?.contains("Token", ignoreCase = true) == true) {
-                        Log.e("KeyAuthRepository", "🚨 CRITICAL: KeyAuth API received unexpected token during init()")
-                        Log.e("KeyAuthRepository", "   This suggests session state is interfering with initialization")
-                        Log.e("KeyAuthRepository", "   Current sessionId state: ${sessionId?.take(8) ?: "null"}")
+                        logger.e(TAG, "🚨 CRITICAL: KeyAuth API received unexpected token during init()")
+                        logger.e(TAG, "   This suggests session state is interfering with initialization")
+                        logger.e(TAG, "   Current sessionId state: ${sessionId?.take(8) ?: "null"}")
                     }
                 }
 
@@ -192,7 +251,7 @@ class KeyAuthRepository(
             }
 
             val errorMessage = "Connection error during initialization: ${e.message}"
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ $errorMessage")
+            logger.e(TAG) { "❌ $errorMessage" }
             NetworkResult.Error(errorMessage)
         }
     }
@@ -203,24 +262,32 @@ class KeyAuthRepository(
      *
      * CRITICAL: Must be called AFTER successful initialization
      * Requires KeyAuthApp.response.success == true from init() first
+     * Calls are serialized: each one runs against the session ID left by the previous one
      */
-    suspend fun authenticateWithLicense(licenseKey: String): NetworkResult<KeyAuthResponse> = withContext(Dispatchers.IO) {
+    suspend fun authenticateWithLicense(licenseKey: String): NetworkResult<KeyAuthResponse> =
+        licenseMutex.withLock {
+            performLicenseAuthentication(licenseKey).also { result ->
+                if (result !is NetworkResult.Success) invalidateSessionValidation()
+            }
+        }
+
+    private suspend fun performLicenseAuthentication(licenseKey: String): NetworkResult<KeyAuthResponse> = withContext(Dispatchers.IO) {
         try {
             // STRICT initialization check following C++ pattern
             synchronized(initializationLock) {
                 if (!isInitialized) {
-                    if (enableLogging) Log.e("KeyAuthRepository", "❌ Authentication attempted without initialization")
+                    logger.e(TAG) { "❌ Authentication attempted without initialization" }
                     return@withContext NetworkResult.Error("Application not initialized. Please restart the app.")
                 }
             }
 
             val hwid = hwidProvider.getHWID()
             val currentSessionId = sessionId ?: run {
-                if (enableLogging) Log.e("KeyAuthRepository", "❌ No session ID available after initialization")
+                logger.e(TAG) { "❌ No session ID available after initialization" }
                 return@withContext NetworkResult.Error("No session ID available")
             }
 
-            if (enableLogging) Log.d("KeyAuthRepository", "🔐 Attempting license authentication...")
+            logger.d(TAG) { "🔐 Attempting license authentication..." }
 
             val response = apiService.license(
                 licenseKey = licenseKey,
@@ -242,7 +309,7 @@ class KeyAuthRepository(
                         }
                     }
 
-                    if (enableLogging) Log.d("KeyAuthRepository", "✅ License authentication successful")
+                    logger.d(TAG) { "✅ License authentication successful" }
 
                     // Enhanced session persistence
                     handleSuccessfulAuthentication(licenseKey, hwid, body)
@@ -255,11 +322,11 @@ class KeyAuthRepository(
                     // ENHANCED ERROR HANDLING: Check for specific KeyAuth errors
                     if (errorMessage.contains("session not found", ignoreCase = true) ||
                         errorMessage.contains("last code", ignoreCase = true)) {
-                        if (enableLogging) {
-                            Log.e("KeyAuthRepository", "🚨 CRITICAL: KeyAuth session error during authentication")
-                            Log.e("KeyAuthRepository", "   Error: $errorMessage")
-                            Log.e("KeyAuthRepository", "   This suggests session state corruption or invalid session ID")
-                            Log.e("KeyAuthRepository", "   Clearing session state and forcing re-initialization...")
+                        if (logger.isLoggable(LogLevel.ERROR)) {
+                            logger.e(TAG, "🚨 CRITICAL: KeyAuth session error during authentication")
+                            logger.e(TAG, "   Error: $errorMessage")
+                            logger.e(TAG, "   This suggests session state corruption or invalid session ID")
+                            logger.e(TAG, "   Clearing session state and forcing re-initialization...")
                         }
 
                         // Clear all session data and force re-initialization
@@ -269,17 +336,17 @@ class KeyAuthRepository(
                         return@withContext NetworkResult.Error("Session expired or invalid. Please restart the app and try again.")
                     }
 
-                    if (enableLogging) Log.e("KeyAuthRepository", "❌ License Auth Failed: $errorMessage")
+                    logger.e(TAG) { "❌ License Auth Failed: $errorMessage" }
                     NetworkResult.Error(errorMessage)
                 }
             } else {
                 val errorMessage = "Network error during authentication: ${response.code()}"
-                if (enableLogging) Log.e("KeyAuthRepository", "❌ $errorMessage")
+                logger.e(TAG) { "❌ $errorMessage" }
                 NetworkResult.Error(errorMessage)
             }
         } catch (e: Exception) {
             val errorMessage = "Connection error during authentication: ${e.message}"
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ $errorMessage")
+            logger.e(TAG) { "❌ $errorMessage" }
             NetworkResult.Error(errorMessage)
         }
     }
@@ -287,21 +354,63 @@ class KeyAuthRepository(
     /**
      * Check if current session is valid
      * Enhanced with comprehensive debugging
+     * Concurrent checks of the same session ID share one check() round-trip, and a successful
+     * result is reused for sessionValidationTtlMs unless [forceRefresh] is set
      */
-    suspend fun checkSession(): NetworkResult<KeyAuthResponse> = withContext(Dispatchers.IO) {
+    suspend fun checkSession(forceRefresh: Boolean = false): NetworkResult<KeyAuthResponse> {
+        val currentSessionId = sessionId ?: run {
+            invalidateSessionValidation()
+            return performCheckSession(null)
+        }
+
+        if (!forceRefresh) {
+            val cached = sessionValidation
+            if (cached != null && cached.sessionId == currentSessionId &&
+                System.currentTimeMillis() - cached.validatedAt < sessionValidationTtlMs) {
+                logger.d(TAG) { "✅ Session validated ${(System.currentTimeMillis() - cached.validatedAt) / 1000}s ago, reusing result" }
+                return NetworkResult.Success(cached.response)
+            }
+        }
+
+        return checkSessionFlight.run(currentSessionId) {
+            performCheckSession(currentSessionId).also { result ->
+                if (result is NetworkResult.Success) {
+                    recordSessionValidation(currentSessionId, result.data)
+                } else {
+                    invalidateSessionValidation()
+                }
+            }
+        }
+    }
+
+    private fun recordSessionValidation(validatedSessionId: String, response: KeyAuthResponse) {
+        val now = System.currentTimeMillis()
+        sessionValidation = SessionValidation(validatedSessionId, response, now)
+        _authenticationState.update { it.copy(sessionValidatedAt = now) }
+    }
+
+    /**
+     * Drop the cached check() result; called on any auth error, re-initialization and logout
+     */
+    private fun invalidateSessionValidation() {
+        sessionValidation = null
+        _authenticationState.update { if (it.sessionValidatedAt == 0L) it else it.copy(sessionValidatedAt = 0L) }
+    }
+
+    private suspend fun performCheckSession(expectedSessionId: String?): NetworkResult<KeyAuthResponse> = withContext(Dispatchers.IO) {
         try {
-            val currentSessionId = sessionId ?: run {
-                if (enableLogging) Log.e("KeyAuthRepository", "❌ Session check failed: No active session ID")
+            val currentSessionId = expectedSessionId ?: run {
+                logger.e(TAG) { "❌ Session check failed: No active session ID" }
                 return@withContext NetworkResult.Error("No active session")
             }
 
-            if (enableLogging) {
-                Log.d("KeyAuthRepository", "🔍 Checking session validity: ${currentSessionId.take(8)}...")
-                Log.d("KeyAuthRepository", "📡 API call parameters:")
-                Log.d("KeyAuthRepository", "   - sessionId: ${currentSessionId.take(8)}...")
-                Log.d("KeyAuthRepository", "   - name: $appName")
-                Log.d("KeyAuthRepository", "   - ownerId: $ownerId")
-                Log.d("KeyAuthRepository", "   - endpoint: $apiBaseUrl")
+            if (logger.isLoggable(LogLevel.DEBUG)) {
+                logger.d(TAG, "🔍 Checking session validity: ${currentSessionId.take(8)}...")
+                logger.d(TAG, "📡 API call parameters:")
+                logger.d(TAG, "   - sessionId: ${currentSessionId.take(8)}...")
+                logger.d(TAG, "   - name: $appName")
+                logger.d(TAG, "   - ownerId: $ownerId")
+                logger.d(TAG, "   - endpoint: $apiBaseUrl")
             }
 
             val response = apiService.checkSession(
@@ -310,16 +419,16 @@ class KeyAuthRepository(
                 ownerId = ownerId
             )
 
-            if (enableLogging) {
-                Log.d("KeyAuthRepository", "📥 checkSession() API response:")
-                Log.d("KeyAuthRepository", "   - HTTP Status: ${response.code()}")
-                Log.d("KeyAuthRepository", "   - isSuccessful: ${response.isSuccessful}")
+            if (logger.isLoggable(LogLevel.DEBUG)) {
+                logger.d(TAG, "📥 checkSession() API response:")
+                logger.d(TAG, "   - HTTP Status: ${response.code()}")
+                logger.d(TAG, "   - isSuccessful: ${response.isSuccessful}")
             }
 
             if (response.isSuccessful) {
                 val body = response.body()
                 if (body?.success == true) {
-                    if (enableLogging) Log.d("KeyAuthRepository", "✅ Session validation successful")
+                    logger.d(TAG) { "✅ Session validation successful" }
                     NetworkResult.Success(body)
                 } else {
                     val errorMsg = body?.message ?: "Session invalid"
@@ -327,7 +436,7 @@ class KeyAuthRepository(
                     // Check for specific KeyAuth session errors and clear corrupted session
                     if (errorMsg.contains("session not found", ignoreCase = true) ||
                         errorMsg.contains("last code", ignoreCase = true)) {
-                        if (enableLogging) Log.w("KeyAuthRepository", "❌ Session not found error, clearing stored session...")
+                        logger.w(TAG) { "❌ Session not found error, clearing stored session..." }
                         // Delegate stored-token clearing to SessionService
                         sessionService.clearSessionToken()
 
@@ -339,17 +448,17 @@ class KeyAuthRepository(
                         return@withContext NetworkResult.Error("Session expired or invalid. Please login again.")
                     }
 
-                    if (enableLogging) Log.e("KeyAuthRepository", "❌ Session validation failed: $errorMsg")
+                    logger.e(TAG) { "❌ Session validation failed: $errorMsg" }
                     NetworkResult.Error(errorMsg)
                 }
             } else {
                 val errorMsg = "Network error: ${response.code()}"
-                if (enableLogging) Log.e("KeyAuthRepository", "❌ Session check network error: $errorMsg")
+                logger.e(TAG) { "❌ Session check network error: $errorMsg" }
                 NetworkResult.Error(errorMsg)
             }
         } catch (e: Exception) {
             val errorMsg = "Network error: ${e.message}"
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ Session check exception: $errorMsg", e)
+            logger.e(TAG, e) { "❌ Session check exception: $errorMsg" }
             NetworkResult.Error(errorMsg)
         }
     }
@@ -448,21 +557,25 @@ class KeyAuthRepository(
      * Attempt to restore session from stored data
      * This enables automatic login without re-entering license keys
      * Enhanced with comprehensive debugging
+     * Concurrent callers (auto-login, explicit restore) share one restoration run
      */
-    suspend fun restoreSession(): SessionRestoreResult = withContext(Dispatchers.IO) {
+    suspend fun restoreSession(): SessionRestoreResult =
+        restoreFlight.run(Unit) { performRestoreSession() }
+
+    private suspend fun performRestoreSession(): SessionRestoreResult = withContext(Dispatchers.IO) {
         try {
             _authFlowState.value = AuthFlowState.CHECKING_STORED_SESSION
 
-            if (enableLogging) {
-                Log.d("KeyAuthRepository", "🔄 Attempting session restoration...")
+            if (logger.isLoggable(LogLevel.DEBUG)) {
+                logger.d(TAG, "🔄 Attempting session restoration...")
                 SessionDebugger.logSessionRestoreAttempt(context)
             }
 
             // Check if we have stored session data
             val storedToken = securePreferences.getSessionToken()
             if (storedToken.isNullOrEmpty()) {
-                if (enableLogging) {
-                    Log.d("KeyAuthRepository", "❌ No stored session token found")
+                if (logger.isLoggable(LogLevel.DEBUG)) {
+                    logger.d(TAG, "❌ No stored session token found")
                     SessionDebugger.logSessionRestoreResult(context, false, "No stored session token")
                 }
                 _authFlowState.value = AuthFlowState.IDLE
@@ -470,16 +583,16 @@ class KeyAuthRepository(
             }
 
             // Enhanced logging for session token details
-            if (enableLogging) {
-                Log.d("KeyAuthRepository", "📦 Using stored session token: ${storedToken.take(8)}...")
-                Log.d("KeyAuthRepository", "⏳ Token valid: ${securePreferences.isSessionTokenValid()}")
-                Log.d("KeyAuthRepository", "📱 Device registered: ${securePreferences.isDeviceRegistered()}")
-                Log.d("KeyAuthRepository", "🔑 Trust level: ${securePreferences.getDeviceTrustLevel()}")
+            if (logger.isLoggable(LogLevel.DEBUG)) {
+                logger.d(TAG, "📦 Using stored session token: ${storedToken.take(8)}...")
+                logger.d(TAG, "⏳ Token valid: ${securePreferences.isSessionTokenValid()}")
+                logger.d(TAG, "📱 Device registered: ${securePreferences.isDeviceRegistered()}")
+                logger.d(TAG, "🔑 Trust level: ${securePreferences.getDeviceTrustLevel()}")
             }
 
             // Check if device is registered
             if (!securePreferences.isDeviceRegistered()) {
-                if (enableLogging) Log.d("KeyAuthRepository", "❌ Device not registered")
+                logger.d(TAG) { "❌ Device not registered" }
                 _authFlowState.value = AuthFlowState.IDLE
                 return@withContext SessionRestoreResult.NoStoredSession
             }
@@ -489,22 +602,22 @@ class KeyAuthRepository(
             val lastAuthHwid = securePreferences.getLastAuthHWID()
 
             if (lastAuthHwid != null && lastAuthHwid != currentHwid) {
-                if (enableLogging) Log.w("KeyAuthRepository", "⚠️ HWID mismatch detected")
+                logger.w(TAG) { "⚠️ HWID mismatch detected" }
                 _authFlowState.value = AuthFlowState.HWID_MISMATCH
                 return@withContext SessionRestoreResult.HWIDMismatch
             }
 
             // Check if session token is expired
             if (!securePreferences.isSessionTokenValid()) {
-                if (enableLogging) Log.d("KeyAuthRepository", "⏰ Session token expired")
+                logger.d(TAG) { "⏰ Session token expired" }
 
                 // Try to refresh token if available
                 val refreshResult = attemptTokenRefresh()
                 if (refreshResult is NetworkResult.Success) {
-                    if (enableLogging) Log.d("KeyAuthRepository", "✅ Token refreshed successfully")
+                    logger.d(TAG) { "✅ Token refreshed successfully" }
                     return@withContext createSessionRestoreSuccess()
                 } else {
-                    if (enableLogging) Log.d("KeyAuthRepository", "❌ Token refresh failed")
+                    logger.d(TAG) { "❌ Token refresh failed" }
                     _authFlowState.value = AuthFlowState.SESSION_EXPIRED
                     return@withContext SessionRestoreResult.SessionExpired
                 }
@@ -513,71 +626,188 @@ class KeyAuthRepository(
             // CRITICAL FIX: Always perform CLEAN initialization first
             // KeyAuth API v1.3 init() should NEVER receive session tokens
             if (!isAppInitialized()) {
-                if (enableLogging) Log.d("KeyAuthRepository", "🔄 Performing clean initialization for session restoration...")
+                logger.d(TAG) { "🔄 Performing clean initialization for session restoration..." }
 
                 // Perform clean initialization (no session preservation)
                 // This ensures KeyAuth API receives proper init() call without tokens
                 val initResult = initialize(preserveSession = false)
                 if (initResult !is NetworkResult.Success) {
-                    if (enableLogging) Log.e("KeyAuthRepository", "❌ Clean initialization failed during session restore")
+                    logger.e(TAG) { "❌ Clean initialization failed during session restore" }
                     _authFlowState.value = AuthFlowState.FAILED
                     return@withContext SessionRestoreResult.Failed("Initialization failed")
                 }
 
-                if (enableLogging) Log.d("KeyAuthRepository", "✅ Clean initialization successful, now validating stored session...")
+                logger.d(TAG) { "✅ Clean initialization successful, now validating stored session..." }
 
                 // AFTER successful initialization, set the stored session for validation
                 synchronized(initializationLock) {
                     sessionId = storedToken
                 }
 
-                if (enableLogging) {
-                    Log.d("KeyAuthRepository", "🔄 Session ID set for validation: ${storedToken.take(8)}...")
-                    Log.d("KeyAuthRepository", "📡 About to call checkSession() API...")
+                if (logger.isLoggable(LogLevel.DEBUG)) {
+                    logger.d(TAG, "🔄 Session ID set for validation: ${storedToken.take(8)}...")
+                    logger.d(TAG, "📡 About to call checkSession() API...")
                 }
             }
 
             // Validate session with server
-            val sessionCheckResult = checkSession()
-            when (sessionCheckResult) {
-                is NetworkResult.Success -> {
-                    if (enableLogging) Log.d("KeyAuthRepository", "✅ Session restored successfully")
+            return@withContext handleRestoreSessionCheck(checkSession())
 
-                    // Update trust level
-                    val currentTrust = securePreferences.getDeviceTrustLevel()
-                    securePreferences.setDeviceTrustLevel(minOf(currentTrust + 1, 3))
+        } catch (e: Exception) {
+            logger.e(TAG, e) { "❌ Session restoration failed" }
+            _authFlowState.value = AuthFlowState.FAILED
+            return@withContext SessionRestoreResult.Failed("Session restoration error: ${e.message}")
+        }
+    }
 
-                    _authFlowState.value = AuthFlowState.AUTHENTICATED
-                    return@withContext createSessionRestoreSuccess()
+    /**
+     * Stored session inputs, read together so the keystore is warmed once for all of them
+     */
+    private class StoredSessionSnapshot(
+        val sessionToken: String?,
+        val isDeviceRegistered: Boolean,
+        val lastAuthHwid: String?,
+        val isTokenValid: Boolean
+    )
+
+    /**
+     * Cold-start variant of [restoreSession] with the same results.
+     *
+     * The sequential path waits for each local step before touching the network. Here HWID
+     * computation starts right away, and the clean init() is sent as soon as the stored values
+     * show a session to restore, overlapping with the HWID. Without a stored session no init
+     * is sent, as in [restoreSession]; on an HWID mismatch the init already sent is awaited
+     * before returning so it cannot change state after the caller moves on. checkSession() is
+     * sent once both init and the stored token are ready, keeping the init -> check order
+     * the API requires.
+     *
+     * Shares the in-flight run with [restoreSession]; stage durations go to [startupTimings].
+     */
+    suspend fun restoreSessionPipelined(): SessionRestoreResult =
+        restoreFlight.run(Unit) { performPipelinedRestore() }
+
+    private suspend fun performPipelinedRestore(): SessionRestoreResult = withContext(Dispatchers.IO) {
+        val start = System.nanoTime()
+        try {
+            _authFlowState.value = AuthFlowState.CHECKING_STORED_SESSION
+            logger.d(TAG) { "🔄 Attempting pipelined session restoration..." }
+
+            coroutineScope {
+                // Local inputs first: init is only sent once a stored session exists, as in
+                // the sequential path. HWID computation overlaps with the reads and with init
+                val hwid = async { startupTimings.time("restore.hwid") { hwidProvider.getHWID() } }
+                val snapshot = startupTimings.time("restore.storedValues") {
+                    StoredSessionSnapshot(
+                        sessionToken = securePreferences.getSessionToken(),
+                        isDeviceRegistered = securePreferences.isDeviceRegistered(),
+                        lastAuthHwid = securePreferences.getLastAuthHWID(),
+                        isTokenValid = securePreferences.isSessionTokenValid()
+                    )
                 }
-                is NetworkResult.Error -> {
-                    if (enableLogging) Log.w("KeyAuthRepository", "❌ Invalid session detected, clearing stored session...")
-                        sessionService.clearSessionToken()
 
-                    // Also clear the in-memory session ID
-                    synchronized(initializationLock) {
-                        sessionId = null
-                    }
+                val storedToken = snapshot.sessionToken
+                if (storedToken.isNullOrEmpty()) {
+                    logger.d(TAG) { "❌ No stored session token found" }
+                    hwid.cancel()
+                    _authFlowState.value = AuthFlowState.IDLE
+                    return@coroutineScope SessionRestoreResult.NoStoredSession
+                }
+                if (!snapshot.isDeviceRegistered) {
+                    logger.d(TAG) { "❌ Device not registered" }
+                    hwid.cancel()
+                    _authFlowState.value = AuthFlowState.IDLE
+                    return@coroutineScope SessionRestoreResult.NoStoredSession
+                }
 
-                    // Try HWID-based authentication as fallback
-                    val hwidAuthResult = attemptHWIDBasedAuth()
-                    if (hwidAuthResult is NetworkResult.Success) {
-                        return@withContext createSessionRestoreSuccess()
-                    }
+                // The init round-trip is the longest stage; it now overlaps with HWID computation
+                val init = if (isAppInitialized()) null else async {
+                    startupTimings.time("restore.init") { initialize(preserveSession = false) }
+                }
 
-                    _authFlowState.value = AuthFlowState.FAILED
-                    return@withContext SessionRestoreResult.Failed(sessionCheckResult.message ?: "Session validation failed")
+                val currentHwid = hwid.await()
+                if (snapshot.lastAuthHwid != null && snapshot.lastAuthHwid != currentHwid) {
+                    logger.w(TAG) { "⚠️ HWID mismatch detected" }
+                    // Let the init in flight settle so it cannot overwrite state after the caller's login starts
+                    init?.await()
+                    _authFlowState.value = AuthFlowState.HWID_MISMATCH
+                    return@coroutineScope SessionRestoreResult.HWIDMismatch
                 }
-                else -> {
-                    _authFlowState.value = AuthFlowState.FAILED
-                    return@withContext SessionRestoreResult.Failed("Unknown session validation error")
+
+                if (!snapshot.isTokenValid) {
+                    logger.d(TAG) { "⏰ Session token expired" }
+                    // Joins the init in flight rather than starting a second one
+                    val refreshResult = attemptTokenRefresh()
+                    return@coroutineScope if (refreshResult is NetworkResult.Success) {
+                        createSessionRestoreSuccess()
+                    } else {
+                        _authFlowState.value = AuthFlowState.SESSION_EXPIRED
+                        SessionRestoreResult.SessionExpired
+                    }
                 }
-            }
 
+                if (init != null) {
+                    val initResult = init.await()
+                    if (initResult !is NetworkResult.Success) {
+                        logger.e(TAG) { "❌ Clean initialization failed during session restore" }
+                        _authFlowState.value = AuthFlowState.FAILED
+                        return@coroutineScope SessionRestoreResult.Failed("Initialization failed")
+                    }
+                    // Only after a successful init may the stored session be validated
+                    synchronized(initializationLock) {
+                        sessionId = storedToken
+                    }
+                }
+
+                val sessionCheckResult = startupTimings.time("restore.checkSession") { checkSession() }
+                handleRestoreSessionCheck(sessionCheckResult)
+            }
         } catch (e: Exception) {
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ Session restoration failed", e)
+            logger.e(TAG, e) { "❌ Session restoration failed" }
             _authFlowState.value = AuthFlowState.FAILED
-            return@withContext SessionRestoreResult.Failed("Session restoration error: ${e.message}")
+            SessionRestoreResult.Failed("Session restoration error: ${e.message}")
+        } finally {
+            startupTimings.record("restore.total", System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * Turn the server's verdict on a stored session into a restore result, falling back to
+     * HWID-based authentication when the session was rejected
+     */
+    private suspend fun handleRestoreSessionCheck(sessionCheckResult: NetworkResult<KeyAuthResponse>): SessionRestoreResult {
+        return when (sessionCheckResult) {
+            is NetworkResult.Success -> {
+                logger.d(TAG) { "✅ Session restored successfully" }
+
+                // Update trust level
+                val currentTrust = securePreferences.getDeviceTrustLevel()
+                securePreferences.setDeviceTrustLevel(minOf(currentTrust + 1, 3))
+
+                _authFlowState.value = AuthFlowState.AUTHENTICATED
+                createSessionRestoreSuccess()
+            }
+            is NetworkResult.Error -> {
+                logger.w(TAG) { "❌ Invalid session detected, clearing stored session..." }
+                sessionService.clearSessionToken()
+
+                // Also clear the in-memory session ID
+                synchronized(initializationLock) {
+                    sessionId = null
+                }
+
+                // Try HWID-based authentication as fallback
+                val hwidAuthResult = attemptHWIDBasedAuth()
+                if (hwidAuthResult is NetworkResult.Success) {
+                    return createSessionRestoreSuccess()
+                }
+
+                _authFlowState.value = AuthFlowState.FAILED
+                SessionRestoreResult.Failed(sessionCheckResult.message ?: "Session validation failed")
+            }
+            else -> {
+                _authFlowState.value = AuthFlowState.FAILED
+                SessionRestoreResult.Failed("Unknown session validation error")
+            }
         }
     }
 
@@ -592,7 +822,8 @@ class KeyAuthRepository(
             hwid = currentHWID,
             licenseKey = securePreferences.getBoundLicenseKey(),
             deviceTrustLevel = securePreferences.getDeviceTrustLevel(),
-            isDeviceRegistered = securePreferences.isDeviceRegistered()
+            isDeviceRegistered = securePreferences.isDeviceRegistered(),
+            sessionValidatedAt = sessionValidation?.takeIf { it.sessionId == sessionId }?.validatedAt ?: 0L
         )
 
         _authenticationState.value = authState
@@ -608,7 +839,7 @@ class KeyAuthRepository(
 
             val refreshToken = securePreferences.getRefreshToken()
             if (refreshToken.isNullOrEmpty()) {
-                if (enableLogging) Log.d("KeyAuthRepository", "❌ No refresh token available")
+                logger.d(TAG) { "❌ No refresh token available" }
                 return@withContext NetworkResult.Error("No refresh token available")
             }
 
@@ -616,11 +847,11 @@ class KeyAuthRepository(
             // This is a placeholder for future enhancement or custom implementation
             // For now, we'll attempt HWID-based re-authentication
 
-            if (enableLogging) Log.d("KeyAuthRepository", "🔄 Attempting HWID-based token refresh...")
+            logger.d(TAG) { "🔄 Attempting HWID-based token refresh..." }
             return@withContext attemptHWIDBasedAuth()
 
         } catch (e: Exception) {
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ Token refresh failed", e)
+            logger.e(TAG, e) { "❌ Token refresh failed" }
             return@withContext NetworkResult.Error("Token refresh failed: ${e.message}")
         }
     }
@@ -634,16 +865,16 @@ class KeyAuthRepository(
 
             val boundLicense = securePreferences.getBoundLicenseKey()
             if (boundLicense.isNullOrEmpty()) {
-                if (enableLogging) Log.d("KeyAuthRepository", "❌ No bound license key found")
+                logger.d(TAG) { "❌ No bound license key found" }
                 return@withContext NetworkResult.Error("No bound license key")
             }
 
             val hwid = hwidProvider.getHWID()
-            if (enableLogging) Log.d("KeyAuthRepository", "🔐 Attempting HWID-based authentication...")
+            logger.d(TAG) { "🔐 Attempting HWID-based authentication..." }
 
             // Ensure clean initialization for HWID-based authentication
             if (!isAppInitialized()) {
-                if (enableLogging) Log.d("KeyAuthRepository", "🔄 Performing clean initialization for HWID auth...")
+                logger.d(TAG) { "🔄 Performing clean initialization for HWID auth..." }
 
                 val initResult = initialize(preserveSession = false)
                 if (initResult !is NetworkResult.Success) {
@@ -656,20 +887,21 @@ class KeyAuthRepository(
 
             when (authResult) {
                 is NetworkResult.Success -> {
-                    if (enableLogging) Log.d("KeyAuthRepository", "✅ HWID-based authentication successful")
+                    logger.d(TAG) { "✅ HWID-based authentication successful" }
 
-                    // Update device registration
-                    securePreferences.setDeviceRegistered(hwid, boundLicense)
-
-                    // Store session token with extended expiry for trusted devices
-                    val trustLevel = securePreferences.getDeviceTrustLevel()
+                    // Update device registration and store session token with extended expiry
+                    // for trusted devices, in one atomic write
                     val expiryTime = System.currentTimeMillis() + (24 * 60 * 60 * 1000L) // 24 hours
-                    securePreferences.storeSessionToken(authResult.data.sessionId ?: "", expiryTime)
+                    val persisted = securePreferences.transaction {
+                        setDeviceRegistered(hwid, boundLicense)
+                        storeSessionToken(authResult.data.sessionId ?: "", expiryTime)
+                    }
+                    if (!persisted) logger.w(TAG) { "⚠️ Failed to persist HWID-based session" }
 
                     return@withContext authResult
                 }
                 is NetworkResult.Error -> {
-                    if (enableLogging) Log.e("KeyAuthRepository", "❌ HWID-based authentication failed: ${authResult.message}")
+                    logger.e(TAG) { "❌ HWID-based authentication failed: ${authResult.message}" }
                     return@withContext authResult
                 }
                 else -> {
@@ -678,7 +910,7 @@ class KeyAuthRepository(
             }
 
         } catch (e: Exception) {
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ HWID-based authentication failed", e)
+            logger.e(TAG, e) { "❌ HWID-based authentication failed" }
             return@withContext NetworkResult.Error("HWID authentication failed: ${e.message}")
         }
     }
@@ -693,20 +925,20 @@ class KeyAuthRepository(
 
             when {
                 lastAuthHwid == null -> {
-                    if (enableLogging) Log.d("KeyAuthRepository", "ℹ️ No previous HWID found (new device)")
+                    logger.d(TAG) { "ℹ️ No previous HWID found (new device)" }
                     HWIDValidationResult.Valid
                 }
                 lastAuthHwid == currentHwid -> {
-                    if (enableLogging) Log.d("KeyAuthRepository", "✅ HWID validation successful")
+                    logger.d(TAG) { "✅ HWID validation successful" }
                     HWIDValidationResult.Valid
                 }
                 else -> {
-                    if (enableLogging) Log.w("KeyAuthRepository", "⚠️ HWID changed: ${lastAuthHwid.take(8)}... -> ${currentHwid.take(8)}...")
+                    logger.w(TAG) { "⚠️ HWID changed: ${lastAuthHwid.take(8)}... -> ${currentHwid.take(8)}..." }
                     HWIDValidationResult.Changed
                 }
             }
         } catch (e: Exception) {
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ HWID validation failed", e)
+            logger.e(TAG, e) { "❌ HWID validation failed" }
             HWIDValidationResult.Error("HWID validation failed: ${e.message}")
         }
     }
@@ -729,14 +961,18 @@ class KeyAuthRepository(
             }
 
             val expiryTime = System.currentTimeMillis() + expiryDuration
-            securePreferences.storeSessionToken(sessionToken, expiryTime)
-
-            // Register device and bind license
-            securePreferences.setDeviceRegistered(hwid, licenseKey)
 
             // Increase trust level
             val newTrustLevel = minOf(trustLevel + 1, 3)
-            securePreferences.setDeviceTrustLevel(newTrustLevel)
+
+            // Session token, device registration/license binding and trust level are written
+            // in one commit so a crash cannot leave half a session on disk
+            val persisted = securePreferences.transaction {
+                storeSessionToken(sessionToken, expiryTime)
+                setDeviceRegistered(hwid, licenseKey)
+                setDeviceTrustLevel(newTrustLevel)
+            }
+            if (!persisted) logger.w(TAG) { "⚠️ Failed to persist session data" }
 
             // Update current HWID
             currentHWID = hwid
@@ -755,15 +991,15 @@ class KeyAuthRepository(
             _authenticationState.value = authState
             _authFlowState.value = AuthFlowState.AUTHENTICATED
 
-            if (enableLogging) {
-                Log.d("KeyAuthRepository", "✅ Session persistence configured:")
-                Log.d("KeyAuthRepository", "   - Trust Level: $newTrustLevel")
-                Log.d("KeyAuthRepository", "   - Session Expiry: ${expiryDuration / (60 * 60 * 1000)}h")
-                Log.d("KeyAuthRepository", "   - Device Registered: true")
+            if (logger.isLoggable(LogLevel.DEBUG)) {
+                logger.d(TAG, "✅ Session persistence configured:")
+                logger.d(TAG, "   - Trust Level: $newTrustLevel")
+                logger.d(TAG, "   - Session Expiry: ${expiryDuration / (60 * 60 * 1000)}h")
+                logger.d(TAG, "   - Device Registered: true")
             }
 
         } catch (e: Exception) {
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ Failed to handle session persistence", e)
+            logger.e(TAG, e) { "❌ Failed to handle session persistence" }
         }
     }
 
@@ -788,13 +1024,14 @@ class KeyAuthRepository(
      */
     fun logout() {
         try {
-            if (enableLogging) Log.d("KeyAuthRepository", "🚪 Logging out and clearing session data...")
+            logger.d(TAG) { "🚪 Logging out and clearing session data..." }
 
             // Clear session data
             synchronized(initializationLock) {
                 sessionId = null
                 isInitialized = false
             }
+            sessionValidation = null
 
             // Clear stored authentication data
             securePreferences.clearAuthenticationData()
@@ -805,10 +1042,10 @@ class KeyAuthRepository(
 
             currentHWID = null
 
-            if (enableLogging) Log.d("KeyAuthRepository", "✅ Logout completed")
+            logger.d(TAG) { "✅ Logout completed" }
 
         } catch (e: Exception) {
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ Error during logout", e)
+            logger.e(TAG, e) { "❌ Error during logout" }
         }
     }
 
@@ -820,6 +1057,7 @@ class KeyAuthRepository(
             sessionId = null
             isInitialized = false
         }
+        invalidateSessionValidation()
     }
 
     /**
@@ -828,13 +1066,14 @@ class KeyAuthRepository(
      */
     private fun clearSessionState() {
         try {
-            if (enableLogging) Log.d("KeyAuthRepository", "🧹 Clearing all session state due to corruption...")
+            logger.d(TAG) { "🧹 Clearing all session state due to corruption..." }
 
             // Clear in-memory session data
             synchronized(initializationLock) {
                 sessionId = null
                 isInitialized = false
             }
+            sessionValidation = null
 
             // Clear stored session data via SessionService (keeps fallback behavior centralized)
             sessionService.clearSessionToken()
@@ -846,10 +1085,10 @@ class KeyAuthRepository(
             // Reset current HWID to force regeneration
             currentHWID = null
 
-            if (enableLogging) Log.d("KeyAuthRepository", "✅ Session state cleared successfully")
+            logger.d(TAG) { "✅ Session state cleared successfully" }
 
         } catch (e: Exception) {
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ Error clearing session state", e)
+            logger.e(TAG, e) { "❌ Error clearing session state" }
         }
     }
 
@@ -902,7 +1141,25 @@ class KeyAuthRepository(
             "isDeviceRegistered" to securePreferences.isDeviceRegistered().toString(),
             "deviceTrustLevel" to securePreferences.getDeviceTrustLevel().toString(),
             "currentHWID" to (currentHWID?.take(8) ?: "null")
-        )
+        ) + networkDiagnostics()
+    }
+
+    /**
+     * Per-phase KeyAuth network timings (DNS, connect, TLS, TTFB...) plus the resilience
+     * layer's counters and circuit state, when available
+     */
+    private fun networkDiagnostics(): Map<String, String> {
+        val info = mutableMapOf<String, String>()
+        val host = try { URI(apiBaseUrl).host } catch (e: Exception) { null }
+        if (host != null) {
+            NetworkMetrics.describe(host).forEach { (name, stats) -> info["net.$name"] = stats }
+        }
+        (apiService as? ResilientKeyAuthApi)?.let { api ->
+            api.metrics.snapshots().forEach { (name, stats) -> info["api.$name"] = stats.format() }
+            api.counters().forEach { (name, count) -> info["api.$name"] = count.toString() }
+            info["api.circuit"] = api.circuitState.name
+        }
+        return info
     }
 
     /**
@@ -911,7 +1168,7 @@ class KeyAuthRepository(
      */
     suspend fun forceCleanInitialization(): NetworkResult<KeyAuthResponse> = withContext(Dispatchers.IO) {
         try {
-            if (enableLogging) Log.d("KeyAuthRepository", "🔄 Forcing clean initialization due to session corruption...")
+            logger.d(TAG) { "🔄 Forcing clean initialization due to session corruption..." }
 
             // Clear all session state
             clearSessionState()
@@ -920,16 +1177,16 @@ class KeyAuthRepository(
             val initResult = initialize(preserveSession = false)
 
             if (initResult is NetworkResult.Success) {
-                if (enableLogging) Log.d("KeyAuthRepository", "✅ Clean initialization successful")
+                logger.d(TAG) { "✅ Clean initialization successful" }
             } else {
-                if (enableLogging) Log.e("KeyAuthRepository", "❌ Clean initialization failed: ${(initResult as? NetworkResult.Error)?.message}")
+                logger.e(TAG) { "❌ Clean initialization failed: ${(initResult as? NetworkResult.Error)?.message}" }
             }
 
             return@withContext initResult
 
         } catch (e: Exception) {
             val errorMessage = "Clean initialization failed: ${e.message}"
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ $errorMessage", e)
+            logger.e(TAG, e) { "❌ $errorMessage" }
             return@withContext NetworkResult.Error(errorMessage)
         }
     }
@@ -951,10 +1208,10 @@ class KeyAuthRepository(
         try {
             // Ensure clean initialization first (never pass stored tokens into init)
             if (!isAppInitialized()) {
-                if (enableLogging) Log.d("KeyAuthRepository", "🔄 authenticateWithLicenseAllowHwidUpdate: performing clean initialization...")
+                logger.d(TAG) { "🔄 authenticateWithLicenseAllowHwidUpdate: performing clean initialization..." }
                 val initResult = initialize(preserveSession = false)
                 if (initResult !is NetworkResult.Success) {
-                    if (enableLogging) Log.e("KeyAuthRepository", "❌ Initialization failed before license auth: ${(initResult as? NetworkResult.Error)?.message}")
+                    logger.e(TAG) { "❌ Initialization failed before license auth: ${(initResult as? NetworkResult.Error)?.message}" }
                     return@withContext NetworkResult.Error("Initialization failed: ${(initResult as? NetworkResult.Error)?.message}")
                 }
             }
@@ -970,13 +1227,13 @@ class KeyAuthRepository(
                     errMsg.contains("Session expired or invalid", ignoreCase = true)
 
             if (indicatesSessionIssue) {
-                if (enableLogging) Log.w("KeyAuthRepository", "⚠️ Session/HWID issue detected during license auth, attempting clear + re-init + retry")
+                logger.w(TAG) { "⚠️ Session/HWID issue detected during license auth, attempting clear + re-init + retry" }
 
                 // Clear persisted session token and reset in-memory state
                 try {
                     sessionService.clearSessionToken()
                 } catch (e: Exception) {
-                    if (enableLogging) Log.w("KeyAuthRepository", "⚠️ Failed to clear persisted session token: ${e.message}")
+                    logger.w(TAG) { "⚠️ Failed to clear persisted session token: ${e.message}" }
                 }
 
                 synchronized(initializationLock) {
@@ -987,11 +1244,11 @@ class KeyAuthRepository(
                 // Perform fresh initialization and retry once
                 val retryInit = initialize(preserveSession = false)
                 if (retryInit !is NetworkResult.Success) {
-                    if (enableLogging) Log.e("KeyAuthRepository", "❌ Re-initialization failed: ${(retryInit as? NetworkResult.Error)?.message}")
+                    logger.e(TAG) { "❌ Re-initialization failed: ${(retryInit as? NetworkResult.Error)?.message}" }
                     return@withContext NetworkResult.Error("Re-initialization failed: ${(retryInit as? NetworkResult.Error)?.message}")
                 }
 
-                if (enableLogging) Log.d("KeyAuthRepository", "🔁 Re-initialization successful, retrying license authentication")
+                logger.d(TAG) { "🔁 Re-initialization successful, retrying license authentication" }
                 val retryAttempt = authenticateWithLicense(licenseKey)
                 return@withContext retryAttempt
             }
@@ -1000,7 +1257,7 @@ class KeyAuthRepository(
             return@withContext firstAttempt
 
         } catch (e: Exception) {
-            if (enableLogging) Log.e("KeyAuthRepository", "❌ authenticateWithLicenseAllowHwidUpdate failed", e)
+            logger.e(TAG, e) { "❌ authenticateWithLicenseAllowHwidUpdate failed" }
             return@withContext NetworkResult.Error("Authentication error: ${e.message}")
         }
     }
@@ -1,32 +1,79 @@
 package com.bearmod.loader.data.repository
 
 import android.content.Context
+import android.net.Network
 import android.os.Environment
+import android.os.StatFs
 import com.bearmod.loader.config.KeyAuthConfig
+import com.bearmod.loader.data.api.GitHubReleaseAdapter
 import com.bearmod.loader.data.api.OTAApiService
+import com.bearmod.loader.data.api.OTAApiTransport
 import com.bearmod.loader.data.model.*
+import com.bearmod.loader.install.SplitApkResolver
+import com.bearmod.loader.logging.Logger
+import com.bearmod.loader.logging.RingBufferLogger
+import com.bearmod.loader.logging.d
+import com.bearmod.loader.logging.e
+import com.bearmod.loader.logging.w
+import com.bearmod.loader.network.NetworkFactory
+import com.bearmod.loader.network.RateLimitGate
+import com.bearmod.loader.ota.ArtifactCache
+import com.bearmod.loader.ota.DirectoryStorage
+import com.bearmod.loader.ota.DownloadEngine
+import com.bearmod.loader.ota.OtaArtifact
+import com.bearmod.loader.ota.OtaProgress
+import com.bearmod.loader.ota.OtaTransport
+import com.bearmod.loader.ota.OtaVerificationException
 import com.bearmod.loader.utils.NetworkResult
+import com.google.gson.Gson
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.withContext
-import okhttp3.ResponseBody
+import java.io.Closeable
 import java.io.File
-import java.io.FileOutputStream
-import java.io.InputStream
-import java.security.MessageDigest
+import java.io.IOException
+import java.io.OutputStream
 
 /**
- * Repository for OTA update operations
+ * Repository for OTA update operations.
+ *
+ * Android adapter over the ota-core [DownloadEngine]: resolves the download and OBB
+ * directories and maps engine progress to [DownloadProgress]. Downloads are kept in an
+ * [ArtifactCache] of [cacheBudgetBytes], so a re-install of the same build does not fetch
+ * again; free space is read with [StatFs] before each download starts. Interrupted
+ * downloads keep their partial files and resume with a ranged request.
  */
 class OTARepository(
     private val context: Context,
-    private val apiService: OTAApiService
+    private val apiService: OTAApiService,
+    private val logger: Logger = RingBufferLogger.shared,
+    cacheBudgetBytes: Long = DEFAULT_CACHE_BUDGET_BYTES,
+    freeSpace: (File) -> Long = { StatFs(it.path).availableBytes },
+    private val apiServiceFor: (Network) -> OTAApiService = NetworkFactory::createOTAApiService
 ) {
+
+    companion object {
+        private const val TAG = "OTARepository"
+        const val DEFAULT_CACHE_BUDGET_BYTES = 4L * 1024 * 1024 * 1024
+        private const val PREFS_NAME = "ota_prefs"
+        private const val KEY_VERSION_ETAG = "version_etag"
+        private const val KEY_VERSION_BODY = "version_body"
+        private const val KEY_RELEASE_GATE = "release_check"
+        private const val HTTP_NOT_MODIFIED = 304
+        private const val HTTP_FORBIDDEN = 403
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+    }
     
     private val downloadDir = File(context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS), "ota_updates")
     private val obbDir = File(Environment.getExternalStorageDirectory(), "Android/obb/${context.packageName}")
+    private val transport = OTAApiTransport(apiService)
+    private val cache = ArtifactCache(downloadDir, cacheBudgetBytes, freeSpace)
+    private val splitResolver by lazy { SplitApkResolver.forDevice(context) }
+    private val preferences by lazy { context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE) }
+    private val gson = Gson()
+    private val releaseGate by lazy { RateLimitGate(preferences, KEY_RELEASE_GATE) }
     
     init {
         // Ensure download directory exists
@@ -41,27 +88,100 @@ class OTARepository(
     }
     
     /**
-     * Check for available updates
+     * Check for available updates. The request is conditional on the ETag of the last
+     * response, so an unchanged version file costs a bodiless 304 and the stored copy is used.
+     *
+     * A GitHub releases endpoint is mapped through [GitHubReleaseAdapter]. All checks are
+     * paced by a persisted [RateLimitGate]; while it holds requests back, or the server
+     * answers with a rate limit, the stored result is returned instead of an error.
      */
     suspend fun checkForUpdates(): NetworkResult<OTAResponse> = withContext(Dispatchers.IO) {
+        val cached = lastVersionInfo()
+        val waitMs = releaseGate.delayMs()
+        if (waitMs > 0) {
+            logger.d(TAG) { "Update check deferred for ${waitMs / 1000}s" }
+            return@withContext cached?.let { NetworkResult.Success(it) }
+                ?: NetworkResult.Error("Update server busy, retry in ${(waitMs + 59_999) / 60_000} min")
+        }
+        
         try {
-            val response = apiService.getVersionInfo(KeyAuthConfig.OTA_VERSION_ENDPOINT)
+            val url = KeyAuthConfig.OTA_VERSION_ENDPOINT
+            val etag = if (cached != null) preferences.getString(KEY_VERSION_ETAG, null) else null
+            val response = if (GitHubReleaseAdapter.isReleaseEndpoint(url)) {
+                apiService.getLatestRelease(url, etag)
+            } else {
+                apiService.getVersionInfo(url, etag)
+            }
+            releaseGate.onResponse(response.code(), response.headers())
             
-            if (response.isSuccessful) {
-                val body = response.body()
+            if (response.code() == HTTP_NOT_MODIFIED && cached != null) {
+                logger.d(TAG) { "Version info not modified" }
+                NetworkResult.Success(cached)
+            } else if (response.isSuccessful) {
+                val body = when (val raw = response.body()) {
+                    is GitHubRelease -> releaseToOtaResponse(raw)
+                    is OTAResponse -> raw
+                    else -> null
+                }
                 if (body != null) {
+                    preferences.edit()
+                        .putString(KEY_VERSION_ETAG, response.headers()["ETag"])
+                        .putString(KEY_VERSION_BODY, gson.toJson(body))
+                        .apply()
                     NetworkResult.Success(body)
                 } else {
                     NetworkResult.Error("Empty response from server")
                 }
+            } else if (cached != null && (response.code() == HTTP_FORBIDDEN || response.code() == HTTP_TOO_MANY_REQUESTS)) {
+                logger.w(TAG) { "Update check rate limited (HTTP ${response.code()}), using stored version info" }
+                response.errorBody()?.close()
+                NetworkResult.Success(cached)
             } else {
+                logger.w(TAG) { "Update check failed: HTTP ${response.code()}" }
+                response.errorBody()?.close()
                 NetworkResult.Error("Network error: ${response.code()} - ${response.message()}")
             }
         } catch (e: Exception) {
+            if (e is IOException) releaseGate.onFailure()
+            logger.e(TAG, e) { "Update check failed" }
             NetworkResult.Error("Failed to check for updates: ${e.message}")
         }
     }
     
+    /**
+     * Map a GitHub release, fetching its checksum file from the release CDN when some
+     * artifact has no digest. Null if the release carries no usable version or variants.
+     */
+    private suspend fun releaseToOtaResponse(release: GitHubRelease): OTAResponse? {
+        val checksums = GitHubReleaseAdapter.checksumAsset(release)?.let { asset ->
+            val response = apiService.downloadFile(asset.browserDownloadUrl)
+            if (response.isSuccessful) {
+                response.body()?.use { GitHubReleaseAdapter.parseChecksums(it.string()) }
+            } else {
+                response.errorBody()?.close()
+                null
+            }
+        }.orEmpty()
+        val mapped = GitHubReleaseAdapter.toOtaResponse(release, checksums)
+        if (mapped == null || mapped.variants.isEmpty()) {
+            logger.w(TAG) { "Release ${release.tagName} has no installable variants" }
+            return null
+        }
+        return mapped
+    }
+    
+    /**
+     * Version info from the last successful check, if any
+     */
+    fun lastVersionInfo(): OTAResponse? {
+        val json = preferences.getString(KEY_VERSION_BODY, null) ?: return null
+        return try {
+            gson.fromJson(json, OTAResponse::class.java)
+        } catch (e: Exception) {
+            null
+        }
+    }
+    
     /**
      * Check if update is available
      */
@@ -71,63 +191,81 @@ class OTARepository(
     }
     
     /**
-     * Download files for a specific variant
+     * Configuration splits of [variantInfo] this device downloads alongside the base APK
      */
-    fun downloadVariant(variant: String, variantInfo: VariantInfo): Flow<Pair<DownloadProgress?, DownloadProgress?>> = flow {
+    fun resolveSplits(variantInfo: VariantInfo): List<SplitApkInfo> =
+        splitResolver.resolve(variantInfo.splits.orEmpty())
+    
+    /**
+     * Download files for a specific variant: the base APK, the splits matching this device,
+     * then the OBB. APK progress covers the base and splits together.
+     *
+     * If [openApkEntry] is given it is called with the install entry name and size of each
+     * APK, and that APK's bytes are also written to the returned stream as they arrive (see
+     * [com.bearmod.loader.install.SessionInstaller]). Each stream is closed once its file is done.
+     *
+     * With a [network] (see [com.bearmod.loader.network.DownloadScheduler]) all requests go
+     * through that network only.
+     */
+    fun downloadVariant(
+        variant: String,
+        variantInfo: VariantInfo,
+        openApkEntry: ((name: String, sizeBytes: Long) -> OutputStream)? = null,
+        network: Network? = null
+    ): Flow<Pair<DownloadProgress?, DownloadProgress?>> = flow {
         var apkProgress: DownloadProgress? = null
         var obbProgress: DownloadProgress? = null
         
         try {
-            // Download APK
             emit(Pair(
                 DownloadProgress(FileType.APK, 0, 0, 0f, DownloadStatus.PENDING),
                 DownloadProgress(FileType.OBB, 0, 0, 0f, DownloadStatus.PENDING)
             ))
             
-            // Download APK file
-            val apkFile = File(downloadDir, "${variant}_${variantInfo.apk.name}")
-            downloadFileWithProgress(variantInfo.apk.url, apkFile) { progress ->
-                apkProgress = progress
-                emit(Pair(apkProgress, obbProgress))
-            }
-            
-            // Verify APK
-            apkProgress = apkProgress?.copy(status = DownloadStatus.VERIFYING)
-            emit(Pair(apkProgress, obbProgress))
-            
-            if (!verifyFileHash(apkFile, variantInfo.apk.sha256)) {
+            val engine = engineFor(variant, network?.let { OTAApiTransport(apiServiceFor(it)) } ?: transport)
+            val startNanos = System.nanoTime()
+            val apks = listOf(variantInfo.apk) + resolveSplits(variantInfo).map { it.toFileInfo() }
+            val apkTotal = if (apks.all { it.size != null }) apks.sumOf { it.size ?: 0L } else -1L
+            var apkDone = 0L
+            try {
+                apks.forEachIndexed { index, apk ->
+                    val lastApk = index == apks.lastIndex
+                    var written = 0L
+                    val entry = openApkEntry?.invoke(apkEntryName(index, apk), apk.size ?: -1L)
+                    try {
+                        engine.download(apk.toArtifact(), entry).collect { progress ->
+                            written = progress.bytesWritten
+                            apkProgress = progress.toDownloadProgress(FileType.APK, apkDone, apkTotal, lastApk)
+                            emit(Pair(apkProgress, obbProgress))
+                        }
+                    } finally {
+                        entry?.close()
+                    }
+                    apkDone += written
+                }
+            } catch (e: OtaVerificationException) {
                 apkProgress = apkProgress?.copy(status = DownloadStatus.VERIFICATION_FAILED)
                 emit(Pair(apkProgress, obbProgress))
-                throw Exception("APK verification failed")
+                throw Exception("APK verification failed", e)
             }
             
-            apkProgress = apkProgress?.copy(status = DownloadStatus.VERIFIED)
-            emit(Pair(apkProgress, obbProgress))
-            
-            // Download OBB file
             obbProgress = DownloadProgress(FileType.OBB, 0, 0, 0f, DownloadStatus.DOWNLOADING)
             emit(Pair(apkProgress, obbProgress))
             
-            val obbFile = File(downloadDir, "${variant}_${variantInfo.obb.name}")
-            downloadFileWithProgress(variantInfo.obb.url, obbFile) { progress ->
-                obbProgress = progress
-                emit(Pair(apkProgress, obbProgress))
-            }
-            
-            // Verify OBB
-            obbProgress = obbProgress?.copy(status = DownloadStatus.VERIFYING)
-            emit(Pair(apkProgress, obbProgress))
-            
-            if (!verifyFileHash(obbFile, variantInfo.obb.sha256)) {
+            try {
+                engine.download(variantInfo.obb.toArtifact()).collect { progress ->
+                    obbProgress = progress.toDownloadProgress(FileType.OBB)
+                    emit(Pair(apkProgress, obbProgress))
+                }
+            } catch (e: OtaVerificationException) {
                 obbProgress = obbProgress?.copy(status = DownloadStatus.VERIFICATION_FAILED)
                 emit(Pair(apkProgress, obbProgress))
-                throw Exception("OBB verification failed")
+                throw Exception("OBB verification failed", e)
             }
-            
-            obbProgress = obbProgress?.copy(status = DownloadStatus.VERIFIED)
-            emit(Pair(apkProgress, obbProgress))
+            logger.d(TAG) { "Downloaded $variant (${apks.size} APK file(s)) in ${(System.nanoTime() - startNanos) / 1_000_000}ms" }
             
         } catch (e: Exception) {
+            logger.e(TAG, e) { "Download of $variant failed" }
             val errorProgress = if (apkProgress?.status != DownloadStatus.VERIFIED) {
                 apkProgress?.copy(status = DownloadStatus.FAILED)
             } else {
@@ -144,69 +282,47 @@ class OTARepository(
     }.flowOn(Dispatchers.IO)
     
     /**
-     * Download a file with progress tracking
+     * Engine writing `<variant>_<name>` files into the download directory
      */
-    private suspend fun downloadFileWithProgress(
-        url: String,
-        destinationFile: File,
-        onProgress: suspend (DownloadProgress) -> Unit
-    ) = withContext(Dispatchers.IO) {
-        val response = apiService.downloadFile(url)
-        
-        if (!response.isSuccessful) {
-            throw Exception("Download failed: ${response.code()}")
-        }
-        
-        val body = response.body() ?: throw Exception("Empty response body")
-        val contentLength = body.contentLength()
-        
-        val fileType = if (destinationFile.name.endsWith(".apk")) FileType.APK else FileType.OBB
-        
-        body.byteStream().use { inputStream ->
-            FileOutputStream(destinationFile).use { outputStream ->
-                val buffer = ByteArray(8192)
-                var totalBytesRead = 0L
-                var bytesRead: Int
-                
-                onProgress(DownloadProgress(fileType, 0, contentLength, 0f, DownloadStatus.DOWNLOADING))
-                
-                while (inputStream.read(buffer).also { bytesRead = it } != -1) {
-                    outputStream.write(buffer, 0, bytesRead)
-                    totalBytesRead += bytesRead
-                    
-                    val progress = if (contentLength > 0) {
-                        totalBytesRead.toFloat() / contentLength.toFloat()
-                    } else {
-                        0f
-                    }
-                    
-                    onProgress(DownloadProgress(fileType, totalBytesRead, contentLength, progress, DownloadStatus.DOWNLOADING))
-                }
-                
-                onProgress(DownloadProgress(fileType, totalBytesRead, contentLength, 1f, DownloadStatus.COMPLETED))
-            }
-        }
-    }
+    private fun engineFor(variant: String, transport: OtaTransport = this.transport): DownloadEngine =
+        DownloadEngine(transport, DirectoryStorage(downloadDir, prefix = "${variant}_"), cache = cache, keepPartial = true)
     
     /**
-     * Verify file hash
+     * Total bytes this device downloads for [variantInfo]: base APK, matching splits and OBB
      */
-    private suspend fun verifyFileHash(file: File, expectedHash: String): Boolean = withContext(Dispatchers.IO) {
-        try {
-            val digest = MessageDigest.getInstance("SHA-256")
-            file.inputStream().use { inputStream ->
-                val buffer = ByteArray(8192)
-                var bytesRead: Int
-                while (inputStream.read(buffer).also { bytesRead = it } != -1) {
-                    digest.update(buffer, 0, bytesRead)
-                }
-            }
-            
-            val actualHash = digest.digest().joinToString("") { "%02x".format(it) }
-            return@withContext actualHash.equals(expectedHash, ignoreCase = true)
-        } catch (e: Exception) {
-            false
+    fun downloadSize(variantInfo: VariantInfo): Long =
+        splitResolver.apkDownloadSize(variantInfo) + (variantInfo.obb.size ?: 0L)
+    
+    private fun FileInfo.toArtifact(): OtaArtifact = OtaArtifact(name, url, sha256, size)
+    
+    /**
+     * Install session entry name: `base.apk` for the base, the manifest name for splits
+     */
+    private fun apkEntryName(index: Int, apk: FileInfo): String = if (index == 0) "base.apk" else apk.name
+    
+    /**
+     * Progress of one file within a group of [groupTotal] bytes (-1 if unknown) of which
+     * [offset] are already done. Only the [lastInGroup] file reports VERIFIED.
+     */
+    private fun OtaProgress.toDownloadProgress(
+        fileType: FileType,
+        offset: Long = 0L,
+        groupTotal: Long = -1L,
+        lastInGroup: Boolean = true
+    ): DownloadProgress {
+        val status = when (stage) {
+            OtaProgress.Stage.FETCHING, OtaProgress.Stage.WRITING -> DownloadStatus.DOWNLOADING
+            OtaProgress.Stage.VERIFYING -> DownloadStatus.VERIFYING
+            OtaProgress.Stage.COMMITTED -> if (lastInGroup) DownloadStatus.VERIFIED else DownloadStatus.DOWNLOADING
         }
+        val downloaded = offset + bytesWritten
+        val total = if (groupTotal > 0) groupTotal else if (totalBytes > 0) offset + totalBytes else totalBytes
+        val progress = when {
+            status == DownloadStatus.VERIFIED -> 1f
+            total > 0 -> (downloaded.toDouble() / total).toFloat().coerceIn(0f, 1f)
+            else -> fraction
+        }
+        return DownloadProgress(fileType, downloaded, total, progress, status)
     }
     
     /**
@@ -218,35 +334,79 @@ class OTARepository(
         return Pair(apkFile, obbFile)
     }
     
+    /**
+     * Downloaded APK files to install together: the base first, then this device's splits
+     */
+    fun getDownloadedApks(variant: String, variantInfo: VariantInfo): List<File> {
+        val (baseApk, _) = getDownloadedFiles(variant, variantInfo)
+        return listOf(baseApk) + resolveSplits(variantInfo).map { File(downloadDir, "${variant}_${it.name}") }
+    }
+    
     /**
      * Install OBB file to the correct location
      */
     suspend fun installOBBFile(obbFile: File, variant: String, variantInfo: VariantInfo): Boolean = withContext(Dispatchers.IO) {
         try {
-            val targetObbFile = File(obbDir, variantInfo.obb.name)
-            
-            // Copy OBB file to the correct location
-            obbFile.copyTo(targetObbFile, overwrite = true)
-            
-            // Verify the copy was successful
-            targetObbFile.exists() && targetObbFile.length() == obbFile.length()
+            // Copy (not move) so a failed APK install can be retried with the same download
+            engineFor(variant).place(obbFile, File(obbDir, variantInfo.obb.name))
         } catch (e: Exception) {
+            logger.e(TAG, e) { "Failed to install OBB for $variant" }
             false
         }
     }
     
     /**
-     * Clean up downloaded files
+     * Every file this device needs for [variantInfo], paired with its manifest entry
+     */
+    private fun downloadedFiles(variant: String, variantInfo: VariantInfo): List<Pair<File, FileInfo>> {
+        val apks = listOf(variantInfo.apk) + resolveSplits(variantInfo).map { it.toFileInfo() }
+        return (apks + variantInfo.obb).map { File(downloadDir, "${variant}_${it.name}") to it }
+    }
+    
+    /**
+     * True if every file of [variantInfo] is already downloaded and verified (e.g. by the
+     * background prefetch), so the update can go straight to [verifyDownloaded] and install.
+     */
+    suspend fun isDownloaded(variant: String, variantInfo: VariantInfo): Boolean = withContext(Dispatchers.IO) {
+        downloadedFiles(variant, variantInfo).all { (file, info) -> cache.isVerified(file, info.sha256) }
+    }
+    
+    /**
+     * Re-hash a variant's downloaded files. Files that no longer match are deleted so the
+     * next download fetches them again.
+     */
+    suspend fun verifyDownloaded(variant: String, variantInfo: VariantInfo): Boolean = withContext(Dispatchers.IO) {
+        val engine = engineFor(variant)
+        var intact = true
+        for ((file, info) in downloadedFiles(variant, variantInfo)) {
+            if (!engine.verify(file, info.sha256)) {
+                logger.w(TAG) { "Downloaded ${file.name} no longer matches its hash" }
+                cache.remove(file)
+                intact = false
+            }
+        }
+        intact
+    }
+    
+    /**
+     * Keep a variant's downloaded files from being evicted until the returned pin is closed,
+     * e.g. between download completion and the end of the install.
+     */
+    fun pinDownloads(variant: String, variantInfo: VariantInfo): Closeable {
+        val (_, obbFile) = getDownloadedFiles(variant, variantInfo)
+        return cache.pin(*(getDownloadedApks(variant, variantInfo) + obbFile).toTypedArray())
+    }
+    
+    /**
+     * Trim downloaded files to the cache budget. Verified files stay available for a
+     * re-install until evicted; abandoned and unverified ones go first.
      */
     suspend fun cleanupDownloads() = withContext(Dispatchers.IO) {
         try {
-            downloadDir.listFiles()?.forEach { file ->
-                if (file.isFile) {
-                    file.delete()
-                }
-            }
+            cache.trim()
         } catch (e: Exception) {
-            // Ignore cleanup errors
+            logger.w(TAG) { "Download cache trim failed: ${e.message}" }
         }
     }
+
 }
@@ -0,0 +1,125 @@
+package com.bearmod.loader.di
+
+import android.content.Context
+import android.os.Trace
+import android.util.Log
+import com.bearmod.loader.KeyAuthLoaderApplication
+import com.bearmod.loader.data.api.KeyAuthApiService
+import com.bearmod.loader.data.repository.KeyAuthRepository
+import com.bearmod.loader.data.repository.OTARepository
+import com.bearmod.loader.logging.ActivityLogUploader
+import com.bearmod.loader.network.NetworkFactory
+import com.bearmod.loader.security.AndroidHWIDProvider
+import com.bearmod.loader.security.EnvelopeKeystoreProvider
+import com.bearmod.loader.security.HWIDProvider
+import com.bearmod.loader.security.KeystoreProvider
+import com.bearmod.loader.utils.SecurePreferences
+import com.bearmod.loader.utils.SecurePreferencesAsync
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Application-scoped object graph.
+ *
+ * Holds one lazily created instance each of the keystore provider, SecurePreferences,
+ * HWID provider and repositories, so the keystore key is ensured once per process instead
+ * of once per caller. Obtain it with [AppContainer.from].
+ */
+class AppContainer(context: Context) {
+
+    companion object {
+        private const val TAG = "AppContainer"
+
+        /**
+         * The application's container, or a standalone one when [context] does not belong to
+         * KeyAuthLoaderApplication (unit tests with mocked or foreign contexts).
+         */
+        @JvmStatic
+        fun from(context: Context): AppContainer {
+            val application = (context.applicationContext ?: context) as? KeyAuthLoaderApplication
+            return application?.container ?: AppContainer(context)
+        }
+    }
+
+    private val appContext: Context = context.applicationContext ?: context
+
+    // How often callers asked for SecurePreferences; each used to be a new instance + ensureKey
+    private val securePreferencesRequests = AtomicInteger()
+
+    val keystoreProvider: KeystoreProvider by lazy {
+        traced("keystoreProvider") { EnvelopeKeystoreProvider(appContext) }
+    }
+
+    private val securePreferencesInstance by lazy {
+        traced("securePreferences") { SecurePreferences(appContext, keystoreProvider) }
+    }
+
+    val securePreferences: SecurePreferences
+        get() {
+            securePreferencesRequests.incrementAndGet()
+            return securePreferencesInstance
+        }
+
+    /** Coroutine API over the shared SecurePreferences; use this from the main thread. */
+    val securePreferencesAsync: SecurePreferencesAsync by lazy {
+        SecurePreferencesAsync(securePreferencesInstance)
+    }
+
+    val hwidProvider: HWIDProvider by lazy {
+        traced("hwidProvider") { AndroidHWIDProvider(appContext, securePreferences) }
+    }
+
+    /** One KeyAuth API (and circuit breaker) for the repository and the activity log. */
+    val keyAuthApiService: KeyAuthApiService by lazy { NetworkFactory.createKeyAuthApiService() }
+
+    val keyAuthRepository: KeyAuthRepository by lazy {
+        traced("keyAuthRepository") {
+            KeyAuthRepository(
+                keyAuthApiService,
+                appContext,
+                hwidProvider = hwidProvider,
+                securePreferences = securePreferences
+            )
+        }
+    }
+
+    /** Batched uploads to KeyAuth's log endpoint while the user has an authenticated session. */
+    val activityLogUploader: ActivityLogUploader by lazy {
+        traced("activityLogUploader") {
+            ActivityLogUploader(
+                appContext,
+                keyAuthApiService,
+                sessionIdProvider = {
+                    keyAuthRepository.getSessionId()?.takeIf { keyAuthRepository.getCurrentAuthState().isAuthenticated }
+                }
+            )
+        }
+    }
+
+    val otaRepository: OTARepository by lazy {
+        traced("otaRepository") { OTARepository(appContext, NetworkFactory.createOTAApiService()) }
+    }
+
+    /**
+     * Log how many keystore initializations the shared SecurePreferences saved so far.
+     */
+    fun logStartupTrace() {
+        val requests = securePreferencesRequests.get()
+        val initializations = SecurePreferences.keystoreInitializationCount()
+        Log.i(
+            TAG,
+            "Startup trace: SecurePreferences requested $requests time(s), " +
+                "keystore initialized $initializations time(s), saved ${(requests - initializations).coerceAtLeast(0)}"
+        )
+    }
+
+    private inline fun <T> traced(name: String, block: () -> T): T {
+        Trace.beginSection("AppContainer.$name")
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            Trace.endSection()
+            Log.d(TAG, "Created $name in ${(System.nanoTime() - start) / 1_000_000}ms")
+        }
+    }
+}
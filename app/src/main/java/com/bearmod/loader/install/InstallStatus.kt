@@ -0,0 +1,17 @@
+package com.bearmod.loader.install
+
+/**
+ * Progress and outcome of a [SessionInstaller] install.
+ */
+sealed class InstallStatus {
+    data class Writing(val bytesWritten: Long, val totalBytes: Long) : InstallStatus()
+    object Committing : InstallStatus()
+
+    /** The system confirmation dialog has been shown. */
+    object PendingUserAction : InstallStatus()
+
+    data class Success(val packageName: String?) : InstallStatus()
+
+    /** [status] is a `PackageInstaller.STATUS_*` code. */
+    data class Failure(val status: Int, val message: String?) : InstallStatus()
+}
@@ -0,0 +1,232 @@
+package com.bearmod.loader.install
+
+import android.app.PendingIntent
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.content.pm.PackageInstaller
+import android.content.pm.PackageManager
+import android.os.Build
+import android.util.Log
+import androidx.core.content.ContextCompat
+import androidx.core.content.IntentCompat
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import java.io.File
+import java.io.IOException
+import java.io.OutputStream
+
+/**
+ * APK installer backed by [PackageInstaller] sessions.
+ *
+ * Unlike the `ACTION_VIEW` path in [com.bearmod.loader.utils.APKInstaller], the system
+ * installer does not read and copy the file again: bytes are written straight into the
+ * session, either while they are downloaded ([openSession] + [PendingInstall.streamEntry])
+ * or in one pass from verified files ([install]). Several files in one session form a
+ * split-APK install. Commit results arrive through the returned [Flow].
+ */
+class SessionInstaller(context: Context) {
+
+    companion object {
+        private const val TAG = "SessionInstaller"
+        private const val BUFFER_SIZE = 64 * 1024
+        private const val PROGRESS_STEP_BYTES = 1024 * 1024L
+    }
+
+    private val appContext = context.applicationContext ?: context
+    private val packageInstaller: PackageInstaller
+        get() = appContext.packageManager.packageInstaller
+
+    /**
+     * An open session that has not been committed yet. Abandon it if the install is dropped.
+     */
+    inner class PendingInstall internal constructor(
+        val sessionId: Int,
+        private val session: PackageInstaller.Session
+    ) {
+        @Volatile
+        var isIntact = true
+            private set
+
+        @Volatile
+        private var finished = false
+
+        /**
+         * Stream for APK entry [name] of [sizeBytes] (-1 if unknown). Write errors do not
+         * propagate, so a failing session never breaks the download feeding it; they clear
+         * [isIntact] and the caller should install from the file instead. Close the stream
+         * once the APK is complete.
+         */
+        fun streamEntry(name: String, sizeBytes: Long): OutputStream {
+            val raw = try {
+                session.openWrite(name, 0, sizeBytes)
+            } catch (e: Exception) {
+                Log.w(TAG, "Session $sessionId cannot open $name, falling back to file install", e)
+                isIntact = false
+                return object : OutputStream() {
+                    override fun write(b: Int) = Unit
+                }
+            }
+            return object : OutputStream() {
+                override fun write(b: Int) = write(byteArrayOf(b.toByte()), 0, 1)
+
+                override fun write(b: ByteArray, off: Int, len: Int) {
+                    if (!isIntact) return
+                    try {
+                        raw.write(b, off, len)
+                    } catch (e: IOException) {
+                        Log.w(TAG, "Session $sessionId write failed, falling back to file install", e)
+                        isIntact = false
+                    }
+                }
+
+                override fun close() {
+                    try {
+                        if (isIntact) session.fsync(raw)
+                        raw.close()
+                    } catch (e: IOException) {
+                        Log.w(TAG, "Session $sessionId entry close failed", e)
+                        isIntact = false
+                    }
+                }
+            }
+        }
+
+        /**
+         * Write [file] into the session as entry [name] in a single pass.
+         */
+        internal suspend fun writeFile(name: String, file: File, onProgress: suspend (Long) -> Unit) {
+            session.openWrite(name, 0, file.length()).use { out ->
+                file.inputStream().use { input ->
+                    val buffer = ByteArray(BUFFER_SIZE)
+                    while (true) {
+                        val read = input.read(buffer)
+                        if (read == -1) break
+                        out.write(buffer, 0, read)
+                        onProgress(read.toLong())
+                    }
+                }
+                session.fsync(out)
+            }
+        }
+
+        /**
+         * Commit the session. Emits [InstallStatus.Committing], then
+         * [InstallStatus.PendingUserAction] when the confirmation dialog is launched, and
+         * completes after [InstallStatus.Success] or [InstallStatus.Failure].
+         */
+        fun commit(): Flow<InstallStatus> = callbackFlow {
+            val action = "${appContext.packageName}.INSTALL_STATUS.$sessionId"
+            val receiver = object : BroadcastReceiver() {
+                override fun onReceive(context: Context, intent: Intent) {
+                    when (val status = intent.getIntExtra(PackageInstaller.EXTRA_STATUS, PackageInstaller.STATUS_FAILURE)) {
+                        PackageInstaller.STATUS_PENDING_USER_ACTION -> {
+                            val confirm = IntentCompat.getParcelableExtra(intent, Intent.EXTRA_INTENT, Intent::class.java)
+                            if (confirm != null) {
+                                confirm.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
+                                try {
+                                    context.startActivity(confirm)
+                                } catch (e: Exception) {
+                                    Log.e(TAG, "Cannot show install confirmation", e)
+                                }
+                            }
+                            trySend(InstallStatus.PendingUserAction)
+                        }
+                        PackageInstaller.STATUS_SUCCESS -> {
+                            trySend(InstallStatus.Success(intent.getStringExtra(PackageInstaller.EXTRA_PACKAGE_NAME)))
+                            close()
+                        }
+                        else -> {
+                            trySend(InstallStatus.Failure(status, intent.getStringExtra(PackageInstaller.EXTRA_STATUS_MESSAGE)))
+                            close()
+                        }
+                    }
+                }
+            }
+            ContextCompat.registerReceiver(appContext, receiver, IntentFilter(action), ContextCompat.RECEIVER_NOT_EXPORTED)
+
+            try {
+                // The installer fills in the status extras, so the PendingIntent must be mutable
+                val flags = PendingIntent.FLAG_UPDATE_CURRENT or
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) PendingIntent.FLAG_MUTABLE else 0
+                val callback = PendingIntent.getBroadcast(
+                    appContext,
+                    sessionId,
+                    Intent(action).setPackage(appContext.packageName),
+                    flags
+                )
+                send(InstallStatus.Committing)
+                session.commit(callback.intentSender)
+                finished = true
+                session.close()
+            } catch (e: Exception) {
+                Log.e(TAG, "Session $sessionId commit failed", e)
+                abandon()
+                trySend(InstallStatus.Failure(PackageInstaller.STATUS_FAILURE, e.message))
+                close()
+            }
+
+            awaitClose { appContext.unregisterReceiver(receiver) }
+        }
+
+        /**
+         * Discard the session and anything written to it. No-op once committed.
+         */
+        fun abandon() {
+            if (finished) return
+            finished = true
+            try {
+                session.abandon()
+            } catch (e: Exception) {
+                Log.w(TAG, "Failed to abandon session $sessionId", e)
+            }
+        }
+    }
+
+    /**
+     * Create a session for an install of [totalBytes] (-1 if unknown).
+     */
+    fun openSession(totalBytes: Long = -1L, packageName: String? = null): PendingInstall {
+        val params = PackageInstaller.SessionParams(PackageInstaller.SessionParams.MODE_FULL_INSTALL).apply {
+            if (totalBytes > 0) setSize(totalBytes)
+            packageName?.let { setAppPackageName(it) }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) setInstallReason(PackageManager.INSTALL_REASON_USER)
+        }
+        val sessionId = packageInstaller.createSession(params)
+        return PendingInstall(sessionId, packageInstaller.openSession(sessionId))
+    }
+
+    /**
+     * Install verified [apks] (one base APK, optionally followed by its splits) with a single
+     * copy of each file into a new session.
+     */
+    fun install(apks: List<File>, packageName: String? = null): Flow<InstallStatus> = flow {
+        val total = apks.sumOf { it.length() }
+        val pending = openSession(total, packageName)
+        try {
+            var written = 0L
+            var reported = 0L
+            emit(InstallStatus.Writing(0L, total))
+            apks.forEachIndexed { index, apk ->
+                val name = if (index == 0) "base.apk" else apk.name
+                pending.writeFile(name, apk) { bytes ->
+                    written += bytes
+                    if (written - reported >= PROGRESS_STEP_BYTES || written == total) {
+                        reported = written
+                        emit(InstallStatus.Writing(written, total))
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            pending.abandon()
+            throw e
+        }
+        emitAll(pending.commit())
+    }.flowOn(Dispatchers.IO)
+}
@@ -0,0 +1,93 @@
+package com.bearmod.loader.install
+
+import android.content.Context
+import android.content.res.Resources
+import android.os.Build
+import androidx.core.os.ConfigurationCompat
+import com.bearmod.loader.data.model.SplitApkInfo
+import com.bearmod.loader.data.model.VariantInfo
+import java.util.Locale
+
+/**
+ * Picks the configuration splits a device needs from a variant's split list.
+ *
+ *  - ABI: the splits for the first entry of [supportedAbis] that has any (the primary ABI
+ *    when available), so a 64-bit device never also downloads its 32-bit libraries.
+ *  - Density: the smallest bucket at or above [densityDpi], else the largest one below it,
+ *    matching how the resource system prefers scaling down.
+ *  - Language: every split whose language appears in [languages]; the base APK carries the
+ *    default strings, so no match means no language split.
+ *  - Unknown split types are always kept.
+ */
+class SplitApkResolver(
+    private val supportedAbis: List<String>,
+    private val densityDpi: Int,
+    private val languages: List<String>
+) {
+
+    companion object {
+        private val DENSITY_BUCKETS = mapOf(
+            "ldpi" to 120,
+            "mdpi" to 160,
+            "tvdpi" to 213,
+            "hdpi" to 240,
+            "xhdpi" to 320,
+            "xxhdpi" to 480,
+            "xxxhdpi" to 640
+        )
+
+        /**
+         * Resolver for this device: [Build.SUPPORTED_ABIS], the display density, and the
+         * app's and system's locales (the app may override its language).
+         */
+        fun forDevice(context: Context): SplitApkResolver {
+            val locales = ConfigurationCompat.getLocales(context.resources.configuration)
+            val systemLocales = ConfigurationCompat.getLocales(Resources.getSystem().configuration)
+            val languages = (0 until locales.size()).mapNotNull { locales[it]?.language } +
+                (0 until systemLocales.size()).mapNotNull { systemLocales[it]?.language }
+            return SplitApkResolver(
+                supportedAbis = Build.SUPPORTED_ABIS.toList(),
+                densityDpi = context.resources.displayMetrics.densityDpi,
+                languages = languages.distinct()
+            )
+        }
+
+        /**
+         * Density of a split value such as `xxhdpi` or `420dpi`, or null if unrecognised.
+         */
+        internal fun densityOf(value: String): Int? {
+            val key = value.lowercase(Locale.US)
+            return DENSITY_BUCKETS[key] ?: key.removeSuffix("dpi").toIntOrNull()
+        }
+    }
+
+    /**
+     * The splits to download and install together with the base APK, in manifest order.
+     */
+    fun resolve(splits: List<SplitApkInfo>): List<SplitApkInfo> {
+        if (splits.isEmpty()) return emptyList()
+
+        val abiSplits = splits.filter { it.type == SplitApkInfo.TYPE_ABI }
+        val abi = supportedAbis.firstOrNull { candidate -> abiSplits.any { it.value == candidate } }
+
+        val densities = splits.filter { it.type == SplitApkInfo.TYPE_DENSITY }.mapNotNull { densityOf(it.value) }
+        val density = densities.filter { it >= densityDpi }.minOrNull() ?: densities.maxOrNull()
+
+        val wantedLanguages = languages.map { it.lowercase(Locale.US) }.toSet()
+
+        return splits.filter { split ->
+            when (split.type) {
+                SplitApkInfo.TYPE_ABI -> split.value == abi
+                SplitApkInfo.TYPE_DENSITY -> density != null && densityOf(split.value) == density
+                SplitApkInfo.TYPE_LANGUAGE -> split.value.substringBefore('-').lowercase(Locale.US) in wantedLanguages
+                else -> true
+            }
+        }
+    }
+
+    /**
+     * Bytes this device downloads for [variantInfo]'s APK: the base plus its matching splits.
+     */
+    fun apkDownloadSize(variantInfo: VariantInfo): Long =
+        (variantInfo.apk.size ?: 0L) + resolve(variantInfo.splits.orEmpty()).sumOf { it.size ?: 0L }
+}
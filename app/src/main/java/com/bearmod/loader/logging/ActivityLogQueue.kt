@@ -0,0 +1,130 @@
+package com.bearmod.loader.logging
+
+import android.util.Log
+import java.io.File
+
+/**
+ * Bounded, file-backed queue of activity-log events.
+ *
+ * Identical messages are coalesced into one event with a count and first/last timestamps.
+ * When [maxEvents] distinct events are pending the oldest is dropped (newest activity is
+ * the most useful) and counted in [droppedCount]. Messages are truncated to
+ * [maxMessageChars]. Not thread-safe: the uploader confines it to one thread.
+ */
+class ActivityLogQueue(
+    private val file: File,
+    private val maxEvents: Int = 200,
+    private val maxMessageChars: Int = 200
+) {
+
+    companion object {
+        private const val TAG = "ActivityLogQueue"
+        private const val SEPARATOR = '\t'
+    }
+
+    class Event(val message: String, val firstAt: Long, var lastAt: Long, var count: Int)
+
+    private val events = ArrayDeque<Event>()
+
+    var droppedCount = 0L
+        private set
+
+    val size: Int
+        get() = events.size
+
+    fun isEmpty(): Boolean = events.isEmpty()
+
+    /**
+     * Add [message] at [timestamp], merging it into a pending identical event if there is one.
+     */
+    fun add(message: String, timestamp: Long) {
+        val normalized = normalize(message)
+        val existing = events.firstOrNull { it.message == normalized }
+        if (existing != null) {
+            existing.count++
+            existing.lastAt = timestamp
+            return
+        }
+        if (events.size >= maxEvents) {
+            events.removeFirst()
+            droppedCount++
+        }
+        events.addLast(Event(normalized, timestamp, timestamp, 1))
+    }
+
+    /**
+     * The oldest events whose formatted lines fit in [maxChars] (always at least one).
+     */
+    fun peekBatch(maxChars: Int, format: (Event) -> String): List<Event> {
+        val batch = mutableListOf<Event>()
+        var chars = 0
+        for (event in events) {
+            val length = format(event).length + 1
+            if (batch.isNotEmpty() && chars + length > maxChars) break
+            batch.add(event)
+            chars += length
+        }
+        return batch
+    }
+
+    /**
+     * Remove an uploaded batch. Events coalesced into it after [peekBatch] are kept.
+     */
+    fun removeBatch(batch: List<Event>, uploadedCounts: List<Int>) {
+        batch.forEachIndexed { index, event ->
+            val remaining = event.count - uploadedCounts[index]
+            if (remaining > 0) event.count = remaining else events.remove(event)
+        }
+    }
+
+    fun load() {
+        if (!file.exists()) return
+        try {
+            events.clear()
+            file.forEachLine { line ->
+                val parts = line.split(SEPARATOR, limit = 4)
+                if (parts.size == 4) {
+                    events.addLast(Event(parts[3], parts[0].toLong(), parts[1].toLong(), parts[2].toInt()))
+                }
+            }
+            while (events.size > maxEvents) events.removeFirst()
+        } catch (e: Exception) {
+            Log.e(TAG, "Discarding unreadable activity log queue", e)
+            events.clear()
+            file.delete()
+        }
+    }
+
+    /**
+     * Write the pending events to disk (temp file + rename, so a crash keeps the old copy).
+     */
+    fun persist() {
+        try {
+            if (events.isEmpty()) {
+                file.delete()
+                return
+            }
+            file.parentFile?.mkdirs()
+            val tmp = File(file.path + ".tmp")
+            tmp.bufferedWriter().use { writer ->
+                for (event in events) {
+                    writer.append(event.firstAt.toString()).append(SEPARATOR)
+                        .append(event.lastAt.toString()).append(SEPARATOR)
+                        .append(event.count.toString()).append(SEPARATOR)
+                        .append(event.message).append('\n')
+                }
+            }
+            if (!tmp.renameTo(file)) {
+                Log.e(TAG, "Failed to replace activity log queue file")
+                tmp.delete()
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to persist activity log queue", e)
+        }
+    }
+
+    private fun normalize(message: String): String {
+        val singleLine = message.replace('\n', ' ').replace('\r', ' ').replace(SEPARATOR, ' ').trim()
+        return if (singleLine.length > maxMessageChars) singleLine.take(maxMessageChars - 1) + "…" else singleLine
+    }
+}
@@ -0,0 +1,210 @@
+package com.bearmod.loader.logging
+
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.ConnectivityManager
+import android.net.NetworkCapabilities
+import android.os.BatteryManager
+import android.os.Build
+import android.os.PowerManager
+import android.util.Log
+import com.bearmod.loader.config.KeyAuthConfig
+import com.bearmod.loader.data.api.KeyAuthApiService
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import java.io.File
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Batched, persistent uploader for KeyAuth's `log` endpoint.
+ *
+ * [log] only hands the message to a single background thread, so callers on hot paths
+ * (download completion, install results) never wait on disk or network. Events are
+ * coalesced in a bounded [ActivityLogQueue] that is persisted shortly after each change,
+ * and uploaded as multi-line batches (one POST per batch) when:
+ *  - a KeyAuth session is active ([sessionIdProvider] returns an ID),
+ *  - [deviceAllowsUpload] reports a validated network and no low-battery/power-save state,
+ *  - fewer than [maxUploadsPerMinute] batches went out in the last minute.
+ * Flushes run every [flushIntervalMs] while events are pending, or sooner once
+ * [batchThreshold] distinct events have queued up. Failed uploads stay queued.
+ */
+class ActivityLogUploader(
+    context: Context,
+    private val apiService: KeyAuthApiService,
+    private val sessionIdProvider: () -> String?,
+    private val queue: ActivityLogQueue = ActivityLogQueue(File(context.filesDir, QUEUE_FILE_NAME)),
+    private val flushIntervalMs: Long = 60_000L,
+    private val batchThreshold: Int = 20,
+    private val maxBatchChars: Int = 1_000,
+    private val maxUploadsPerMinute: Int = 4,
+    private val deviceAllowsUpload: () -> Boolean = { isDeviceReadyForUpload(context.applicationContext ?: context) },
+    dispatcher: CoroutineDispatcher = Dispatchers.IO.limitedParallelism(1)
+) {
+
+    companion object {
+        private const val TAG = "ActivityLogUploader"
+        private const val QUEUE_FILE_NAME = "activity_log.queue"
+        private const val PERSIST_DELAY_MS = 2_000L
+        private const val RATE_WINDOW_MS = 60_000L
+        private const val MIN_BATTERY_PERCENT = 15
+
+        /**
+         * Validated network and either charging or above [MIN_BATTERY_PERCENT] outside power-save mode.
+         */
+        private fun isDeviceReadyForUpload(context: Context): Boolean {
+            return try {
+                val connectivity = context.getSystemService(Context.CONNECTIVITY_SERVICE) as? ConnectivityManager
+                val capabilities = connectivity?.getNetworkCapabilities(connectivity.activeNetwork)
+                if (capabilities?.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED) != true) {
+                    return false
+                }
+
+                val battery = context.registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
+                val status = battery?.getIntExtra(BatteryManager.EXTRA_STATUS, -1) ?: -1
+                val charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL
+                if (charging) return true
+
+                val level = battery?.getIntExtra(BatteryManager.EXTRA_LEVEL, -1) ?: -1
+                val scale = battery?.getIntExtra(BatteryManager.EXTRA_SCALE, -1) ?: -1
+                val percent = if (level >= 0 && scale > 0) level * 100 / scale else 100
+                val powerManager = context.getSystemService(Context.POWER_SERVICE) as? PowerManager
+                percent >= MIN_BATTERY_PERCENT && powerManager?.isPowerSaveMode != true
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to read network/battery state", e)
+                false
+            }
+        }
+    }
+
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+    private val timeFormat = SimpleDateFormat("HH:mm:ss", Locale.US)
+    private val pcUser = "${Build.MANUFACTURER} ${Build.MODEL}"
+
+    // Confined to the single-threaded dispatcher
+    private var flushJob: Job? = null
+    private var flushing = false
+    private var persistJob: Job? = null
+    private val recentUploads = ArrayDeque<Long>()
+
+    init {
+        scope.launch {
+            queue.load()
+            if (!queue.isEmpty()) scheduleFlush()
+        }
+    }
+
+    /**
+     * Queue [message] for upload. Never blocks on disk or network.
+     */
+    fun log(message: String) {
+        val timestamp = System.currentTimeMillis()
+        scope.launch {
+            queue.add(message, timestamp)
+            schedulePersist()
+            if (queue.size >= batchThreshold) flushSoon() else scheduleFlush()
+        }
+    }
+
+    /**
+     * Try to upload now, e.g. right after a session becomes active.
+     */
+    fun flushNow() {
+        scope.launch { flushSoon() }
+    }
+
+    private fun flushSoon() {
+        // Never cancel an upload in progress; it reschedules itself when done
+        if (flushing) return
+        flushJob?.cancel()
+        flushJob = scope.launch { flush() }
+    }
+
+    private fun scheduleFlush() {
+        if (flushJob?.isActive == true) return
+        flushJob = scope.launch {
+            delay(flushIntervalMs)
+            flush()
+        }
+    }
+
+    private fun schedulePersist() {
+        if (persistJob?.isActive == true) return
+        persistJob = scope.launch {
+            delay(PERSIST_DELAY_MS)
+            queue.persist()
+        }
+    }
+
+    private suspend fun flush() {
+        val sessionId = sessionIdProvider()
+        if (sessionId.isNullOrEmpty() || !deviceAllowsUpload()) {
+            reschedule()
+            return
+        }
+
+        flushing = true
+        try {
+            uploadBatches(sessionId)
+        } finally {
+            flushing = false
+        }
+
+        if (queue.droppedCount > 0) Log.w(TAG, "${queue.droppedCount} activity log event(s) dropped, queue full")
+        reschedule()
+    }
+
+    private suspend fun uploadBatches(sessionId: String) {
+        while (!queue.isEmpty()) {
+            val now = System.currentTimeMillis()
+            while (recentUploads.isNotEmpty() && now - recentUploads.first() >= RATE_WINDOW_MS) {
+                recentUploads.removeFirst()
+            }
+            if (recentUploads.size >= maxUploadsPerMinute) break
+
+            val batch = queue.peekBatch(maxBatchChars, ::formatEvent)
+            val uploadedCounts = batch.map { it.count }
+            val message = batch.joinToString("\n", transform = ::formatEvent)
+            recentUploads.addLast(now)
+
+            val uploaded = try {
+                val response = apiService.log(
+                    pcUser = pcUser,
+                    message = message,
+                    sessionId = sessionId,
+                    name = KeyAuthConfig.APP_NAME,
+                    ownerId = KeyAuthConfig.OWNER_ID
+                )
+                response.isSuccessful && response.body()?.success == true
+            } catch (e: Exception) {
+                Log.w(TAG, "Activity log upload failed: ${e.message}")
+                false
+            }
+            if (!uploaded) break
+
+            queue.removeBatch(batch, uploadedCounts)
+            queue.persist()
+        }
+    }
+
+    private fun reschedule() {
+        if (queue.isEmpty()) return
+        // Called from inside the running flush job, so start a fresh delayed one
+        flushJob = scope.launch {
+            delay(flushIntervalMs)
+            flush()
+        }
+    }
+
+    private fun formatEvent(event: ActivityLogQueue.Event): String {
+        val time = timeFormat.format(Date(event.firstAt))
+        return if (event.count > 1) "[$time] ${event.message} (x${event.count})" else "[$time] ${event.message}"
+    }
+}
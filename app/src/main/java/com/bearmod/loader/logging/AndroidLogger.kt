@@ -5,6 +5,14 @@ class AndroidLogger : Logger {
         android.util.Log.d(tag, message)
     }
 
+    override fun i(tag: String, message: String) {
+        android.util.Log.i(tag, message)
+    }
+
+    override fun w(tag: String, message: String, throwable: Throwable?) {
+        if (throwable != null) android.util.Log.w(tag, message, throwable) else android.util.Log.w(tag, message)
+    }
+
     override fun e(tag: String, message: String, throwable: Throwable?) {
         if (throwable != null) android.util.Log.e(tag, message, throwable) else android.util.Log.e(tag, message)
     }
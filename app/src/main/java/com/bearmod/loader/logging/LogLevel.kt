@@ -0,0 +1,4 @@
+package com.bearmod.loader.logging
+
+/** Severity order used for level gating; [NONE] disables a logger entirely. */
+enum class LogLevel { VERBOSE, DEBUG, INFO, WARN, ERROR, NONE }
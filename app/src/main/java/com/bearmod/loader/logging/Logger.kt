@@ -4,4 +4,35 @@ package com.bearmod.loader.logging
 interface Logger {
     fun d(tag: String, message: String)
     fun e(tag: String, message: String, throwable: Throwable? = null)
+    fun i(tag: String, message: String) = d(tag, message)
+    fun w(tag: String, message: String, throwable: Throwable? = null) = e(tag, message, throwable)
+
+    /** False when messages at [level] would be discarded; lets callers skip building them. */
+    fun isLoggable(level: LogLevel): Boolean = true
+}
+
+// Lazy variants: the message lambda is inlined and only evaluated when the level is enabled,
+// so disabled logging costs one level check and no string building or allocation.
+
+inline fun Logger.d(tag: String, message: () -> String) {
+    if (isLoggable(LogLevel.DEBUG)) d(tag, message())
+}
+
+inline fun Logger.i(tag: String, message: () -> String) {
+    if (isLoggable(LogLevel.INFO)) i(tag, message())
+}
+
+inline fun Logger.w(tag: String, throwable: Throwable? = null, message: () -> String) {
+    if (isLoggable(LogLevel.WARN)) w(tag, message(), throwable)
+}
+
+inline fun Logger.e(tag: String, throwable: Throwable? = null, message: () -> String) {
+    if (isLoggable(LogLevel.ERROR)) e(tag, message(), throwable)
+}
+
+/** Discards everything. */
+object NoOpLogger : Logger {
+    override fun d(tag: String, message: String) = Unit
+    override fun e(tag: String, message: String, throwable: Throwable?) = Unit
+    override fun isLoggable(level: LogLevel): Boolean = false
 }
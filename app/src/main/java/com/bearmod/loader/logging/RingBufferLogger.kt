@@ -0,0 +1,116 @@
+package com.bearmod.loader.logging
+
+import com.bearmod.loader.BuildConfig
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Logger that keeps the most recent entries in memory for on-demand dumps (bug reports,
+ * diagnostics screen) and optionally echoes them to [echo].
+ *
+ * Entries below [minLevel] are discarded before their message is built when callers use the
+ * lazy `logger.d(tag) { ... }` extensions. Writers never lock: each claims a slot with one
+ * atomic increment and publishes the entry with one atomic store, overwriting the oldest
+ * once the buffer has wrapped.
+ */
+class RingBufferLogger(
+    capacity: Int = DEFAULT_CAPACITY,
+    @Volatile var minLevel: LogLevel = LogLevel.DEBUG,
+    private val echo: Logger? = AndroidLogger(),
+    @Volatile var echoLevel: LogLevel = LogLevel.DEBUG
+) : Logger {
+
+    companion object {
+        const val DEFAULT_CAPACITY = 512
+
+        /**
+         * Process-wide buffer. Debug builds keep and echo everything from DEBUG up; release
+         * builds keep INFO and above and only echo warnings and errors to logcat.
+         */
+        @JvmStatic
+        val shared: RingBufferLogger by lazy {
+            if (BuildConfig.DEBUG) {
+                RingBufferLogger(minLevel = LogLevel.DEBUG, echoLevel = LogLevel.DEBUG)
+            } else {
+                RingBufferLogger(minLevel = LogLevel.INFO, echoLevel = LogLevel.WARN)
+            }
+        }
+    }
+
+    class Entry(
+        val timestampMillis: Long,
+        val level: LogLevel,
+        val tag: String,
+        val message: String,
+        val throwable: Throwable?
+    ) {
+        fun format(): String {
+            val time = SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US).format(Date(timestampMillis))
+            val base = "$time ${level.name.first()}/$tag: $message"
+            return if (throwable != null) "$base\n${throwable.stackTraceToString()}" else base
+        }
+    }
+
+    // Capacity rounded up to a power of two so a slot is `sequence & mask`
+    private val slots: AtomicReferenceArray<Entry?>
+    private val mask: Int
+    private val sequence = AtomicLong()
+
+    init {
+        var size = 1
+        while (size < capacity.coerceAtLeast(1)) size = size shl 1
+        slots = AtomicReferenceArray(size)
+        mask = size - 1
+    }
+
+    override fun isLoggable(level: LogLevel): Boolean = level >= minLevel && level != LogLevel.NONE
+
+    override fun d(tag: String, message: String) = append(LogLevel.DEBUG, tag, message, null)
+
+    override fun i(tag: String, message: String) = append(LogLevel.INFO, tag, message, null)
+
+    override fun w(tag: String, message: String, throwable: Throwable?) = append(LogLevel.WARN, tag, message, throwable)
+
+    override fun e(tag: String, message: String, throwable: Throwable?) = append(LogLevel.ERROR, tag, message, throwable)
+
+    private fun append(level: LogLevel, tag: String, message: String, throwable: Throwable?) {
+        if (!isLoggable(level)) return
+        val index = (sequence.getAndIncrement() and mask.toLong()).toInt()
+        slots.set(index, Entry(System.currentTimeMillis(), level, tag, message, throwable))
+
+        if (echo != null && level >= echoLevel) {
+            when (level) {
+                LogLevel.ERROR -> echo.e(tag, message, throwable)
+                LogLevel.WARN -> echo.w(tag, message, throwable)
+                LogLevel.INFO -> echo.i(tag, message)
+                else -> echo.d(tag, message)
+            }
+        }
+    }
+
+    /**
+     * Buffered entries, oldest first. Writers racing with the dump may replace a few of the
+     * oldest entries while it runs; each returned entry is still complete.
+     */
+    fun dump(): List<Entry> {
+        val end = sequence.get()
+        val start = (end - slots.length()).coerceAtLeast(0L)
+        val entries = ArrayList<Entry>((end - start).toInt())
+        for (position in start until end) {
+            slots.get((position and mask.toLong()).toInt())?.let { entries.add(it) }
+        }
+        entries.sortBy { it.timestampMillis }
+        return entries
+    }
+
+    fun dumpTo(out: Appendable) {
+        for (entry in dump()) out.append(entry.format()).append('\n')
+    }
+
+    fun clear() {
+        for (i in 0 until slots.length()) slots.set(i, null)
+    }
+}
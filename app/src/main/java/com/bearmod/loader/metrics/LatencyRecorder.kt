@@ -0,0 +1,115 @@
+package com.bearmod.loader.metrics
+
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Thread-safe latency recorder keyed by operation name.
+ * Keeps count/total/max plus a bounded window of recent samples per operation, so
+ * percentiles can be reported without unbounded memory growth.
+ */
+class LatencyRecorder(private val windowSize: Int = DEFAULT_WINDOW_SIZE) {
+
+    companion object {
+        const val DEFAULT_WINDOW_SIZE = 512
+        private const val NANOS_PER_MILLI = 1_000_000.0
+    }
+
+    /**
+     * Point-in-time statistics for one operation. Durations are in milliseconds;
+     * percentiles are computed over the most recent [windowSize] samples.
+     */
+    data class Stats(
+        val count: Long,
+        val meanMillis: Double,
+        val p50Millis: Double,
+        val p95Millis: Double,
+        val p99Millis: Double,
+        val maxMillis: Double
+    ) {
+        fun format(): String = String.format(
+            Locale.ROOT,
+            "n=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+            count, meanMillis, p50Millis, p95Millis, p99Millis, maxMillis
+        )
+    }
+
+    private class Series(windowSize: Int) {
+        val window = LongArray(windowSize)
+        var next = 0
+        var filled = 0
+        var count = 0L
+        var totalNanos = 0L
+        var maxNanos = 0L
+    }
+
+    private val series = ConcurrentHashMap<String, Series>()
+
+    /**
+     * Record one sample of [nanos] for [name].
+     */
+    fun record(name: String, nanos: Long) {
+        val s = series.getOrPut(name) { Series(windowSize) }
+        synchronized(s) {
+            s.window[s.next] = nanos
+            s.next = (s.next + 1) % s.window.size
+            if (s.filled < s.window.size) s.filled++
+            s.count++
+            s.totalNanos += nanos
+            if (nanos > s.maxNanos) s.maxNanos = nanos
+        }
+    }
+
+    /**
+     * Run [block] and record its wall-clock duration under [name], including when it throws.
+     */
+    inline fun <T> time(name: String, block: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            record(name, System.nanoTime() - start)
+        }
+    }
+
+    fun snapshot(name: String): Stats? {
+        val s = series[name] ?: return null
+        val sorted: LongArray
+        val count: Long
+        val total: Long
+        val max: Long
+        synchronized(s) {
+            sorted = s.window.copyOf(s.filled)
+            count = s.count
+            total = s.totalNanos
+            max = s.maxNanos
+        }
+        if (count == 0L) return null
+        sorted.sort()
+        return Stats(
+            count = count,
+            meanMillis = total / count / NANOS_PER_MILLI,
+            p50Millis = percentile(sorted, 0.50) / NANOS_PER_MILLI,
+            p95Millis = percentile(sorted, 0.95) / NANOS_PER_MILLI,
+            p99Millis = percentile(sorted, 0.99) / NANOS_PER_MILLI,
+            maxMillis = max / NANOS_PER_MILLI
+        )
+    }
+
+    /**
+     * Statistics for every recorded operation, sorted by name.
+     */
+    fun snapshots(): Map<String, Stats> {
+        return series.keys.sorted().mapNotNull { name -> snapshot(name)?.let { name to it } }.toMap()
+    }
+
+    fun reset() {
+        series.clear()
+    }
+
+    private fun percentile(sorted: LongArray, quantile: Double): Double {
+        if (sorted.isEmpty()) return 0.0
+        val index = (quantile * (sorted.size - 1)).toInt().coerceIn(0, sorted.size - 1)
+        return sorted[index].toDouble()
+    }
+}
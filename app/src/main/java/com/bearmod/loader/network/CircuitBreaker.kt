@@ -0,0 +1,88 @@
+package com.bearmod.loader.network
+
+/**
+ * Consecutive-failure circuit breaker.
+ *
+ * CLOSED lets every call through. After [failureThreshold] consecutive failures it turns
+ * OPEN and rejects calls for [openDurationMs]; the first call after that runs as a single
+ * HALF_OPEN trial whose outcome closes the circuit again or re-opens it.
+ */
+class CircuitBreaker(
+    private val failureThreshold: Int = 3,
+    private val openDurationMs: Long = 15_000L,
+    private val clock: () -> Long = { System.nanoTime() / 1_000_000 }
+) {
+
+    enum class State { CLOSED, OPEN, HALF_OPEN }
+
+    private var state = State.CLOSED
+    private var consecutiveFailures = 0
+    private var openedAt = 0L
+    private var trialInFlight = false
+
+    @get:Synchronized
+    val currentState: State
+        get() = state
+
+    /**
+     * True if a call may proceed. A caller that gets true must report back through
+     * [onSuccess], [onFailure] or [onAbandoned].
+     */
+    @Synchronized
+    fun tryAcquire(): Boolean {
+        return when (state) {
+            State.CLOSED -> true
+            State.OPEN -> {
+                if (clock() - openedAt < openDurationMs) {
+                    false
+                } else {
+                    state = State.HALF_OPEN
+                    trialInFlight = true
+                    true
+                }
+            }
+            State.HALF_OPEN -> {
+                if (trialInFlight) {
+                    false
+                } else {
+                    trialInFlight = true
+                    true
+                }
+            }
+        }
+    }
+
+    @Synchronized
+    fun onSuccess() {
+        state = State.CLOSED
+        consecutiveFailures = 0
+        trialInFlight = false
+    }
+
+    @Synchronized
+    fun onFailure() {
+        trialInFlight = false
+        consecutiveFailures++
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN
+            openedAt = clock()
+        }
+    }
+
+    /**
+     * The call ended without telling anything about the server (e.g. the caller was cancelled).
+     */
+    @Synchronized
+    fun onAbandoned() {
+        trialInFlight = false
+    }
+
+    /**
+     * Milliseconds until an OPEN circuit admits a trial call, 0 otherwise.
+     */
+    @Synchronized
+    fun remainingOpenMillis(): Long {
+        if (state != State.OPEN) return 0L
+        return (openDurationMs - (clock() - openedAt)).coerceAtLeast(0L)
+    }
+}
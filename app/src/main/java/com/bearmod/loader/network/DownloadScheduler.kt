@@ -0,0 +1,251 @@
+package com.bearmod.loader.network
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.ConnectivityManager
+import android.net.Network
+import android.net.NetworkCapabilities
+import android.net.NetworkRequest
+import android.os.BatteryManager
+import android.os.Build
+import android.os.PowerManager
+import androidx.core.content.ContextCompat
+import com.bearmod.loader.data.model.DownloadPauseReason
+import com.bearmod.loader.logging.Logger
+import com.bearmod.loader.logging.RingBufferLogger
+import com.bearmod.loader.logging.d
+import com.bearmod.loader.logging.w
+import com.bearmod.loader.ota.InsufficientSpaceException
+import com.bearmod.loader.ota.OtaVerificationException
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.mapLatest
+import java.io.IOException
+
+/**
+ * What large downloads may do on a metered network (mobile data, metered hotspots)
+ */
+enum class MeteredDownloadPolicy {
+    ALLOW,
+    SMALL_ONLY,
+    NEVER
+}
+
+/**
+ * Runs downloads only while network and battery conditions allow, and resumes them when
+ * conditions change.
+ *
+ * Networks come from a [ConnectivityManager.NetworkCallback]; an unmetered network is
+ * always preferred, and a metered one is used only as [meteredPolicy] (or
+ * [allowMeteredOnce]) permits for downloads of [largeDownloadBytes] or more. Large
+ * downloads also wait while the battery is below [minBatteryPercent] or in power-save
+ * mode, unless charging.
+ *
+ * [run] hands the chosen [Network] to the download so its sockets can be bound to it, and
+ * cancels and restarts the download when a better network appears or the current one goes
+ * away. Transient I/O errors are retried with backoff on the same network.
+ */
+class DownloadScheduler(
+    context: Context,
+    private val largeDownloadBytes: Long = DEFAULT_LARGE_DOWNLOAD_BYTES,
+    private val minBatteryPercent: Int = DEFAULT_MIN_BATTERY_PERCENT,
+    private val logger: Logger = RingBufferLogger.shared
+) {
+
+    companion object {
+        private const val TAG = "DownloadScheduler"
+        private const val PREFS_NAME = "download_prefs"
+        private const val KEY_METERED_POLICY = "metered_policy"
+        const val DEFAULT_LARGE_DOWNLOAD_BYTES = 100L * 1024 * 1024
+        const val DEFAULT_MIN_BATTERY_PERCENT = 15
+        private const val MAX_ATTEMPTS = 4
+        private const val INITIAL_RETRY_DELAY_MS = 2_000L
+    }
+
+    /**
+     * Outcome of the current conditions for one download
+     */
+    sealed class Decision {
+        data class Run(val network: Network) : Decision()
+        data class Wait(val reason: DownloadPauseReason) : Decision()
+    }
+
+    internal data class NetworkState(val network: Network, val unmetered: Boolean, val validated: Boolean)
+
+    internal data class BatteryState(val percent: Int, val charging: Boolean, val powerSave: Boolean)
+
+    private val appContext = context.applicationContext ?: context
+    private val preferences = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+    private val meteredOverride = MutableStateFlow(false)
+
+    var meteredPolicy: MeteredDownloadPolicy
+        get() = preferences.getString(KEY_METERED_POLICY, null)
+            ?.let { name -> MeteredDownloadPolicy.entries.firstOrNull { it.name == name } }
+            ?: MeteredDownloadPolicy.SMALL_ONLY
+        set(value) {
+            preferences.edit().putString(KEY_METERED_POLICY, value.name).apply()
+        }
+
+    /**
+     * Let downloads from this scheduler use metered networks regardless of [meteredPolicy]
+     */
+    fun allowMeteredOnce() {
+        meteredOverride.value = true
+    }
+
+    private val networks: Flow<List<NetworkState>> = callbackFlow {
+        val connectivity = appContext.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+        // Only touched from the callback thread
+        val known = LinkedHashMap<Network, NetworkState>()
+        val callback = object : ConnectivityManager.NetworkCallback() {
+            override fun onCapabilitiesChanged(network: Network, capabilities: NetworkCapabilities) {
+                known[network] = networkStateOf(network, capabilities)
+                trySend(known.values.toList())
+            }
+
+            override fun onLost(network: Network) {
+                known.remove(network)
+                trySend(known.values.toList())
+            }
+        }
+        // Start from the active network so a download does not see a brief NO_NETWORK before
+        // the callback reports it; the callback is not registered yet, so [known] is ours here
+        connectivity.activeNetwork?.let { network ->
+            connectivity.getNetworkCapabilities(network)
+                ?.takeIf { it.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET) }
+                ?.let { known[network] = networkStateOf(network, it) }
+        }
+        trySend(known.values.toList())
+        val request = NetworkRequest.Builder()
+            .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+            .build()
+        connectivity.registerNetworkCallback(request, callback)
+        awaitClose { connectivity.unregisterNetworkCallback(callback) }
+    }
+
+    private fun networkStateOf(network: Network, capabilities: NetworkCapabilities): NetworkState {
+        val unmetered = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED) ||
+            (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R &&
+                capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_TEMPORARILY_NOT_METERED))
+        val validated = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)
+        return NetworkState(network, unmetered, validated)
+    }
+
+    private val battery: Flow<BatteryState> = callbackFlow {
+        val powerManager = appContext.getSystemService(Context.POWER_SERVICE) as? PowerManager
+        val receiver = object : BroadcastReceiver() {
+            override fun onReceive(context: Context, intent: Intent) {
+                val sticky = if (intent.action == Intent.ACTION_BATTERY_CHANGED) {
+                    intent
+                } else {
+                    context.registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
+                }
+                trySend(batteryStateOf(sticky, powerManager?.isPowerSaveMode == true))
+            }
+        }
+        val filter = IntentFilter().apply {
+            addAction(Intent.ACTION_BATTERY_CHANGED)
+            addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED)
+        }
+        // ACTION_BATTERY_CHANGED is sticky, so the current state arrives right away
+        ContextCompat.registerReceiver(appContext, receiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED)
+        awaitClose { appContext.unregisterReceiver(receiver) }
+    }
+
+    private fun batteryStateOf(intent: Intent?, powerSave: Boolean): BatteryState {
+        val status = intent?.getIntExtra(BatteryManager.EXTRA_STATUS, -1) ?: -1
+        val level = intent?.getIntExtra(BatteryManager.EXTRA_LEVEL, -1) ?: -1
+        val scale = intent?.getIntExtra(BatteryManager.EXTRA_SCALE, -1) ?: -1
+        return BatteryState(
+            percent = if (level >= 0 && scale > 0) level * 100 / scale else 100,
+            charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL,
+            powerSave = powerSave
+        )
+    }
+
+    /**
+     * Decisions for a download of [sizeBytes], re-evaluated whenever conditions change
+     */
+    fun decisions(sizeBytes: Long): Flow<Decision> =
+        combine(networks, battery, meteredOverride) { available, batteryState, override ->
+            decide(available, batteryState, sizeBytes, if (override) MeteredDownloadPolicy.ALLOW else meteredPolicy)
+        }.distinctUntilChanged()
+
+    internal fun decide(
+        available: List<NetworkState>,
+        battery: BatteryState,
+        sizeBytes: Long,
+        policy: MeteredDownloadPolicy
+    ): Decision {
+        // Unmetered first, then validated (a network that has not passed validation may still work)
+        val best = available.sortedWith(compareBy({ !it.unmetered }, { !it.validated })).firstOrNull()
+            ?: return Decision.Wait(DownloadPauseReason.NO_NETWORK)
+
+        val large = sizeBytes < 0 || sizeBytes >= largeDownloadBytes
+        if (large && !battery.charging && (battery.percent < minBatteryPercent || battery.powerSave)) {
+            return Decision.Wait(DownloadPauseReason.LOW_BATTERY)
+        }
+
+        if (best.unmetered) return Decision.Run(best.network)
+        val meteredAllowed = when (policy) {
+            MeteredDownloadPolicy.ALLOW -> true
+            MeteredDownloadPolicy.SMALL_ONLY -> !large
+            MeteredDownloadPolicy.NEVER -> false
+        }
+        return if (meteredAllowed) Decision.Run(best.network) else Decision.Wait(DownloadPauseReason.METERED_NETWORK)
+    }
+
+    /**
+     * Run [block] on an allowed network and return its result. While conditions do not allow
+     * the download [onWaiting] is called; when they change mid-download the block is cancelled
+     * and started again on the new network, so it should resume rather than restart.
+     * Hash mismatches, a full disk and non-I/O errors are not retried.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    suspend fun <T : Any> run(
+        sizeBytes: Long,
+        onWaiting: suspend (DownloadPauseReason) -> Unit,
+        block: suspend (Network) -> T
+    ): T = decisions(sizeBytes)
+        .mapLatest { decision ->
+            when (decision) {
+                is Decision.Wait -> {
+                    logger.d(TAG) { "Download of $sizeBytes bytes waiting: ${decision.reason}" }
+                    onWaiting(decision.reason)
+                    null
+                }
+                is Decision.Run -> withRetries(decision.network, block)
+            }
+        }
+        .filterNotNull()
+        .first()
+
+    private suspend fun <T : Any> withRetries(network: Network, block: suspend (Network) -> T): T {
+        var attempt = 1
+        var retryDelayMs = INITIAL_RETRY_DELAY_MS
+        while (true) {
+            try {
+                return block(network)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: IOException) {
+                if (e is OtaVerificationException || e is InsufficientSpaceException || attempt >= MAX_ATTEMPTS) throw e
+                logger.w(TAG) { "Download attempt $attempt on $network failed, retrying: ${e.message}" }
+                delay(retryDelayMs)
+                retryDelayMs *= 2
+                attempt++
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.bearmod.loader.network
 
 import android.content.Context
+import android.net.Network
+import com.bearmod.loader.BuildConfig
 import com.bearmod.loader.config.KeyAuthConfig
 import com.bearmod.loader.data.api.KeyAuthApiService
 import com.bearmod.loader.data.api.OTAApiService
@@ -20,13 +22,31 @@ object NetworkFactory {
     // KeyAuth API base URL from config
     private val BASE_URL = KeyAuthConfig.API_BASE_URL
     
-    private fun createOkHttpClient(): OkHttpClient {
-        val loggingInterceptor = HttpLoggingInterceptor().apply {
-            level = HttpLoggingInterceptor.Level.BODY
-        }
+    // One client per backend so repositories share connection pools and dispatcher threads
+    private val okHttpClient: OkHttpClient by lazy { createOkHttpClient() }
+    private val otaOkHttpClient: OkHttpClient by lazy { createOTAOkHttpClient() }
+
+    // Request lines only in debug builds; bodies are buffered only while opted in at runtime
+    private val defaultLoggingLevel =
+        if (BuildConfig.DEBUG) HttpLoggingInterceptor.Level.BASIC else HttpLoggingInterceptor.Level.NONE
+    private val loggingInterceptor = HttpLoggingInterceptor().apply { level = defaultLoggingLevel }
+
+    /**
+     * Log full KeyAuth request/response bodies (BODY) until turned off again. BODY logging
+     * buffers every body in memory, so it is off by default.
+     */
+    @JvmStatic
+    fun setBodyLoggingEnabled(enabled: Boolean) {
+        loggingInterceptor.level = if (enabled) HttpLoggingInterceptor.Level.BODY else defaultLoggingLevel
+    }
 
+    @JvmStatic
+    fun isBodyLoggingEnabled(): Boolean = loggingInterceptor.level == HttpLoggingInterceptor.Level.BODY
+
+    private fun createOkHttpClient(): OkHttpClient {
         return OkHttpClient.Builder()
             .addInterceptor(loggingInterceptor)
+            .eventListenerFactory(NetworkMetricsEventListener.Factory())
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(30, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
@@ -34,12 +54,12 @@ object NetworkFactory {
     }
 
     private fun createOTAOkHttpClient(): OkHttpClient {
-        val loggingInterceptor = HttpLoggingInterceptor().apply {
-            level = HttpLoggingInterceptor.Level.BASIC
-        }
+        // Never BODY here: that would buffer whole APK/OBB downloads
+        val otaLoggingInterceptor = HttpLoggingInterceptor().apply { level = defaultLoggingLevel }
 
         return OkHttpClient.Builder()
-            .addInterceptor(loggingInterceptor)
+            .addInterceptor(otaLoggingInterceptor)
+            .eventListenerFactory(NetworkMetricsEventListener.Factory())
             .connectTimeout(60, TimeUnit.SECONDS)
             .readTimeout(300, TimeUnit.SECONDS) // 5 minutes for large file downloads
             .writeTimeout(60, TimeUnit.SECONDS)
@@ -49,7 +69,7 @@ object NetworkFactory {
     private fun createRetrofit(): Retrofit {
         return Retrofit.Builder()
             .baseUrl(BASE_URL)
-            .client(createOkHttpClient())
+            .client(okHttpClient)
             .addConverterFactory(GsonConverterFactory.create())
             .build()
     }
@@ -57,23 +77,50 @@ object NetworkFactory {
     private fun createOTARetrofit(): Retrofit {
         return Retrofit.Builder()
             .baseUrl("https://api.github.com/") // Base URL for OTA, actual URLs will be dynamic
-            .client(createOTAOkHttpClient())
+            .client(otaOkHttpClient)
             .addConverterFactory(GsonConverterFactory.create())
             .build()
     }
 
-    private fun createApiService(): KeyAuthApiService {
-        return createRetrofit().create(KeyAuthApiService::class.java)
+    /**
+     * KeyAuth API with deadlines, retries for idempotent calls and a circuit breaker.
+     * The 30 s OkHttp timeouts remain only as a backstop.
+     */
+    fun createKeyAuthApiService(): KeyAuthApiService {
+        return ResilientKeyAuthApi(createRetrofit().create(KeyAuthApiService::class.java))
     }
 
-    private fun createOTAApiService(): OTAApiService {
+    fun createOTAApiService(): OTAApiService {
         return createOTARetrofit().create(OTAApiService::class.java)
     }
 
+    /**
+     * OTA API whose sockets and DNS lookups go through [network] only, so a download stays on
+     * the network it was scheduled for instead of following the default route.
+     */
+    fun createOTAApiService(network: Network): OTAApiService {
+        val client = otaOkHttpClient.newBuilder()
+            .socketFactory(network.socketFactory)
+            .dns { hostname -> network.getAllByName(hostname).toList() }
+            .build()
+        return Retrofit.Builder()
+            .baseUrl("https://api.github.com/")
+            .client(client)
+            .addConverterFactory(GsonConverterFactory.create())
+            .build()
+            .create(OTAApiService::class.java)
+    }
+
+    /**
+     * Creates a standalone repository. App code should use the shared instance from AppContainer.
+     */
     fun createKeyAuthRepository(context: Context): KeyAuthRepository {
-        return KeyAuthRepository(createApiService(), context)
+        return KeyAuthRepository(createKeyAuthApiService(), context)
     }
 
+    /**
+     * Creates a standalone repository. App code should use the shared instance from AppContainer.
+     */
     fun createOTARepository(context: Context): OTARepository {
         return OTARepository(context, createOTAApiService())
     }
@@ -0,0 +1,56 @@
+package com.bearmod.loader.network
+
+import com.bearmod.loader.metrics.LatencyRecorder
+import okhttp3.HttpUrl
+import okhttp3.Request
+import retrofit2.Invocation
+
+/**
+ * Process-wide per-endpoint phase timings collected by [NetworkMetricsEventListener].
+ *
+ * Series are named `<endpoint>.<phase>`, where the endpoint is the host plus at most the
+ * first two path segments, followed by `:<method>` for Retrofit calls (every KeyAuth
+ * operation posts to the same path, so init, license and check are only told apart by
+ * their service method), and the phase is one of dns, connect (TCP + TLS), tls, request,
+ * ttfb (request sent to first response byte), body, total, failed or connectFailed.
+ */
+object NetworkMetrics {
+
+    private const val MAX_PATH_SEGMENTS = 2
+
+    @JvmStatic
+    val recorder = LatencyRecorder()
+
+    /**
+     * Aggregation key for [url]; deeper path segments (asset IDs, file names) are dropped.
+     */
+    @JvmStatic
+    fun endpointKey(url: HttpUrl): String {
+        val segments = url.pathSegments.filter { it.isNotEmpty() }.take(MAX_PATH_SEGMENTS)
+        return if (segments.isEmpty()) url.host else url.host + "/" + segments.joinToString("/")
+    }
+
+    /**
+     * Aggregation key for [request]: [endpointKey] of its URL plus the Retrofit service
+     * method that issued it, if any.
+     */
+    @JvmStatic
+    fun endpointKey(request: Request): String {
+        val operation = request.tag(Invocation::class.java)?.method()?.name
+        val endpoint = endpointKey(request.url)
+        return if (operation == null) endpoint else "$endpoint:$operation"
+    }
+
+    /**
+     * Formatted statistics for every series whose endpoint is on [host], or all series.
+     */
+    @JvmStatic
+    fun describe(host: String? = null): Map<String, String> {
+        return recorder.snapshots()
+            .filterKeys { host == null || it.startsWith(host) }
+            .mapValues { (_, stats) -> stats.format() }
+    }
+
+    @JvmStatic
+    fun reset() = recorder.reset()
+}
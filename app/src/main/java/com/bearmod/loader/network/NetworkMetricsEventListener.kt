@@ -0,0 +1,114 @@
+package com.bearmod.loader.network
+
+import com.bearmod.loader.metrics.LatencyRecorder
+import okhttp3.Call
+import okhttp3.EventListener
+import okhttp3.Handshake
+import okhttp3.Protocol
+import okhttp3.Request
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+
+/**
+ * Records the phases of one OkHttp call into [recorder] under its endpoint key.
+ * Phases that did not happen (DNS and connect on a pooled connection, TLS on plain HTTP)
+ * are simply not recorded. One instance per call, created by [Factory].
+ */
+class NetworkMetricsEventListener private constructor(
+    private val recorder: LatencyRecorder,
+    private val endpoint: String
+) : EventListener() {
+
+    class Factory(private val recorder: LatencyRecorder = NetworkMetrics.recorder) : EventListener.Factory {
+        override fun create(call: Call): EventListener {
+            return NetworkMetricsEventListener(recorder, NetworkMetrics.endpointKey(call.request()))
+        }
+    }
+
+    private var callStart = 0L
+    private var dnsStart = 0L
+    private var connectStart = 0L
+    private var secureConnectStart = 0L
+    private var requestStart = 0L
+    private var requestEnd = 0L
+    private var responseBodyStart = 0L
+
+    private fun record(phase: String, since: Long) {
+        if (since != 0L) recorder.record("$endpoint.$phase", System.nanoTime() - since)
+    }
+
+    override fun callStart(call: Call) {
+        callStart = System.nanoTime()
+    }
+
+    override fun dnsStart(call: Call, domainName: String) {
+        dnsStart = System.nanoTime()
+    }
+
+    override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>) {
+        record("dns", dnsStart)
+    }
+
+    override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+        connectStart = System.nanoTime()
+    }
+
+    override fun secureConnectStart(call: Call) {
+        secureConnectStart = System.nanoTime()
+    }
+
+    override fun secureConnectEnd(call: Call, handshake: Handshake?) {
+        record("tls", secureConnectStart)
+    }
+
+    override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) {
+        record("connect", connectStart)
+    }
+
+    override fun connectFailed(
+        call: Call,
+        inetSocketAddress: InetSocketAddress,
+        proxy: Proxy,
+        protocol: Protocol?,
+        ioe: IOException
+    ) {
+        record("connectFailed", connectStart)
+    }
+
+    override fun requestHeadersStart(call: Call) {
+        requestStart = System.nanoTime()
+    }
+
+    override fun requestHeadersEnd(call: Call, request: Request) {
+        requestEnd = System.nanoTime()
+    }
+
+    override fun requestBodyEnd(call: Call, byteCount: Long) {
+        requestEnd = System.nanoTime()
+    }
+
+    override fun responseHeadersStart(call: Call) {
+        if (requestStart != 0L && requestEnd != 0L) {
+            recorder.record("$endpoint.request", requestEnd - requestStart)
+        }
+        record("ttfb", requestEnd)
+    }
+
+    override fun responseBodyStart(call: Call) {
+        responseBodyStart = System.nanoTime()
+    }
+
+    override fun responseBodyEnd(call: Call, byteCount: Long) {
+        record("body", responseBodyStart)
+    }
+
+    override fun callEnd(call: Call) {
+        record("total", callStart)
+    }
+
+    override fun callFailed(call: Call, ioe: IOException) {
+        record("failed", callStart)
+    }
+}
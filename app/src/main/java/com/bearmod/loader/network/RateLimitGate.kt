@@ -0,0 +1,108 @@
+package com.bearmod.loader.network
+
+import android.content.SharedPreferences
+import okhttp3.Headers
+import kotlin.random.Random
+
+/**
+ * Persisted, app-wide pacing for a rate-limited API (GitHub allows 60 unauthenticated
+ * requests per hour per IP, shared by every device behind the same NAT).
+ *
+ * Every response sets the earliest time of the next request, stored under [key] so the UI,
+ * the background prefetch job and a restarted process all honour it:
+ * - success (including 304): at least [minIntervalMs] later, or the `X-RateLimit-Reset`
+ *   time once `X-RateLimit-Remaining` drops to [lowRemaining];
+ * - 403/429: `Retry-After`, else the reset time if the limit is exhausted, else backoff;
+ * - other errors and I/O failures: `Retry-After` or exponential backoff from [baseBackoffMs].
+ *
+ * Waits for a reset or backoff get random jitter so devices sharing an IP do not all
+ * retry at the same moment. No wait exceeds [maxBackoffMs], which also bounds a stored
+ * time left over from a wrong clock.
+ */
+class RateLimitGate(
+    private val preferences: SharedPreferences,
+    private val key: String,
+    private val minIntervalMs: Long = 5 * 60_000L,
+    private val lowRemaining: Int = 5,
+    private val baseBackoffMs: Long = 60_000L,
+    private val maxBackoffMs: Long = 6 * 60 * 60_000L,
+    private val maxJitterMs: Long = 2 * 60_000L,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val random: Random = Random.Default
+) {
+
+    companion object {
+        private const val HTTP_FORBIDDEN = 403
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+    }
+
+    private val keyNextAt = "${key}_next_at"
+    private val keyFailures = "${key}_failures"
+
+    /**
+     * Milliseconds until the next request may be made; 0 if it may be made now
+     */
+    @Synchronized
+    fun delayMs(): Long {
+        val wait = preferences.getLong(keyNextAt, 0L) - clock()
+        return if (wait in 1..maxBackoffMs) wait else 0L
+    }
+
+    /**
+     * Record an HTTP response and schedule the next allowed request
+     */
+    @Synchronized
+    fun onResponse(code: Int, headers: Headers) {
+        val now = clock()
+        val retryAfter = retryAfterOf(headers, now)
+        val remaining = headers["X-RateLimit-Remaining"]?.toIntOrNull()
+        val reset = headers["X-RateLimit-Reset"]?.toLongOrNull()?.times(1000)
+
+        val nextAt = when {
+            code in 200..399 -> {
+                preferences.edit().putInt(keyFailures, 0).apply()
+                if (remaining != null && reset != null && remaining <= lowRemaining) {
+                    maxOf(now + minIntervalMs, reset + jitter())
+                } else {
+                    now + minIntervalMs
+                }
+            }
+            retryAfter != null -> retryAfter + jitter()
+            (code == HTTP_FORBIDDEN || code == HTTP_TOO_MANY_REQUESTS) && remaining == 0 && reset != null ->
+                reset + jitter()
+            else -> backoff(now)
+        }
+        schedule(now, nextAt)
+    }
+
+    /**
+     * Record a request that got no response
+     */
+    @Synchronized
+    fun onFailure() {
+        val now = clock()
+        schedule(now, backoff(now))
+    }
+
+    private fun backoff(now: Long): Long {
+        val failures = preferences.getInt(keyFailures, 0) + 1
+        preferences.edit().putInt(keyFailures, failures).apply()
+        val delay = baseBackoffMs shl (failures - 1).coerceAtMost(20)
+        return now + delay.coerceAtMost(maxBackoffMs) + jitter()
+    }
+
+    private fun schedule(now: Long, nextAt: Long) {
+        preferences.edit().putLong(keyNextAt, nextAt.coerceIn(now, now + maxBackoffMs)).apply()
+    }
+
+    private fun jitter(): Long = if (maxJitterMs > 0) random.nextLong(maxJitterMs) else 0L
+
+    /**
+     * `Retry-After` as either delay seconds or an HTTP date
+     */
+    private fun retryAfterOf(headers: Headers, now: Long): Long? {
+        val value = headers["Retry-After"]?.trim() ?: return null
+        value.toLongOrNull()?.let { return now + it * 1000 }
+        return headers.getDate("Retry-After")?.time
+    }
+}
@@ -0,0 +1,227 @@
+package com.bearmod.loader.network
+
+import android.util.Log
+import com.bearmod.loader.data.api.KeyAuthApiService
+import com.bearmod.loader.data.model.AppInfo
+import com.bearmod.loader.data.model.KeyAuthResponse
+import com.bearmod.loader.metrics.LatencyRecorder
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
+import retrofit2.Response
+import java.io.IOException
+import java.net.SocketTimeoutException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.cancellation.CancellationException
+import kotlin.random.Random
+
+/**
+ * KeyAuthApiService decorator adding deadlines, retries and a circuit breaker.
+ *
+ * - Every call runs under a per-attempt timeout and an overall deadline well below the
+ *   30 s OkHttp timeouts; exceeding either surfaces as a [SocketTimeoutException].
+ * - Only idempotent calls (check, fetchstats) are retried, on I/O errors, timeouts and
+ *   HTTP 5xx/429, with full-jitter exponential backoff. init, license and log change
+ *   server-side state and run once.
+ * - Transport failures and 5xx count against a shared [CircuitBreaker]; while it is open,
+ *   calls fail immediately with [CircuitOpenException] instead of waiting on a dead server.
+ *
+ * Attempt and call latencies are recorded in [metrics] as `<op>.attempt` / `<op>.call`;
+ * attempt, retry, failure and rejection counts are available from [counters].
+ */
+class ResilientKeyAuthApi(
+    private val delegate: KeyAuthApiService,
+    private val policies: Policies = Policies(),
+    private val breaker: CircuitBreaker = CircuitBreaker(),
+    private val baseBackoffMs: Long = 100L,
+    private val maxBackoffMs: Long = 1_000L,
+    private val random: Random = Random.Default
+) : KeyAuthApiService {
+
+    companion object {
+        private const val TAG = "ResilientKeyAuthApi"
+    }
+
+    /**
+     * Time limits for one operation. [maxAttempts] > 1 only for idempotent calls.
+     */
+    data class CallPolicy(
+        val attemptTimeoutMs: Long,
+        val deadlineMs: Long,
+        val maxAttempts: Int = 1
+    )
+
+    data class Policies(
+        val init: CallPolicy = CallPolicy(attemptTimeoutMs = 5_000L, deadlineMs = 5_000L),
+        val license: CallPolicy = CallPolicy(attemptTimeoutMs = 8_000L, deadlineMs = 8_000L),
+        val checkSession: CallPolicy = CallPolicy(attemptTimeoutMs = 2_000L, deadlineMs = 3_000L, maxAttempts = 3),
+        val fetchStats: CallPolicy = CallPolicy(attemptTimeoutMs = 2_000L, deadlineMs = 3_000L, maxAttempts = 3),
+        val log: CallPolicy = CallPolicy(attemptTimeoutMs = 3_000L, deadlineMs = 3_000L)
+    )
+
+    /**
+     * Thrown without contacting the server while the circuit breaker is open.
+     */
+    class CircuitOpenException(retryInMs: Long) :
+        IOException("KeyAuth server unavailable, retry in ${(retryInMs + 999) / 1000}s")
+
+    val metrics = LatencyRecorder()
+    private val counts = ConcurrentHashMap<String, AtomicLong>()
+
+    val circuitState: CircuitBreaker.State
+        get() = breaker.currentState
+
+    override suspend fun init(
+        type: String,
+        version: String,
+        name: String,
+        ownerId: String,
+        hash: String?
+    ): Response<KeyAuthResponse> = call("init", policies.init) {
+        delegate.init(type, version, name, ownerId, hash)
+    }
+
+    override suspend fun license(
+        type: String,
+        licenseKey: String,
+        hwid: String,
+        sessionId: String,
+        name: String,
+        ownerId: String
+    ): Response<KeyAuthResponse> = call("license", policies.license) {
+        delegate.license(type, licenseKey, hwid, sessionId, name, ownerId)
+    }
+
+    override suspend fun checkSession(
+        type: String,
+        sessionId: String,
+        name: String,
+        ownerId: String
+    ): Response<KeyAuthResponse> = call("check", policies.checkSession) {
+        delegate.checkSession(type, sessionId, name, ownerId)
+    }
+
+    override suspend fun fetchStats(
+        type: String,
+        sessionId: String,
+        name: String,
+        ownerId: String
+    ): Response<AppInfo> = call("fetchstats", policies.fetchStats) {
+        delegate.fetchStats(type, sessionId, name, ownerId)
+    }
+
+    override suspend fun log(
+        type: String,
+        pcUser: String,
+        message: String,
+        sessionId: String,
+        name: String,
+        ownerId: String
+    ): Response<KeyAuthResponse> = call("log", policies.log) {
+        delegate.log(type, pcUser, message, sessionId, name, ownerId)
+    }
+
+    /**
+     * Snapshot of the attempt/retry/failure/rejection counters, sorted by name.
+     */
+    fun counters(): Map<String, Long> = counts.keys.sorted().associateWith { counts[it]?.get() ?: 0L }
+
+    fun logMetrics() {
+        for ((name, stats) in metrics.snapshots()) Log.i(TAG, "$name: ${stats.format()}")
+        for ((name, count) in counters()) Log.i(TAG, "$name: $count")
+        Log.i(TAG, "circuit: ${breaker.currentState}")
+    }
+
+    private suspend fun <T> call(op: String, policy: CallPolicy, block: suspend () -> Response<T>): Response<T> {
+        if (!breaker.tryAcquire()) {
+            count("$op.rejected")
+            throw CircuitOpenException(breaker.remainingOpenMillis())
+        }
+
+        val start = System.nanoTime()
+        var reported = false
+        try {
+            return withTimeout(policy.deadlineMs) {
+                callWithRetries(op, policy, block)
+            }.also {
+                reported = true
+            }
+        } catch (e: TimeoutCancellationException) {
+            breaker.onFailure()
+            reported = true
+            count("$op.failures")
+            throw SocketTimeoutException("KeyAuth $op exceeded its ${policy.deadlineMs}ms deadline")
+        } catch (e: CallFailedException) {
+            reported = true
+            throw e.cause ?: e
+        } finally {
+            if (!reported) breaker.onAbandoned()
+            metrics.record("$op.call", System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * Runs the attempts and reports the final outcome to the breaker. Failures that were
+     * already reported are wrapped in [CallFailedException] so [call] does not report twice.
+     */
+    private suspend fun <T> callWithRetries(op: String, policy: CallPolicy, block: suspend () -> Response<T>): Response<T> {
+        var attempt = 0
+        while (true) {
+            attempt++
+            count("$op.attempts")
+
+            val attemptStart = System.nanoTime()
+            var response: Response<T>? = null
+            var failure: IOException? = null
+            try {
+                response = withTimeoutOrNull(policy.attemptTimeoutMs) { block() }
+                if (response == null) {
+                    failure = SocketTimeoutException("KeyAuth $op attempt timed out after ${policy.attemptTimeoutMs}ms")
+                }
+            } catch (e: IOException) {
+                failure = e
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                // The server answered with something unusable (e.g. malformed body): not a transport failure
+                breaker.onSuccess()
+                throw CallFailedException(e)
+            } finally {
+                metrics.record("$op.attempt", System.nanoTime() - attemptStart)
+            }
+
+            val retryable = failure != null || response!!.code() >= 500 || response.code() == 429
+            if (!retryable) {
+                breaker.onSuccess()
+                return response!!
+            }
+
+            if (attempt >= policy.maxAttempts) {
+                count("$op.failures")
+                if (failure != null || response!!.code() >= 500) breaker.onFailure() else breaker.onSuccess()
+                // HTTP errors are returned so the repository can report the status code
+                if (failure != null) throw CallFailedException(failure)
+                return response!!
+            }
+
+            count("$op.retries")
+            delay(backoffMillis(attempt))
+        }
+    }
+
+    /**
+     * Full jitter: uniform in [0, min(maxBackoffMs, baseBackoffMs * 2^(attempt - 1))].
+     */
+    private fun backoffMillis(attempt: Int): Long {
+        val ceiling = (baseBackoffMs shl (attempt - 1).coerceAtMost(20)).coerceAtMost(maxBackoffMs)
+        return random.nextLong(ceiling + 1)
+    }
+
+    private fun count(name: String) {
+        counts.getOrPut(name) { AtomicLong() }.incrementAndGet()
+    }
+
+    private class CallFailedException(cause: Exception) : Exception(cause)
+}
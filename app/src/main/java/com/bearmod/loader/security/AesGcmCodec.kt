@@ -0,0 +1,41 @@
+package com.bearmod.loader.security
+
+import javax.crypto.Cipher
+import javax.crypto.SecretKey
+import javax.crypto.spec.GCMParameterSpec
+
+/**
+ * AES-GCM framing used by the keystore providers: `IV (12 bytes) || ciphertext || tag`.
+ *
+ * Kept free of Android APIs so the same code can be exercised with a software key.
+ */
+object AesGcmCodec {
+
+    const val TRANSFORMATION = "AES/GCM/NoPadding"
+    const val IV_LENGTH = 12
+    const val TAG_LENGTH = 16
+
+    /**
+     * Encrypt [plaintext] with a provider-generated IV and return IV and ciphertext in one array.
+     */
+    @JvmStatic
+    fun encrypt(cipher: Cipher, key: SecretKey, plaintext: ByteArray): ByteArray {
+        cipher.init(Cipher.ENCRYPT_MODE, key)
+        val iv = cipher.iv
+        val encrypted = cipher.doFinal(plaintext)
+        val combined = ByteArray(iv.size + encrypted.size)
+        System.arraycopy(iv, 0, combined, 0, iv.size)
+        System.arraycopy(encrypted, 0, combined, iv.size, encrypted.size)
+        return combined
+    }
+
+    /**
+     * Decrypt an array produced by [encrypt], or null if it is too short to hold an IV.
+     */
+    @JvmStatic
+    fun decrypt(cipher: Cipher, key: SecretKey, combined: ByteArray): ByteArray? {
+        if (combined.size <= IV_LENGTH) return null
+        cipher.init(Cipher.DECRYPT_MODE, key, GCMParameterSpec(TAG_LENGTH * 8, combined, 0, IV_LENGTH))
+        return cipher.doFinal(combined, IV_LENGTH, combined.size - IV_LENGTH)
+    }
+}
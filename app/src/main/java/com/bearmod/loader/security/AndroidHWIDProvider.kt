@@ -2,6 +2,8 @@ package com.bearmod.loader.security
 
 import android.content.Context
 import android.os.Build
+import com.bearmod.loader.di.AppContainer
+import com.bearmod.loader.utils.Hex
 import com.bearmod.loader.utils.SecurePreferences
 import java.security.MessageDigest
 
@@ -10,8 +12,15 @@ import java.security.MessageDigest
  * Ported from the Java HWID sample: generates an MD5 hash from stable
  * device properties and returns the hex string. Persists the value via
  * SecurePreferences so it survives app reinstalls.
+ *
+ * Without [preferences] the app's shared instance is used, resolved on first use so that
+ * constructing the provider makes no Android calls.
  */
-class AndroidHWIDProvider(private val context: Context, private val securePreferences: SecurePreferences = SecurePreferences(context)) : HWIDProvider {
+class AndroidHWIDProvider(private val context: Context, preferences: SecurePreferences? = null) : HWIDProvider {
+
+    private val securePreferences: SecurePreferences by lazy {
+        preferences ?: AppContainer.from(context).securePreferences
+    }
 
     override fun getHWID(): String {
         // Prefer previously stored HWID
@@ -55,14 +64,5 @@ class AndroidHWIDProvider(private val context: Context, private val securePrefer
         }
     }
 
-    private fun bytesToHex(bytes: ByteArray): String {
-        val hexArray = "0123456789ABCDEF".toCharArray()
-        val hexChars = CharArray(bytes.size * 2)
-        for (j in bytes.indices) {
-            val v = bytes[j].toInt() and 0xFF
-            hexChars[j * 2] = hexArray[v ushr 4]
-            hexChars[j * 2 + 1] = hexArray[v and 0x0F]
-        }
-        return String(hexChars)
-    }
+    private fun bytesToHex(bytes: ByteArray): String = Hex.encode(bytes, upperCase = true)
 }
@@ -1,27 +1,55 @@
 package com.bearmod.loader.security
 
-import android.os.Build
 import android.security.keystore.KeyGenParameterSpec
+import android.security.keystore.KeyPermanentlyInvalidatedException
 import android.security.keystore.KeyProperties
 import android.util.Log
+import com.bearmod.loader.metrics.LatencyRecorder
+import java.security.InvalidKeyException
 import java.security.KeyStore
+import java.util.concurrent.ConcurrentHashMap
 import javax.crypto.Cipher
 import javax.crypto.KeyGenerator
 import javax.crypto.SecretKey
-import javax.crypto.spec.GCMParameterSpec
 
-class AndroidKeystoreProvider : KeystoreProvider {
+/**
+ * KeystoreProvider backed by the AndroidKeyStore.
+ *
+ * With [cacheHandles] enabled (the default) the loaded KeyStore and the SecretKey handle per
+ * alias are kept for the lifetime of the process, and each thread reuses its own Cipher
+ * instance, so encrypt/decrypt only pay for the actual cipher operation. Cached handles are
+ * dropped when the key is invalidated. With [cacheHandles] disabled every call performs the
+ * full KeyStore.getInstance/load/getKey/Cipher.getInstance sequence, which is kept for
+ * comparison: both modes record per-operation latency in [timings].
+ */
+class AndroidKeystoreProvider @JvmOverloads constructor(
+    private val cacheHandles: Boolean = true
+) : KeystoreProvider {
+
     companion object {
         private const val TAG = "AndroidKeystoreProvider"
         private const val PROVIDER = "AndroidKeyStore"
-        private const val TRANSFORMATION = "AES/GCM/NoPadding"
-        private const val GCM_TAG_LENGTH = 16
+        private const val TRANSFORMATION = AesGcmCodec.TRANSFORMATION
+
+        /** Per-operation latency for all provider instances, suffixed with ".cached"/".uncached". */
+        @JvmStatic
+        val timings = LatencyRecorder()
+
+        // Keystore entries are process-wide, so handles are shared by all provider instances
+        @Volatile
+        private var loadedKeyStore: KeyStore? = null
+        private val keyCache = ConcurrentHashMap<String, SecretKey>()
+        private val replacedKeys = ConcurrentHashMap.newKeySet<String>()
+        private val threadCipher = object : ThreadLocal<Cipher>() {
+            override fun initialValue(): Cipher = Cipher.getInstance(TRANSFORMATION)
+        }
     }
 
-    override fun ensureKey(alias: String): Boolean {
+    private val mode = if (cacheHandles) "cached" else "uncached"
+
+    override fun ensureKey(alias: String): Boolean = timings.time("ensureKey.$mode") {
         try {
-            val keyStore = KeyStore.getInstance(PROVIDER)
-            keyStore.load(null)
+            val keyStore = keyStore()
             if (!keyStore.containsAlias(alias)) {
                 val keyGenerator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, PROVIDER)
                 val spec = KeyGenParameterSpec.Builder(
@@ -34,52 +62,103 @@ class AndroidKeystoreProvider : KeystoreProvider {
                     .setUserAuthenticationRequired(false)
                     .build()
                 keyGenerator.init(spec)
-                keyGenerator.generateKey()
+                val generated = keyGenerator.generateKey()
+                if (cacheHandles) keyCache[alias] = generated
+                replacedKeys.add(alias)
                 Log.d(TAG, "Generated new keystore key: $alias")
             }
-            return true
+            true
         } catch (e: Exception) {
             Log.e(TAG, "Failed to ensure key: $alias", e)
-            return false
+            false
         }
     }
 
-    override fun encrypt(alias: String, plaintext: ByteArray): ByteArray? {
+    override fun encrypt(alias: String, plaintext: ByteArray): ByteArray? = timings.time("encrypt.$mode") {
         try {
-            val keyStore = KeyStore.getInstance(PROVIDER)
-            keyStore.load(null)
-            val secretKey = keyStore.getKey(alias, null) as? SecretKey ?: return null
-            val cipher = Cipher.getInstance(TRANSFORMATION)
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey)
-            val iv = cipher.iv
-            val encrypted = cipher.doFinal(plaintext)
-            val combined = ByteArray(iv.size + encrypted.size)
-            System.arraycopy(iv, 0, combined, 0, iv.size)
-            System.arraycopy(encrypted, 0, combined, iv.size, encrypted.size)
-            return combined
+            val secretKey = secretKey(alias) ?: return@time null
+            AesGcmCodec.encrypt(cipher(), secretKey, plaintext)
+        } catch (e: KeyPermanentlyInvalidatedException) {
+            handleInvalidatedKey(alias, e)
+            null
+        } catch (e: InvalidKeyException) {
+            // The entry may have been deleted or replaced behind our back; reload on next use
+            invalidate(alias)
+            Log.e(TAG, "Encryption failed with invalid key: $alias", e)
+            null
         } catch (e: Exception) {
             Log.e(TAG, "Encryption failed", e)
-            return null
+            null
         }
     }
 
-    override fun decrypt(alias: String, combined: ByteArray): ByteArray? {
+    override fun decrypt(alias: String, combined: ByteArray): ByteArray? = timings.time("decrypt.$mode") {
         try {
-            val keyStore = KeyStore.getInstance(PROVIDER)
-            keyStore.load(null)
-            val secretKey = keyStore.getKey(alias, null) as? SecretKey ?: return null
-            val ivLength = 12 // GCM IV length
-            val iv = ByteArray(ivLength)
-            val encrypted = ByteArray(combined.size - ivLength)
-            System.arraycopy(combined, 0, iv, 0, ivLength)
-            System.arraycopy(combined, ivLength, encrypted, 0, encrypted.size)
-            val cipher = Cipher.getInstance(TRANSFORMATION)
-            val spec = GCMParameterSpec(GCM_TAG_LENGTH * 8, iv)
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, spec)
-            return cipher.doFinal(encrypted)
+            if (combined.size <= AesGcmCodec.IV_LENGTH) return@time null
+            val secretKey = secretKey(alias) ?: return@time null
+            AesGcmCodec.decrypt(cipher(), secretKey, combined)
+        } catch (e: KeyPermanentlyInvalidatedException) {
+            handleInvalidatedKey(alias, e)
+            null
+        } catch (e: InvalidKeyException) {
+            invalidate(alias)
+            Log.e(TAG, "Decryption failed with invalid key: $alias", e)
+            null
         } catch (e: Exception) {
             Log.e(TAG, "Decryption failed", e)
-            return null
+            null
+        }
+    }
+
+    override fun consumeKeyReplaced(alias: String): Boolean = replacedKeys.remove(alias)
+
+    /**
+     * Drop the cached handle for [alias] so the next operation reloads it from the keystore.
+     */
+    fun invalidate(alias: String) {
+        keyCache.remove(alias)
+    }
+
+    private fun keyStore(): KeyStore {
+        if (!cacheHandles) {
+            return timings.time("keystoreLoad.$mode") {
+                KeyStore.getInstance(PROVIDER).apply { load(null) }
+            }
+        }
+        loadedKeyStore?.let { return it }
+        return synchronized(keyCache) {
+            loadedKeyStore ?: timings.time("keystoreLoad.$mode") {
+                KeyStore.getInstance(PROVIDER).apply { load(null) }
+            }.also { loadedKeyStore = it }
+        }
+    }
+
+    private fun secretKey(alias: String): SecretKey? {
+        if (cacheHandles) keyCache[alias]?.let { return it }
+        val key = timings.time("getKey.$mode") {
+            keyStore().getKey(alias, null) as? SecretKey
+        } ?: return null
+        if (cacheHandles) keyCache[alias] = key
+        return key
+    }
+
+    private fun cipher(): Cipher {
+        return if (cacheHandles) threadCipher.get()!! else Cipher.getInstance(TRANSFORMATION)
+    }
+
+    /**
+     * A permanently invalidated key can never decrypt again. Delete the entry and create a
+     * fresh key so future writes succeed; values encrypted under the old key are lost.
+     */
+    private fun handleInvalidatedKey(alias: String, e: Exception) {
+        Log.e(TAG, "Keystore key permanently invalidated: $alias", e)
+        invalidate(alias)
+        replacedKeys.add(alias)
+        try {
+            keyStore().deleteEntry(alias)
+        } catch (deleteError: Exception) {
+            Log.w(TAG, "Failed to delete invalidated key: $alias", deleteError)
         }
+        ensureKey(alias)
     }
 }
@@ -0,0 +1,194 @@
+package com.bearmod.loader.security
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.util.Base64
+import android.util.Log
+import java.security.SecureRandom
+import java.util.concurrent.ConcurrentHashMap
+import javax.crypto.AEADBadTagException
+import javax.crypto.Cipher
+import javax.crypto.KeyGenerator
+import javax.crypto.SecretKey
+import javax.crypto.spec.GCMParameterSpec
+import javax.crypto.spec.SecretKeySpec
+
+/**
+ * Envelope-encryption KeystoreProvider.
+ *
+ * Each alias gets a software AES-256 data-encryption key (DEK). The DEK is wrapped by the
+ * hardware-backed key of the same alias in [delegate] and persisted in its own preferences
+ * file; it is unwrapped once per process and then held only in memory. Field encryption is
+ * software AES-GCM, so the keystore is touched once per process instead of once per field.
+ *
+ * Envelope ciphertext is `MAGIC(2) + IV(12) + ciphertext + tag`. Values written before the
+ * switch (plain `IV + ciphertext` under the keystore key) still decrypt through [delegate];
+ * [isEnvelopeCiphertext] lets callers find and re-encrypt them.
+ */
+class EnvelopeKeystoreProvider(
+    context: Context,
+    private val delegate: KeystoreProvider = AndroidKeystoreProvider()
+) : KeystoreProvider {
+
+    companion object {
+        private const val TAG = "EnvelopeKeystoreProvider"
+        private const val PREFS_NAME = "keyauth_envelope_keys"
+        private const val KEY_PREFIX_WRAPPED_DEK = "wrapped_dek_"
+        private const val TRANSFORMATION = "AES/GCM/NoPadding"
+        private const val DEK_SIZE_BITS = 256
+        private const val GCM_IV_LENGTH = 12
+        private const val GCM_TAG_LENGTH = 16
+        private val MAGIC = byteArrayOf(0x45, 0x31) // "E1"
+
+        private val secureRandom = SecureRandom()
+        private val threadCipher = object : ThreadLocal<Cipher>() {
+            override fun initialValue(): Cipher = Cipher.getInstance(TRANSFORMATION)
+        }
+
+        /** True if [data] carries the envelope header (as opposed to legacy keystore ciphertext). */
+        @JvmStatic
+        fun isEnvelopeCiphertext(data: ByteArray): Boolean {
+            return data.size > MAGIC.size + GCM_IV_LENGTH + GCM_TAG_LENGTH - 1 &&
+                data[0] == MAGIC[0] && data[1] == MAGIC[1]
+        }
+    }
+
+    private val keyPrefs: SharedPreferences by lazy {
+        (context.applicationContext ?: context).getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+    }
+
+    // Unwrapped DEKs, process memory only
+    private val deks = ConcurrentHashMap<String, SecretKey>()
+    private val resetAliases = ConcurrentHashMap.newKeySet<String>()
+
+    // Per-field costs go to the same recorder as the keystore provider for side-by-side comparison
+    private val timings = AndroidKeystoreProvider.timings
+
+    override fun ensureKey(alias: String): Boolean {
+        if (!delegate.ensureKey(alias)) return false
+        return dek(alias) != null
+    }
+
+    override fun encrypt(alias: String, plaintext: ByteArray): ByteArray? = timings.time("encrypt.envelope") {
+        try {
+            val key = dek(alias) ?: return@time null
+            val iv = ByteArray(GCM_IV_LENGTH).also { secureRandom.nextBytes(it) }
+            val cipher = threadCipher.get()!!
+            cipher.init(Cipher.ENCRYPT_MODE, key, GCMParameterSpec(GCM_TAG_LENGTH * 8, iv))
+            val encrypted = cipher.doFinal(plaintext)
+
+            val combined = ByteArray(MAGIC.size + iv.size + encrypted.size)
+            System.arraycopy(MAGIC, 0, combined, 0, MAGIC.size)
+            System.arraycopy(iv, 0, combined, MAGIC.size, iv.size)
+            System.arraycopy(encrypted, 0, combined, MAGIC.size + iv.size, encrypted.size)
+            combined
+        } catch (e: Exception) {
+            Log.e(TAG, "Envelope encryption failed", e)
+            null
+        }
+    }
+
+    override fun decrypt(alias: String, combined: ByteArray): ByteArray? {
+        if (isEnvelopeCiphertext(combined)) {
+            val plaintext = timings.time("decrypt.envelope") { decryptEnvelope(alias, combined) }
+            if (plaintext != null) return plaintext
+            // A legacy IV can start with the magic bytes by chance; the GCM tag tells them apart
+        }
+        return delegate.decrypt(alias, combined)
+    }
+
+    private fun decryptEnvelope(alias: String, combined: ByteArray): ByteArray? {
+        return try {
+            val key = dek(alias) ?: return null
+            val cipher = threadCipher.get()!!
+            cipher.init(
+                Cipher.DECRYPT_MODE,
+                key,
+                GCMParameterSpec(GCM_TAG_LENGTH * 8, combined, MAGIC.size, GCM_IV_LENGTH)
+            )
+            val offset = MAGIC.size + GCM_IV_LENGTH
+            cipher.doFinal(combined, offset, combined.size - offset)
+        } catch (e: AEADBadTagException) {
+            null
+        } catch (e: Exception) {
+            Log.e(TAG, "Envelope decryption failed", e)
+            null
+        }
+    }
+
+    /**
+     * True once after the DEK for [alias] was replaced because its wrapping key is gone for
+     * good; values encrypted under the old DEK (or directly under the old keystore key) are
+     * unreadable and should be removed.
+     */
+    fun consumeDataKeyReset(alias: String): Boolean = resetAliases.remove(alias)
+
+    /**
+     * Returns the in-memory DEK for [alias], unwrapping or generating it on first use.
+     *
+     * A new DEK is generated only when none is stored, or when [delegate] confirms the wrapping
+     * key was replaced. Any other unwrap failure (a transient keystore or binder error) returns
+     * null without caching, so the stored DEK is tried again on the next call.
+     */
+    private fun dek(alias: String): SecretKey? {
+        deks[alias]?.let { return it }
+        synchronized(deks) {
+            deks[alias]?.let { return it }
+            val wrapped = keyPrefs.getString(KEY_PREFIX_WRAPPED_DEK + alias, null)
+            val key = if (wrapped == null) {
+                generateAndStoreDek(alias).also { delegate.consumeKeyReplaced(alias) }
+            } else {
+                unwrapStoredDek(alias, wrapped) ?: if (delegate.consumeKeyReplaced(alias)) {
+                    // Data under the old DEK is unrecoverable either way
+                    Log.w(TAG, "Wrapping key for $alias was replaced, generating a new DEK")
+                    generateAndStoreDek(alias)?.also { resetAliases.add(alias) }
+                } else {
+                    Log.w(TAG, "Stored DEK for $alias could not be unwrapped, will retry")
+                    null
+                }
+            } ?: return null
+            deks[alias] = key
+            return key
+        }
+    }
+
+    private fun unwrapStoredDek(alias: String, wrapped: String): SecretKey? {
+        return timings.time("unwrapDek.envelope") {
+            try {
+                delegate.decrypt(alias, Base64.decode(wrapped, Base64.NO_WRAP))
+                    ?.let { raw -> SecretKeySpec(raw, "AES").also { raw.fill(0) } }
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to unwrap DEK for $alias", e)
+                null
+            }
+        }
+    }
+
+    private fun generateAndStoreDek(alias: String): SecretKey? {
+        return try {
+            val generator = KeyGenerator.getInstance("AES")
+            generator.init(DEK_SIZE_BITS, secureRandom)
+            val raw = generator.generateKey().encoded
+            val wrapped = delegate.encrypt(alias, raw)
+            if (wrapped == null) {
+                raw.fill(0)
+                Log.e(TAG, "Failed to wrap new DEK for $alias")
+                return null
+            }
+            // commit(): the wrapped DEK must be durable before anything is encrypted under it
+            val stored = keyPrefs.edit()
+                .putString(KEY_PREFIX_WRAPPED_DEK + alias, Base64.encodeToString(wrapped, Base64.NO_WRAP))
+                .commit()
+            if (!stored) {
+                raw.fill(0)
+                Log.e(TAG, "Failed to persist wrapped DEK for $alias")
+                return null
+            }
+            Log.d(TAG, "Generated new data-encryption key for $alias")
+            SecretKeySpec(raw, "AES").also { raw.fill(0) }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to generate DEK for $alias", e)
+            null
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.bearmod.loader.security;
 
 import android.os.Build;
 
+import com.bearmod.loader.utils.Hex;
+
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -12,8 +14,6 @@ import java.security.NoSuchAlgorithmException;
  */
 public class HWID {
 
-    private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
-
     /**
      * Get hardware ID
      * @return Hardware ID as hexadecimal string
@@ -64,12 +64,6 @@ public class HWID {
      * @return Hexadecimal string
      */
     public static String bytesToHex(byte[] bytes) {
-        char[] hexChars = new char[bytes.length * 2];
-        for (int j = 0; j < bytes.length; j++) {
-            int v = bytes[j] & 0xFF;
-            hexChars[j * 2] = hexArray[v >>> 4];
-            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
-        }
-        return new String(hexChars);
+        return Hex.encode(bytes, true);
     }
 }
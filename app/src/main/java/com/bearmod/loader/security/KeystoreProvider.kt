@@ -13,4 +13,11 @@ interface KeystoreProvider {
 
     /** Decrypt combined IV + ciphertext using the key identified by [alias]. Returns plaintext bytes or null on error. */
     fun decrypt(alias: String, combined: ByteArray): ByteArray?
+
+    /**
+     * True once after the key for [alias] was replaced (permanently invalidated, or missing and
+     * generated again), so nothing encrypted under the old key can be decrypted any more.
+     * A plain [decrypt] failure does not count.
+     */
+    fun consumeKeyReplaced(alias: String): Boolean = false
 }
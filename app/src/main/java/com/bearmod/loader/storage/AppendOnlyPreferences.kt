@@ -0,0 +1,480 @@
+package com.bearmod.loader.storage
+
+import android.content.SharedPreferences
+import android.os.Handler
+import android.os.Looper
+import android.util.Log
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.WeakHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.zip.CRC32
+
+/**
+ * SharedPreferences backed by a compact binary append-only log instead of an XML file.
+ *
+ * Each editor commit/apply appends one CRC-checked record holding the whole batch, so a write
+ * costs the size of the change rather than a full-file rewrite, and a torn record at the tail
+ * is discarded as a unit on the next load. The log is read through a memory-mapped buffer on a
+ * background thread as soon as the store is opened; accessors block only until that load
+ * finishes. Once the log has grown to twice its last compacted size it is rewritten as a
+ * single snapshot record.
+ *
+ * File layout: `MAGIC(4)` followed by records of `length(4) + crc32(4) + payload`.
+ */
+class AppendOnlyPreferences private constructor(
+    private val file: File,
+    private val compactMinBytes: Long
+) : SharedPreferences {
+
+    companion object {
+        private const val TAG = "AppendOnlyPreferences"
+        private val MAGIC = byteArrayOf(0x42, 0x4C, 0x50, 0x31) // "BLP1"
+        private const val RECORD_HEADER_SIZE = 8
+        private const val DEFAULT_COMPACT_MIN_BYTES = 32 * 1024L
+
+        private const val OP_PUT_STRING: Int = 1
+        private const val OP_PUT_INT: Int = 2
+        private const val OP_PUT_LONG: Int = 3
+        private const val OP_PUT_FLOAT: Int = 4
+        private const val OP_PUT_BOOLEAN: Int = 5
+        private const val OP_PUT_STRING_SET: Int = 6
+        private const val OP_REMOVE: Int = 7
+        private const val OP_CLEAR: Int = 8
+
+        // Marks a removal in an editor's pending changes
+        private val REMOVED = Any()
+
+        // Loads and appends for every store run on one thread, which also keeps writes ordered
+        private val diskExecutor: ExecutorService = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, TAG).apply { isDaemon = true }
+        }
+
+        private val instances = HashMap<String, AppendOnlyPreferences>()
+
+        /**
+         * Returns the process-wide store for [file], starting its asynchronous load on first use.
+         */
+        @JvmStatic
+        fun open(file: File): AppendOnlyPreferences = synchronized(instances) {
+            instances.getOrPut(file.absolutePath) { newInstance(file) }
+        }
+
+        /** Creates an uncached instance; tests use this to simulate a process restart. */
+        internal fun newInstance(file: File, compactMinBytes: Long = DEFAULT_COMPACT_MIN_BYTES): AppendOnlyPreferences {
+            return AppendOnlyPreferences(file, compactMinBytes).also { store ->
+                diskExecutor.execute { store.loadFromDisk() }
+            }
+        }
+    }
+
+    private sealed class Change {
+        class Put(val key: String, val value: Any) : Change()
+        class Remove(val key: String) : Change()
+        object Clear : Change()
+    }
+
+    private class Batch(val changes: List<Change>, val changedKeys: List<String>, val cleared: Boolean)
+
+    private val lock = Any()
+    private val values = HashMap<String, Any>() // guarded by lock
+    private val loaded = CountDownLatch(1)
+
+    // Disk-thread state
+    private var fileLength = 0L
+    private var compactedLength = 0L
+
+    private val listeners = WeakHashMap<SharedPreferences.OnSharedPreferenceChangeListener, Any>()
+    private val mainHandler by lazy { Handler(Looper.getMainLooper()) }
+
+    // ==================== LOADING ====================
+
+    private fun loadFromDisk() {
+        try {
+            file.parentFile?.mkdirs()
+            if (!file.exists() || file.length() < MAGIC.size) {
+                writeSnapshot(emptyMap())
+                return
+            }
+
+            var validEnd = MAGIC.size.toLong()
+            val loadedValues = HashMap<String, Any>()
+            RandomAccessFile(file, "r").use { raf ->
+                val size = raf.length()
+                val buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                val magic = ByteArray(MAGIC.size).also { buffer.get(it) }
+                if (!magic.contentEquals(MAGIC)) {
+                    throw IOException("Unrecognized file header")
+                }
+
+                while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                    val length = buffer.getInt()
+                    val crc = buffer.getInt()
+                    if (length <= 0 || length > buffer.remaining()) break
+                    val payload = ByteArray(length).also { buffer.get(it) }
+                    if (crc32(payload) != crc) break
+                    // A record that checks out but cannot be decoded ends the log like a torn one
+                    val changes = decodeOrNull(payload) ?: break
+                    changes.forEach { applyChange(loadedValues, it) }
+                    validEnd = buffer.position().toLong()
+                }
+                fileLength = size
+            }
+
+            if (validEnd < fileLength) {
+                // Torn, corrupt or undecodable tail: drop it as a unit and keep earlier records
+                Log.w(TAG, "Discarding ${fileLength - validEnd} trailing bytes in ${file.name}")
+                RandomAccessFile(file, "rw").use { it.setLength(validEnd) }
+                fileLength = validEnd
+            }
+            compactedLength = fileLength
+
+            synchronized(lock) {
+                values.clear()
+                values.putAll(loadedValues)
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load ${file.name}, starting empty", e)
+            file.renameTo(File(file.path + ".corrupt"))
+            try {
+                writeSnapshot(emptyMap())
+            } catch (writeError: IOException) {
+                Log.e(TAG, "Failed to recreate ${file.name}", writeError)
+            }
+        } finally {
+            loaded.countDown()
+        }
+    }
+
+    private fun awaitLoaded() {
+        var interrupted = false
+        while (true) {
+            try {
+                loaded.await()
+                break
+            } catch (e: InterruptedException) {
+                interrupted = true
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt()
+    }
+
+    // ==================== READS ====================
+
+    override fun getAll(): MutableMap<String, *> {
+        awaitLoaded()
+        return synchronized(lock) { HashMap(values) }
+    }
+
+    override fun getString(key: String, defValue: String?): String? = read(key) as? String ?: defValue
+
+    @Suppress("UNCHECKED_CAST")
+    override fun getStringSet(key: String, defValues: MutableSet<String>?): MutableSet<String>? {
+        val value = read(key) as? Set<String> ?: return defValues
+        return HashSet(value)
+    }
+
+    override fun getInt(key: String, defValue: Int): Int = read(key) as? Int ?: defValue
+
+    override fun getLong(key: String, defValue: Long): Long = read(key) as? Long ?: defValue
+
+    override fun getFloat(key: String, defValue: Float): Float = read(key) as? Float ?: defValue
+
+    override fun getBoolean(key: String, defValue: Boolean): Boolean = read(key) as? Boolean ?: defValue
+
+    override fun contains(key: String): Boolean {
+        awaitLoaded()
+        return synchronized(lock) { values.containsKey(key) }
+    }
+
+    private fun read(key: String): Any? {
+        awaitLoaded()
+        return synchronized(lock) { values[key] }
+    }
+
+    // ==================== WRITES ====================
+
+    override fun edit(): SharedPreferences.Editor = EditorImpl()
+
+    private inner class EditorImpl : SharedPreferences.Editor {
+        private val pending = LinkedHashMap<String, Any>()
+        private var clear = false
+
+        private fun put(key: String, value: Any?) = apply {
+            synchronized(this) { pending[key] = value ?: REMOVED }
+        }
+
+        override fun putString(key: String, value: String?) = put(key, value)
+
+        override fun putStringSet(key: String, values: MutableSet<String>?) = put(key, values?.let { HashSet(it) })
+
+        override fun putInt(key: String, value: Int) = put(key, value)
+
+        override fun putLong(key: String, value: Long) = put(key, value)
+
+        override fun putFloat(key: String, value: Float) = put(key, value)
+
+        override fun putBoolean(key: String, value: Boolean) = put(key, value)
+
+        override fun remove(key: String) = put(key, null)
+
+        override fun clear() = apply {
+            synchronized(this) { clear = true }
+        }
+
+        override fun commit(): Boolean {
+            val batch = commitToMemory() ?: return true
+            notifyListeners(batch)
+            return try {
+                diskExecutor.submit<Boolean> { append(batch) }.get()
+            } catch (e: Exception) {
+                Log.e(TAG, "Commit to ${file.name} failed", e)
+                false
+            }
+        }
+
+        override fun apply() {
+            val batch = commitToMemory() ?: return
+            notifyListeners(batch)
+            diskExecutor.execute { append(batch) }
+        }
+
+        private fun commitToMemory(): Batch? {
+            awaitLoaded()
+            val (changesToApply, clearFirst) = synchronized(this) {
+                val snapshot = LinkedHashMap(pending)
+                val cleared = clear
+                pending.clear()
+                clear = false
+                snapshot to cleared
+            }
+            if (changesToApply.isEmpty() && !clearFirst) return null
+
+            val changes = ArrayList<Change>(changesToApply.size + 1)
+            val changedKeys = ArrayList<String>(changesToApply.size)
+            synchronized(lock) {
+                if (clearFirst) {
+                    changes.add(Change.Clear)
+                    applyChange(values, Change.Clear)
+                }
+                for ((key, value) in changesToApply) {
+                    val change = if (value === REMOVED) Change.Remove(key) else Change.Put(key, value)
+                    val before = values[key]
+                    applyChange(values, change)
+                    if (clearFirst || before != values[key]) {
+                        changes.add(change)
+                        changedKeys.add(key)
+                    }
+                }
+            }
+            if (changes.isEmpty()) return null
+            return Batch(changes, changedKeys, clearFirst)
+        }
+    }
+
+    private fun applyChange(target: MutableMap<String, Any>, change: Change) {
+        when (change) {
+            is Change.Put -> target[change.key] = change.value
+            is Change.Remove -> target.remove(change.key)
+            Change.Clear -> target.clear()
+        }
+    }
+
+    /**
+     * Append [batch] as one record and fsync. Runs on the disk thread.
+     */
+    private fun append(batch: Batch): Boolean {
+        return try {
+            val record = frame(encode(batch.changes))
+            FileOutputStream(file, true).use { out ->
+                out.write(record)
+                out.fd.sync()
+            }
+            fileLength += record.size
+            if (fileLength > compactMinBytes && fileLength > compactedLength * 2) {
+                compact()
+            }
+            true
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to append to ${file.name}", e)
+            false
+        }
+    }
+
+    /**
+     * Rewrite the log as a single snapshot record. The in-memory map may already contain batches
+     * still queued behind this one; replaying them on top of the snapshot yields the same state.
+     */
+    private fun compact() {
+        val snapshot = synchronized(lock) { HashMap(values) }
+        try {
+            writeSnapshot(snapshot)
+            Log.d(TAG, "Compacted ${file.name} to $fileLength bytes")
+        } catch (e: IOException) {
+            Log.w(TAG, "Compaction of ${file.name} failed, keeping the log", e)
+        }
+    }
+
+    private fun writeSnapshot(snapshot: Map<String, Any>) {
+        val temp = File(file.path + ".tmp")
+        val body = if (snapshot.isEmpty()) ByteArray(0) else frame(encode(snapshot.map { Change.Put(it.key, it.value) }))
+        FileOutputStream(temp).use { out ->
+            out.write(MAGIC)
+            out.write(body)
+            out.fd.sync()
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete()
+            throw IOException("Failed to replace ${file.name}")
+        }
+        fileLength = (MAGIC.size + body.size).toLong()
+        compactedLength = fileLength
+    }
+
+    // ==================== ENCODING ====================
+
+    private fun frame(payload: ByteArray): ByteArray {
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.size)
+            .putInt(payload.size)
+            .putInt(crc32(payload))
+            .put(payload)
+            .array()
+    }
+
+    private fun crc32(bytes: ByteArray): Int = CRC32().apply { update(bytes) }.value.toInt()
+
+    private fun encode(changes: List<Change>): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { out ->
+            out.writeInt(changes.size)
+            for (change in changes) {
+                when (change) {
+                    is Change.Put -> {
+                        val value = change.value
+                        out.writeByte(opFor(value))
+                        writeString(out, change.key)
+                        when (value) {
+                            is String -> writeString(out, value)
+                            is Int -> out.writeInt(value)
+                            is Long -> out.writeLong(value)
+                            is Float -> out.writeFloat(value)
+                            is Boolean -> out.writeBoolean(value)
+                            is Set<*> -> {
+                                out.writeInt(value.size)
+                                value.forEach { writeString(out, it as String) }
+                            }
+                        }
+                    }
+                    is Change.Remove -> {
+                        out.writeByte(OP_REMOVE)
+                        writeString(out, change.key)
+                    }
+                    Change.Clear -> out.writeByte(OP_CLEAR)
+                }
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    /**
+     * The changes in [payload], or null if it is not a record this version can read
+     */
+    private fun decodeOrNull(payload: ByteArray): List<Change>? =
+        try {
+            decode(payload)
+        } catch (e: Exception) {
+            Log.w(TAG, "Undecodable record in ${file.name}: ${e.message}")
+            null
+        }
+
+    private fun decode(payload: ByteArray): List<Change> {
+        DataInputStream(payload.inputStream()).use { input ->
+            val count = input.readInt()
+            if (count < 0) throw IOException("Negative change count $count")
+            val changes = ArrayList<Change>(minOf(count, payload.size))
+            repeat(count) {
+                val op = input.readUnsignedByte()
+                if (op == OP_CLEAR) {
+                    changes.add(Change.Clear)
+                    return@repeat
+                }
+                val key = readString(input)
+                changes.add(
+                    when (op) {
+                        OP_PUT_STRING -> Change.Put(key, readString(input))
+                        OP_PUT_INT -> Change.Put(key, input.readInt())
+                        OP_PUT_LONG -> Change.Put(key, input.readLong())
+                        OP_PUT_FLOAT -> Change.Put(key, input.readFloat())
+                        OP_PUT_BOOLEAN -> Change.Put(key, input.readBoolean())
+                        OP_PUT_STRING_SET -> Change.Put(key, HashSet<String>().apply {
+                            repeat(input.readInt()) { add(readString(input)) }
+                        })
+                        OP_REMOVE -> Change.Remove(key)
+                        else -> throw IOException("Unknown record op $op")
+                    }
+                )
+            }
+            return changes
+        }
+    }
+
+    private fun opFor(value: Any): Int = when (value) {
+        is String -> OP_PUT_STRING
+        is Int -> OP_PUT_INT
+        is Long -> OP_PUT_LONG
+        is Float -> OP_PUT_FLOAT
+        is Boolean -> OP_PUT_BOOLEAN
+        is Set<*> -> OP_PUT_STRING_SET
+        else -> throw IllegalArgumentException("Unsupported value type ${value.javaClass}")
+    }
+
+    private fun writeString(out: DataOutputStream, value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        out.writeInt(bytes.size)
+        out.write(bytes)
+    }
+
+    private fun readString(input: DataInputStream): String {
+        val length = input.readInt()
+        if (length < 0 || length > input.available()) throw IOException("Bad string length $length")
+        val bytes = ByteArray(length)
+        input.readFully(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    // ==================== LISTENERS ====================
+
+    override fun registerOnSharedPreferenceChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener) {
+        synchronized(listeners) { listeners[listener] = this }
+    }
+
+    override fun unregisterOnSharedPreferenceChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener) {
+        synchronized(listeners) { listeners.remove(listener) }
+    }
+
+    /**
+     * Notify on the main thread, as SharedPreferencesImpl does; a clear is reported as a null key.
+     */
+    private fun notifyListeners(batch: Batch) {
+        val targets = synchronized(listeners) { listeners.keys.toList() }
+        if (targets.isEmpty()) return
+        val notify = Runnable {
+            for (listener in targets) {
+                if (batch.cleared) listener.onSharedPreferenceChanged(this, null)
+                for (key in batch.changedKeys.asReversed()) {
+                    listener.onSharedPreferenceChanged(this, key)
+                }
+            }
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) notify.run() else mainHandler.post(notify)
+    }
+}
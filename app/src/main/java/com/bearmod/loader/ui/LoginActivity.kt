@@ -15,12 +15,14 @@ import androidx.lifecycle.ViewModelProvider
 import com.google.android.material.snackbar.Snackbar
 import com.bearmod.loader.R
 import com.bearmod.loader.databinding.ActivityLoginBinding
-import com.bearmod.loader.network.NetworkFactory
+import com.bearmod.loader.di.AppContainer
 import com.bearmod.loader.ui.login.LoginViewModel
 import com.bearmod.loader.data.model.SessionRestoreResult
 import com.bearmod.loader.data.model.AuthFlowState
 import com.bearmod.loader.utils.NetworkResult
 import com.bearmod.loader.utils.SecurePreferences
+import com.bearmod.loader.utils.SecurePreferencesAsync
+import com.bearmod.loader.utils.BitmapLoader
 import com.bearmod.loader.utils.PreferencesMigration
 import androidx.lifecycle.lifecycleScope
 import kotlinx.coroutines.launch
@@ -29,14 +31,18 @@ class LoginActivity : AppCompatActivity() {
     
     private lateinit var binding: ActivityLoginBinding
     private lateinit var securePreferences: com.bearmod.loader.utils.SecurePreferences
+    private lateinit var securePreferencesAsync: SecurePreferencesAsync
     private lateinit var sessionService: com.bearmod.loader.session.SessionService
+
+    // Set once stored preferences are loaded and KeyAuth initialization has been started
+    private var startupPrepared = false
     
     private val viewModel: LoginViewModel by viewModels {
         object : ViewModelProvider.Factory {
             @Suppress("UNCHECKED_CAST")
             override fun <T : ViewModel> create(modelClass: Class<T>): T {
-                val repository = NetworkFactory.createKeyAuthRepository(this@LoginActivity)
-                return LoginViewModel(repository) as T
+                val container = AppContainer.from(this@LoginActivity)
+                return LoginViewModel(container.keyAuthRepository, container.activityLogUploader) as T
             }
         }
     }
@@ -46,35 +52,50 @@ class LoginActivity : AppCompatActivity() {
         binding = ActivityLoginBinding.inflate(layoutInflater)
         setContentView(binding.root)
         
-    securePreferences = com.bearmod.loader.utils.SecurePreferences(this)
+        val appContainer = AppContainer.from(this)
+    securePreferences = appContainer.securePreferences
+    securePreferencesAsync = appContainer.securePreferencesAsync
     sessionService = com.bearmod.loader.session.SessionService(securePreferences)
 
-        // Migrate preferences from old implementation if needed
-        PreferencesMigration.migrateIfNeeded(this, securePreferences)
-
-    // Clear any corrupted session data that might cause "Session not found" errors
-    // Use SessionService to centralize the clearing sequence
-    sessionService.clearCorruptedSession()
-
         setupUI()
         setupObservers()
-        loadSavedPreferences()
 
     // Run entry animations for premium feel
     runEntryAnimations()
     // Setup parallax and theme toggle
     setupParallaxAndThemeToggle()
 
-        // Enhanced initialization with session restoration
-        Log.d("LoginActivity", "🚀 Starting enhanced KeyAuth initialization with session restoration")
+        // Migration, session cleanup and stored preferences all hit disk and the keystore,
+        // so they run on the preferences dispatcher before KeyAuth initialization starts
+        val loginViewModel = viewModel
+        lifecycleScope.launch {
+            val autoLoginReady = securePreferencesAsync.withPreferences {
+                // Migrate preferences from old implementation if needed
+                PreferencesMigration.migrateIfNeeded(this@LoginActivity, this)
 
-        // Check if we can attempt auto-login
-        if (viewModel.canAutoLogin() && securePreferences.getAutoLogin()) {
-            Log.d("LoginActivity", "🔄 Auto-login available, attempting session restoration...")
-            viewModel.initializeWithSessionRestore()
-        } else {
-            Log.d("LoginActivity", "🔄 Standard initialization (no auto-login)")
-            viewModel.initializeApp()
+                // Clear any corrupted session data that might cause "Session not found" errors
+                // Use SessionService to centralize the clearing sequence
+                sessionService.clearCorruptedSession()
+
+                loginViewModel.canAutoLogin() && getAutoLogin()
+            }
+            loadSavedPreferences()
+            startupPrepared = true
+
+            // Enhanced initialization with session restoration
+            Log.d("LoginActivity", "🚀 Starting enhanced KeyAuth initialization with session restoration")
+
+            // Check if we can attempt auto-login
+            if (autoLoginReady) {
+                Log.d("LoginActivity", "🔄 Auto-login available, attempting session restoration...")
+                loginViewModel.initializeWithSessionRestore()
+            } else {
+                Log.d("LoginActivity", "🔄 Standard initialization (no auto-login)")
+                loginViewModel.initializeApp()
+            }
+
+            // Report shared-instance savings
+            appContainer.logStartupTrace()
         }
     }
 
@@ -158,6 +179,9 @@ class LoginActivity : AppCompatActivity() {
     }
     
     private fun setupUI() {
+        // Decode the branding bitmap off the main thread at the view's size
+        BitmapLoader.load(binding.ivBearLogo, R.drawable.bear_icon)
+
         // Initially disable login button until initialization completes
         binding.btnLogin.isEnabled = false
 
@@ -191,20 +215,24 @@ class LoginActivity : AppCompatActivity() {
         
         // Remember key checkbox
         binding.cbRememberKey.setOnCheckedChangeListener { _, isChecked ->
-            securePreferences.setRememberLicense(isChecked)
+            lifecycleScope.launch {
+                securePreferencesAsync.setRememberLicense(isChecked)
+                if (!isChecked) {
+                    securePreferencesAsync.clearLicenseKey()
+                    securePreferencesAsync.setAutoLogin(false)
+                }
+            }
             if (!isChecked) {
-                securePreferences.clearLicenseKey()
                 binding.cbAutoLogin.isChecked = false
-                securePreferences.setAutoLogin(false)
             }
         }
         
         // Auto login checkbox
         binding.cbAutoLogin.setOnCheckedChangeListener { _, isChecked ->
-            securePreferences.setAutoLogin(isChecked)
+            lifecycleScope.launch { securePreferencesAsync.setAutoLogin(isChecked) }
             if (isChecked && !binding.cbRememberKey.isChecked) {
+                // The remember-key listener persists the change
                 binding.cbRememberKey.isChecked = true
-                securePreferences.setRememberLicense(true)
             }
         }
     }
@@ -226,8 +254,10 @@ class LoginActivity : AppCompatActivity() {
                     binding.btnLogin.text = "LOGIN"
 
                     // Check if auto login is enabled and we have a saved key
-                    if (securePreferences.getAutoLogin()) {
-                        val savedKey = securePreferences.getLicenseKey()
+                    lifecycleScope.launch {
+                        val savedKey = securePreferencesAsync.withPreferences {
+                            if (getAutoLogin()) getLicenseKey() else null
+                        }
                         if (!savedKey.isNullOrEmpty()) {
                             binding.etLicenseKey.setText(savedKey)
                             showStatus("🔄 Auto-login with saved key...")
@@ -265,7 +295,8 @@ class LoginActivity : AppCompatActivity() {
 
                     // Save license key if remember is checked
                     if (binding.cbRememberKey.isChecked) {
-                        securePreferences.saveLicenseKey(binding.etLicenseKey.text.toString().trim())
+                        val licenseKey = binding.etLicenseKey.text.toString().trim()
+                        lifecycleScope.launch { securePreferencesAsync.saveLicenseKey(licenseKey) }
                     }
 
                     // Navigate to main activity
@@ -279,7 +310,9 @@ class LoginActivity : AppCompatActivity() {
                     if (errorMessage.contains("session not found", ignoreCase = true) ||
                         errorMessage.contains("last code", ignoreCase = true) ||
                         errorMessage.contains("session expired", ignoreCase = true)) {
-                        sessionService.clearCorruptedSession()
+                        lifecycleScope.launch {
+                            securePreferencesAsync.withPreferences { sessionService.clearCorruptedSession() }
+                        }
                     }
                 }
                 null -> {
@@ -317,14 +350,16 @@ class LoginActivity : AppCompatActivity() {
                     showStatus("⏰ Session expired, please login again")
                     // Clear auto-login if session expired
                     binding.cbAutoLogin.isChecked = false
-                    securePreferences.setAutoLogin(false)
+                    lifecycleScope.launch { securePreferencesAsync.setAutoLogin(false) }
                 }
                 is SessionRestoreResult.HWIDMismatch -> {
                     showError("⚠️ Device changed detected. Please re-authenticate.")
                     // Clear stored data for security
-                    securePreferences.clearAuthenticationData()
+                    lifecycleScope.launch {
+                        securePreferencesAsync.clearAuthenticationData()
+                        securePreferencesAsync.setAutoLogin(false)
+                    }
                     binding.cbAutoLogin.isChecked = false
-                    securePreferences.setAutoLogin(false)
                 }
                 is SessionRestoreResult.Failed -> {
                     showError("❌ Session restoration failed: ${result.error}")
@@ -397,6 +432,9 @@ class LoginActivity : AppCompatActivity() {
 
     override fun onResume() {
         super.onResume()
+        // On first start initialization is kicked off once stored preferences are loaded
+        if (!startupPrepared) return
+
         // Re-check initialization state when activity resumes
         if (!viewModel.isAppInitialized()) {
             showStatus("Re-initializing KeyAuth...")
@@ -409,17 +447,17 @@ class LoginActivity : AppCompatActivity() {
         }
     }
 
-    private fun loadSavedPreferences() {
-        // Load saved preferences
-        binding.cbRememberKey.isChecked = securePreferences.getRememberLicense()
-        binding.cbAutoLogin.isChecked = securePreferences.getAutoLogin()
-        
-        // Load saved license key if remember is enabled
-        if (securePreferences.getRememberLicense()) {
-            val savedKey = securePreferences.getLicenseKey()
-            if (!savedKey.isNullOrEmpty()) {
-                binding.etLicenseKey.setText(savedKey)
-            }
+    private suspend fun loadSavedPreferences() {
+        // Load saved preferences, and the saved license key if remember is enabled
+        val (rememberLicense, autoLogin, savedKey) = securePreferencesAsync.withPreferences {
+            val remember = getRememberLicense()
+            Triple(remember, getAutoLogin(), if (remember) getLicenseKey() else null)
+        }
+        binding.cbRememberKey.isChecked = rememberLicense
+        binding.cbAutoLogin.isChecked = autoLogin
+
+        if (!savedKey.isNullOrEmpty()) {
+            binding.etLicenseKey.setText(savedKey)
         }
     }
     
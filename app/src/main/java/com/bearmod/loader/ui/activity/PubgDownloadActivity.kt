@@ -19,6 +19,7 @@ import androidx.core.content.ContextCompat
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.bearmod.loader.R
+import com.bearmod.loader.utils.BitmapLoader
 import com.google.gson.Gson
 import java.io.File
 import java.io.InputStreamReader
@@ -57,7 +58,8 @@ class PubgDownloadActivity : AppCompatActivity() {
 
     private fun setupBearBranding() {
         // Set Bear Logo
-        bearLogoImageView.setImageResource(R.drawable.bear_logo)
+        BitmapLoader.load(bearLogoImageView, R.drawable.bear_logo)
+        BitmapLoader.load(findViewById(R.id.iv_header_logo), R.drawable.bear_logo)
 
         // Set title without Bear branding
         titleTextView.text = "PUBG Mobile Variants"
@@ -243,7 +245,7 @@ class PubgViewHolder(itemView: android.view.View) : RecyclerView.ViewHolder(item
 
     fun bind(variant: PubgVariant) {
         // Set PUBG icon
-        itemView.findViewById<ImageView>(R.id.iv_pubg_icon).setImageResource(variant.iconRes)
+        BitmapLoader.load(itemView.findViewById(R.id.iv_pubg_icon), variant.iconRes)
 
         // Set variant information
         itemView.findViewById<TextView>(R.id.tv_pubg_name).text = variant.name
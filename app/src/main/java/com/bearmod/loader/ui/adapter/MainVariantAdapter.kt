@@ -8,6 +8,7 @@ import androidx.recyclerview.widget.RecyclerView
 import com.bearmod.loader.R
 import com.bearmod.loader.data.model.VariantItem
 import com.bearmod.loader.databinding.ItemVariantMainBinding
+import com.bearmod.loader.install.SplitApkResolver
 
 /**
  * Adapter for displaying variants on the main screen
@@ -54,7 +55,7 @@ class MainVariantAdapter(
 
                 // Set file sizes with proper localization
                 if (variant.variantInfo != null) {
-                    val apkSize = formatFileSize(variant.variantInfo.apk.size ?: 0)
+                    val apkSize = formatFileSize(SplitApkResolver.forDevice(context).apkDownloadSize(variant.variantInfo))
                     val obbSize = formatFileSize(variant.variantInfo.obb.size ?: 0)
                     tvVariantSize.text = context.getString(R.string.variant_file_sizes, apkSize, obbSize)
                 } else {
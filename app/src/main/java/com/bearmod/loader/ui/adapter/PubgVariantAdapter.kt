@@ -12,6 +12,7 @@ import androidx.recyclerview.widget.RecyclerView
 import com.bearmod.loader.R
 import com.bearmod.loader.data.model.PubgButtonState
 import com.bearmod.loader.data.model.PubgVariant
+import com.bearmod.loader.utils.BitmapLoader
 import com.bearmod.loader.utils.PackageVersionChecker
 
 /**
@@ -101,7 +102,7 @@ class PubgVariantAdapter(
 
         fun bind(variant: PubgVariant) {
             // Set PUBG icon
-            iconImageView.setImageResource(variant.iconRes)
+            BitmapLoader.load(iconImageView, variant.iconRes)
 
             // Set variant information
             nameTextView.text = variant.name
@@ -17,6 +17,7 @@ import com.bearmod.loader.data.model.PubgButtonState
 import com.bearmod.loader.data.model.PubgVariant
 import com.bearmod.loader.data.model.PubgManifestLoader
 import com.bearmod.loader.ui.adapter.PubgVariantAdapter
+import com.bearmod.loader.utils.BitmapLoader
 import com.bearmod.loader.utils.PackageVersionChecker
 import com.bearmod.loader.utils.PermissionManager
 
@@ -49,6 +50,7 @@ class PubgVariantsFragment : BasePubgFragment() {
     packageChecker = PackageVersionChecker(requireContext())
     permissionManager = getPermissionManager()
 
+        BitmapLoader.load(view.findViewById(R.id.iv_header_logo), R.drawable.bear_logo)
         setupRecyclerView(view)
         // Footer buttons moved to Settings fragment
         checkPermissionsAndLoadVariants()
@@ -15,7 +15,6 @@ import android.view.View
 import android.view.ViewGroup
 import android.widget.Button
 import android.widget.ImageButton
-import android.widget.ImageView
 import android.widget.TextView
 import android.widget.Toast
 import androidx.core.app.ActivityCompat
@@ -24,6 +23,7 @@ import androidx.fragment.app.Fragment
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.bearmod.loader.R
+import com.bearmod.loader.utils.BitmapLoader
 import com.google.gson.Gson
 import java.io.File
 import java.io.InputStreamReader
@@ -65,6 +65,7 @@ class ZeusPubgFragment : BasePubgFragment() {
 
     private fun initializeViews(view: View) {
         recyclerView = view.findViewById(R.id.rv_pubg_variants)
+        BitmapLoader.load(view.findViewById(R.id.iv_header_logo), R.drawable.bear_logo)
     }
 
     private fun loadPubgVariants() {
@@ -286,7 +287,7 @@ class ZeusPubgViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView) {
 
     fun bind(variant: ZeusPubgVariant) {
         // Set PUBG icon
-        itemView.findViewById<ImageView>(R.id.iv_pubg_icon).setImageResource(variant.iconRes)
+        BitmapLoader.load(itemView.findViewById(R.id.iv_pubg_icon), variant.iconRes)
 
         // Set variant information
         itemView.findViewById<TextView>(R.id.tv_pubg_name).text = variant.name
@@ -17,17 +17,22 @@ import androidx.fragment.app.Fragment
 import androidx.lifecycle.ViewModelProvider
 import androidx.lifecycle.Observer
 import androidx.lifecycle.asLiveData
+import androidx.lifecycle.lifecycleScope
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.bearmod.loader.R
 import com.bearmod.loader.data.repository.KeyAuthRepository
 import com.bearmod.loader.data.model.AuthenticationState
-import com.bearmod.loader.network.NetworkFactory
+import com.bearmod.loader.di.AppContainer
+import com.bearmod.loader.network.DownloadScheduler
+import com.bearmod.loader.network.MeteredDownloadPolicy
 import com.bearmod.loader.ui.LoginActivity
 import com.bearmod.loader.ui.MainActivity
 import com.bearmod.loader.utils.LanguageManager
 import com.bearmod.loader.utils.SessionManager
 import com.bearmod.loader.utils.SecurePreferences
+import com.bearmod.loader.utils.SecurePreferencesAsync
 import com.bearmod.loader.viewmodel.AuthViewModel
+import kotlinx.coroutines.launch
 import java.text.SimpleDateFormat
 import java.util.*
 
@@ -39,6 +44,7 @@ class EnhancedSettingsFragment : Fragment() {
 
     // UI Components
     private lateinit var tvCurrentLanguage: TextView
+    private lateinit var tvMeteredDownloads: TextView
     private lateinit var tvLicenseKey: TextView
     private lateinit var tvLicenseExpiry: TextView
     private lateinit var tvTimeRemaining: TextView
@@ -58,8 +64,10 @@ class EnhancedSettingsFragment : Fragment() {
     private lateinit var languageManager: LanguageManager
     private lateinit var sessionManager: SessionManager
     private lateinit var securePreferences: SecurePreferences
+    private lateinit var securePreferencesAsync: SecurePreferencesAsync
     private lateinit var authViewModel: AuthViewModel
     private lateinit var keyAuthRepository: KeyAuthRepository
+    private lateinit var downloadScheduler: DownloadScheduler
 
     // Update handler for countdown
     private val updateHandler = Handler(Looper.getMainLooper())
@@ -72,9 +80,12 @@ class EnhancedSettingsFragment : Fragment() {
         super.onCreate(savedInstanceState)
         languageManager = LanguageManager(requireContext())
         sessionManager = SessionManager(requireContext())
-        securePreferences = SecurePreferences(requireContext())
+        val appContainer = AppContainer.from(requireContext())
+        securePreferences = appContainer.securePreferences
+        securePreferencesAsync = appContainer.securePreferencesAsync
         authViewModel = ViewModelProvider(requireActivity())[AuthViewModel::class.java]
-        keyAuthRepository = NetworkFactory.createKeyAuthRepository(requireContext())
+        keyAuthRepository = appContainer.keyAuthRepository
+        downloadScheduler = DownloadScheduler(requireContext())
     }
 
     override fun onCreateView(
@@ -106,6 +117,7 @@ class EnhancedSettingsFragment : Fragment() {
 
         // Language and basic settings
         tvCurrentLanguage = view.findViewById(R.id.tvCurrentLanguage)
+        tvMeteredDownloads = view.findViewById(R.id.tvMeteredDownloads)
 
         // License information displays
         tvLicenseKey = view.findViewById(R.id.tvLicenseKey)
@@ -134,6 +146,13 @@ class EnhancedSettingsFragment : Fragment() {
                 Log.w("EnhancedSettingsFragment", "Language card not found in layout")
             }
 
+            // Mobile data download policy card click
+            view.findViewById<View>(R.id.cardMeteredDownloads)?.setOnClickListener {
+                if (isAdded && !isDetached) {
+                    showMeteredDownloadsDialog()
+                }
+            }
+
             // Logout card click
             val cardLogout = view.findViewById<View>(R.id.cardLogout)
             if (cardLogout != null) {
@@ -176,10 +195,32 @@ class EnhancedSettingsFragment : Fragment() {
                 return
             }
 
-            // Use current authentication state if available, otherwise fall back to stored data
+            // Use current authentication state if available, otherwise fall back to stored data,
+            // which is read on the preferences dispatcher rather than the main thread
             val authState = currentAuthState ?: keyAuthRepository.getCurrentAuthState()
-            val licenseKey = authState.licenseKey ?: securePreferences.getBoundLicenseKey()
-            val sessionToken = authState.sessionToken ?: securePreferences.getSessionToken()
+            viewLifecycleOwner.lifecycleScope.launch {
+                val (licenseKey, sessionToken, storedExpiry) = securePreferencesAsync.withPreferences {
+                    Triple(
+                        authState.licenseKey ?: getBoundLicenseKey(),
+                        authState.sessionToken ?: getSessionToken(),
+                        getTokenExpiryTime()
+                    )
+                }
+                showLicenseInformation(authState, licenseKey, sessionToken, storedExpiry)
+            }
+        } catch (e: Exception) {
+            Log.e("EnhancedSettingsFragment", "Error updating license information", e)
+        }
+    }
+
+    private fun showLicenseInformation(
+        authState: AuthenticationState,
+        licenseKey: String?,
+        sessionToken: String?,
+        storedExpiry: Long
+    ) {
+        try {
+            if (!isAdded || isDetached || view == null) return
 
             // Try to get expiry from subscription data first, then auth state, then stored data
             val tokenExpiry = authState.userInfo?.subscriptions?.firstOrNull()?.let { subscription ->
@@ -190,7 +231,7 @@ class EnhancedSettingsFragment : Fragment() {
                     Log.w("EnhancedSettingsFragment", "Failed to parse subscription expiry: ${subscription.expiry}", e)
                     null
                 }
-            } ?: authState.expiryTime.takeIf { it > 0 } ?: securePreferences.getTokenExpiryTime()
+            } ?: authState.expiryTime.takeIf { it > 0 } ?: storedExpiry
 
             val isAuthenticated = authState.isAuthenticated && authState.isSessionValid()
 
@@ -379,6 +420,8 @@ class EnhancedSettingsFragment : Fragment() {
                     try {
                         // Only update if fragment is still attached
                         if (isAdded && !isDetached && view != null) {
+                            // Local read only; session checks elsewhere publish their result here
+                            currentAuthState = keyAuthRepository.authenticationState.value
                             updateLicenseInformation()
                             updateHandler.postDelayed(this, 60000) // Update every minute
                         } else {
@@ -547,6 +590,37 @@ class EnhancedSettingsFragment : Fragment() {
         }
     }
 
+    /**
+     * Let the user choose what large downloads may do on mobile data (see DownloadScheduler)
+     */
+    private fun showMeteredDownloadsDialog() {
+        try {
+            val policies = MeteredDownloadPolicy.entries.toTypedArray()
+            val labels = policies.map { meteredPolicyLabel(it) }.toTypedArray()
+
+            MaterialAlertDialogBuilder(requireContext())
+                .setTitle(if (languageManager.isChineseEnabled()) "移动数据下载" else "Downloads on Mobile Data")
+                .setSingleChoiceItems(labels, policies.indexOf(downloadScheduler.meteredPolicy)) { dialog, which ->
+                    downloadScheduler.meteredPolicy = policies[which]
+                    updateLanguage()
+                    dialog.dismiss()
+                }
+                .setNegativeButton(if (languageManager.isChineseEnabled()) "取消" else "Cancel", null)
+                .show()
+        } catch (e: Exception) {
+            Log.e("EnhancedSettingsFragment", "Error showing mobile data dialog", e)
+        }
+    }
+
+    private fun meteredPolicyLabel(policy: MeteredDownloadPolicy): String {
+        val chinese = languageManager.isChineseEnabled()
+        return when (policy) {
+            MeteredDownloadPolicy.ALLOW -> if (chinese) "允许所有下载" else "Allow all downloads"
+            MeteredDownloadPolicy.SMALL_ONLY -> if (chinese) "仅小文件（大文件等待 Wi-Fi）" else "Small files only (large ones wait for Wi-Fi)"
+            MeteredDownloadPolicy.NEVER -> if (chinese) "仅 Wi-Fi" else "Wi-Fi only"
+        }
+    }
+
     fun updateLanguage() {
         try {
             // Check if fragment is still attached and views are available
@@ -597,6 +671,11 @@ class EnhancedSettingsFragment : Fragment() {
                 }
             }
 
+            if (::tvMeteredDownloads.isInitialized) {
+                val prefix = if (languageManager.isChineseEnabled()) "移动数据下载" else "Mobile data downloads"
+                tvMeteredDownloads.text = "$prefix: ${meteredPolicyLabel(downloadScheduler.meteredPolicy)}"
+            }
+
             // Update logout text
             if (::tvLogout.isInitialized) {
                 tvLogout.text = if (languageManager.isChineseEnabled()) {
@@ -15,6 +15,7 @@ import androidx.lifecycle.ViewModelProvider;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.bearmod.loader.R;
+import com.bearmod.loader.di.AppContainer;
 import com.bearmod.loader.ui.LoginActivity;
 import com.bearmod.loader.ui.MainActivity;
 import com.bearmod.loader.utils.LanguageManager;
@@ -41,7 +42,7 @@ public class SettingsFragment extends Fragment {
         super.onCreate(savedInstanceState);
         languageManager = new LanguageManager(requireContext());
         sessionManager = new SessionManager(requireContext());
-        securePreferences = new SecurePreferences(requireContext());
+        securePreferences = AppContainer.from(requireContext()).getSecurePreferences();
         authViewModel = new ViewModelProvider(requireActivity()).get(AuthViewModel.class);
     }
 
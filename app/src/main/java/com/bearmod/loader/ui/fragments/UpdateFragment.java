@@ -13,7 +13,9 @@ import androidx.fragment.app.Fragment;
 
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.progressindicator.LinearProgressIndicator;
+import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.bearmod.loader.R;
+import com.bearmod.loader.update.OtaPrefetchScheduler;
 import com.bearmod.loader.utils.LanguageManager;
 
 public class UpdateFragment extends Fragment {
@@ -24,6 +26,7 @@ public class UpdateFragment extends Fragment {
     private TextView tvCurrentVersion;
     private TextView tvLastUpdateCheck;
     private MaterialButton btnCheckUpdates;
+    private SwitchMaterial switchBackgroundDownload;
 
     private LanguageManager languageManager;
 
@@ -53,12 +56,18 @@ public class UpdateFragment extends Fragment {
         tvCurrentVersion = view.findViewById(R.id.tvCurrentVersion);
         tvLastUpdateCheck = view.findViewById(R.id.tvLastUpdateCheck);
         btnCheckUpdates = view.findViewById(R.id.btnCheckUpdates);
+        switchBackgroundDownload = view.findViewById(R.id.switchBackgroundDownload);
+        switchBackgroundDownload.setChecked(OtaPrefetchScheduler.isEnabled(requireContext()));
     }
 
     private void setupClickListeners() {
         btnCheckUpdates.setOnClickListener(v -> {
             checkForUpdates();
         });
+
+        switchBackgroundDownload.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            OtaPrefetchScheduler.setEnabled(requireContext(), isChecked);
+        });
     }
 
     private void initializeUpdateStatus() {
@@ -140,6 +149,10 @@ public class UpdateFragment extends Fragment {
             btnCheckUpdates.setText(languageManager.isChineseEnabled() ?
                 "检查更新" : "Check for Updates");
         }
+        if (switchBackgroundDownload != null) {
+            switchBackgroundDownload.setText(languageManager.isChineseEnabled() ?
+                "后台下载更新（Wi-Fi 且充电时）" : "Download updates in the background (Wi-Fi, charging)");
+        }
 
         // Update other text views
         initializeUpdateStatus();
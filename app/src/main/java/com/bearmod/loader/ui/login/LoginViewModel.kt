@@ -10,14 +10,19 @@ import com.bearmod.loader.data.model.KeyAuthResponse
 import com.bearmod.loader.data.model.SessionRestoreResult
 import com.bearmod.loader.data.model.AuthFlowState
 import com.bearmod.loader.data.repository.KeyAuthRepository
+import com.bearmod.loader.logging.ActivityLogUploader
 import com.bearmod.loader.utils.NetworkResult
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.flow.StateFlow
 
 /**
- * ViewModel for the login screen
+ * ViewModel for the login screen. Activity events queued before login are uploaded as
+ * soon as a session becomes active.
  */
-class LoginViewModel(private val repository: KeyAuthRepository) : ViewModel() {
+class LoginViewModel(
+    private val repository: KeyAuthRepository,
+    private val activityLog: ActivityLogUploader? = null
+) : ViewModel() {
     
     private val _loginState = MutableLiveData<NetworkResult<KeyAuthResponse>?>()
     val loginState: LiveData<NetworkResult<KeyAuthResponse>?> = _loginState
@@ -118,6 +123,7 @@ class LoginViewModel(private val repository: KeyAuthRepository) : ViewModel() {
             when (result) {
                 is NetworkResult.Success -> {
                     Log.d("LoginViewModel", "✅ License authentication successful")
+                    activityLog?.flushNow()
                 }
                 is NetworkResult.Error -> {
                     Log.e("LoginViewModel", "❌ License authentication failed: ${result.message}")
@@ -169,11 +175,12 @@ class LoginViewModel(private val repository: KeyAuthRepository) : ViewModel() {
 
             Log.d("LoginViewModel", "🔄 Attempting session restoration...")
 
-            val result = repository.restoreSession()
+            val result = repository.restoreSessionPipelined()
 
             when (result) {
                 is SessionRestoreResult.Success -> {
                     Log.d("LoginViewModel", "✅ Session restored successfully")
+                    activityLog?.flushNow()
                     _loginState.value = NetworkResult.Success(
                         KeyAuthResponse(
                             success = true,
@@ -224,11 +231,12 @@ class LoginViewModel(private val repository: KeyAuthRepository) : ViewModel() {
             _isLoading.value = true
 
             // First try session restoration
-            val restoreResult = repository.restoreSession()
+            val restoreResult = repository.restoreSessionPipelined()
 
             when (restoreResult) {
                 is SessionRestoreResult.Success -> {
                     Log.d("LoginViewModel", "✅ Auto-login successful via session restoration")
+                    activityLog?.flushNow()
                     _loginState.value = NetworkResult.Success(
                         KeyAuthResponse(
                             success = true,
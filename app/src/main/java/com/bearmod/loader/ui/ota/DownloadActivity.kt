@@ -9,11 +9,14 @@ import androidx.appcompat.app.AppCompatActivity
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.ViewModelProvider
 import androidx.lifecycle.lifecycleScope
+import com.bearmod.loader.data.model.DownloadPauseReason
 import com.bearmod.loader.data.model.DownloadStatus
 import com.bearmod.loader.data.model.FileType
 import com.bearmod.loader.data.model.OTAUpdateState
 import com.bearmod.loader.databinding.ActivityDownloadBinding
-import com.bearmod.loader.network.NetworkFactory
+import com.bearmod.loader.di.AppContainer
+import com.bearmod.loader.install.SessionInstaller
+import com.bearmod.loader.network.DownloadScheduler
 import com.bearmod.loader.utils.APKInstaller
 import kotlinx.coroutines.launch
 
@@ -28,9 +31,12 @@ class DownloadActivity : AppCompatActivity() {
         object : ViewModelProvider.Factory {
             @Suppress("UNCHECKED_CAST")
             override fun <T : ViewModel> create(modelClass: Class<T>): T {
-                val otaRepository = NetworkFactory.createOTARepository(this@DownloadActivity)
+                val container = AppContainer.from(this@DownloadActivity)
+                val otaRepository = container.otaRepository
                 val apkInstaller = APKInstaller(this@DownloadActivity)
-                return OTAViewModel(otaRepository, apkInstaller) as T
+                val sessionInstaller = SessionInstaller(this@DownloadActivity.applicationContext)
+                val downloadScheduler = DownloadScheduler(this@DownloadActivity.applicationContext)
+                return OTAViewModel(otaRepository, apkInstaller, container.activityLogUploader, sessionInstaller, downloadScheduler) as T
             }
         }
     }
@@ -74,9 +80,14 @@ class DownloadActivity : AppCompatActivity() {
             viewModel.installDownloadedFiles()
         }
         
-        // Retry button
+        // Retry button (continues on mobile data while paused for a metered network)
         binding.btnRetry.setOnClickListener {
-            viewModel.retry()
+            val currentState = viewModel.updateState.value
+            if (currentState is OTAUpdateState.DownloadPaused && currentState.reason == DownloadPauseReason.METERED_NETWORK) {
+                viewModel.useMeteredNetwork()
+            } else {
+                viewModel.retry()
+            }
         }
         
         // Cancel button
@@ -106,6 +117,9 @@ class DownloadActivity : AppCompatActivity() {
             is OTAUpdateState.Downloading -> {
                 showDownloadingState(state)
             }
+            is OTAUpdateState.DownloadPaused -> {
+                showPausedState(state)
+            }
             is OTAUpdateState.DownloadCompleted -> {
                 showDownloadCompletedState(state)
             }
@@ -207,6 +221,27 @@ class DownloadActivity : AppCompatActivity() {
         }
     }
     
+    private fun showPausedState(state: OTAUpdateState.DownloadPaused) {
+        binding.apply {
+            tvTitle.text = "Download Paused"
+            tvDescription.text = when (state.reason) {
+                DownloadPauseReason.NO_NETWORK -> "Waiting for a network connection. The download will resume automatically."
+                DownloadPauseReason.METERED_NETWORK -> "Waiting for Wi-Fi. The download will resume automatically, or continue now on mobile data."
+                DownloadPauseReason.LOW_BATTERY -> "Battery is low. The download will resume when charging or above 15%."
+            }
+            
+            // Only a metered pause can be overridden
+            layoutActions.visibility = View.VISIBLE
+            btnInstall.visibility = View.GONE
+            btnCancel.visibility = View.VISIBLE
+            btnRetry.visibility = if (state.reason == DownloadPauseReason.METERED_NETWORK) View.VISIBLE else View.GONE
+            btnRetry.text = "Use mobile data"
+            
+            // Enable back navigation
+            toolbar.navigationIcon?.alpha = 255
+        }
+    }
+    
     private fun showDownloadCompletedState(state: OTAUpdateState.DownloadCompleted) {
         binding.apply {
             tvTitle.text = "Download Completed"
@@ -267,6 +302,7 @@ class DownloadActivity : AppCompatActivity() {
                 btnInstall.visibility = View.GONE
                 btnCancel.visibility = View.VISIBLE
                 btnRetry.visibility = View.VISIBLE
+                btnRetry.text = "Retry"
             }
             
             // Enable back navigation
@@ -289,6 +325,7 @@ class DownloadActivity : AppCompatActivity() {
             btnInstall.visibility = View.GONE
             btnCancel.visibility = View.VISIBLE
             btnRetry.visibility = View.VISIBLE
+            btnRetry.text = "Retry"
             
             // Enable back navigation
             toolbar.navigationIcon?.alpha = 255
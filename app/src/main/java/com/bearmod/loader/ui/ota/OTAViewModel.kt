@@ -1,14 +1,21 @@
 package com.bearmod.loader.ui.ota
 
+import android.net.Network
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.bearmod.loader.config.KeyAuthConfig
 import com.bearmod.loader.data.model.*
 import com.bearmod.loader.data.repository.OTARepository
+import com.bearmod.loader.install.InstallStatus
+import com.bearmod.loader.install.SessionInstaller
+import com.bearmod.loader.logging.ActivityLogUploader
+import com.bearmod.loader.network.DownloadScheduler
 import com.bearmod.loader.utils.APKInstaller
 import com.bearmod.loader.utils.NetworkResult
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.flow.*
 import kotlinx.coroutines.launch
+import java.io.Closeable
 import java.io.File
 
 /**
@@ -16,9 +23,17 @@ import java.io.File
  */
 class OTAViewModel(
     private val otaRepository: OTARepository,
-    private val apkInstaller: APKInstaller
+    private val apkInstaller: APKInstaller,
+    private val activityLog: ActivityLogUploader? = null,
+    private val sessionInstaller: SessionInstaller? = null,
+    private val downloadScheduler: DownloadScheduler? = null
 ) : ViewModel() {
     
+    /**
+     * Install session the APK files of [variant] are streamed into while they download
+     */
+    private class StreamedApk(val variant: String, val install: SessionInstaller.PendingInstall)
+    
     private val _updateState = MutableStateFlow<OTAUpdateState>(OTAUpdateState.Idle)
     val updateState: StateFlow<OTAUpdateState> = _updateState.asStateFlow()
     
@@ -27,6 +42,9 @@ class OTAViewModel(
     
     private var currentOTAResponse: OTAResponse? = null
     private var selectedVariant: String? = null
+    private var streamedApk: StreamedApk? = null
+    // Keeps the verified downloads out of cache eviction until the install is over
+    private var downloadPin: Closeable? = null
     
     /**
      * Check for available updates
@@ -88,31 +106,101 @@ class OTAViewModel(
     private fun startDownload(variant: String, variantInfo: VariantInfo) {
         viewModelScope.launch {
             _isLoading.value = true
+            discardStreamedApk()
+            val streamed = openStreamedApk(variant, variantInfo)
+            streamedApk = streamed
             
             try {
-                otaRepository.downloadVariant(variant, variantInfo)
-                    .collect { (apkProgress, obbProgress) ->
-                        _updateState.value = OTAUpdateState.Downloading(apkProgress, obbProgress)
-                        
-                        // Check if both downloads are completed and verified
-                        if (apkProgress?.status == DownloadStatus.VERIFIED && 
-                            obbProgress?.status == DownloadStatus.VERIFIED) {
-                            
-                            val (apkFile, obbFile) = otaRepository.getDownloadedFiles(variant, variantInfo)
-                            _updateState.value = OTAUpdateState.DownloadCompleted(
-                                apkFile.absolutePath,
-                                obbFile.absolutePath
-                            )
-                            _isLoading.value = false
-                        }
-                    }
+                // Prefetched files only need re-hashing; the download then replays them from the cache
+                val prefetched = otaRepository.isDownloaded(variant, variantInfo) && run {
+                    val verifying = DownloadProgress(FileType.APK, 0, 0, 0f, DownloadStatus.VERIFYING)
+                    _updateState.value = OTAUpdateState.Downloading(verifying, verifying.copy(fileType = FileType.OBB))
+                    otaRepository.verifyDownloaded(variant, variantInfo)
+                }
+                
+                val scheduler = downloadScheduler
+                if (scheduler == null || prefetched) {
+                    download(variant, variantInfo, streamed, null)
+                } else {
+                    // Waits for an allowed network, restarts on network changes; the engine resumes partial files
+                    scheduler.run(
+                        otaRepository.downloadSize(variantInfo),
+                        onWaiting = { reason -> _updateState.value = OTAUpdateState.DownloadPaused(reason) }
+                    ) { network -> download(variant, variantInfo, streamed, network) }
+                }
             } catch (e: Exception) {
+                discardStreamedApk()
                 _updateState.value = OTAUpdateState.Error("Download failed: ${e.message}", e)
                 _isLoading.value = false
+                activityLog?.log("OTA download failed: $variant")
+            }
+        }
+    }
+    
+    /**
+     * One download attempt, optionally bound to [network]
+     */
+    private suspend fun download(variant: String, variantInfo: VariantInfo, streamed: StreamedApk?, network: Network?) {
+        otaRepository.downloadVariant(variant, variantInfo, streamed?.install?.let { it::streamEntry }, network)
+            .collect { (apkProgress, obbProgress) ->
+                _updateState.value = OTAUpdateState.Downloading(apkProgress, obbProgress)
+                
+                // Check if both downloads are completed and verified
+                if (apkProgress?.status == DownloadStatus.VERIFIED && 
+                    obbProgress?.status == DownloadStatus.VERIFIED) {
+                    
+                    val (apkFile, obbFile) = otaRepository.getDownloadedFiles(variant, variantInfo)
+                    downloadPin?.close()
+                    downloadPin = otaRepository.pinDownloads(variant, variantInfo)
+                    _updateState.value = OTAUpdateState.DownloadCompleted(
+                        apkFile.absolutePath,
+                        obbFile.absolutePath
+                    )
+                    _isLoading.value = false
+                    activityLog?.log("OTA download verified: $variant v${currentOTAResponse?.version}")
+                }
             }
+    }
+    
+    /**
+     * Let a download paused for [DownloadPauseReason.METERED_NETWORK] continue on mobile data
+     */
+    fun useMeteredNetwork() {
+        downloadScheduler?.allowMeteredOnce()
+    }
+    
+    /**
+     * Open an install session to stream the APK files into, or null to install from the files later
+     */
+    private fun openStreamedApk(variant: String, variantInfo: VariantInfo): StreamedApk? {
+        val installer = sessionInstaller ?: return null
+        val splits = otaRepository.resolveSplits(variantInfo)
+        val size = if (variantInfo.apk.size != null && splits.all { it.size != null }) {
+            (variantInfo.apk.size ?: 0L) + splits.sumOf { it.size ?: 0L }
+        } else {
+            -1L
+        }
+        return try {
+            StreamedApk(variant, installer.openSession(size))
+        } catch (e: Exception) {
+            null
         }
     }
     
+    /**
+     * Unpin the downloads and trim the download cache
+     */
+    private suspend fun releaseDownloads() {
+        downloadPin?.close()
+        downloadPin = null
+        otaRepository.cleanupDownloads()
+    }
+    
+    private fun discardStreamedApk() {
+        streamedApk?.install?.abandon()
+        streamedApk = null
+    }
+    
     /**
      * Install the downloaded files
      */
@@ -134,31 +222,97 @@ class OTAViewModel(
                     _updateState.value = OTAUpdateState.InstallationCompleted(
                         InstallationResult(false, "Failed to install OBB file")
                     )
+                    activityLog?.log("OTA install failed (OBB): $variant")
                     return@launch
                 }
                 
                 _updateState.value = OTAUpdateState.Installing("Installing APK file...")
                 
-                // Then install APK file
+                // Then install APK file: commit the session it was streamed into, or copy the
+                // verified file into a new session, or fall back to the system installer intent
+                val streamed = streamedApk?.takeIf { it.variant == variant && it.install.isIntact }
+                if (streamed == null) discardStreamedApk()
+                streamedApk = null
+                val apkFiles = otaRepository.getDownloadedApks(variant, variantInfo)
+                val statuses = when {
+                    streamed != null -> streamed.install.commit()
+                    sessionInstaller != null -> sessionInstaller.install(apkFiles)
+                    else -> null
+                }
+                if (statuses != null) {
+                    val handled = try {
+                        collectInstallStatus(statuses, variant)
+                        true
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        // Session could not be created or written; use the system installer intent
+                        false
+                    }
+                    if (handled) return@launch
+                }
+                
+                // The system installer intent takes a single APK, so splits need a session
+                if (apkFiles.size > 1) {
+                    _updateState.value = OTAUpdateState.InstallationCompleted(
+                        InstallationResult(false, "Failed to install APK file: split APKs need the package installer")
+                    )
+                    activityLog?.log("OTA install failed (APK splits): $variant")
+                    return@launch
+                }
+                
                 val apkInstalled = apkInstaller.installAPK(apkFile)
                 
                 if (apkInstalled) {
                     _updateState.value = OTAUpdateState.InstallationCompleted(
                         InstallationResult(true, "Installation completed successfully")
                     )
+                    activityLog?.log("OTA install started: $variant v${currentOTAResponse?.version}")
                     
-                    // Clean up downloaded files after successful installation
-                    otaRepository.cleanupDownloads()
+                    // Installed files stay cached for a re-install, within the cache budget
+                    releaseDownloads()
                 } else {
                     _updateState.value = OTAUpdateState.InstallationCompleted(
                         InstallationResult(false, "Failed to install APK file")
                     )
+                    activityLog?.log("OTA install failed (APK): $variant")
                 }
                 
             } catch (e: Exception) {
                 _updateState.value = OTAUpdateState.InstallationCompleted(
                     InstallationResult(false, "Installation failed: ${e.message}")
                 )
+                activityLog?.log("OTA install failed: $variant")
+            }
+        }
+    }
+    
+    private suspend fun collectInstallStatus(statuses: Flow<InstallStatus>, variant: String) {
+        statuses.collect { status ->
+            when (status) {
+                is InstallStatus.Writing -> {
+                    val percent = if (status.totalBytes > 0) status.bytesWritten * 100 / status.totalBytes else 0
+                    _updateState.value = OTAUpdateState.Installing("Preparing APK... $percent%")
+                }
+                InstallStatus.Committing -> {
+                    _updateState.value = OTAUpdateState.Installing("Installing APK file...")
+                }
+                InstallStatus.PendingUserAction -> {
+                    _updateState.value = OTAUpdateState.Installing("Waiting for confirmation...")
+                }
+                is InstallStatus.Success -> {
+                    _updateState.value = OTAUpdateState.InstallationCompleted(
+                        InstallationResult(true, "Installation completed successfully")
+                    )
+                    activityLog?.log("OTA install completed: $variant v${currentOTAResponse?.version}")
+                    releaseDownloads()
+                }
+                is InstallStatus.Failure -> {
+                    _updateState.value = OTAUpdateState.InstallationCompleted(
+                        InstallationResult(false, "Failed to install APK file: ${status.message ?: "unknown error"}", status.status)
+                    )
+                    activityLog?.log("OTA install failed (APK, status ${status.status}): $variant")
+                }
             }
         }
     }
@@ -184,6 +338,9 @@ class OTAViewModel(
      * Reset to idle state
      */
     fun reset() {
+        discardStreamedApk()
+        downloadPin?.close()
+        downloadPin = null
         _updateState.value = OTAUpdateState.Idle
         _isLoading.value = false
         currentOTAResponse = null
@@ -254,4 +411,10 @@ class OTAViewModel(
         val otaResponse = currentOTAResponse ?: return "Unknown"
         return "Available Version: ${otaResponse.version} (Build ${otaResponse.build})"
     }
+    
+    override fun onCleared() {
+        super.onCleared()
+        discardStreamedApk()
+        downloadPin?.close()
+    }
 }
@@ -12,7 +12,9 @@ import androidx.lifecycle.lifecycleScope
 import com.bearmod.loader.R
 import com.bearmod.loader.data.model.OTAUpdateState
 import com.bearmod.loader.databinding.ActivityUpdateAvailableBinding
-import com.bearmod.loader.network.NetworkFactory
+import com.bearmod.loader.di.AppContainer
+import com.bearmod.loader.install.SessionInstaller
+import com.bearmod.loader.network.DownloadScheduler
 import com.bearmod.loader.utils.APKInstaller
 import com.bearmod.loader.utils.PermissionManager
 import kotlinx.coroutines.launch
@@ -51,9 +53,12 @@ class UpdateAvailableActivity : AppCompatActivity() {
         object : ViewModelProvider.Factory {
             @Suppress("UNCHECKED_CAST")
             override fun <T : ViewModel> create(modelClass: Class<T>): T {
-                val otaRepository = NetworkFactory.createOTARepository(this@UpdateAvailableActivity)
+                val container = AppContainer.from(this@UpdateAvailableActivity)
+                val otaRepository = container.otaRepository
                 val apkInstaller = APKInstaller(this@UpdateAvailableActivity)
-                return OTAViewModel(otaRepository, apkInstaller) as T
+                val sessionInstaller = SessionInstaller(this@UpdateAvailableActivity.applicationContext)
+                val downloadScheduler = DownloadScheduler(this@UpdateAvailableActivity.applicationContext)
+                return OTAViewModel(otaRepository, apkInstaller, container.activityLogUploader, sessionInstaller, downloadScheduler) as T
             }
         }
     }
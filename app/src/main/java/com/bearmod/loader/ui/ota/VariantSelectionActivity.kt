@@ -12,7 +12,9 @@ import androidx.recyclerview.widget.LinearLayoutManager
 import com.bearmod.loader.R
 import com.bearmod.loader.data.model.OTAUpdateState
 import com.bearmod.loader.databinding.ActivityVariantSelectionBinding
-import com.bearmod.loader.network.NetworkFactory
+import com.bearmod.loader.di.AppContainer
+import com.bearmod.loader.install.SessionInstaller
+import com.bearmod.loader.network.DownloadScheduler
 import com.bearmod.loader.ui.ota.adapter.VariantAdapter
 import com.bearmod.loader.utils.APKInstaller
 import kotlinx.coroutines.launch
@@ -29,9 +31,12 @@ class VariantSelectionActivity : AppCompatActivity() {
         object : ViewModelProvider.Factory {
             @Suppress("UNCHECKED_CAST")
             override fun <T : ViewModel> create(modelClass: Class<T>): T {
-                val otaRepository = NetworkFactory.createOTARepository(this@VariantSelectionActivity)
+                val container = AppContainer.from(this@VariantSelectionActivity)
+                val otaRepository = container.otaRepository
                 val apkInstaller = APKInstaller(this@VariantSelectionActivity)
-                return OTAViewModel(otaRepository, apkInstaller) as T
+                val sessionInstaller = SessionInstaller(this@VariantSelectionActivity.applicationContext)
+                val downloadScheduler = DownloadScheduler(this@VariantSelectionActivity.applicationContext)
+                return OTAViewModel(otaRepository, apkInstaller, container.activityLogUploader, sessionInstaller, downloadScheduler) as T
             }
         }
     }
@@ -8,6 +8,7 @@ import androidx.recyclerview.widget.RecyclerView
 import com.bearmod.loader.R
 import com.bearmod.loader.data.model.VariantItem
 import com.bearmod.loader.databinding.ItemVariantBinding
+import com.bearmod.loader.install.SplitApkResolver
 import java.util.Locale
 
 /**
@@ -99,7 +100,7 @@ class VariantAdapter(
                 
                 // Add file size info if available
                 variant.variantInfo?.let { variantInfo ->
-                    val apkSize = formatFileSize(variantInfo.apk.size ?: 0)
+                    val apkSize = formatFileSize(SplitApkResolver.forDevice(root.context).apkDownloadSize(variantInfo))
                     val obbSize = formatFileSize(variantInfo.obb.size ?: 0)
                     tvVariantSize.text = root.context.getString(R.string.variant_file_sizes, apkSize, obbSize)
                 }
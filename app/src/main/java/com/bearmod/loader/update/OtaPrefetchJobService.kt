@@ -0,0 +1,93 @@
+package com.bearmod.loader.update
+
+import android.app.job.JobParameters
+import android.app.job.JobService
+import android.net.Network
+import android.os.Build
+import com.bearmod.loader.di.AppContainer
+import com.bearmod.loader.logging.RingBufferLogger
+import com.bearmod.loader.logging.d
+import com.bearmod.loader.logging.w
+import com.bearmod.loader.utils.NetworkResult
+import com.bearmod.loader.utils.PackageVersionChecker
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+
+/**
+ * Downloads and verifies the next build for every installed game variant ahead of time, so
+ * that tapping UPDATE only re-hashes the cached files and installs them.
+ *
+ * Scheduled by [OtaPrefetchScheduler]. The version check is conditional (ETag), so an
+ * unchanged release costs one bodiless request. Files land in the regular artifact cache
+ * and resume from where a stopped job left off.
+ */
+class OtaPrefetchJobService : JobService() {
+
+    companion object {
+        private const val TAG = "OtaPrefetch"
+    }
+
+    private val logger = RingBufferLogger.shared
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private var running: Job? = null
+
+    override fun onStartJob(params: JobParameters): Boolean {
+        running = scope.launch {
+            val failed = try {
+                !prefetch(params)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                logger.w(TAG) { "Prefetch failed: ${e.message}" }
+                true
+            }
+            jobFinished(params, failed)
+        }
+        return true
+    }
+
+    override fun onStopJob(params: JobParameters): Boolean {
+        // Constraints no longer met (unplugged, left Wi-Fi); partial files resume next run
+        logger.d(TAG) { "Prefetch stopped" }
+        running?.cancel()
+        return true
+    }
+
+    override fun onDestroy() {
+        scope.cancel()
+        super.onDestroy()
+    }
+
+    /**
+     * @return false if the job should be retried
+     */
+    private suspend fun prefetch(params: JobParameters): Boolean {
+        val repository = AppContainer.from(this).otaRepository
+        val response = when (val result = repository.checkForUpdates()) {
+            is NetworkResult.Success -> result.data
+            else -> return false
+        }
+        if (!repository.isUpdateAvailable(response)) {
+            logger.d(TAG) { "No update to prefetch" }
+            return true
+        }
+
+        val checker = PackageVersionChecker(this)
+        val installed = response.variants.filterKeys { variant ->
+            PackageVersionChecker.OTA_VARIANT_PACKAGE_MAP[variant]?.let(checker::isPackageInstalled) == true
+        }
+        val network: Network? = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) params.network else null
+
+        for ((variant, info) in installed) {
+            if (repository.isDownloaded(variant, info)) continue
+            logger.d(TAG) { "Prefetching $variant ${response.version}" }
+            repository.downloadVariant(variant, info, network = network).collect { }
+        }
+        return true
+    }
+}
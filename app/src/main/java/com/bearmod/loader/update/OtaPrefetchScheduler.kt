@@ -0,0 +1,70 @@
+package com.bearmod.loader.update
+
+import android.app.job.JobInfo
+import android.app.job.JobScheduler
+import android.content.ComponentName
+import android.content.Context
+import android.os.Build
+import java.util.concurrent.TimeUnit
+
+/**
+ * Opt-in periodic prefetch of new OTA builds (see [OtaPrefetchJobService]).
+ *
+ * The job only runs on an unmetered network while charging, with battery and storage not
+ * low, and survives reboots. The user's choice is kept in preferences; [sync] re-applies it
+ * at startup in case the job was dropped (app update, cleared JobScheduler state).
+ */
+object OtaPrefetchScheduler {
+
+    const val JOB_ID = 0x07A1
+    private const val PREFS_NAME = "ota_prefs"
+    private const val KEY_PREFETCH_ENABLED = "prefetch_enabled"
+    private val INTERVAL_MS = TimeUnit.HOURS.toMillis(6)
+
+    @JvmStatic
+    fun isEnabled(context: Context): Boolean =
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getBoolean(KEY_PREFETCH_ENABLED, false)
+
+    @JvmStatic
+    fun setEnabled(context: Context, enabled: Boolean) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+            .putBoolean(KEY_PREFETCH_ENABLED, enabled)
+            .apply()
+        if (enabled) schedule(context) else cancel(context)
+    }
+
+    /**
+     * Make the scheduled job match the stored preference
+     */
+    @JvmStatic
+    fun sync(context: Context) {
+        val scheduler = jobScheduler(context) ?: return
+        val scheduled = scheduler.allPendingJobs.any { it.id == JOB_ID }
+        if (isEnabled(context) && !scheduled) schedule(context)
+        if (!isEnabled(context) && scheduled) cancel(context)
+    }
+
+    private fun schedule(context: Context) {
+        val appContext = context.applicationContext ?: context
+        val job = JobInfo.Builder(JOB_ID, ComponentName(appContext, OtaPrefetchJobService::class.java))
+            .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+            .setRequiresCharging(true)
+            .setPeriodic(INTERVAL_MS)
+            .setPersisted(true)
+            .apply {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    setRequiresBatteryNotLow(true)
+                    setRequiresStorageNotLow(true)
+                }
+            }
+            .build()
+        jobScheduler(appContext)?.schedule(job)
+    }
+
+    private fun cancel(context: Context) {
+        jobScheduler(context)?.cancel(JOB_ID)
+    }
+
+    private fun jobScheduler(context: Context): JobScheduler? =
+        context.getSystemService(Context.JOB_SCHEDULER_SERVICE) as? JobScheduler
+}
@@ -0,0 +1,157 @@
+package com.bearmod.loader.utils
+
+import android.content.ComponentCallbacks2
+import android.content.res.Resources
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.util.Log
+import android.util.LruCache
+import android.widget.ImageView
+import androidx.annotation.DrawableRes
+import androidx.core.view.doOnLayout
+import com.bearmod.loader.R
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.util.Collections
+
+/**
+ * Downsampling bitmap loader for raster drawables (branding PNGs and variant WebP icons).
+ *
+ * Resources are decoded off the main thread at the smallest power-of-two sample size that
+ * still covers the target view, and kept in a byte-bounded LRU cache keyed by resource and
+ * target size. Non-bitmap drawables (vectors, shapes) fall back to [ImageView.setImageResource].
+ */
+object BitmapLoader {
+
+    private const val TAG = "BitmapLoader"
+
+    // Use 1/8th of the heap for decoded bitmaps, the usual budget for an in-memory image cache
+    private val cache = object : LruCache<String, Bitmap>(
+        (Runtime.getRuntime().maxMemory() / 8).coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+    ) {
+        override fun sizeOf(key: String, value: Bitmap): Int = value.allocationByteCount
+    }
+
+    // Resources that BitmapFactory cannot decode (vector/shape drawables)
+    private val nonBitmapResources: MutableSet<Int> = Collections.synchronizedSet(HashSet())
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    /**
+     * Load [resId] into [imageView], downsampled to the view size.
+     * [targetWidth]/[targetHeight] override the measured view size when given (in pixels).
+     */
+    fun load(imageView: ImageView, @DrawableRes resId: Int, targetWidth: Int = 0, targetHeight: Int = 0) {
+        if (resId == 0 || nonBitmapResources.contains(resId)) {
+            imageView.setTag(R.id.bitmap_loader_request, null)
+            imageView.setImageResource(resId)
+            return
+        }
+
+        val width = if (targetWidth > 0) targetWidth else imageView.layoutParams?.width ?: 0
+        val height = if (targetHeight > 0) targetHeight else imageView.layoutParams?.height ?: 0
+
+        if (width > 0 && height > 0) {
+            loadSized(imageView, resId, width, height)
+        } else if (imageView.width > 0 && imageView.height > 0) {
+            loadSized(imageView, resId, imageView.width, imageView.height)
+        } else {
+            // match_parent/wrap_content views: wait for the first layout pass to know the size
+            imageView.setImageDrawable(null)
+            imageView.setTag(R.id.bitmap_loader_request, resId.toString())
+            imageView.doOnLayout { view ->
+                if (imageView.getTag(R.id.bitmap_loader_request) == resId.toString()) {
+                    val fallback = imageView.resources.displayMetrics.widthPixels / 2
+                    loadSized(
+                        imageView,
+                        resId,
+                        view.width.takeIf { it > 0 } ?: fallback,
+                        view.height.takeIf { it > 0 } ?: fallback
+                    )
+                }
+            }
+        }
+    }
+
+    private fun loadSized(imageView: ImageView, resId: Int, width: Int, height: Int) {
+        val key = "$resId:${width}x$height"
+        imageView.setTag(R.id.bitmap_loader_request, key)
+
+        cache.get(key)?.let {
+            imageView.setImageBitmap(it)
+            return
+        }
+
+        imageView.setImageDrawable(null)
+        val resources = imageView.resources
+        scope.launch {
+            val bitmap = try {
+                decodeSampled(resources, resId, width, height)
+            } catch (e: Exception) {
+                Log.w(TAG, "Failed to decode resource $resId: ${e.message}")
+                null
+            }
+
+            if (bitmap != null) {
+                cache.put(key, bitmap)
+            } else {
+                nonBitmapResources.add(resId)
+            }
+
+            withContext(Dispatchers.Main) {
+                // The view may have been rebound to another resource while decoding
+                if (imageView.getTag(R.id.bitmap_loader_request) != key) return@withContext
+                if (bitmap != null) {
+                    imageView.setImageBitmap(bitmap)
+                } else {
+                    imageView.setImageResource(resId)
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode [resId] with the largest power-of-two subsample that keeps both dimensions
+     * at or above the requested size. Returns null for non-bitmap drawables.
+     */
+    private fun decodeSampled(resources: Resources, resId: Int, reqWidth: Int, reqHeight: Int): Bitmap? {
+        val options = BitmapFactory.Options().apply {
+            inJustDecodeBounds = true
+            // Density scaling would undo the subsampling; size against the target view instead
+            inScaled = false
+        }
+        BitmapFactory.decodeResource(resources, resId, options)
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight)
+        options.inJustDecodeBounds = false
+        return BitmapFactory.decodeResource(resources, resId, options)
+    }
+
+    internal fun calculateInSampleSize(width: Int, height: Int, reqWidth: Int, reqHeight: Int): Int {
+        var inSampleSize = 1
+        if (height > reqHeight || width > reqWidth) {
+            val halfHeight = height / 2
+            val halfWidth = width / 2
+            while (halfHeight / inSampleSize >= reqHeight && halfWidth / inSampleSize >= reqWidth) {
+                inSampleSize *= 2
+            }
+        }
+        return inSampleSize
+    }
+
+    /**
+     * Release cached bitmaps under memory pressure. Called from Application.onTrimMemory.
+     */
+    fun trimMemory(level: Int) {
+        when {
+            level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL -> cache.evictAll()
+            level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW -> cache.trimToSize(cache.maxSize() / 2)
+        }
+    }
+}
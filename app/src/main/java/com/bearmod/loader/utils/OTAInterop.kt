@@ -5,7 +5,7 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
-import com.bearmod.loader.network.NetworkFactory
+import com.bearmod.loader.di.AppContainer
 
 object OTAInterop {
 
@@ -15,7 +15,7 @@ object OTAInterop {
 
     @JvmStatic
     fun runCheckForUpdates(context: Context, callback: Callback) {
-        val otaRepo = NetworkFactory.createOTARepository(context)
+        val otaRepo = AppContainer.from(context).otaRepository
 
         CoroutineScope(Dispatchers.IO).launch {
             val result = try {
@@ -32,6 +32,17 @@ class PackageVersionChecker(private val context: Context) {
             "pubg_vng" to PUBG_VNG,
             "bgmi" to BGMI
         )
+
+        /**
+         * Map OTA manifest variant keys to their package names
+         */
+        val OTA_VARIANT_PACKAGE_MAP = mapOf(
+            "GL" to PUBG_GLOBAL,
+            "KR" to PUBG_KR,
+            "TW" to PUBG_TW,
+            "VNG" to PUBG_VNG,
+            "BGMI" to BGMI
+        )
     }
 
     /**
@@ -101,24 +112,7 @@ class PackageVersionChecker(private val context: Context) {
      * - Negative number if version1 < version2  
      * - 0 if versions are equal
      */
-    fun compareVersions(version1: String, version2: String): Int {
-        val v1Parts = version1.split(".").map { it.toIntOrNull() ?: 0 }
-        val v2Parts = version2.split(".").map { it.toIntOrNull() ?: 0 }
-        
-        val maxLength = maxOf(v1Parts.size, v2Parts.size)
-        
-        for (i in 0 until maxLength) {
-            val v1Part = v1Parts.getOrNull(i) ?: 0
-            val v2Part = v2Parts.getOrNull(i) ?: 0
-            
-            when {
-                v1Part > v2Part -> return 1
-                v1Part < v2Part -> return -1
-            }
-        }
-        
-        return 0
-    }
+    fun compareVersions(version1: String, version2: String): Int = VersionComparator.compare(version1, version2)
 
     /**
      * Check if an installed version is older than the available version
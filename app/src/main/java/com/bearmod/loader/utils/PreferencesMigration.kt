@@ -3,6 +3,11 @@ package com.bearmod.loader.utils
 import android.content.Context
 import android.content.SharedPreferences
 import android.util.Log
+import android.util.Xml
+import com.bearmod.loader.storage.AppendOnlyPreferences
+import org.xmlpull.v1.XmlPullParser
+import java.io.File
+import java.io.FileInputStream
 
 /**
  * Utility class to handle migration of preferences between different storage implementations
@@ -13,6 +18,9 @@ object PreferencesMigration {
 
     private const val TAG = "PreferencesMigration"
     private const val MIGRATION_COMPLETED_KEY = "migration_v2_completed"
+    private const val ENVELOPE_MIGRATION_COMPLETED_KEY = "envelope_v1_completed"
+    private const val BINARY_STORE_MIGRATED_PREFIX = "binary_store_migrated_"
+    private const val BINARY_STORE_DIR = "secure_prefs"
     
     /**
      * Migrates preferences from old implementation to new implementation if needed
@@ -21,39 +29,66 @@ object PreferencesMigration {
      */
     fun migrateIfNeeded(context: Context, newPreferences: SecurePreferences) {
         try {
-            // Check if migration has already been completed
             val migrationPrefs = context.getSharedPreferences("migration_status", Context.MODE_PRIVATE)
-            if (migrationPrefs.getBoolean(MIGRATION_COMPLETED_KEY, false)) {
-                Log.d(TAG, "Migration already completed, skipping")
-                return
-            }
-            
-            // Try to access old preferences and migrate data
-            val oldData = tryGetOldPreferences(context)
-            if (oldData.isNotEmpty()) {
-                Log.i(TAG, "Found old preferences data, starting migration")
-                migrateData(oldData, newPreferences)
-                
-                // Mark migration as completed
-                migrationPrefs.edit()
-                    .putBoolean(MIGRATION_COMPLETED_KEY, true)
-                    .apply()
-                
-                Log.i(TAG, "Migration completed successfully")
-            } else {
-                // No old data found, mark migration as completed anyway
-                migrationPrefs.edit()
-                    .putBoolean(MIGRATION_COMPLETED_KEY, true)
-                    .apply()
-                
-                Log.d(TAG, "No old preferences data found, marking migration as completed")
-            }
+            migrateLegacyFilesIfNeeded(context, migrationPrefs, newPreferences)
+            migrateEnvelopeEncryptionIfNeeded(migrationPrefs, newPreferences)
         } catch (e: Exception) {
             Log.e(TAG, "Error during preferences migration", e)
             // Don't fail the app if migration fails, just log the error
         }
     }
-    
+
+    private fun migrateLegacyFilesIfNeeded(
+        context: Context,
+        migrationPrefs: SharedPreferences,
+        newPreferences: SecurePreferences
+    ) {
+        // Check if migration has already been completed
+        if (migrationPrefs.getBoolean(MIGRATION_COMPLETED_KEY, false)) {
+            Log.d(TAG, "Migration already completed, skipping")
+            return
+        }
+
+        // Try to access old preferences and migrate data
+        val oldData = tryGetOldPreferences(context)
+        if (oldData.isNotEmpty()) {
+            Log.i(TAG, "Found old preferences data, starting migration")
+            migrateData(oldData, newPreferences)
+
+            // Mark migration as completed
+            migrationPrefs.edit()
+                .putBoolean(MIGRATION_COMPLETED_KEY, true)
+                .apply()
+
+            Log.i(TAG, "Migration completed successfully")
+        } else {
+            // No old data found, mark migration as completed anyway
+            migrationPrefs.edit()
+                .putBoolean(MIGRATION_COMPLETED_KEY, true)
+                .apply()
+
+            Log.d(TAG, "No old preferences data found, marking migration as completed")
+        }
+    }
+
+    /**
+     * Re-encrypts keyauth_secure_prefs_v2 values written with per-field keystore encryption
+     * under the envelope key. Left pending (and retried next launch) if the keystore is unavailable.
+     */
+    private fun migrateEnvelopeEncryptionIfNeeded(
+        migrationPrefs: SharedPreferences,
+        newPreferences: SecurePreferences
+    ) {
+        if (migrationPrefs.getBoolean(ENVELOPE_MIGRATION_COMPLETED_KEY, false)) return
+
+        if (newPreferences.migrateToEnvelopeEncryption()) {
+            migrationPrefs.edit()
+                .putBoolean(ENVELOPE_MIGRATION_COMPLETED_KEY, true)
+                .apply()
+            Log.i(TAG, "Envelope encryption migration completed")
+        }
+    }
+
     /**
      * Attempts to retrieve data from old preferences implementations
      */
@@ -151,6 +186,110 @@ object PreferencesMigration {
         }
     }
     
+    /**
+     * Location of the binary append-only store for preferences file [name]
+     */
+    fun binaryStoreFile(context: Context, name: String): File {
+        return File(File(context.filesDir, BINARY_STORE_DIR), "$name.blp")
+    }
+
+    /**
+     * Opens the binary store for [name], streaming the SharedPreferences XML file of the same
+     * name (e.g. keyauth_secure_prefs_v2 or its _fallback) into it the first time. The XML file
+     * is left in place so the XML backend can be re-enabled without data loss.
+     */
+    @Synchronized
+    fun openBinaryStore(context: Context, name: String): SharedPreferences {
+        val store = AppendOnlyPreferences.open(binaryStoreFile(context, name))
+        try {
+            val migrationPrefs = context.getSharedPreferences("migration_status", Context.MODE_PRIVATE)
+            val migratedKey = BINARY_STORE_MIGRATED_PREFIX + name
+            if (migrationPrefs.getBoolean(migratedKey, false)) return store
+
+            val xmlFile = File(File(context.applicationInfo.dataDir, "shared_prefs"), "$name.xml")
+            val migrated = when {
+                !xmlFile.exists() -> 0
+                // Never overwrite newer data if the completion flag was lost
+                store.all.isNotEmpty() -> 0
+                else -> streamXmlInto(xmlFile, store)
+            }
+            if (migrated >= 0) {
+                migrationPrefs.edit()
+                    .putBoolean(migratedKey, true)
+                    .apply()
+                Log.i(TAG, "Migrated $migrated value(s) from $name.xml to the binary store")
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Error migrating $name to the binary store", e)
+        }
+        return store
+    }
+
+    /**
+     * Streams SharedPreferences XML entries into [store] with a pull parser and writes them as
+     * one batch. Returns the number of entries, or -1 if the commit failed.
+     */
+    private fun streamXmlInto(xmlFile: File, store: SharedPreferences): Int {
+        val editor = store.edit()
+        var count = 0
+        FileInputStream(xmlFile).use { input ->
+            val parser = Xml.newPullParser()
+            parser.setInput(input, "UTF-8")
+
+            var setName: String? = null
+            var setValues: MutableSet<String>? = null
+            var event = parser.eventType
+            while (event != XmlPullParser.END_DOCUMENT) {
+                if (event == XmlPullParser.START_TAG) {
+                    val name = parser.getAttributeValue(null, "name")
+                    val value = parser.getAttributeValue(null, "value")
+                    when (parser.name) {
+                        "string" -> {
+                            val text = parser.nextText()
+                            val values = setValues
+                            if (values != null) {
+                                values.add(text)
+                            } else if (name != null) {
+                                editor.putString(name, text)
+                                count++
+                            }
+                        }
+                        "boolean" -> if (name != null && value != null) {
+                            editor.putBoolean(name, value.toBoolean())
+                            count++
+                        }
+                        "int" -> if (name != null && value != null) {
+                            editor.putInt(name, value.toInt())
+                            count++
+                        }
+                        "long" -> if (name != null && value != null) {
+                            editor.putLong(name, value.toLong())
+                            count++
+                        }
+                        "float" -> if (name != null && value != null) {
+                            editor.putFloat(name, value.toFloat())
+                            count++
+                        }
+                        "set" -> {
+                            setName = name
+                            setValues = HashSet()
+                        }
+                    }
+                } else if (event == XmlPullParser.END_TAG && parser.name == "set") {
+                    val name = setName
+                    if (name != null) {
+                        editor.putStringSet(name, setValues)
+                        count++
+                    }
+                    setName = null
+                    setValues = null
+                }
+                event = parser.next()
+            }
+        }
+        return if (editor.commit()) count else -1
+    }
+
     /**
      * Clears migration status (for testing purposes)
      */
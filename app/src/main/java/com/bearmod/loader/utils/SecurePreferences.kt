@@ -1,13 +1,21 @@
 package com.bearmod.loader.utils
 
+import android.content.ComponentCallbacks2
 import android.content.Context
 import android.content.SharedPreferences
 import android.os.Build
 import android.util.Base64
 import android.util.Log
+import com.bearmod.loader.config.KeyAuthConfig
 import com.bearmod.loader.security.AndroidKeystoreProvider
+import com.bearmod.loader.security.EnvelopeKeystoreProvider
 import com.bearmod.loader.security.KeystoreProvider
 import com.bearmod.loader.security.HWIDProvider
+import com.bearmod.loader.storage.AppendOnlyPreferences
+import java.util.Collections
+import java.util.WeakHashMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Secure preferences utility for storing sensitive data using Android Keystore directly
@@ -17,20 +25,21 @@ import kotlin.jvm.JvmOverloads
 
 class SecurePreferences @JvmOverloads constructor(
     private val context: Context,
-    private val keystoreProvider: KeystoreProvider = AndroidKeystoreProvider(),
-    private val hwidProvider: HWIDProvider? = null
+    private val keystoreProvider: KeystoreProvider = EnvelopeKeystoreProvider(context),
+    private val hwidProvider: HWIDProvider? = null,
+    private val zeroSecretsOnTrimMemory: Boolean = true
 ) : com.bearmod.loader.session.SessionStore {
 
     companion object {
         private const val TAG = "SecurePreferences"
         private const val PREFS_NAME = "keyauth_secure_prefs_v2"
-        private const val KEY_LICENSE_KEY = "license_key"
-        private const val KEY_REMEMBER_LICENSE = "remember_license"
-        private const val KEY_AUTO_LOGIN = "auto_login"
+        internal const val KEY_LICENSE_KEY = "license_key"
+        internal const val KEY_REMEMBER_LICENSE = "remember_license"
+        internal const val KEY_AUTO_LOGIN = "auto_login"
         private const val KEY_HWID = "device_hwid"
 
         // Session and token management keys
-        private const val KEY_SESSION_TOKEN = "session_token"
+        internal const val KEY_SESSION_TOKEN = "session_token"
         private const val KEY_REFRESH_TOKEN = "refresh_token"
         private const val KEY_TOKEN_EXPIRY = "token_expiry"
         private const val KEY_DEVICE_REGISTERED = "device_registered"
@@ -44,10 +53,75 @@ class SecurePreferences @JvmOverloads constructor(
         private const val TRANSFORMATION = "AES/GCM/NoPadding"
         private const val GCM_IV_LENGTH = 12
         private const val GCM_TAG_LENGTH = 16
+
+        // Values that go through encryptData/decryptData
+        private val ENCRYPTED_KEYS = listOf(
+            KEY_LICENSE_KEY, KEY_HWID, KEY_SESSION_TOKEN, KEY_REFRESH_TOKEN, KEY_BOUND_LICENSE
+        )
+
+        // Number of times any instance ran keystore setup (ensureKey) for its backing file
+        private val keystoreInitializations = AtomicInteger()
+
+        @JvmStatic
+        fun keystoreInitializationCount(): Int = keystoreInitializations.get()
+
+        /**
+         * Start loading the binary store in the background so it is ready by first access.
+         * No-op while SharedPreferences XML is the backing store.
+         */
+        @JvmStatic
+        fun preload(context: Context) {
+            if (KeyAuthConfig.USE_BINARY_PREFERENCE_STORE) {
+                AppendOnlyPreferences.open(PreferencesMigration.binaryStoreFile(context, PREFS_NAME))
+            }
+        }
+
+        // Instances whose decrypted values are wiped by onTrimMemory
+        private val trimmableInstances: MutableSet<SecurePreferences> =
+            Collections.synchronizedSet(Collections.newSetFromMap(WeakHashMap()))
+
+        /**
+         * Zero cached plaintext secrets once the UI is hidden or memory runs low.
+         * Called from Application.onTrimMemory.
+         */
+        @JvmStatic
+        fun onTrimMemory(level: Int) {
+            if (level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN &&
+                level != ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW &&
+                level != ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+            ) return
+            val instances = synchronized(trimmableInstances) { trimmableInstances.toList() }
+            instances.forEach { it.wipeCachedSecrets() }
+        }
+    }
+
+    /**
+     * Decrypted value keyed by preference key, valid while the stored ciphertext is unchanged.
+     * Plaintext is kept as a CharArray so it can be zeroed.
+     */
+    private class CachedValue(val storedData: String, val plaintext: CharArray)
+
+    private val decryptedCache = ConcurrentHashMap<String, CachedValue>()
+
+    // Held strongly: SharedPreferences only keeps weak references to its listeners
+    private val cacheInvalidationListener = SharedPreferences.OnSharedPreferenceChangeListener { prefs, key ->
+        if (key == null) {
+            // Editor.clear() on API 30+
+            wipeCachedSecrets()
+        } else if (key in ENCRYPTED_KEYS) {
+            val cached = decryptedCache[key] ?: return@OnSharedPreferenceChangeListener
+            if (prefs.getString(key, null) != cached.storedData) evictCached(key)
+        }
+    }
+
+    init {
+        if (zeroSecretsOnTrimMemory) trimmableInstances.add(this)
     }
 
     private val sharedPreferences: SharedPreferences by lazy {
-        createSecureSharedPreferences()
+        createSecureSharedPreferences().also {
+            it.registerOnSharedPreferenceChangeListener(cacheInvalidationListener)
+        }
     }
 
     private val isEncryptionSupported: Boolean by lazy {
@@ -58,6 +132,7 @@ class SecurePreferences @JvmOverloads constructor(
      * Creates secure shared preferences with Android Keystore encryption
      */
     private fun createSecureSharedPreferences(): SharedPreferences {
+        keystoreInitializations.incrementAndGet()
         return if (isEncryptionSupported) {
             try {
                 // Ensure the master key exists via the provider. If ensureKey fails (for
@@ -69,7 +144,14 @@ class SecurePreferences @JvmOverloads constructor(
                         createFallbackPreferences()
                     } else {
                         Log.d(TAG, "Successfully initialized Android Keystore encryption")
-                        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                        openPreferences(PREFS_NAME).also { prefs ->
+                            val envelope = keystoreProvider as? EnvelopeKeystoreProvider
+                            if (envelope?.consumeDataKeyReset(KEY_ALIAS) == true) {
+                                // The key was replaced: encrypted values can never be read again
+                                Log.w(TAG, "Encryption key replaced, clearing unreadable values")
+                                prefs.edit().apply { ENCRYPTED_KEYS.forEach { remove(it) } }.commit()
+                            }
+                        }
                     }
                 } catch (e: Exception) {
                     Log.e(TAG, "Keystore provider threw while ensuring key, falling back", e)
@@ -91,7 +173,19 @@ class SecurePreferences @JvmOverloads constructor(
      * Creates fallback unencrypted preferences if encryption fails
      */
     private fun createFallbackPreferences(): SharedPreferences {
-        return context.getSharedPreferences("${PREFS_NAME}_fallback", Context.MODE_PRIVATE)
+        return openPreferences("${PREFS_NAME}_fallback")
+    }
+
+    /**
+     * Opens the backing store for [name]: SharedPreferences XML, or the binary append-only
+     * store (migrated from the XML file on first open) when enabled in KeyAuthConfig
+     */
+    private fun openPreferences(name: String): SharedPreferences {
+        return if (KeyAuthConfig.USE_BINARY_PREFERENCE_STORE) {
+            PreferencesMigration.openBinaryStore(context, name)
+        } else {
+            context.getSharedPreferences(name, Context.MODE_PRIVATE)
+        }
     }
     
     /**
@@ -132,6 +226,53 @@ class SecurePreferences @JvmOverloads constructor(
         }
     }
 
+    /**
+     * Decrypts [storedData] for [key], reusing the cached plaintext while the stored value is unchanged
+     */
+    private fun decryptCached(key: String, storedData: String): String? {
+        decryptedCache[key]?.let { cached ->
+            if (cached.storedData == storedData) {
+                val value = String(cached.plaintext)
+                // Entries are removed before being zeroed, so a copy taken while still mapped is intact
+                if (decryptedCache[key] === cached) return value
+            }
+        }
+        val decrypted = decryptData(storedData) ?: return null
+        cacheDecrypted(key, storedData, decrypted)
+        return decrypted
+    }
+
+    private fun cacheDecrypted(key: String, storedData: String, plaintext: String) {
+        decryptedCache.put(key, CachedValue(storedData, plaintext.toCharArray()))?.plaintext?.fill('\u0000')
+    }
+
+    private fun evictCached(vararg keys: String) {
+        for (key in keys) {
+            decryptedCache.remove(key)?.plaintext?.fill('\u0000')
+        }
+    }
+
+    /**
+     * Register a listener on the backing preferences file. As with SharedPreferences, the caller
+     * must keep a strong reference to [listener] while it is registered.
+     */
+    fun registerOnChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener) {
+        sharedPreferences.registerOnSharedPreferenceChangeListener(listener)
+    }
+
+    fun unregisterOnChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener) {
+        sharedPreferences.unregisterOnSharedPreferenceChangeListener(listener)
+    }
+
+    /**
+     * Zero and drop every cached plaintext; the next read decrypts from storage again
+     */
+    fun wipeCachedSecrets() {
+        for (key in decryptedCache.keys.toList()) {
+            evictCached(key)
+        }
+    }
+
     /**
      * Save license key securely
      * @param licenseKey The license key to save
@@ -147,6 +288,7 @@ class SecurePreferences @JvmOverloads constructor(
                 licenseKey
             }
 
+            cacheDecrypted(KEY_LICENSE_KEY, dataToStore, licenseKey)
             sharedPreferences.edit()
                 .putString(KEY_LICENSE_KEY, dataToStore)
                 .apply()
@@ -164,7 +306,7 @@ class SecurePreferences @JvmOverloads constructor(
         return try {
             val storedData = sharedPreferences.getString(KEY_LICENSE_KEY, null)
             if (storedData != null && isEncryptionSupported) {
-                decryptData(storedData) ?: run {
+                decryptCached(KEY_LICENSE_KEY, storedData) ?: run {
                     Log.w(TAG, "Decryption failed, returning raw data")
                     storedData
                 }
@@ -182,6 +324,7 @@ class SecurePreferences @JvmOverloads constructor(
      */
     fun clearLicenseKey() {
         try {
+            evictCached(KEY_LICENSE_KEY)
             sharedPreferences.edit()
                 .remove(KEY_LICENSE_KEY)
                 .apply()
@@ -262,6 +405,7 @@ class SecurePreferences @JvmOverloads constructor(
                 hwid
             }
 
+            cacheDecrypted(KEY_HWID, dataToStore, hwid)
             sharedPreferences.edit()
                 .putString(KEY_HWID, dataToStore)
                 .apply()
@@ -279,7 +423,7 @@ class SecurePreferences @JvmOverloads constructor(
         return try {
             val storedData = sharedPreferences.getString(KEY_HWID, null)
             if (storedData != null && isEncryptionSupported) {
-                decryptData(storedData) ?: run {
+                decryptCached(KEY_HWID, storedData) ?: run {
                     Log.w(TAG, "HWID decryption failed, returning raw data")
                     storedData
                 }
@@ -297,6 +441,7 @@ class SecurePreferences @JvmOverloads constructor(
      */
     fun clearStoredHWID() {
         try {
+            evictCached(KEY_HWID)
             sharedPreferences.edit()
                 .remove(KEY_HWID)
                 .apply()
@@ -362,6 +507,7 @@ class SecurePreferences @JvmOverloads constructor(
                 sessionToken
             }
 
+            cacheDecrypted(KEY_SESSION_TOKEN, dataToStore, sessionToken)
             sharedPreferences.edit()
                 .putString(KEY_SESSION_TOKEN, dataToStore)
                 .putLong(KEY_TOKEN_EXPIRY, expiryTimeMillis)
@@ -388,7 +534,7 @@ class SecurePreferences @JvmOverloads constructor(
 
             val storedData = sharedPreferences.getString(KEY_SESSION_TOKEN, null)
             if (storedData != null && isEncryptionSupported) {
-                decryptData(storedData) ?: run {
+                decryptCached(KEY_SESSION_TOKEN, storedData) ?: run {
                     Log.w(TAG, "Session token decryption failed, returning raw data")
                     storedData
                 }
@@ -427,6 +573,7 @@ class SecurePreferences @JvmOverloads constructor(
      */
     override fun clearSessionToken() {
         try {
+            evictCached(KEY_SESSION_TOKEN)
             sharedPreferences.edit()
                 .remove(KEY_SESSION_TOKEN)
                 .remove(KEY_TOKEN_EXPIRY)
@@ -453,6 +600,7 @@ class SecurePreferences @JvmOverloads constructor(
                 refreshToken
             }
 
+            cacheDecrypted(KEY_REFRESH_TOKEN, dataToStore, refreshToken)
             sharedPreferences.edit()
                 .putString(KEY_REFRESH_TOKEN, dataToStore)
                 .apply()
@@ -469,7 +617,7 @@ class SecurePreferences @JvmOverloads constructor(
         return try {
             val storedData = sharedPreferences.getString(KEY_REFRESH_TOKEN, null)
             if (storedData != null && isEncryptionSupported) {
-                decryptData(storedData) ?: run {
+                decryptCached(KEY_REFRESH_TOKEN, storedData) ?: run {
                     Log.w(TAG, "Refresh token decryption failed, returning raw data")
                     storedData
                 }
@@ -487,6 +635,7 @@ class SecurePreferences @JvmOverloads constructor(
      */
     fun clearRefreshToken() {
         try {
+            evictCached(KEY_REFRESH_TOKEN)
             sharedPreferences.edit()
                 .remove(KEY_REFRESH_TOKEN)
                 .apply()
@@ -511,6 +660,7 @@ class SecurePreferences @JvmOverloads constructor(
                 licenseKey
             }
 
+            cacheDecrypted(KEY_BOUND_LICENSE, encryptedLicense, licenseKey)
             sharedPreferences.edit()
                 .putBoolean(KEY_DEVICE_REGISTERED, true)
                 .putString(KEY_LAST_AUTH_HWID, hwid)
@@ -554,7 +704,7 @@ class SecurePreferences @JvmOverloads constructor(
         return try {
             val storedData = sharedPreferences.getString(KEY_BOUND_LICENSE, null)
             if (storedData != null && isEncryptionSupported) {
-                decryptData(storedData) ?: storedData
+                decryptCached(KEY_BOUND_LICENSE, storedData) ?: storedData
             } else {
                 storedData
             }
@@ -607,6 +757,7 @@ class SecurePreferences @JvmOverloads constructor(
      */
     override fun clearDeviceRegistration() {
         try {
+            evictCached(KEY_BOUND_LICENSE)
             sharedPreferences.edit()
                 .remove(KEY_DEVICE_REGISTERED)
                 .remove(KEY_LAST_AUTH_HWID)
@@ -626,6 +777,7 @@ class SecurePreferences @JvmOverloads constructor(
      */
     fun clearAll() {
         try {
+            wipeCachedSecrets()
             sharedPreferences.edit().clear().apply()
             Log.d(TAG, "All preferences cleared successfully")
         } catch (e: Exception) {
@@ -638,6 +790,7 @@ class SecurePreferences @JvmOverloads constructor(
      */
     fun clearAuthenticationData() {
         try {
+            evictCached(KEY_SESSION_TOKEN, KEY_REFRESH_TOKEN, KEY_BOUND_LICENSE)
             sharedPreferences.edit()
                 .remove(KEY_SESSION_TOKEN)
                 .remove(KEY_REFRESH_TOKEN)
@@ -654,6 +807,141 @@ class SecurePreferences @JvmOverloads constructor(
         }
     }
 
+    /**
+     * Re-encrypt values still stored as per-field keystore ciphertext under the envelope key.
+     * No-op unless the provider is an [EnvelopeKeystoreProvider].
+     * @return true when every legacy value was migrated (or there was nothing to do),
+     * false if the keystore is unavailable and the migration should be retried later
+     */
+    fun migrateToEnvelopeEncryption(): Boolean {
+        if (keystoreProvider !is EnvelopeKeystoreProvider) return true
+        return try {
+            if (!keystoreProvider.ensureKey(KEY_ALIAS)) {
+                Log.w(TAG, "Keystore unavailable, deferring envelope migration")
+                return false
+            }
+
+            val editor = sharedPreferences.edit()
+            var migrated = 0
+            for (key in ENCRYPTED_KEYS) {
+                val storedData = sharedPreferences.getString(key, null) ?: continue
+                val combined = try {
+                    Base64.decode(storedData, Base64.DEFAULT)
+                } catch (e: IllegalArgumentException) {
+                    continue // stored unencrypted after an earlier encryption failure
+                }
+                if (EnvelopeKeystoreProvider.isEnvelopeCiphertext(combined)) continue
+
+                val plaintext = keystoreProvider.decrypt(KEY_ALIAS, combined) ?: continue
+                val reencrypted = keystoreProvider.encrypt(KEY_ALIAS, plaintext)
+                plaintext.fill(0)
+                if (reencrypted == null) {
+                    Log.w(TAG, "Envelope re-encryption failed for $key")
+                    return false
+                }
+                editor.putString(key, Base64.encodeToString(reencrypted, Base64.DEFAULT))
+                migrated++
+            }
+
+            if (migrated > 0 && !editor.commit()) {
+                Log.w(TAG, "Failed to persist envelope-encrypted values")
+                return false
+            }
+            Log.d(TAG, "Envelope migration re-encrypted $migrated value(s)")
+            true
+        } catch (e: Exception) {
+            Log.e(TAG, "Envelope migration failed", e)
+            false
+        }
+    }
+
+    // ==================== TRANSACTIONS ====================
+
+    /**
+     * Multi-field update written with a single editor commit, so the backing file is rewritten
+     * once and either every field lands on disk or none does. Obtain one through [transaction].
+     */
+    inner class Transaction internal constructor() {
+        private val editor = sharedPreferences.edit()
+        // key -> (stored value, plaintext) for the decrypted-value cache once committed
+        private val cacheUpdates = mutableMapOf<String, Pair<String, String>>()
+        private val removedKeys = mutableSetOf<String>()
+
+        private fun putEncrypted(key: String, value: String) {
+            val dataToStore = encryptData(value) ?: run {
+                Log.w(TAG, "Encryption failed for $key, storing unencrypted")
+                value
+            }
+            editor.putString(key, dataToStore)
+            cacheUpdates[key] = dataToStore to value
+            removedKeys.remove(key)
+        }
+
+        private fun removeEncrypted(key: String) {
+            editor.remove(key)
+            cacheUpdates.remove(key)
+            removedKeys.add(key)
+        }
+
+        fun saveLicenseKey(licenseKey: String) = apply { putEncrypted(KEY_LICENSE_KEY, licenseKey) }
+
+        fun storeHWID(hwid: String) = apply { putEncrypted(KEY_HWID, hwid) }
+
+        fun storeSessionToken(sessionToken: String, expiryTimeMillis: Long) = apply {
+            putEncrypted(KEY_SESSION_TOKEN, sessionToken)
+            editor.putLong(KEY_TOKEN_EXPIRY, expiryTimeMillis)
+        }
+
+        fun storeRefreshToken(refreshToken: String) = apply { putEncrypted(KEY_REFRESH_TOKEN, refreshToken) }
+
+        fun clearSessionToken() = apply {
+            removeEncrypted(KEY_SESSION_TOKEN)
+            editor.remove(KEY_TOKEN_EXPIRY)
+        }
+
+        fun setDeviceRegistered(hwid: String, licenseKey: String) = apply {
+            editor.putBoolean(KEY_DEVICE_REGISTERED, true)
+                .putString(KEY_LAST_AUTH_HWID, hwid)
+                .putLong("registration_timestamp", System.currentTimeMillis())
+            putEncrypted(KEY_BOUND_LICENSE, licenseKey)
+        }
+
+        fun setDeviceTrustLevel(trustLevel: Int) = apply {
+            editor.putInt(KEY_DEVICE_TRUST_LEVEL, trustLevel)
+                .putLong("last_trust_update", System.currentTimeMillis())
+        }
+
+        internal fun commit(): Boolean {
+            // Drop stale plaintext first so readers fall back to storage while the commit runs
+            (cacheUpdates.keys + removedKeys).forEach { evictCached(it) }
+            val committed = editor.commit()
+            if (committed) {
+                cacheUpdates.forEach { (key, value) -> cacheDecrypted(key, value.first, value.second) }
+            }
+            return committed
+        }
+    }
+
+    /**
+     * Apply several updates as one transaction. Values are encrypted up front and written with
+     * a single commit(); this blocks on disk I/O, so call it off the main thread.
+     * @return true if every update was written
+     */
+    fun transaction(block: Transaction.() -> Unit): Boolean {
+        return try {
+            val committed = Transaction().apply(block).commit()
+            if (committed) {
+                Log.d(TAG, "Transaction committed")
+            } else {
+                Log.w(TAG, "Transaction commit failed, no fields were written")
+            }
+            committed
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to apply transaction", e)
+            false
+        }
+    }
+
     /**
      * Check if the preferences are encrypted
      * @return True if using encrypted storage, false if using fallback
@@ -685,7 +973,8 @@ class SecurePreferences @JvmOverloads constructor(
             "apiLevel" to Build.VERSION.SDK_INT,
             "preferencesName" to PREFS_NAME,
             "keyAlias" to KEY_ALIAS,
-            "storageInfo" to getStorageInfo()
+            "storageInfo" to getStorageInfo(),
+            "keystoreTimings" to AndroidKeystoreProvider.timings.snapshots().mapValues { it.value.format() }
         )
     }
 }
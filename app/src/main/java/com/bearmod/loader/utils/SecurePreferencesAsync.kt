@@ -0,0 +1,92 @@
+package com.bearmod.loader.utils
+
+import android.content.SharedPreferences
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.filter
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.onStart
+import kotlinx.coroutines.withContext
+
+/**
+ * Coroutine API over [SecurePreferences].
+ *
+ * Every call runs on a dedicated single-lane I/O dispatcher, so keystore decrypts and the first
+ * SharedPreferences load never touch the main thread and writes are applied in call order.
+ * The `observe*` flows emit the current value and then again whenever it changes.
+ * Java callers keep using the blocking SecurePreferences API directly.
+ */
+class SecurePreferencesAsync(
+    private val securePreferences: SecurePreferences,
+    private val dispatcher: CoroutineDispatcher = PREFERENCES_DISPATCHER
+) {
+
+    companion object {
+        // One lane: preference work is short, and serializing it keeps writes ordered
+        private val PREFERENCES_DISPATCHER: CoroutineDispatcher = Dispatchers.IO.limitedParallelism(1)
+    }
+
+    /**
+     * Run several reads or writes as one hop to the preferences dispatcher.
+     */
+    suspend fun <T> withPreferences(block: SecurePreferences.() -> T): T =
+        withContext(dispatcher) { securePreferences.block() }
+
+    // Writes finish even if the caller is cancelled (e.g. the activity finishes right after saving)
+    private suspend fun write(block: SecurePreferences.() -> Unit) =
+        withContext(NonCancellable + dispatcher) { securePreferences.block() }
+
+    suspend fun getLicenseKey(): String? = withPreferences { getLicenseKey() }
+
+    suspend fun saveLicenseKey(licenseKey: String) = write { saveLicenseKey(licenseKey) }
+
+    suspend fun clearLicenseKey() = write { clearLicenseKey() }
+
+    suspend fun getRememberLicense(): Boolean = withPreferences { getRememberLicense() }
+
+    suspend fun setRememberLicense(remember: Boolean) = write { setRememberLicense(remember) }
+
+    suspend fun getAutoLogin(): Boolean = withPreferences { getAutoLogin() }
+
+    suspend fun setAutoLogin(autoLogin: Boolean) = write { setAutoLogin(autoLogin) }
+
+    suspend fun getSessionToken(): String? = withPreferences { getSessionToken() }
+
+    suspend fun getBoundLicenseKey(): String? = withPreferences { getBoundLicenseKey() }
+
+    suspend fun getStoredHWID(): String? = withPreferences { getStoredHWID() }
+
+    suspend fun clearAuthenticationData() = write { clearAuthenticationData() }
+
+    /**
+     * Keys of changed preferences; null means the whole file was cleared.
+     */
+    fun changes(): Flow<String?> = callbackFlow {
+        val listener = SharedPreferences.OnSharedPreferenceChangeListener { _, key -> trySend(key) }
+        securePreferences.registerOnChangeListener(listener)
+        awaitClose { securePreferences.unregisterOnChangeListener(listener) }
+    }.flowOn(dispatcher)
+
+    fun observeLicenseKey(): Flow<String?> = observe(SecurePreferences.KEY_LICENSE_KEY) { getLicenseKey() }
+
+    fun observeRememberLicense(): Flow<Boolean> = observe(SecurePreferences.KEY_REMEMBER_LICENSE) { getRememberLicense() }
+
+    fun observeAutoLogin(): Flow<Boolean> = observe(SecurePreferences.KEY_AUTO_LOGIN) { getAutoLogin() }
+
+    fun observeSessionToken(): Flow<String?> = observe(SecurePreferences.KEY_SESSION_TOKEN) { getSessionToken() }
+
+    private fun <T> observe(key: String, read: SecurePreferences.() -> T): Flow<T> =
+        changes()
+            .filter { it == null || it == key }
+            .map { }
+            .onStart { emit(Unit) }
+            .map { securePreferences.read() }
+            .distinctUntilChanged()
+            .flowOn(dispatcher)
+}
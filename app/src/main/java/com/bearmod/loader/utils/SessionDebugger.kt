@@ -1,8 +1,12 @@
 package com.bearmod.loader.utils
 
 import android.content.Context
-import android.util.Log
-import com.bearmod.loader.utils.SecurePreferences
+import com.bearmod.loader.di.AppContainer
+import com.bearmod.loader.logging.LogLevel
+import com.bearmod.loader.logging.Logger
+import com.bearmod.loader.logging.RingBufferLogger
+import com.bearmod.loader.logging.d
+import com.bearmod.loader.logging.e
 
 /**
  * Session debugging utility to help diagnose authentication issues
@@ -10,54 +14,59 @@ import com.bearmod.loader.utils.SecurePreferences
  */
 object SessionDebugger {
     private const val TAG = "SessionDebugger"
+
+    private val logger: Logger
+        get() = RingBufferLogger.shared
     
     /**
      * Log comprehensive session state for debugging
      */
     fun logSessionState(context: Context, prefix: String = "") {
+        // Reading the state decrypts every stored secret; skip it entirely unless it will be logged
+        if (!logger.isLoggable(LogLevel.DEBUG)) return
         try {
-            val securePreferences = SecurePreferences(context)
+            val securePreferences = AppContainer.from(context).securePreferences
             
-            Log.d(TAG, "==================== SESSION DEBUG $prefix ====================")
+            logger.d(TAG) { "==================== SESSION DEBUG $prefix ====================" }
             
             // Session Token Info
             val sessionToken = securePreferences.getSessionToken()
-            Log.d(TAG, "📱 Session Token: ${if (sessionToken.isNullOrEmpty()) "❌ NONE" else "✅ Present (${sessionToken.take(8)}...)"}")
+            logger.d(TAG) { "📱 Session Token: ${if (sessionToken.isNullOrEmpty()) "❌ NONE" else "✅ Present (${sessionToken.take(8)}...)"}" }
             
             // Session Validity
             val isTokenValid = securePreferences.isSessionTokenValid()
-            Log.d(TAG, "⏰ Token Valid: ${if (isTokenValid) "✅ YES" else "❌ NO"}")
+            logger.d(TAG) { "⏰ Token Valid: ${if (isTokenValid) "✅ YES" else "❌ NO"}" }
             
             // Device Registration
             val isDeviceRegistered = securePreferences.isDeviceRegistered()
-            Log.d(TAG, "📱 Device Registered: ${if (isDeviceRegistered) "✅ YES" else "❌ NO"}")
+            logger.d(TAG) { "📱 Device Registered: ${if (isDeviceRegistered) "✅ YES" else "❌ NO"}" }
             
             // HWID Info
             val storedHWID = securePreferences.getStoredHWID()
             val lastAuthHWID = securePreferences.getLastAuthHWID()
-            Log.d(TAG, "🔑 Stored HWID: ${if (storedHWID.isNullOrEmpty()) "❌ NONE" else "✅ Present (${storedHWID.take(8)}...)"}")
-            Log.d(TAG, "🔑 Last Auth HWID: ${if (lastAuthHWID.isNullOrEmpty()) "❌ NONE" else "✅ Present (${lastAuthHWID.take(8)}...)"}")
+            logger.d(TAG) { "🔑 Stored HWID: ${if (storedHWID.isNullOrEmpty()) "❌ NONE" else "✅ Present (${storedHWID.take(8)}...)"}" }
+            logger.d(TAG) { "🔑 Last Auth HWID: ${if (lastAuthHWID.isNullOrEmpty()) "❌ NONE" else "✅ Present (${lastAuthHWID.take(8)}...)"}" }
             
             // License Key Info
             val boundLicense = securePreferences.getBoundLicenseKey()
-            Log.d(TAG, "🎫 Bound License: ${if (boundLicense.isNullOrEmpty()) "❌ NONE" else "✅ Present (${boundLicense.take(8)}...)"}")
+            logger.d(TAG) { "🎫 Bound License: ${if (boundLicense.isNullOrEmpty()) "❌ NONE" else "✅ Present (${boundLicense.take(8)}...)"}" }
             
             // Trust Level
             val trustLevel = securePreferences.getDeviceTrustLevel()
-            Log.d(TAG, "🛡️ Trust Level: $trustLevel")
+            logger.d(TAG) { "🛡️ Trust Level: $trustLevel" }
             
             // Auto Login Setting
             val autoLogin = securePreferences.getAutoLogin()
-            Log.d(TAG, "🔄 Auto Login: ${if (autoLogin) "✅ ENABLED" else "❌ DISABLED"}")
+            logger.d(TAG) { "🔄 Auto Login: ${if (autoLogin) "✅ ENABLED" else "❌ DISABLED"}" }
             
             // Refresh Token
             val refreshToken = securePreferences.getRefreshToken()
-            Log.d(TAG, "🔄 Refresh Token: ${if (refreshToken.isNullOrEmpty()) "❌ NONE" else "✅ Present (${refreshToken.take(8)}...)"}")
+            logger.d(TAG) { "🔄 Refresh Token: ${if (refreshToken.isNullOrEmpty()) "❌ NONE" else "✅ Present (${refreshToken.take(8)}...)"}" }
             
-            Log.d(TAG, "================================================================")
+            logger.d(TAG) { "================================================================" }
             
         } catch (e: Exception) {
-            Log.e(TAG, "❌ Failed to log session state", e)
+            logger.e(TAG, e) { "❌ Failed to log session state" }
         }
     }
     
@@ -65,14 +74,14 @@ object SessionDebugger {
      * Log authentication flow state
      */
     fun logAuthFlowState(state: String, details: String = "") {
-        Log.d(TAG, "🔄 Auth Flow: $state ${if (details.isNotEmpty()) "- $details" else ""}")
+        logger.d(TAG) { "🔄 Auth Flow: $state ${if (details.isNotEmpty()) "- $details" else ""}" }
     }
     
     /**
      * Log session restoration attempt
      */
     fun logSessionRestoreAttempt(context: Context) {
-        Log.d(TAG, "🔄 ==================== SESSION RESTORE ATTEMPT ====================")
+        logger.d(TAG) { "🔄 ==================== SESSION RESTORE ATTEMPT ====================" }
         logSessionState(context, "BEFORE RESTORE")
     }
     
@@ -80,8 +89,8 @@ object SessionDebugger {
      * Log session restoration result
      */
     fun logSessionRestoreResult(context: Context, success: Boolean, message: String = "") {
-        Log.d(TAG, "🔄 ==================== SESSION RESTORE RESULT ====================")
-        Log.d(TAG, "${if (success) "✅" else "❌"} Result: ${if (success) "SUCCESS" else "FAILED"} ${if (message.isNotEmpty()) "- $message" else ""}")
+        logger.d(TAG) { "🔄 ==================== SESSION RESTORE RESULT ====================" }
+        logger.d(TAG) { "${if (success) "✅" else "❌"} Result: ${if (success) "SUCCESS" else "FAILED"} ${if (message.isNotEmpty()) "- $message" else ""}" }
         logSessionState(context, "AFTER RESTORE")
     }
     
@@ -89,29 +98,29 @@ object SessionDebugger {
      * Log initialization state
      */
     fun logInitializationState(isInitialized: Boolean, sessionId: String?) {
-        Log.d(TAG, "🚀 KeyAuth Initialized: ${if (isInitialized) "✅ YES" else "❌ NO"}")
-        Log.d(TAG, "🆔 Session ID: ${if (sessionId.isNullOrEmpty()) "❌ NONE" else "✅ Present (${sessionId.take(8)}...)"}")
+        logger.d(TAG) { "🚀 KeyAuth Initialized: ${if (isInitialized) "✅ YES" else "❌ NO"}" }
+        logger.d(TAG) { "🆔 Session ID: ${if (sessionId.isNullOrEmpty()) "❌ NONE" else "✅ Present (${sessionId.take(8)}...)"}" }
     }
     
     /**
      * Log network error details
      */
     fun logNetworkError(operation: String, error: String, responseCode: Int? = null) {
-        Log.e(TAG, "🌐 Network Error in $operation: $error ${responseCode?.let { "(HTTP $it)" } ?: ""}")
+        logger.e(TAG) { "🌐 Network Error in $operation: $error ${responseCode?.let { "(HTTP $it)" } ?: ""}" }
     }
     
     /**
      * Log HWID validation
      */
     fun logHWIDValidation(current: String?, stored: String?, lastAuth: String?) {
-        Log.d(TAG, "🔑 ==================== HWID VALIDATION ====================")
-        Log.d(TAG, "🔑 Current HWID: ${current?.take(8)}...")
-        Log.d(TAG, "🔑 Stored HWID: ${stored?.take(8)}...")
-        Log.d(TAG, "🔑 Last Auth HWID: ${lastAuth?.take(8)}...")
+        logger.d(TAG) { "🔑 ==================== HWID VALIDATION ====================" }
+        logger.d(TAG) { "🔑 Current HWID: ${current?.take(8)}..." }
+        logger.d(TAG) { "🔑 Stored HWID: ${stored?.take(8)}..." }
+        logger.d(TAG) { "🔑 Last Auth HWID: ${lastAuth?.take(8)}..." }
         
         val isConsistent = current == stored && stored == lastAuth
-        Log.d(TAG, "🔑 HWID Consistent: ${if (isConsistent) "✅ YES" else "❌ NO"}")
-        Log.d(TAG, "================================================================")
+        logger.d(TAG) { "🔑 HWID Consistent: ${if (isConsistent) "✅ YES" else "❌ NO"}" }
+        logger.d(TAG) { "================================================================" }
     }
     
     /**
@@ -119,7 +128,7 @@ object SessionDebugger {
      */
     fun clearDebugLogs() {
         // In production, this could clear log files or disable debugging
-        Log.d(TAG, "🧹 Debug logs cleared")
+        logger.d(TAG) { "🧹 Debug logs cleared" }
     }
     
     /**
@@ -129,7 +138,7 @@ object SessionDebugger {
         val issues = mutableListOf<String>()
         
         try {
-            val securePreferences = SecurePreferences(context)
+            val securePreferences = AppContainer.from(context).securePreferences
             
             // Check for missing session token
             if (securePreferences.getSessionToken().isNullOrEmpty()) {
@@ -2,12 +2,18 @@ package com.bearmod.loader.utils;
 
 import android.content.Context;
 
+import com.bearmod.loader.di.AppContainer;
+
 public class SessionManager {
     
     private final SecurePreferences securePreferences;
     
     public SessionManager(Context context) {
-        securePreferences = new SecurePreferences(context);
+        this(AppContainer.from(context).getSecurePreferences());
+    }
+
+    public SessionManager(SecurePreferences securePreferences) {
+        this.securePreferences = securePreferences;
     }
     
     public void clearSession() {
@@ -30,6 +36,8 @@ public class SessionManager {
     }
     
     public boolean isLoggedIn() {
-        return securePreferences.getLicenseKey() != null && !securePreferences.getLicenseKey().isEmpty();
+        // Single read: each getLicenseKey() call may decrypt
+        String licenseKey = securePreferences.getLicenseKey();
+        return licenseKey != null && !licenseKey.isEmpty();
     }
 }
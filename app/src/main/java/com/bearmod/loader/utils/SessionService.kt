@@ -6,8 +6,9 @@ import android.content.Context
  * Kotlin-friendly session service that delegates to the Java SessionManager.
  * Use this from Kotlin code to keep session-related logic in one place.
  */
-class SessionService(context: Context) {
-    private val sessionManager = SessionManager(context)
+class SessionService(private val sessionManager: SessionManager) {
+
+    constructor(context: Context) : this(SessionManager(context))
 
     fun clearSessionToken() {
         sessionManager.clearSessionToken()
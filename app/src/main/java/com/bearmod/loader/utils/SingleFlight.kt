@@ -0,0 +1,44 @@
+package com.bearmod.loader.utils
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+
+/**
+ * Coalesces concurrent calls for the same key into one in-flight operation.
+ *
+ * The first caller for a key starts [block] in [scope]; callers arriving while it runs
+ * await the same [Deferred] and receive the same result (or exception). Once the
+ * operation completes the key is free again, so later callers start a fresh run.
+ *
+ * The work runs in [scope], not in the caller: a cancelled caller stops waiting but does
+ * not cancel the shared operation for everyone else.
+ */
+class SingleFlight<K, V>(private val scope: CoroutineScope) {
+
+    private val inFlight = HashMap<K, Deferred<V>>()
+
+    /**
+     * Run [block] for [key], or join the run already in flight for it.
+     */
+    suspend fun run(key: K, block: suspend () -> V): V {
+        val deferred = synchronized(inFlight) {
+            inFlight[key] ?: scope.async(start = CoroutineStart.LAZY) { block() }.also { started ->
+                inFlight[key] = started
+                started.invokeOnCompletion {
+                    synchronized(inFlight) {
+                        if (inFlight[key] === started) inFlight.remove(key)
+                    }
+                }
+            }
+        }
+        deferred.start()
+        return deferred.await()
+    }
+
+    /**
+     * True while an operation for [key] is running.
+     */
+    fun isInFlight(key: K): Boolean = synchronized(inFlight) { inFlight.containsKey(key) }
+}
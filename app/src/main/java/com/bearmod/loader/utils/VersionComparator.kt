@@ -0,0 +1,50 @@
+package com.bearmod.loader.utils
+
+/**
+ * Dotted version comparison ("1.10.2" vs "1.9"). Missing or non-numeric parts count as 0.
+ *
+ * Walks both strings in place instead of splitting them, so the comparison done for every
+ * variant on each refresh does not allocate.
+ */
+object VersionComparator {
+
+    /**
+     * Positive if [version1] is newer, negative if older, 0 if equal.
+     */
+    @JvmStatic
+    fun compare(version1: String, version2: String): Int {
+        var i = 0
+        var j = 0
+        while (i < version1.length || j < version2.length) {
+            val end1 = version1.indexOf('.', i).let { if (it == -1) version1.length else it }
+            val end2 = version2.indexOf('.', j).let { if (it == -1) version2.length else it }
+            val part1 = if (i < version1.length) parsePart(version1, i, end1) else 0
+            val part2 = if (j < version2.length) parsePart(version2, j, end2) else 0
+            if (part1 != part2) return if (part1 > part2) 1 else -1
+            i = end1 + 1
+            j = end2 + 1
+        }
+        return 0
+    }
+
+    // Same result as substring(start, end).toIntOrNull() ?: 0
+    private fun parsePart(version: String, start: Int, end: Int): Int {
+        if (start >= end) return 0
+        var index = start
+        val negative = version[index] == '-'
+        if (negative || version[index] == '+') {
+            index++
+            if (index == end) return 0
+        }
+        var value = 0L
+        while (index < end) {
+            val digit = version[index] - '0'
+            if (digit !in 0..9) return 0
+            value = value * 10 + digit
+            if (value > Int.MAX_VALUE.toLong() + 1) return 0
+            index++
+        }
+        val signed = if (negative) -value else value
+        return if (signed in Int.MIN_VALUE..Int.MAX_VALUE) signed.toInt() else 0
+    }
+}
@@ -5,12 +5,21 @@ import com.bearmod.loader.data.api.KeyAuthApiService
 import com.bearmod.loader.data.model.KeyAuthResponse
 import com.bearmod.loader.data.repository.KeyAuthRepository
 import com.bearmod.loader.utils.NetworkResult
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.runBlocking
 import org.junit.Before
 import org.junit.Test
 import org.mockito.Mock
 import org.mockito.MockitoAnnotations
 import org.mockito.Mockito.`when`
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doSuspendableAnswer
+import org.mockito.kotlin.stub
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verifyBlocking
 import org.junit.Assert.*
 import retrofit2.Response
 
@@ -75,4 +84,52 @@ class KeyAuthRepositoryTest {
         val errorMessage = (result as NetworkResult.Error).message
         assertTrue("Error should mention initialization", errorMessage.contains("not initialized"))
     }
+
+    @Test
+    fun `concurrent initialize calls share one init round-trip`() = runBlocking {
+        mockApiService.stub {
+            onBlocking { init(any(), any(), any(), any(), anyOrNull()) } doSuspendableAnswer {
+                delay(100)
+                Response.success(KeyAuthResponse(success = true, message = "Initialized", sessionId = "session-1"))
+            }
+        }
+
+        val results = List(5) { async { repository.initialize() } }.awaitAll()
+
+        verifyBlocking(mockApiService, times(1)) { init(any(), any(), any(), any(), anyOrNull()) }
+        assertTrue("All callers should see the shared result", results.all { it is NetworkResult.Success })
+        assertTrue(repository.isAppInitialized())
+        assertEquals("session-1", repository.getSessionId())
+
+        // Once the shared run has completed, a new call starts a fresh round-trip
+        repository.initialize()
+        verifyBlocking(mockApiService, times(2)) { init(any(), any(), any(), any(), anyOrNull()) }
+    }
+
+    @Test
+    fun `successful session check is reused until forced or invalidated`() = runBlocking {
+        mockApiService.stub {
+            onBlocking { init(any(), any(), any(), any(), anyOrNull()) } doSuspendableAnswer {
+                Response.success(KeyAuthResponse(success = true, message = "Initialized", sessionId = "session-1"))
+            }
+            onBlocking { checkSession(any(), any(), any(), any()) } doSuspendableAnswer {
+                Response.success(KeyAuthResponse(success = true, message = "Session is validated"))
+            }
+        }
+        repository.initialize()
+
+        assertTrue(repository.checkSession() is NetworkResult.Success)
+        assertTrue(repository.checkSession() is NetworkResult.Success)
+        verifyBlocking(mockApiService, times(1)) { checkSession(any(), any(), any(), any()) }
+        assertTrue(repository.authenticationState.value.isSessionValidationFresh())
+
+        repository.checkSession(forceRefresh = true)
+        verifyBlocking(mockApiService, times(2)) { checkSession(any(), any(), any(), any()) }
+
+        // Re-initialization discards the cached result
+        repository.initialize()
+        assertFalse(repository.authenticationState.value.isSessionValidationFresh())
+        repository.checkSession()
+        verifyBlocking(mockApiService, times(3)) { checkSession(any(), any(), any(), any()) }
+    }
 }
@@ -0,0 +1,119 @@
+package com.bearmod.loader.benchmark
+
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import java.io.Closeable
+import java.net.URLDecoder
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Local stand-in for the KeyAuth v1.3 endpoint (form-encoded POSTs to `/api/1.3/`).
+ *
+ * Implements init, license, check, fetchstats and log with server-side session tracking:
+ * init issues a session ID, license and check reject IDs the server never issued with
+ * "Session not found.". Each request waits [latencyMs] plus up to [jitterMs], then fails with
+ * HTTP 500 with probability [errorRate]; check additionally answers "Session not found." with
+ * probability [sessionNotFoundRate]. Request counts per type are kept for round-trip
+ * accounting. Safe for concurrent clients.
+ */
+class FakeKeyAuthServer : Closeable {
+
+    @Volatile
+    var latencyMs: Long = 0L
+
+    @Volatile
+    var jitterMs: Long = 0L
+
+    @Volatile
+    var errorRate: Double = 0.0
+
+    @Volatile
+    var sessionNotFoundRate: Double = 0.0
+
+    private val server = MockWebServer()
+    private val sessions = ConcurrentHashMap.newKeySet<String>()
+    private val counts = ConcurrentHashMap<String, AtomicInteger>()
+
+    val baseUrl: String get() = server.url("/api/1.3/").toString()
+
+    init {
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse = respond(request)
+        }
+        server.start()
+    }
+
+    /** Make [sessionId] known to the server, as if issued by an earlier init. */
+    fun registerSession(sessionId: String) {
+        sessions.add(sessionId)
+    }
+
+    /** Requests received so far, by `type`. */
+    fun requestCounts(): Map<String, Int> = counts.mapValues { it.value.get() }.toSortedMap()
+
+    fun totalRequests(): Int = counts.values.sumOf { it.get() }
+
+    fun resetCounts() = counts.clear()
+
+    private fun respond(request: RecordedRequest): MockResponse {
+        val form = parseForm(request.body.readUtf8())
+        val type = form["type"] ?: "unknown"
+        counts.getOrPut(type) { AtomicInteger() }.incrementAndGet()
+
+        val random = ThreadLocalRandom.current()
+        val delay = latencyMs + if (jitterMs > 0) random.nextLong(jitterMs + 1) else 0L
+        if (delay > 0) Thread.sleep(delay)
+
+        if (random.nextDouble() < errorRate) {
+            return MockResponse().setResponseCode(500).setBody("""{"success":false,"message":"Internal server error"}""")
+        }
+
+        return when (type) {
+            "init" -> {
+                val sessionId = UUID.randomUUID().toString().replace("-", "").take(10)
+                sessions.add(sessionId)
+                json("""{"success":true,"message":"Initialized","sessionid":"$sessionId"}""")
+            }
+            "license" -> when {
+                !isKnownSession(form["sessionid"]) -> sessionNotFound()
+                form["key"].isNullOrEmpty() -> json("""{"success":false,"message":"Key not found."}""")
+                else -> json(
+                    """{"success":true,"message":"Logged in!","info":{"username":"${form["key"]}",""" +
+                        """"hwid":"${form["hwid"]}","subscriptions":[{"subscription":"default","expiry":"4102444800","timeleft":86400}]}}"""
+                )
+            }
+            "check" -> when {
+                !isKnownSession(form["sessionid"]) || random.nextDouble() < sessionNotFoundRate -> sessionNotFound()
+                else -> json("""{"success":true,"message":"Session is validated."}""")
+            }
+            "fetchstats" -> json("""{"numUsers":"1","numOnlineUsers":"1","numKeys":"1","version":"1.0"}""")
+            "log" -> json("""{"success":true,"message":"Logged"}""")
+            else -> json("""{"success":false,"message":"Unhandled Type"}""")
+        }
+    }
+
+    // KeySetView.contains(null) throws
+    private fun isKnownSession(sessionId: String?): Boolean = sessionId != null && sessionId in sessions
+
+    private fun sessionNotFound() = json("""{"success":false,"message":"Session not found."}""")
+
+    private fun json(body: String) = MockResponse().setHeader("Content-Type", "application/json").setBody(body)
+
+    private fun parseForm(body: String): Map<String, String> {
+        if (body.isEmpty()) return emptyMap()
+        return body.split('&').associate { pair ->
+            val name = pair.substringBefore('=')
+            val value = pair.substringAfter('=', "")
+            URLDecoder.decode(name, "UTF-8") to URLDecoder.decode(value, "UTF-8")
+        }
+    }
+
+    override fun close() {
+        server.shutdown()
+    }
+}
@@ -0,0 +1,289 @@
+package com.bearmod.loader.benchmark
+
+import java.io.BufferedReader
+import java.io.Closeable
+import java.io.IOException
+import java.io.InputStreamReader
+import java.io.OutputStream
+import java.lang.management.ManagementFactory
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.net.SocketException
+import java.net.SocketTimeoutException
+import java.security.MessageDigest
+import java.util.Random
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Minimal HTTP/1.1 stand-in for the OTA CDN, serving synthetic artifacts of any size without
+ * holding them in memory.
+ *
+ * Supports `Range` (single `bytes=start-[end]` ranges, 206/416), strong `ETag`s with
+ * `If-None-Match` and `If-Range`, bandwidth and first-byte latency shaping ([Shaping]) and
+ * fault injection ([Fault]): connection resets, stalls and truncated bodies. Every connection
+ * is answered with `Connection: close`. Server threads are named [THREAD_PREFIX] and account
+ * their own CPU time in [serverCpuNanos] so benchmarks can subtract it.
+ */
+class FakeOtaServer : Closeable {
+
+    companion object {
+        const val THREAD_PREFIX = "fake-ota-server"
+        private const val BLOCK_SIZE = 64 * 1024
+        private const val STALL_POLL_MS = 50
+    }
+
+    /** Token-bucket style pacing; 0 disables the limit. */
+    data class Shaping(val bytesPerSecond: Long = 0L, val firstByteLatencyMs: Long = 0L)
+
+    sealed class Fault {
+        /** Send [afterBytes] of the body, then reset the connection (RST). */
+        data class Reset(val afterBytes: Long) : Fault()
+
+        /** Send [afterBytes] of the body, then stop writing until the client gives up. */
+        data class Stall(val afterBytes: Long) : Fault()
+
+        /** Advertise the full length but close cleanly after [afterBytes]. */
+        data class Truncate(val afterBytes: Long) : Fault()
+    }
+
+    /**
+     * Deterministic pseudo-random content: a fixed random block, varied per block index, so any
+     * range can be produced on the fly.
+     */
+    class Artifact(val path: String, val size: Long, seed: Long) {
+        private val block = ByteArray(BLOCK_SIZE).also { Random(seed).nextBytes(it) }
+
+        val sha256: String by lazy {
+            val digest = MessageDigest.getInstance("SHA-256")
+            val buffer = ByteArray(BLOCK_SIZE)
+            var offset = 0L
+            while (offset < size) {
+                val length = minOf(buffer.size.toLong(), size - offset).toInt()
+                fill(offset, buffer, length)
+                digest.update(buffer, 0, length)
+                offset += length
+            }
+            digest.digest().joinToString("") { "%02x".format(it) }
+        }
+
+        val etag: String get() = "\"${sha256.take(16)}\""
+
+        fun fill(offset: Long, target: ByteArray, length: Int) {
+            var written = 0
+            while (written < length) {
+                val position = offset + written
+                val inBlock = (position % BLOCK_SIZE).toInt()
+                val salt = (position / BLOCK_SIZE).toInt()
+                val count = minOf(BLOCK_SIZE - inBlock, length - written)
+                for (i in 0 until count) {
+                    target[written + i] = (block[inBlock + i].toInt() xor salt).toByte()
+                }
+                written += count
+            }
+        }
+    }
+
+    /** What the server saw, for assertions. */
+    data class RecordedRequest(val path: String, val headers: Map<String, String>)
+
+    private val threadCount = AtomicInteger()
+    private val executor: ExecutorService = Executors.newCachedThreadPool { runnable ->
+        Thread(runnable, "$THREAD_PREFIX-${threadCount.incrementAndGet()}").apply { isDaemon = true }
+    }
+    private val serverSocket = ServerSocket(0, 50, InetAddress.getLoopbackAddress())
+    private val artifacts = ConcurrentHashMap<String, Artifact>()
+    private val faults = ConcurrentHashMap<String, Fault>()
+    private val threadMx = ManagementFactory.getThreadMXBean()
+
+    @Volatile
+    var shaping = Shaping()
+
+    @Volatile
+    private var running = true
+
+    val requests = CopyOnWriteArrayList<RecordedRequest>()
+    val bytesSent = AtomicLong()
+    val serverCpuNanos = AtomicLong()
+
+    val baseUrl: String get() = "http://${serverSocket.inetAddress.hostAddress}:${serverSocket.localPort}"
+
+    init {
+        executor.execute {
+            while (running) {
+                val socket = try {
+                    serverSocket.accept()
+                } catch (e: SocketException) {
+                    break
+                }
+                executor.execute { handle(socket) }
+            }
+        }
+    }
+
+    fun addArtifact(path: String, size: Long, seed: Long = path.hashCode().toLong()): Artifact {
+        return Artifact(path, size, seed).also { artifacts[path] = it }
+    }
+
+    fun url(artifact: Artifact): String = baseUrl + artifact.path
+
+    /** Apply [fault] to the next request for [path] only. */
+    fun injectFault(path: String, fault: Fault) {
+        faults[path] = fault
+    }
+
+    fun clearFaults() = faults.clear()
+
+    private fun handle(socket: Socket) {
+        val cpuStart = threadMx.currentThreadCpuTime
+        try {
+            socket.use { serve(it) }
+        } catch (e: IOException) {
+            // Client went away or we reset the connection on purpose
+        } catch (e: InterruptedException) {
+            // Server shutting down
+        } finally {
+            serverCpuNanos.addAndGet(threadMx.currentThreadCpuTime - cpuStart)
+        }
+    }
+
+    private fun serve(socket: Socket) {
+        val reader = BufferedReader(InputStreamReader(socket.getInputStream(), Charsets.ISO_8859_1))
+        val requestLine = reader.readLine() ?: return
+        val headers = mutableMapOf<String, String>()
+        while (true) {
+            val line = reader.readLine() ?: return
+            if (line.isEmpty()) break
+            val colon = line.indexOf(':')
+            if (colon > 0) headers[line.substring(0, colon).trim().lowercase()] = line.substring(colon + 1).trim()
+        }
+        val path = requestLine.split(' ').getOrNull(1)?.substringBefore('?') ?: "/"
+        requests.add(RecordedRequest(path, headers))
+
+        val out = socket.getOutputStream()
+        val artifact = artifacts[path]
+        if (artifact == null) {
+            writeHead(out, "404 Not Found", mapOf("Content-Length" to "0"))
+            return
+        }
+
+        if (headers["if-none-match"] == artifact.etag) {
+            writeHead(out, "304 Not Modified", mapOf("ETag" to artifact.etag))
+            return
+        }
+
+        val range = headers["range"]?.takeIf { headers["if-range"] == null || headers["if-range"] == artifact.etag }
+        var start = 0L
+        var end = artifact.size - 1
+        var status = "200 OK"
+        if (range != null) {
+            val parsed = parseRange(range, artifact.size)
+            if (parsed == null) {
+                writeHead(out, "416 Range Not Satisfiable", mapOf("Content-Range" to "bytes */${artifact.size}", "Content-Length" to "0"))
+                return
+            }
+            start = parsed.first
+            end = parsed.second
+            status = "206 Partial Content"
+        }
+
+        val length = end - start + 1
+        val responseHeaders = linkedMapOf(
+            "Content-Type" to "application/octet-stream",
+            "Content-Length" to length.toString(),
+            "Accept-Ranges" to "bytes",
+            "ETag" to artifact.etag
+        )
+        if (range != null) responseHeaders["Content-Range"] = "bytes $start-$end/${artifact.size}"
+
+        val current = shaping
+        if (current.firstByteLatencyMs > 0) Thread.sleep(current.firstByteLatencyMs)
+        writeHead(out, status, responseHeaders)
+        writeBody(socket, out, artifact, start, length, current, faults.remove(path))
+    }
+
+    private fun parseRange(header: String, size: Long): Pair<Long, Long>? {
+        if (!header.startsWith("bytes=") || header.contains(',')) return null
+        val spec = header.removePrefix("bytes=")
+        val dash = spec.indexOf('-')
+        if (dash < 0) return null
+        val first = spec.substring(0, dash)
+        val last = spec.substring(dash + 1)
+        return if (first.isEmpty()) {
+            // Suffix range: last N bytes
+            val suffix = last.toLongOrNull()?.takeIf { it > 0 } ?: return null
+            maxOf(0L, size - suffix) to size - 1
+        } else {
+            val start = first.toLongOrNull() ?: return null
+            val end = if (last.isEmpty()) size - 1 else minOf(last.toLongOrNull() ?: return null, size - 1)
+            if (start >= size || end < start) null else start to end
+        }
+    }
+
+    private fun writeHead(out: OutputStream, status: String, headers: Map<String, String>) {
+        val head = buildString {
+            append("HTTP/1.1 ").append(status).append("\r\n")
+            headers.forEach { (name, value) -> append(name).append(": ").append(value).append("\r\n") }
+            append("Connection: close\r\n\r\n")
+        }
+        out.write(head.toByteArray(Charsets.ISO_8859_1))
+        out.flush()
+    }
+
+    private fun writeBody(socket: Socket, out: OutputStream, artifact: Artifact, start: Long, length: Long, shaping: Shaping, fault: Fault?) {
+        val buffer = ByteArray(BLOCK_SIZE)
+        val limit = when (fault) {
+            is Fault.Reset -> minOf(length, fault.afterBytes)
+            is Fault.Stall -> minOf(length, fault.afterBytes)
+            is Fault.Truncate -> minOf(length, fault.afterBytes)
+            null -> length
+        }
+        val startNanos = System.nanoTime()
+        var sent = 0L
+        while (sent < limit && running) {
+            val chunk = minOf(buffer.size.toLong(), limit - sent).toInt()
+            artifact.fill(start + sent, buffer, chunk)
+            out.write(buffer, 0, chunk)
+            sent += chunk
+            bytesSent.addAndGet(chunk.toLong())
+
+            if (shaping.bytesPerSecond > 0) {
+                val dueNanos = sent * 1_000_000_000L / shaping.bytesPerSecond
+                val aheadMs = (dueNanos - (System.nanoTime() - startNanos)) / 1_000_000L
+                if (aheadMs > 0) Thread.sleep(aheadMs)
+            }
+        }
+        out.flush()
+
+        when (fault) {
+            is Fault.Reset -> {
+                socket.setSoLinger(true, 0)
+                socket.close()
+            }
+            is Fault.Stall -> {
+                // Hold the connection open until the client times out and closes it
+                socket.soTimeout = STALL_POLL_MS
+                val input = socket.getInputStream()
+                while (running) {
+                    try {
+                        if (input.read() == -1) break
+                    } catch (e: SocketTimeoutException) {
+                        continue
+                    }
+                }
+            }
+            is Fault.Truncate, null -> Unit
+        }
+    }
+
+    override fun close() {
+        running = false
+        serverSocket.close()
+        executor.shutdownNow()
+    }
+}
@@ -0,0 +1,239 @@
+package com.bearmod.loader.benchmark
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.bearmod.loader.data.api.KeyAuthApiService
+import com.bearmod.loader.data.model.SessionRestoreResult
+import com.bearmod.loader.data.repository.KeyAuthRepository
+import com.bearmod.loader.metrics.LatencyRecorder
+import com.bearmod.loader.network.ResilientKeyAuthApi
+import com.bearmod.loader.security.HWIDProvider
+import com.bearmod.loader.utils.NetworkResult
+import com.bearmod.loader.utils.SecurePreferences
+import com.google.gson.GsonBuilder
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs the real KeyAuthRepository auth flows against [FakeKeyAuthServer] with concurrent
+ * callers and reports end-to-end latency percentiles and network round-trips per flow.
+ *
+ * Flows, each on a fresh repository (a cold start) sharing one API client as the app does:
+ *  - `license`: initialize() then authenticateWithLicense()
+ *  - `restore`: restoreSession() from a stored session
+ *  - `restorePipelined`: restoreSessionPipelined() from a stored session
+ * Storage is a stub returning a registered device with a valid stored token, so only the
+ * network flow is measured.
+ *
+ * The round-trip check always runs. The load suite is opt-in:
+ *
+ *     ./gradlew :app:testDebugUnitTest --tests '*KeyAuthLoadHarnessTest*' -Pbenchmark=true \
+ *         [-Pbenchmark.iterations=200] [-Pbenchmark.concurrency=8] [-Pbenchmark.latencyMs=40] \
+ *         [-Pbenchmark.errorRate=0.02] [-Pbenchmark.sessionNotFoundRate=0.05] [-Pbenchmark.maxP95Ms=...]
+ *
+ * and writes `build/reports/benchmark/keyauth-flows.json`.
+ */
+@RunWith(AndroidJUnit4::class)
+class KeyAuthLoadHarnessTest {
+
+    private enum class Flow(val key: String) {
+        LICENSE("license"),
+        RESTORE("restore"),
+        RESTORE_PIPELINED("restorePipelined")
+    }
+
+    private data class FlowReport(
+        val flow: String,
+        val runs: Int,
+        val succeeded: Int,
+        val p50Millis: Double,
+        val p95Millis: Double,
+        val p99Millis: Double,
+        val maxMillis: Double,
+        val roundTripsPerFlow: Double,
+        val requestsByType: Map<String, Int>,
+        val outcomes: Map<String, Int>
+    )
+
+    private lateinit var server: FakeKeyAuthServer
+    private lateinit var apiService: KeyAuthApiService
+    private lateinit var context: Context
+
+    private val storedSession = "stored-session"
+    private val hwid = "bench-hwid"
+    private val licenseKey = "BENCH-KEY"
+
+    private val hwidProvider = object : HWIDProvider {
+        override fun getHWID(): String = hwid
+        override fun clearHWID() = Unit
+    }
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        server = FakeKeyAuthServer()
+        server.registerSession(storedSession)
+        val client = OkHttpClient.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(5, TimeUnit.SECONDS)
+            .build()
+        // Same decorator stack as NetworkFactory.createKeyAuthApiService, so retries count as round-trips
+        apiService = ResilientKeyAuthApi(
+            Retrofit.Builder()
+                .baseUrl(server.baseUrl)
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(KeyAuthApiService::class.java)
+        )
+    }
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun `each flow costs two round-trips on a healthy server`() {
+        for (flow in Flow.values()) {
+            val report = runFlow(flow, iterations = 12, concurrency = 3)
+            assertEquals("${flow.key}: ${report.outcomes}", report.runs, report.succeeded)
+            assertEquals("${flow.key}: ${report.requestsByType}", 2.0, report.roundTripsPerFlow, 0.0)
+        }
+    }
+
+    @Test
+    fun `auth flow latency under load`() {
+        assumeTrue("Set -Pbenchmark=true to run", System.getProperty("benchmark") == "true")
+
+        server.latencyMs = longProperty("benchmark.latencyMs", 40L)
+        server.jitterMs = longProperty("benchmark.jitterMs", server.latencyMs / 2)
+        server.errorRate = doubleProperty("benchmark.errorRate", 0.0)
+        server.sessionNotFoundRate = doubleProperty("benchmark.sessionNotFoundRate", 0.0)
+        val iterations = longProperty("benchmark.iterations", 200L).toInt()
+        val concurrency = longProperty("benchmark.concurrency", 8L).toInt()
+
+        val reports = Flow.values().map { runFlow(it, iterations, concurrency) }
+        report(reports)
+
+        System.getProperty("benchmark.maxP95Ms")?.toDoubleOrNull()?.let { budget ->
+            for (r in reports) assertTrue("${r.flow} p95 ${r.p95Millis}ms exceeds ${budget}ms", r.p95Millis <= budget)
+        }
+    }
+
+    private fun runFlow(flow: Flow, iterations: Int, concurrency: Int): FlowReport {
+        val latencies = LatencyRecorder(windowSize = iterations)
+        val outcomes = ConcurrentHashMap<String, AtomicInteger>()
+        val remaining = AtomicInteger(iterations)
+        server.resetCounts()
+
+        runBlocking {
+            coroutineScope {
+                repeat(concurrency) {
+                    launch(Dispatchers.Default) {
+                        while (remaining.getAndDecrement() > 0) {
+                            val repository = newRepository()
+                            val start = System.nanoTime()
+                            val outcome = when (flow) {
+                                Flow.LICENSE -> {
+                                    val init = repository.initialize()
+                                    if (init is NetworkResult.Success) describe(repository.authenticateWithLicense(licenseKey)) else "init: ${describe(init)}"
+                                }
+                                Flow.RESTORE -> describe(repository.restoreSession())
+                                Flow.RESTORE_PIPELINED -> describe(repository.restoreSessionPipelined())
+                            }
+                            latencies.record(flow.key, System.nanoTime() - start)
+                            outcomes.getOrPut(outcome) { AtomicInteger() }.incrementAndGet()
+                        }
+                    }
+                }
+            }
+        }
+
+        val stats = latencies.snapshot(flow.key)!!
+        val counts = server.requestCounts()
+        return FlowReport(
+            flow = flow.key,
+            runs = iterations,
+            succeeded = outcomes["success"]?.get() ?: 0,
+            p50Millis = stats.p50Millis,
+            p95Millis = stats.p95Millis,
+            p99Millis = stats.p99Millis,
+            maxMillis = stats.maxMillis,
+            roundTripsPerFlow = counts.values.sum().toDouble() / iterations,
+            requestsByType = counts,
+            outcomes = outcomes.mapValues { it.value.get() }.toSortedMap()
+        )
+    }
+
+    private fun newRepository(): KeyAuthRepository {
+        val preferences = mock<SecurePreferences> {
+            on { getSessionToken() } doReturn storedSession
+            on { isSessionTokenValid() } doReturn true
+            on { isDeviceRegistered() } doReturn true
+            on { getLastAuthHWID() } doReturn hwid
+            on { getStoredHWID() } doReturn hwid
+            on { getBoundLicenseKey() } doReturn licenseKey
+            on { getDeviceTrustLevel() } doReturn 1
+        }
+        return KeyAuthRepository(
+            apiService,
+            context,
+            enableLogging = false,
+            hwidProvider = hwidProvider,
+            securePreferences = preferences,
+            sessionValidationTtlMs = 0L
+        )
+    }
+
+    private fun describe(result: NetworkResult<*>): String = when (result) {
+        is NetworkResult.Success -> "success"
+        is NetworkResult.Error -> "error: ${result.message}"
+        else -> result.javaClass.simpleName
+    }
+
+    private fun describe(result: SessionRestoreResult): String = when (result) {
+        is SessionRestoreResult.Success -> "success"
+        is SessionRestoreResult.Failed -> "failed: ${result.error}"
+        else -> result.javaClass.simpleName
+    }
+
+    private fun report(reports: List<FlowReport>) {
+        println(String.format("%-18s %6s %9s %9s %9s %9s %9s  %s", "flow", "runs", "ok", "p50 ms", "p95 ms", "p99 ms", "trips", "requests"))
+        for (r in reports) {
+            println(
+                String.format(
+                    "%-18s %6d %9d %9.1f %9.1f %9.1f %9.2f  %s",
+                    r.flow, r.runs, r.succeeded, r.p50Millis, r.p95Millis, r.p99Millis, r.roundTripsPerFlow, r.requestsByType
+                )
+            )
+            if (r.succeeded < r.runs) println("    outcomes: ${r.outcomes}")
+        }
+
+        val file = File("build/reports/benchmark/keyauth-flows.json")
+        file.parentFile?.mkdirs()
+        file.writeText(GsonBuilder().setPrettyPrinting().create().toJson(reports))
+    }
+
+    private fun longProperty(name: String, default: Long): Long = System.getProperty(name)?.toLongOrNull() ?: default
+
+    private fun doubleProperty(name: String, default: Double): Double = System.getProperty(name)?.toDoubleOrNull() ?: default
+}
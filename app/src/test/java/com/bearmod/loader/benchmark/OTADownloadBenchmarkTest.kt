@@ -0,0 +1,261 @@
+package com.bearmod.loader.benchmark
+
+import android.content.Context
+import android.os.Environment
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.bearmod.loader.data.api.OTAApiService
+import com.bearmod.loader.data.model.DownloadProgress
+import com.bearmod.loader.data.model.DownloadStatus
+import com.bearmod.loader.data.model.FileInfo
+import com.bearmod.loader.data.model.VariantInfo
+import com.bearmod.loader.data.repository.OTARepository
+import com.bearmod.loader.logging.NoOpLogger
+import com.google.gson.GsonBuilder
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * End-to-end throughput of OTARepository.downloadVariant (download + SHA-256 verify) against
+ * [FakeOtaServer].
+ *
+ * The scenario suite is opt-in because it moves hundreds of MB:
+ *
+ *     ./gradlew :app:testDebugUnitTest --tests '*OTADownloadBenchmarkTest*' -Pbenchmark=true \
+ *         [-Pbenchmark.apkMb=100] [-Pbenchmark.obbMb=300] [-Pbenchmark.bandwidthMbps=400]
+ *
+ * Every scenario starts from an empty download directory (no staging files, no cache
+ * index), except that `resume-*` scenarios first let a faulted run leave a partial file
+ * and then measure the resumed download.
+ *
+ * Each scenario reports MB/s, CPU time, allocation rate, peak heap, progress emissions and
+ * time spent verifying; the table is printed and written to
+ * `build/reports/benchmark/ota-download.json`.
+ */
+@RunWith(AndroidJUnit4::class)
+class OTADownloadBenchmarkTest {
+
+    private data class Scenario(
+        val name: String,
+        val shaping: FakeOtaServer.Shaping = FakeOtaServer.Shaping(),
+        val apkFault: FakeOtaServer.Fault? = null,
+        val obbFault: FakeOtaServer.Fault? = null,
+        /** Unmeasured run that fails with this OBB fault first, leaving a partial to resume */
+        val resumeObbAfter: FakeOtaServer.Fault? = null
+    ) {
+        val expectFailure: Boolean get() = apkFault != null || obbFault != null
+    }
+
+    private data class Result(
+        val scenario: String,
+        val outcome: String,
+        val bytes: Long,
+        val seconds: Double,
+        val megabytesPerSecond: Double,
+        val cpuMillis: Long,
+        val allocationMbPerSecond: Double,
+        val allocatedMb: Double,
+        val peakHeapMb: Double,
+        val progressEmissions: Int,
+        val verifyMillis: Long
+    )
+
+    private lateinit var server: FakeOtaServer
+    private lateinit var api: OTAApiService
+    private lateinit var repository: OTARepository
+
+    private val stallTimeoutMs = 2_000L
+
+    @Before
+    fun setUp() {
+        server = FakeOtaServer()
+        val client = OkHttpClient.Builder()
+            .readTimeout(stallTimeoutMs, TimeUnit.MILLISECONDS)
+            .build()
+        api = Retrofit.Builder()
+            .baseUrl(server.baseUrl + "/")
+            .client(client)
+            .addConverterFactory(GsonConverterFactory.create())
+            .build()
+            .create(OTAApiService::class.java)
+        repository = newRepository()
+    }
+
+    // Robolectric's StatFs reports no free space unless registered, so read the real disk
+    private fun newRepository() =
+        OTARepository(ApplicationProvider.getApplicationContext(), api, NoOpLogger, freeSpace = { it.usableSpace })
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun `fake server honours ranges and etags`() {
+        val artifact = server.addArtifact("/ota/small.apk", 200_000L)
+        val client = OkHttpClient()
+
+        val full = client.newCall(Request.Builder().url(server.url(artifact)).build()).execute().use { it.body!!.bytes() }
+        assertEquals(200_000, full.size)
+
+        client.newCall(Request.Builder().url(server.url(artifact)).header("Range", "bytes=150000-").build()).execute().use { response ->
+            assertEquals(206, response.code)
+            assertEquals("bytes 150000-199999/200000", response.header("Content-Range"))
+            assertArrayEquals(full.copyOfRange(150_000, 200_000), response.body!!.bytes())
+        }
+
+        client.newCall(
+            Request.Builder().url(server.url(artifact))
+                .header("Range", "bytes=0-9")
+                .header("If-Range", "\"stale\"")
+                .build()
+        ).execute().use { response ->
+            assertEquals(200, response.code)
+        }
+
+        client.newCall(Request.Builder().url(server.url(artifact)).header("If-None-Match", artifact.etag).build()).execute().use { response ->
+            assertEquals(304, response.code)
+        }
+    }
+
+    @Test
+    fun `download and verify throughput per scenario`() {
+        assumeTrue("Set -Pbenchmark=true to run", System.getProperty("benchmark") == "true")
+
+        val apkSize = longProperty("benchmark.apkMb", 100L) * 1_048_576L
+        val obbSize = longProperty("benchmark.obbMb", 300L) * 1_048_576L
+        val bytesPerSecond = longProperty("benchmark.bandwidthMbps", 400L) * 1_000_000L / 8
+        val apk = server.addArtifact("/ota/pubg_global/app.apk", apkSize)
+        val obb = server.addArtifact("/ota/pubg_global/main.obb", obbSize)
+        val variant = VariantInfo(
+            apk = FileInfo("app.apk", server.url(apk), apk.sha256, apkSize),
+            obb = FileInfo("main.obb", server.url(obb), obb.sha256, obbSize)
+        )
+
+        val scenarios = listOf(
+            Scenario("unshaped"),
+            Scenario("shaped", FakeOtaServer.Shaping(bytesPerSecond = bytesPerSecond, firstByteLatencyMs = 80L)),
+            Scenario("reset-obb-40%", obbFault = FakeOtaServer.Fault.Reset(obbSize * 4 / 10)),
+            Scenario("stall-apk-10%", apkFault = FakeOtaServer.Fault.Stall(apkSize / 10)),
+            Scenario("truncate-apk-50%", apkFault = FakeOtaServer.Fault.Truncate(apkSize / 2)),
+            Scenario("resume-obb-from-40%", resumeObbAfter = FakeOtaServer.Fault.Reset(obbSize * 4 / 10))
+        )
+
+        val probe = ResourceProbe(listOf(FakeOtaServer.THREAD_PREFIX))
+        val results = scenarios.map { scenario ->
+            resetDownloads()
+            server.shaping = scenario.shaping
+            server.clearFaults()
+            scenario.resumeObbAfter?.let { fault ->
+                server.injectFault(obb.path, fault)
+                runBlocking { runCatching { repository.downloadVariant("bench", variant).collect { } } }
+                server.clearFaults()
+            }
+            scenario.apkFault?.let { server.injectFault(apk.path, it) }
+            scenario.obbFault?.let { server.injectFault(obb.path, it) }
+            run(scenario, variant, probe)
+        }
+        resetDownloads()
+
+        report(results)
+    }
+
+    private fun run(scenario: Scenario, variant: VariantInfo, probe: ResourceProbe): Result {
+        var last: Pair<DownloadProgress?, DownloadProgress?>? = null
+        var emissions = 0
+        var verifyNanos = 0L
+        var verifyStartedAt = 0L
+        var error: Throwable? = null
+        val sentBefore = server.bytesSent.get()
+
+        val start = probe.begin(server.serverCpuNanos.get())
+        runBlocking {
+            try {
+                repository.downloadVariant("bench", variant).collect { progress ->
+                    emissions++
+                    val previous = last
+                    last = progress
+                    // Verification happens between the VERIFYING and VERIFIED/VERIFICATION_FAILED emissions
+                    val verifying = progress.first?.status == DownloadStatus.VERIFYING || progress.second?.status == DownloadStatus.VERIFYING
+                    val wasVerifying = previous?.first?.status == DownloadStatus.VERIFYING || previous?.second?.status == DownloadStatus.VERIFYING
+                    if (verifying && !wasVerifying) verifyStartedAt = System.nanoTime()
+                    if (!verifying && wasVerifying) verifyNanos += System.nanoTime() - verifyStartedAt
+                }
+            } catch (e: Exception) {
+                error = e
+            }
+        }
+        val sample = probe.end(start, server.serverCpuNanos.get())
+        val bytes = server.bytesSent.get() - sentBefore
+
+        val final = last
+        if (scenario.expectFailure) {
+            assertNotNull("${scenario.name} should fail", error)
+            val failed = final?.first?.status == DownloadStatus.FAILED || final?.second?.status == DownloadStatus.FAILED
+            assertTrue("${scenario.name} should end in FAILED", failed)
+        } else {
+            assertNull("${scenario.name} failed: $error", error)
+            assertEquals(DownloadStatus.VERIFIED, final?.first?.status)
+            assertEquals(DownloadStatus.VERIFIED, final?.second?.status)
+        }
+
+        return Result(
+            scenario = scenario.name,
+            outcome = error?.let { "failed: ${it.javaClass.simpleName}: ${it.message}" } ?: "verified",
+            bytes = bytes,
+            seconds = sample.wallSeconds,
+            megabytesPerSecond = sample.megabytesPerSecond(bytes),
+            cpuMillis = sample.cpuNanos / 1_000_000L,
+            allocationMbPerSecond = sample.allocationMbPerSecond(),
+            allocatedMb = sample.allocatedBytes / 1_048_576.0,
+            peakHeapMb = sample.peakHeapBytes / 1_048_576.0,
+            progressEmissions = emissions,
+            verifyMillis = verifyNanos / 1_000_000L
+        )
+    }
+
+    /**
+     * Delete every downloaded, staged and indexed file so the next scenario cannot resume or
+     * reuse the previous one's bytes. A new repository drops the cache's in-memory index.
+     */
+    private fun resetDownloads() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        File(context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS), "ota_updates").deleteRecursively()
+        repository = newRepository()
+    }
+
+    private fun report(results: List<Result>) {
+        println(
+            String.format(
+                "%-18s %10s %8s %9s %9s %11s %10s %10s %9s  %s",
+                "scenario", "MB", "s", "MB/s", "cpu ms", "alloc MB/s", "heap MB", "emissions", "verify ms", "outcome"
+            )
+        )
+        for (r in results) {
+            println(
+                String.format(
+                    "%-18s %10.1f %8.2f %9.1f %9d %11.1f %10.1f %10d %9d  %s",
+                    r.scenario, r.bytes / 1_048_576.0, r.seconds, r.megabytesPerSecond, r.cpuMillis,
+                    r.allocationMbPerSecond, r.peakHeapMb, r.progressEmissions, r.verifyMillis, r.outcome
+                )
+            )
+        }
+
+        val file = File("build/reports/benchmark/ota-download.json")
+        file.parentFile?.mkdirs()
+        file.writeText(GsonBuilder().setPrettyPrinting().create().toJson(results))
+    }
+
+    private fun longProperty(name: String, default: Long): Long = System.getProperty(name)?.toLongOrNull() ?: default
+}
@@ -0,0 +1,58 @@
+package com.bearmod.loader.benchmark
+
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+
+/**
+ * Wall time, CPU time, allocation and peak heap for a measured block, excluding the fake
+ * servers' own threads (names starting with one of [excludedThreadPrefixes]).
+ *
+ * CPU time is process CPU minus the CPU the servers report for themselves. Allocation is
+ * the per-thread delta over threads alive at the end, so threads that exit inside the block
+ * are missed and the figure is a lower bound. Peak heap is the sum of the heap pools' peaks after a GC and
+ * a peak reset, an upper bound on the true peak.
+ */
+class ResourceProbe(private val excludedThreadPrefixes: List<String>) {
+
+    data class Sample(
+        val wallNanos: Long,
+        val cpuNanos: Long,
+        val allocatedBytes: Long,
+        val peakHeapBytes: Long
+    ) {
+        val wallSeconds: Double get() = wallNanos / 1e9
+
+        fun megabytesPerSecond(bytes: Long): Double = if (wallNanos > 0) bytes / 1_048_576.0 / wallSeconds else 0.0
+
+        fun allocationMbPerSecond(): Double = if (wallNanos > 0) allocatedBytes / 1_048_576.0 / wallSeconds else 0.0
+    }
+
+    private val threadMx = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+    private val osMx = ManagementFactory.getOperatingSystemMXBean() as com.sun.management.OperatingSystemMXBean
+    private val heapPools = ManagementFactory.getMemoryPoolMXBeans().filter { it.type == MemoryType.HEAP }
+
+    class Start(val wallNanos: Long, val cpuNanos: Long, val excludedCpuNanos: Long, val allocatedBytes: Map<Long, Long>)
+
+    fun begin(excludedCpuNanos: Long): Start {
+        System.gc()
+        heapPools.forEach { it.resetPeakUsage() }
+        return Start(System.nanoTime(), osMx.processCpuTime, excludedCpuNanos, allocatedBytes())
+    }
+
+    fun end(start: Start, excludedCpuNanos: Long): Sample {
+        val wall = System.nanoTime() - start.wallNanos
+        val cpu = (osMx.processCpuTime - start.cpuNanos) - (excludedCpuNanos - start.excludedCpuNanos)
+        val allocated = allocatedBytes().entries.sumOf { (id, bytes) -> bytes - (start.allocatedBytes[id] ?: 0L) }
+        val peak = heapPools.sumOf { it.peakUsage.used }
+        return Sample(wall, cpu.coerceAtLeast(0L), allocated.coerceAtLeast(0L), peak)
+    }
+
+    private fun allocatedBytes(): Map<Long, Long> {
+        val ids = Thread.getAllStackTraces().keys
+            .filter { thread -> excludedThreadPrefixes.none { thread.name.startsWith(it) } }
+            .map { it.id }
+            .toLongArray()
+        val bytes = threadMx.getThreadAllocatedBytes(ids)
+        return ids.indices.filter { bytes[it] >= 0 }.associate { ids[it] to bytes[it] }
+    }
+}
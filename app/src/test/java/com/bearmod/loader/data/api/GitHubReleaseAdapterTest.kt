@@ -0,0 +1,78 @@
+package com.bearmod.loader.data.api
+
+import com.bearmod.loader.data.model.GitHubRelease
+import com.bearmod.loader.data.model.GitHubReleaseAsset
+import com.bearmod.loader.data.model.SplitApkInfo
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Tests for mapping GitHub releases to OTA version info
+ */
+class GitHubReleaseAdapterTest {
+
+    private val hashA = "a".repeat(64)
+    private val hashB = "b".repeat(64)
+
+    private fun asset(name: String, digest: String? = "sha256:$hashA") =
+        GitHubReleaseAsset(name, "https://github.com/o/r/releases/download/v3.2/$name", 100L, digest)
+
+    @Test
+    fun `tag gives version and build`() {
+        assertEquals(3 to 2, GitHubReleaseAdapter.parseVersion("v3.2"))
+        assertEquals(3 to 2, GitHubReleaseAdapter.parseVersion("v3-build2"))
+        assertEquals(4 to 0, GitHubReleaseAdapter.parseVersion("release-4"))
+        assertNull(GitHubReleaseAdapter.parseVersion("latest"))
+    }
+
+    @Test
+    fun `assets are grouped into variants with classified splits`() {
+        val release = GitHubRelease(
+            "v3.2",
+            assets = listOf(
+                asset("GL.apk"),
+                asset("GL-main.obb"),
+                asset("GL-split_config.arm64_v8a.apk"),
+                asset("GL-split_config.xxhdpi.apk"),
+                asset("GL-split_config.en.apk"),
+                asset("KR.apk"),
+                asset("notes.txt")
+            )
+        )
+
+        val response = GitHubReleaseAdapter.toOtaResponse(release, variants = listOf("GL", "KR"))!!
+
+        assertEquals(3, response.version)
+        assertEquals(2, response.build)
+        // KR has no OBB and is left out
+        assertEquals(setOf("GL"), response.variants.keys)
+        val gl = response.variants.getValue("GL")
+        assertEquals("GL.apk", gl.apk.name)
+        assertEquals(hashA, gl.apk.sha256)
+        assertEquals("GL-main.obb", gl.obb.name)
+        assertEquals(
+            listOf(
+                SplitApkInfo.TYPE_ABI to "arm64-v8a",
+                SplitApkInfo.TYPE_DENSITY to "xxhdpi",
+                SplitApkInfo.TYPE_LANGUAGE to "en"
+            ),
+            gl.splits!!.map { it.type to it.value }
+        )
+    }
+
+    @Test
+    fun `checksum file fills in missing digests`() {
+        val release = GitHubRelease(
+            "v5",
+            assets = listOf(asset("GL.apk", digest = null), asset("GL.obb", digest = null), asset("SHA256SUMS", digest = null))
+        )
+        assertEquals("SHA256SUMS", GitHubReleaseAdapter.checksumAsset(release)?.name)
+
+        val checksums = GitHubReleaseAdapter.parseChecksums("$hashA  GL.apk\n${hashB.uppercase()} *dist/GL.obb\n")
+        val gl = GitHubReleaseAdapter.toOtaResponse(release, checksums, listOf("GL"))!!.variants.getValue("GL")
+
+        assertEquals(hashA, gl.apk.sha256)
+        assertEquals(hashB, gl.obb.sha256)
+        assertTrue(GitHubReleaseAdapter.toOtaResponse(release, emptyMap(), listOf("GL"))!!.variants.isEmpty())
+    }
+}
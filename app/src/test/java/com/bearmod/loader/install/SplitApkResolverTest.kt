@@ -0,0 +1,63 @@
+package com.bearmod.loader.install
+
+import com.bearmod.loader.data.model.FileInfo
+import com.bearmod.loader.data.model.SplitApkInfo
+import com.bearmod.loader.data.model.VariantInfo
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Tests for SplitApkResolver ABI, density and language selection
+ */
+class SplitApkResolverTest {
+
+    private fun split(type: String, value: String, size: Long = 1_000L) =
+        SplitApkInfo(type, value, "split_$value.apk", "https://example.com/split_$value.apk", "00", size)
+
+    private val splits = listOf(
+        split(SplitApkInfo.TYPE_ABI, "arm64-v8a", 40_000_000L),
+        split(SplitApkInfo.TYPE_ABI, "armeabi-v7a", 30_000_000L),
+        split(SplitApkInfo.TYPE_ABI, "x86_64", 42_000_000L),
+        split(SplitApkInfo.TYPE_DENSITY, "hdpi"),
+        split(SplitApkInfo.TYPE_DENSITY, "xhdpi"),
+        split(SplitApkInfo.TYPE_DENSITY, "xxhdpi"),
+        split(SplitApkInfo.TYPE_DENSITY, "xxxhdpi"),
+        split(SplitApkInfo.TYPE_LANGUAGE, "en"),
+        split(SplitApkInfo.TYPE_LANGUAGE, "ko"),
+        split(SplitApkInfo.TYPE_LANGUAGE, "zh-rTW")
+    )
+
+    private fun values(resolver: SplitApkResolver) = resolver.resolve(splits).map { it.value }
+
+    @Test
+    fun `arm64 device gets only its primary abi, nearest density and language`() {
+        val resolver = SplitApkResolver(listOf("arm64-v8a", "armeabi-v7a", "armeabi"), 420, listOf("en"))
+
+        assertEquals(listOf("arm64-v8a", "xxhdpi", "en"), values(resolver))
+    }
+
+    @Test
+    fun `falls back to a secondary abi and the largest lower density`() {
+        val resolver = SplitApkResolver(listOf("armeabi-v7a", "armeabi"), 800, listOf("zh", "en"))
+
+        assertEquals(listOf("armeabi-v7a", "xxxhdpi", "en", "zh-rTW"), values(resolver))
+    }
+
+    @Test
+    fun `unknown split types are always kept and missing matches select nothing`() {
+        val extra = split("feature", "assets")
+        val resolver = SplitApkResolver(listOf("mips"), 160, listOf("fr"))
+
+        assertEquals(listOf("hdpi", "assets"), resolver.resolve(splits + extra).map { it.value })
+    }
+
+    @Test
+    fun `download size counts the base and selected splits only`() {
+        val base = FileInfo("base.apk", "https://example.com/base.apk", "00", 20_000_000L)
+        val variant = VariantInfo(base, base.copy(name = "main.obb"), splits)
+        val resolver = SplitApkResolver(listOf("arm64-v8a"), 480, listOf("en"))
+
+        assertEquals(20_000_000L + 40_000_000L + 2_000L, resolver.apkDownloadSize(variant))
+        assertEquals(20_000_000L, resolver.apkDownloadSize(variant.copy(splits = null)))
+    }
+}
@@ -0,0 +1,71 @@
+package com.bearmod.loader.logging
+
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+/**
+ * Tests for ActivityLogQueue coalescing, bounds and persistence
+ */
+class ActivityLogQueueTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun newQueue(maxEvents: Int = 3) = ActivityLogQueue(folder.root.resolve("activity.queue"), maxEvents, maxMessageChars = 20)
+
+    @Test
+    fun `identical messages are coalesced`() {
+        val queue = newQueue()
+        queue.add("download done", 1L)
+        queue.add("download done", 5L)
+        queue.add("install ok", 6L)
+
+        assertEquals(2, queue.size)
+        val first = queue.peekBatch(1_000) { it.message }.first()
+        assertEquals(2, first.count)
+        assertEquals(1L, first.firstAt)
+        assertEquals(5L, first.lastAt)
+    }
+
+    @Test
+    fun `oldest events are dropped when full and long messages are truncated`() {
+        val queue = newQueue(maxEvents = 2)
+        queue.add("a", 1L)
+        queue.add("b", 2L)
+        queue.add("c".repeat(50), 3L)
+
+        val messages = queue.peekBatch(1_000) { it.message }.map { it.message }
+        assertEquals(2, messages.size)
+        assertEquals("b", messages[0])
+        assertEquals(20, messages[1].length)
+        assertEquals(1L, queue.droppedCount)
+    }
+
+    @Test
+    fun `events coalesced during an upload survive removal of the batch`() {
+        val queue = newQueue()
+        queue.add("event", 1L)
+        val batch = queue.peekBatch(1_000) { it.message }
+        val counts = batch.map { it.count }
+
+        queue.add("event", 2L)
+        queue.removeBatch(batch, counts)
+
+        assertEquals(1, queue.size)
+        assertEquals(1, queue.peekBatch(1_000) { it.message }.single().count)
+    }
+
+    @Test
+    fun `persisted queue reloads`() {
+        val queue = newQueue()
+        queue.add("first", 1L)
+        queue.add("second\twith tab", 2L)
+        queue.persist()
+
+        val reloaded = newQueue()
+        reloaded.load()
+        assertEquals(listOf("first", "second with tab"), reloaded.peekBatch(1_000) { it.message }.map { it.message })
+    }
+}
@@ -0,0 +1,37 @@
+package com.bearmod.loader.logging
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Tests for RingBufferLogger level gating and wrap-around
+ */
+class RingBufferLoggerTest {
+
+    @Test
+    fun `messages below the level are never built`() {
+        val logger = RingBufferLogger(capacity = 8, minLevel = LogLevel.INFO, echo = null)
+        var built = 0
+
+        logger.d("Test") { built++; "debug" }
+        logger.w("Test") { built++; "warning" }
+
+        assertEquals(1, built)
+        assertEquals(listOf("warning"), logger.dump().map { it.message })
+    }
+
+    @Test
+    fun `buffer keeps the most recent entries`() {
+        val logger = RingBufferLogger(capacity = 4, echo = null)
+        repeat(10) { i -> logger.d("Test", "message $i") }
+
+        assertEquals(listOf("message 6", "message 7", "message 8", "message 9"), logger.dump().map { it.message })
+    }
+
+    @Test
+    fun `no-op logger discards everything`() {
+        var built = false
+        NoOpLogger.e("Test") { built = true; "error" }
+        assertFalse(built)
+    }
+}
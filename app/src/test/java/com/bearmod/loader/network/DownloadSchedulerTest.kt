@@ -0,0 +1,73 @@
+package com.bearmod.loader.network
+
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.bearmod.loader.data.model.DownloadPauseReason
+import com.bearmod.loader.logging.NoOpLogger
+import org.junit.Assert.*
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.shadows.ShadowNetwork
+
+/**
+ * Tests for DownloadScheduler network, metered-policy and battery decisions
+ */
+@RunWith(AndroidJUnit4::class)
+class DownloadSchedulerTest {
+
+    private val scheduler = DownloadScheduler(
+        ApplicationProvider.getApplicationContext(),
+        largeDownloadBytes = 100L,
+        minBatteryPercent = 15,
+        logger = NoOpLogger
+    )
+
+    private val wifi = DownloadScheduler.NetworkState(ShadowNetwork.newInstance(1), unmetered = true, validated = true)
+    private val cellular = DownloadScheduler.NetworkState(ShadowNetwork.newInstance(2), unmetered = false, validated = true)
+    private val healthy = DownloadScheduler.BatteryState(percent = 80, charging = false, powerSave = false)
+
+    @Test
+    fun `unmetered network is preferred over the default metered one`() {
+        val decision = scheduler.decide(listOf(cellular, wifi), healthy, 1_000L, MeteredDownloadPolicy.SMALL_ONLY)
+
+        assertEquals(DownloadScheduler.Decision.Run(wifi.network), decision)
+    }
+
+    @Test
+    fun `large downloads wait on metered networks unless the policy allows them`() {
+        assertEquals(
+            DownloadScheduler.Decision.Wait(DownloadPauseReason.METERED_NETWORK),
+            scheduler.decide(listOf(cellular), healthy, 1_000L, MeteredDownloadPolicy.SMALL_ONLY)
+        )
+        assertEquals(
+            DownloadScheduler.Decision.Run(cellular.network),
+            scheduler.decide(listOf(cellular), healthy, 50L, MeteredDownloadPolicy.SMALL_ONLY)
+        )
+        assertEquals(
+            DownloadScheduler.Decision.Run(cellular.network),
+            scheduler.decide(listOf(cellular), healthy, 1_000L, MeteredDownloadPolicy.ALLOW)
+        )
+    }
+
+    @Test
+    fun `low battery pauses large downloads unless charging`() {
+        val low = healthy.copy(percent = 10)
+
+        assertEquals(
+            DownloadScheduler.Decision.Wait(DownloadPauseReason.LOW_BATTERY),
+            scheduler.decide(listOf(wifi), low, 1_000L, MeteredDownloadPolicy.ALLOW)
+        )
+        assertEquals(
+            DownloadScheduler.Decision.Run(wifi.network),
+            scheduler.decide(listOf(wifi), low.copy(charging = true), 1_000L, MeteredDownloadPolicy.ALLOW)
+        )
+    }
+
+    @Test
+    fun `no network means waiting`() {
+        assertEquals(
+            DownloadScheduler.Decision.Wait(DownloadPauseReason.NO_NETWORK),
+            scheduler.decide(emptyList(), healthy, 1_000L, MeteredDownloadPolicy.ALLOW)
+        )
+    }
+}
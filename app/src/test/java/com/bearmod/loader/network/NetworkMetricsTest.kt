@@ -0,0 +1,48 @@
+package com.bearmod.loader.network
+
+import com.bearmod.loader.data.api.KeyAuthApiService
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.Request
+import org.junit.Assert.*
+import org.junit.Test
+import retrofit2.Invocation
+
+/**
+ * Tests for NetworkMetrics endpoint aggregation
+ */
+class NetworkMetricsTest {
+
+    @Test
+    fun `endpoint key keeps host and first two path segments`() {
+        assertEquals("keyauth.win/api/1.3", NetworkMetrics.endpointKey("https://keyauth.win/api/1.3/?type=init".toHttpUrl()))
+        assertEquals("cdn.example.com/ota/v2", NetworkMetrics.endpointKey("https://cdn.example.com/ota/v2/app-release.apk".toHttpUrl()))
+        assertEquals("example.com", NetworkMetrics.endpointKey("https://example.com/".toHttpUrl()))
+    }
+
+    @Test
+    fun `keyauth operations on the same path get separate series`() {
+        fun keyFor(operation: String): String {
+            val method = KeyAuthApiService::class.java.methods.first { it.name == operation }
+            val request = Request.Builder()
+                .url("https://keyauth.win/api/1.3/")
+                .tag(Invocation::class.java, Invocation.of(method, emptyList<Any>()))
+                .build()
+            return NetworkMetrics.endpointKey(request)
+        }
+
+        assertEquals("keyauth.win/api/1.3:init", keyFor("init"))
+        assertEquals("keyauth.win/api/1.3:license", keyFor("license"))
+        assertEquals("keyauth.win/api/1.3", NetworkMetrics.endpointKey(Request.Builder().url("https://keyauth.win/api/1.3/").build()))
+    }
+
+    @Test
+    fun `describe filters by host`() {
+        NetworkMetrics.reset()
+        NetworkMetrics.recorder.record("keyauth.win/api.total", 1_000_000L)
+        NetworkMetrics.recorder.record("cdn.example.com/ota.total", 2_000_000L)
+
+        assertEquals(setOf("keyauth.win/api.total"), NetworkMetrics.describe("keyauth.win").keys)
+        assertEquals(2, NetworkMetrics.describe().size)
+        NetworkMetrics.reset()
+    }
+}
@@ -0,0 +1,76 @@
+package com.bearmod.loader.network
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import okhttp3.Headers.Companion.headersOf
+import org.junit.Assert.*
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Tests for RateLimitGate pacing from rate-limit headers and failures
+ */
+@RunWith(AndroidJUnit4::class)
+class RateLimitGateTest {
+
+    private var now = 1_000_000_000L
+
+    private val preferences = ApplicationProvider.getApplicationContext<Context>()
+        .getSharedPreferences("rate_limit_test", Context.MODE_PRIVATE)
+
+    private fun gate() = RateLimitGate(
+        preferences,
+        "test",
+        minIntervalMs = 1_000L,
+        baseBackoffMs = 10_000L,
+        maxBackoffMs = 3_600_000L,
+        maxJitterMs = 0L,
+        clock = { now }
+    )
+
+    @Test
+    fun `successful checks are spaced by the minimum interval`() {
+        val gate = gate()
+        assertEquals(0L, gate.delayMs())
+
+        gate.onResponse(200, headersOf("X-RateLimit-Remaining", "50"))
+
+        assertEquals(1_000L, gate.delayMs())
+    }
+
+    @Test
+    fun `low remaining quota waits for the reset`() {
+        val resetSeconds = (now + 600_000L) / 1000
+        gate().onResponse(304, headersOf("X-RateLimit-Remaining", "2", "X-RateLimit-Reset", resetSeconds.toString()))
+
+        assertEquals(600_000L, gate().delayMs())
+    }
+
+    @Test
+    fun `retry after is honoured on rate-limit responses`() {
+        gate().onResponse(429, headersOf("Retry-After", "120"))
+
+        assertEquals(120_000L, gate().delayMs())
+    }
+
+    @Test
+    fun `failures back off exponentially and reset on success`() {
+        val gate = gate()
+        gate.onFailure()
+        assertEquals(10_000L, gate.delayMs())
+        gate.onResponse(503, headersOf())
+        assertEquals(20_000L, gate.delayMs())
+
+        gate.onResponse(200, headersOf())
+        gate.onFailure()
+        assertEquals(10_000L, gate.delayMs())
+    }
+
+    @Test
+    fun `a stored wait longer than the cap is ignored`() {
+        preferences.edit().putLong("test_next_at", now + 10 * 3_600_000L).apply()
+
+        assertEquals(0L, gate().delayMs())
+    }
+}
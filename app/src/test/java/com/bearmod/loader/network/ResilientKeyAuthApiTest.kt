@@ -0,0 +1,114 @@
+package com.bearmod.loader.network
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.bearmod.loader.data.api.KeyAuthApiService
+import com.bearmod.loader.data.model.KeyAuthResponse
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doSuspendableAnswer
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.stub
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verifyBlocking
+import retrofit2.Response
+import java.io.IOException
+import java.net.SocketTimeoutException
+
+/**
+ * Tests for ResilientKeyAuthApi retry, deadline and circuit breaker behaviour
+ */
+@RunWith(AndroidJUnit4::class)
+class ResilientKeyAuthApiTest {
+
+    private lateinit var delegate: KeyAuthApiService
+    private lateinit var api: ResilientKeyAuthApi
+
+    private val policies = ResilientKeyAuthApi.Policies(
+        init = ResilientKeyAuthApi.CallPolicy(attemptTimeoutMs = 200L, deadlineMs = 200L),
+        checkSession = ResilientKeyAuthApi.CallPolicy(attemptTimeoutMs = 200L, deadlineMs = 1_000L, maxAttempts = 3)
+    )
+
+    @Before
+    fun setUp() {
+        delegate = mock()
+        api = ResilientKeyAuthApi(
+            delegate,
+            policies,
+            CircuitBreaker(failureThreshold = 2, openDurationMs = 60_000L),
+            baseBackoffMs = 10L,
+            maxBackoffMs = 20L
+        )
+    }
+
+    @Test
+    fun `idempotent call is retried after transport errors`() = runBlocking {
+        var calls = 0
+        delegate.stub {
+            onBlocking { checkSession(any(), any(), any(), any()) } doSuspendableAnswer {
+                if (++calls < 3) throw IOException("connection reset")
+                Response.success(KeyAuthResponse(success = true, message = "Session is validated"))
+            }
+        }
+
+        val response = api.checkSession(sessionId = "s", name = "n", ownerId = "o")
+
+        assertTrue(response.body()!!.success)
+        assertEquals(3, calls)
+        assertEquals(2L, api.counters()["check.retries"])
+        assertEquals(CircuitBreaker.State.CLOSED, api.circuitState)
+    }
+
+    @Test
+    fun `init is not retried and hangs are cut off at the deadline`() = runBlocking {
+        delegate.stub {
+            onBlocking { init(any(), any(), any(), any(), anyOrNull()) } doSuspendableAnswer {
+                delay(10_000L)
+                Response.success(KeyAuthResponse(success = true, message = "Initialized"))
+            }
+        }
+
+        val start = System.currentTimeMillis()
+        try {
+            api.init(version = "1.3", name = "n", ownerId = "o")
+            fail("Expected a timeout")
+        } catch (e: SocketTimeoutException) {
+            // expected
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 2_000L)
+        verifyBlocking(delegate, times(1)) { init(any(), any(), any(), any(), anyOrNull()) }
+    }
+
+    @Test
+    fun `open circuit fails fast without calling the server`() = runBlocking {
+        delegate.stub {
+            onBlocking { init(any(), any(), any(), any(), anyOrNull()) } doSuspendableAnswer {
+                throw IOException("unreachable")
+            }
+        }
+
+        repeat(2) {
+            try {
+                api.init(version = "1.3", name = "n", ownerId = "o")
+            } catch (e: IOException) {
+                // expected
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, api.circuitState)
+
+        try {
+            api.init(version = "1.3", name = "n", ownerId = "o")
+            fail("Expected the circuit to be open")
+        } catch (e: ResilientKeyAuthApi.CircuitOpenException) {
+            // expected
+        }
+        verifyBlocking(delegate, times(2)) { init(any(), any(), any(), any(), anyOrNull()) }
+        assertEquals(1L, api.counters()["init.rejected"])
+    }
+}
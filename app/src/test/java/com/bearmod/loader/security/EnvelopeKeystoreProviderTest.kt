@@ -0,0 +1,153 @@
+package com.bearmod.loader.security
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import javax.crypto.Cipher
+import javax.crypto.KeyGenerator
+import javax.crypto.SecretKey
+import javax.crypto.spec.GCMParameterSpec
+
+/**
+ * Tests for EnvelopeKeystoreProvider using a software stand-in for the AndroidKeyStore
+ */
+@RunWith(AndroidJUnit4::class)
+class EnvelopeKeystoreProviderTest {
+
+    private val alias = "test_alias"
+    private lateinit var context: Context
+    private lateinit var keystore: SoftwareKeystoreProvider
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        context.getSharedPreferences("keyauth_envelope_keys", Context.MODE_PRIVATE).edit().clear().commit()
+        keystore = SoftwareKeystoreProvider()
+    }
+
+    @Test
+    fun `fields round trip and the keystore is used only to wrap the key`() {
+        val provider = EnvelopeKeystoreProvider(context, keystore)
+        assertTrue(provider.ensureKey(alias))
+        val callsAfterSetup = keystore.calls
+
+        repeat(20) { i ->
+            val encrypted = provider.encrypt(alias, "value-$i".toByteArray())!!
+            assertTrue(EnvelopeKeystoreProvider.isEnvelopeCiphertext(encrypted))
+            assertEquals("value-$i", String(provider.decrypt(alias, encrypted)!!))
+        }
+
+        assertEquals(callsAfterSetup, keystore.calls)
+    }
+
+    @Test
+    fun `new instance unwraps the stored key once`() {
+        val first = EnvelopeKeystoreProvider(context, keystore)
+        assertTrue(first.ensureKey(alias))
+        val encrypted = first.encrypt(alias, "session".toByteArray())!!
+
+        val restarted = EnvelopeKeystoreProvider(context, keystore)
+        val before = keystore.calls
+        assertEquals("session", String(restarted.decrypt(alias, encrypted)!!))
+        assertEquals("session", String(restarted.decrypt(alias, encrypted)!!))
+        assertEquals(before + 1, keystore.calls)
+    }
+
+    @Test
+    fun `legacy keystore ciphertext still decrypts`() {
+        keystore.ensureKey(alias)
+        val legacy = keystore.encrypt(alias, "license".toByteArray())!!
+
+        val provider = EnvelopeKeystoreProvider(context, keystore)
+        assertEquals("license", String(provider.decrypt(alias, legacy)!!))
+    }
+
+    @Test
+    fun `unavailable keystore reports failure`() {
+        keystore.available = false
+        val provider = EnvelopeKeystoreProvider(context, keystore)
+        assertFalse(provider.ensureKey(alias))
+        assertNull(provider.encrypt(alias, "x".toByteArray()))
+    }
+
+    @Test
+    fun `transient unwrap failure keeps the stored key`() {
+        val first = EnvelopeKeystoreProvider(context, keystore)
+        assertTrue(first.ensureKey(alias))
+        val encrypted = first.encrypt(alias, "session".toByteArray())!!
+
+        keystore.failingDecrypts = 1
+        val restarted = EnvelopeKeystoreProvider(context, keystore)
+        assertNull(restarted.decrypt(alias, encrypted))
+        assertFalse(restarted.consumeDataKeyReset(alias))
+
+        assertEquals("session", String(restarted.decrypt(alias, encrypted)!!))
+    }
+
+    @Test
+    fun `replaced wrapping key generates a new key and reports the reset`() {
+        val first = EnvelopeKeystoreProvider(context, keystore)
+        assertTrue(first.ensureKey(alias))
+        val encrypted = first.encrypt(alias, "session".toByteArray())!!
+
+        keystore.replaceKey(alias)
+        val restarted = EnvelopeKeystoreProvider(context, keystore)
+        assertTrue(restarted.ensureKey(alias))
+        assertTrue(restarted.consumeDataKeyReset(alias))
+        assertNull(restarted.decrypt(alias, encrypted))
+        val fresh = restarted.encrypt(alias, "new".toByteArray())!!
+        assertEquals("new", String(restarted.decrypt(alias, fresh)!!))
+    }
+
+    /** Software AES-GCM with the same `IV + ciphertext` layout as AndroidKeystoreProvider. */
+    private class SoftwareKeystoreProvider : KeystoreProvider {
+        var available = true
+        var calls = 0
+        var failingDecrypts = 0
+        private val keys = mutableMapOf<String, SecretKey>()
+        private val replaced = mutableSetOf<String>()
+
+        override fun ensureKey(alias: String): Boolean {
+            if (!available) return false
+            keys.getOrPut(alias) { KeyGenerator.getInstance("AES").apply { init(256) }.generateKey() }
+            return true
+        }
+
+        /** Simulates KeyPermanentlyInvalidatedException: the key is deleted and regenerated */
+        fun replaceKey(alias: String) {
+            keys.remove(alias)
+            ensureKey(alias)
+            replaced.add(alias)
+        }
+
+        override fun consumeKeyReplaced(alias: String): Boolean = replaced.remove(alias)
+
+        override fun encrypt(alias: String, plaintext: ByteArray): ByteArray? {
+            calls++
+            val key = keys[alias] ?: return null
+            val cipher = Cipher.getInstance("AES/GCM/NoPadding")
+            cipher.init(Cipher.ENCRYPT_MODE, key)
+            return cipher.iv + cipher.doFinal(plaintext)
+        }
+
+        override fun decrypt(alias: String, combined: ByteArray): ByteArray? {
+            calls++
+            if (failingDecrypts > 0) {
+                failingDecrypts--
+                return null
+            }
+            val key = keys[alias] ?: return null
+            return try {
+                val cipher = Cipher.getInstance("AES/GCM/NoPadding")
+                cipher.init(Cipher.DECRYPT_MODE, key, GCMParameterSpec(128, combined, 0, 12))
+                cipher.doFinal(combined, 12, combined.size - 12)
+            } catch (e: Exception) {
+                null
+            }
+        }
+    }
+}
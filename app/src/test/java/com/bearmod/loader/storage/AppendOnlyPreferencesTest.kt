@@ -0,0 +1,118 @@
+package com.bearmod.loader.storage
+
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.util.zip.CRC32
+
+/**
+ * Tests for the binary append-only SharedPreferences store
+ */
+@RunWith(RobolectricTestRunner::class)
+class AppendOnlyPreferencesTest {
+
+    @get:Rule
+    val temp = TemporaryFolder()
+
+    private fun storeFile(): File = File(temp.root, "prefs.blp")
+
+    @Test
+    fun `values survive reopening`() {
+        val store = AppendOnlyPreferences.newInstance(storeFile())
+        assertTrue(
+            store.edit()
+                .putString("token", "abc")
+                .putLong("expiry", 42L)
+                .putBoolean("registered", true)
+                .putInt("trust", 2)
+                .putStringSet("tags", mutableSetOf("a", "b"))
+                .commit()
+        )
+        assertTrue(store.edit().remove("trust").commit())
+
+        val reopened = AppendOnlyPreferences.newInstance(storeFile())
+        assertEquals("abc", reopened.getString("token", null))
+        assertEquals(42L, reopened.getLong("expiry", 0L))
+        assertTrue(reopened.getBoolean("registered", false))
+        assertFalse(reopened.contains("trust"))
+        assertEquals(setOf("a", "b"), reopened.getStringSet("tags", null))
+    }
+
+    @Test
+    fun `torn trailing record is discarded`() {
+        val store = AppendOnlyPreferences.newInstance(storeFile())
+        store.edit().putString("license", "kept").commit()
+
+        // Simulate a crash part-way through appending the next batch
+        FileOutputStream(storeFile(), true).use { it.write(byteArrayOf(0, 0, 0, 40, 1, 2, 3)) }
+
+        val reopened = AppendOnlyPreferences.newInstance(storeFile())
+        assertEquals("kept", reopened.getString("license", null))
+
+        reopened.edit().putString("session", "after-recovery").commit()
+        val again = AppendOnlyPreferences.newInstance(storeFile())
+        assertEquals("kept", again.getString("license", null))
+        assertEquals("after-recovery", again.getString("session", null))
+    }
+
+    @Test
+    fun `record with an unknown op is discarded with the rest of the tail`() {
+        val store = AppendOnlyPreferences.newInstance(storeFile())
+        store.edit().putString("license", "kept").putString("hwid", "device").commit()
+
+        // A well-formed, CRC-valid record whose op this version does not know
+        val payload = ByteArrayOutputStream().also { bytes ->
+            DataOutputStream(bytes).use { out ->
+                out.writeInt(1)
+                out.writeByte(99)
+                out.writeInt(3)
+                out.write("new".toByteArray())
+            }
+        }.toByteArray()
+        val crc = CRC32().apply { update(payload) }.value.toInt()
+        FileOutputStream(storeFile(), true).use {
+            it.write(ByteBuffer.allocate(8 + payload.size).putInt(payload.size).putInt(crc).put(payload).array())
+        }
+
+        val reopened = AppendOnlyPreferences.newInstance(storeFile())
+        assertEquals("kept", reopened.getString("license", null))
+        assertEquals("device", reopened.getString("hwid", null))
+        assertFalse(File(storeFile().path + ".corrupt").exists())
+
+        reopened.edit().putString("session", "after-recovery").commit()
+        val again = AppendOnlyPreferences.newInstance(storeFile())
+        assertEquals("kept", again.getString("license", null))
+        assertEquals("after-recovery", again.getString("session", null))
+    }
+
+    @Test
+    fun `clear applies before puts in the same batch`() {
+        val store = AppendOnlyPreferences.newInstance(storeFile())
+        store.edit().putString("old", "x").putString("kept", "y").commit()
+        store.edit().clear().putString("kept", "z").commit()
+
+        val reopened = AppendOnlyPreferences.newInstance(storeFile())
+        assertFalse(reopened.contains("old"))
+        assertEquals("z", reopened.getString("kept", null))
+    }
+
+    @Test
+    fun `log is compacted once it outgrows the snapshot`() {
+        val store = AppendOnlyPreferences.newInstance(storeFile(), compactMinBytes = 512)
+        repeat(200) { i ->
+            store.edit().putString("session_token", "token-$i").commit()
+        }
+
+        assertTrue("log should have been compacted", storeFile().length() < 1024)
+        val reopened = AppendOnlyPreferences.newInstance(storeFile())
+        assertEquals("token-199", reopened.getString("session_token", null))
+    }
+}
@@ -3,6 +3,9 @@ package com.bearmod.loader.utils
 import android.content.Context
 import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.bearmod.loader.security.KeystoreProvider
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
 import org.junit.After
 import org.junit.Assert.*
 import org.junit.Before
@@ -168,4 +171,85 @@ class SecurePreferencesTest {
         val retrievedKey = securePreferences.getLicenseKey()
         assertEquals(specialKey, retrievedKey)
     }
+
+    @Test
+    fun testExternalWriteInvalidatesCachedValue() {
+        securePreferences.saveLicenseKey("cached-key")
+        assertEquals("cached-key", securePreferences.getLicenseKey())
+
+        // Write behind SecurePreferences' back to whichever file backs it
+        for (backingFile in listOf("keyauth_secure_prefs_v2", "keyauth_secure_prefs_v2_fallback")) {
+            context.getSharedPreferences(backingFile, Context.MODE_PRIVATE).edit()
+                .putString("license_key", "external-key")
+                .commit()
+        }
+
+        assertEquals("external-key", securePreferences.getLicenseKey())
+    }
+
+    @Test
+    fun testWipeCachedSecretsKeepsStoredValues() {
+        val keystore = CountingKeystoreProvider()
+        val prefs = SecurePreferences(context, keystore)
+        prefs.storeSessionToken("session-token", System.currentTimeMillis() + 60_000L)
+        prefs.saveLicenseKey("license-key")
+        prefs.getSessionToken()
+        prefs.getLicenseKey()
+
+        // Cached: further reads do not decrypt
+        val beforeTrim = keystore.decrypts
+        assertEquals("session-token", prefs.getSessionToken())
+        assertEquals(beforeTrim, keystore.decrypts)
+
+        SecurePreferences.onTrimMemory(android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+
+        assertEquals("session-token", prefs.getSessionToken())
+        assertEquals("license-key", prefs.getLicenseKey())
+        assertEquals(beforeTrim + 2, keystore.decrypts)
+    }
+
+    /** Reversible stand-in for the keystore that counts decryptions. */
+    private class CountingKeystoreProvider : KeystoreProvider {
+        var decrypts = 0
+
+        override fun ensureKey(alias: String): Boolean = true
+
+        override fun encrypt(alias: String, plaintext: ByteArray): ByteArray =
+            ByteArray(plaintext.size) { (plaintext[it].toInt() xor 0x5A).toByte() }
+
+        override fun decrypt(alias: String, combined: ByteArray): ByteArray {
+            decrypts++
+            return ByteArray(combined.size) { (combined[it].toInt() xor 0x5A).toByte() }
+        }
+    }
+
+    @Test
+    fun testAsyncApiReadsAndWritesThroughSamePreferences() = runBlocking {
+        val async = SecurePreferencesAsync(securePreferences)
+
+        async.saveLicenseKey("async-key")
+        async.setAutoLogin(true)
+
+        assertEquals("async-key", securePreferences.getLicenseKey())
+        assertEquals("async-key", async.observeLicenseKey().first())
+        assertTrue(async.observeAutoLogin().first())
+    }
+
+    @Test
+    fun testTransactionWritesAllFields() {
+        val expiry = System.currentTimeMillis() + 60_000L
+        val committed = securePreferences.transaction {
+            storeSessionToken("tx-session", expiry)
+            setDeviceRegistered("tx-hwid", "tx-license")
+            setDeviceTrustLevel(2)
+        }
+
+        assertTrue(committed)
+        assertEquals("tx-session", securePreferences.getSessionToken())
+        assertEquals(expiry, securePreferences.getTokenExpiryTime())
+        assertTrue(securePreferences.isDeviceRegistered())
+        assertEquals("tx-hwid", securePreferences.getLastAuthHWID())
+        assertEquals("tx-license", securePreferences.getBoundLicenseKey())
+        assertEquals(2, securePreferences.getDeviceTrustLevel())
+    }
 }
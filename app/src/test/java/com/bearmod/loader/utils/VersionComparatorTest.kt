@@ -0,0 +1,42 @@
+package com.bearmod.loader.utils
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Tests for VersionComparator and Hex encoding
+ */
+class VersionComparatorTest {
+
+    // Previous split-based implementation, used as the reference
+    private fun reference(version1: String, version2: String): Int {
+        val v1Parts = version1.split(".").map { it.toIntOrNull() ?: 0 }
+        val v2Parts = version2.split(".").map { it.toIntOrNull() ?: 0 }
+        for (i in 0 until maxOf(v1Parts.size, v2Parts.size)) {
+            val v1Part = v1Parts.getOrNull(i) ?: 0
+            val v2Part = v2Parts.getOrNull(i) ?: 0
+            if (v1Part != v2Part) return if (v1Part > v2Part) 1 else -1
+        }
+        return 0
+    }
+
+    @Test
+    fun `matches the split-based comparison`() {
+        val versions = listOf(
+            "", "1", "1.0", "1.0.0", "1.0.1", "1.10", "1.9", "2", "1..2", ".5", "1.",
+            "3.10.0.19357", "2.14.1-beta", "-1.2", "+3", "99999999999.1", "2147483647", "-2147483648"
+        )
+        for (a in versions) {
+            for (b in versions) {
+                assertEquals("compare(\"$a\", \"$b\")", reference(a, b), VersionComparator.compare(a, b))
+            }
+        }
+    }
+
+    @Test
+    fun `hex encoding matches per-byte formatting`() {
+        val bytes = ByteArray(256) { it.toByte() }
+        assertEquals(bytes.joinToString("") { "%02x".format(it) }, Hex.encode(bytes))
+        assertEquals(bytes.joinToString("") { "%02X".format(it) }, Hex.encode(bytes, upperCase = true))
+    }
+}
@@ -0,0 +1,54 @@
+import org.jetbrains.kotlin.gradle.dsl.JvmTarget
+
+plugins {
+    alias(libs.plugins.kotlin.jvm)
+    alias(libs.plugins.jmh)
+}
+
+// JMH harnesses for the platform-independent hot paths of :app. The measured sources are
+// compiled straight from the app tree so the benchmarks always run the shipped code.
+val appSources = tasks.register<Sync>("syncAppSources") {
+    from("${rootDir}/app/src/main/java") {
+        include(
+            "com/bearmod/loader/utils/VersionComparator.kt",
+            "com/bearmod/loader/security/AesGcmCodec.kt",
+            "com/bearmod/loader/data/model/OTAModels.kt"
+        )
+    }
+    into(layout.buildDirectory.dir("generated/appSources"))
+}
+
+kotlin {
+    sourceSets.named("main") {
+        kotlin.srcDir(appSources)
+    }
+    compilerOptions {
+        jvmTarget.set(JvmTarget.JVM_17)
+    }
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+dependencies {
+    implementation(project(":ota-core"))
+    implementation(libs.gson)
+    implementation(libs.kotlinx.coroutines.core)
+}
+
+// `./gradlew :benchmark:jmh` writes a JSON report; compare two runs with
+// `python3 scripts/compare_jmh.py <baseline.json> <candidate.json>`.
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    (findProperty("jmhInclude") as String?)?.let { includes.set(listOf(it)) }
+}
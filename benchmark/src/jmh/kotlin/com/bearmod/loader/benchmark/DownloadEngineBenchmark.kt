@@ -0,0 +1,67 @@
+package com.bearmod.loader.benchmark
+
+import com.bearmod.loader.ota.DirectoryStorage
+import com.bearmod.loader.ota.DownloadEngine
+import com.bearmod.loader.ota.OtaArtifact
+import com.bearmod.loader.ota.OtaStream
+import com.bearmod.loader.ota.OtaTransport
+import com.bearmod.loader.utils.Hex
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.security.MessageDigest
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * ota-core write + hash + commit pipeline fed from memory, isolating engine and disk cost
+ * from the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class DownloadEngineBenchmark {
+
+    @Param("32")
+    var sizeMb: Int = 32
+
+    @Param("8192", "65536")
+    var bufferSize: Int = 65536
+
+    private lateinit var payload: ByteArray
+    private lateinit var artifact: OtaArtifact
+    private lateinit var directory: File
+    private lateinit var engine: DownloadEngine
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        payload = ByteArray(sizeMb * 1024 * 1024).also { Random(11).nextBytes(it) }
+        artifact = OtaArtifact("bench.apk", "mem://bench.apk", Hex.encode(MessageDigest.getInstance("SHA-256").digest(payload)))
+        directory = File.createTempFile("ota-engine", "").apply { delete(); mkdirs() }
+        val transport = object : OtaTransport {
+            override suspend fun open(url: String) = OtaStream(payload.size.toLong(), ByteArrayInputStream(payload))
+        }
+        engine = DownloadEngine(transport, DirectoryStorage(directory), bufferSize = bufferSize)
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Benchmark
+    fun downloadVerifyCommit() = runBlocking {
+        engine.download(artifact).collect()
+    }
+}
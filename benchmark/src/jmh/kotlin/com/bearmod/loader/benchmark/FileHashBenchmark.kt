@@ -0,0 +1,68 @@
+package com.bearmod.loader.benchmark
+
+import com.bearmod.loader.utils.FileHashing
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.io.File
+import java.security.MessageDigest
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * SHA-256 verification of a downloaded artifact, as done by OTARepository after each download.
+ * `legacy` reproduces the previous 8 KiB buffer and per-byte `"%02x".format` encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class FileHashBenchmark {
+
+    @Param("1", "64")
+    var sizeMb: Int = 1
+
+    private lateinit var file: File
+    private lateinit var expectedHash: String
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        file = File.createTempFile("bench-artifact", ".bin")
+        val chunk = ByteArray(1024 * 1024)
+        val random = Random(42)
+        file.outputStream().use { out ->
+            repeat(sizeMb) {
+                random.nextBytes(chunk)
+                out.write(chunk)
+            }
+        }
+        expectedHash = FileHashing.sha256Hex(file)
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Benchmark
+    fun current(): Boolean = FileHashing.matches(file, expectedHash)
+
+    @Benchmark
+    fun legacy(): Boolean {
+        val digest = MessageDigest.getInstance("SHA-256")
+        file.inputStream().use { input ->
+            val buffer = ByteArray(8192)
+            var bytesRead: Int
+            while (input.read(buffer).also { bytesRead = it } != -1) {
+                digest.update(buffer, 0, bytesRead)
+            }
+        }
+        return digest.digest().joinToString("") { "%02x".format(it) }.equals(expectedHash, ignoreCase = true)
+    }
+}
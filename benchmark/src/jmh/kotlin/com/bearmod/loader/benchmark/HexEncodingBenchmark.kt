@@ -0,0 +1,38 @@
+package com.bearmod.loader.benchmark
+
+import com.bearmod.loader.utils.Hex
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Hex encoding of digests: HWID.bytesToHex (16-byte MD5) and artifact hashes (32-byte SHA-256).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class HexEncodingBenchmark {
+
+    @Param("16", "32")
+    var digestBytes: Int = 16
+
+    private lateinit var digest: ByteArray
+
+    @Setup
+    fun setUp() {
+        digest = ByteArray(digestBytes).also { Random(1).nextBytes(it) }
+    }
+
+    @Benchmark
+    fun table(): String = Hex.encode(digest, upperCase = true)
+
+    @Benchmark
+    fun format(): String = digest.joinToString("") { "%02X".format(it) }
+}
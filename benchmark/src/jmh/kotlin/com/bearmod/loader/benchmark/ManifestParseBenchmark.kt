@@ -0,0 +1,58 @@
+package com.bearmod.loader.benchmark
+
+import com.bearmod.loader.data.model.OTAResponse
+import com.google.gson.Gson
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.io.StringReader
+import java.util.concurrent.TimeUnit
+
+/**
+ * OTA manifest parsing through a shared Gson adapter, as Retrofit's Gson converter does,
+ * versus building a new Gson per parse as the manifest loaders in the UI do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class ManifestParseBenchmark {
+
+    @Param("5", "50")
+    var variantCount: Int = 5
+
+    private val gson = Gson()
+    private val adapter = gson.getAdapter(OTAResponse::class.java)
+    private lateinit var json: String
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        json = buildString {
+            append("{\"version\":310,\"build\":19357,\"variants\":{")
+            for (i in 0 until variantCount) {
+                if (i > 0) append(',')
+                append("\"variant$i\":{")
+                append(fileJson("apk", "app$i.apk", 1_200_000_000L + i))
+                append(',')
+                append(fileJson("obb", "main$i.obb", 800_000_000L + i))
+                append('}')
+            }
+            append("}}")
+        }
+    }
+
+    private fun fileJson(type: String, name: String, size: Long): String =
+        "\"$type\":{\"name\":\"$name\",\"url\":\"https://cdn.example.com/ota/$name\"," +
+            "\"sha256\":\"${"ab".repeat(32)}\",\"size\":$size}"
+
+    @Benchmark
+    fun sharedAdapter(): OTAResponse = adapter.fromJson(StringReader(json))
+
+    @Benchmark
+    fun newGsonPerParse(): OTAResponse = Gson().fromJson(json, OTAResponse::class.java)
+}
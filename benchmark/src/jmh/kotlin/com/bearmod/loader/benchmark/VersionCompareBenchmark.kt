@@ -0,0 +1,52 @@
+package com.bearmod.loader.benchmark
+
+import com.bearmod.loader.utils.VersionComparator
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+/**
+ * Version comparison as done for every PUBG variant by PackageVersionChecker.
+ * `legacy` is the previous split/map implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class VersionCompareBenchmark {
+
+    private val pairs = arrayOf(
+        "3.9.0" to "3.10.0",
+        "3.10.0.19357" to "3.10.0.19357",
+        "1.0" to "1.0.1",
+        "2.14.1-beta" to "2.14.0"
+    )
+
+    @Benchmark
+    fun current(blackhole: Blackhole) {
+        for ((a, b) in pairs) blackhole.consume(VersionComparator.compare(a, b))
+    }
+
+    @Benchmark
+    fun legacy(blackhole: Blackhole) {
+        for ((a, b) in pairs) blackhole.consume(legacyCompare(a, b))
+    }
+
+    private fun legacyCompare(version1: String, version2: String): Int {
+        val v1Parts = version1.split(".").map { it.toIntOrNull() ?: 0 }
+        val v2Parts = version2.split(".").map { it.toIntOrNull() ?: 0 }
+        for (i in 0 until maxOf(v1Parts.size, v2Parts.size)) {
+            val v1Part = v1Parts.getOrNull(i) ?: 0
+            val v2Part = v2Parts.getOrNull(i) ?: 0
+            when {
+                v1Part > v2Part -> return 1
+                v1Part < v2Part -> return -1
+            }
+        }
+        return 0
+    }
+}
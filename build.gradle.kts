@@ -2,6 +2,7 @@
 plugins {
     alias(libs.plugins.android.application) apply false
     alias(libs.plugins.kotlin.android) apply false
+    alias(libs.plugins.kotlin.jvm) apply false
     // Detekt plugin is applied in modules that need it. Version is declared here for consistency.
     id("io.gitlab.arturbosch.detekt") version "1.23.1" apply false
 }
@@ -12,5 +13,6 @@ tasks.register("ciChecks") {
     description = "Run lint, tests and assembleDebug for CI validation"
     dependsOn(":app:lint", 
               ":app:test", 
+              ":ota-core:test", 
               ":app:assembleDebug")
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+package com.bearmod.loader.ota
+
+import kotlinx.coroutines.sync.Mutex
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+
+/**
+ * Size-bounded cache of the artifacts in [directory].
+ *
+ * Every file in the directory is tracked with its size, last use and, once the engine has
+ * verified it, its SHA-256. A verified file whose size still matches is reused instead of
+ * downloaded again. When space is needed, unpinned files are evicted: unverified ones
+ * (stale staging files, abandoned downloads) first, then verified ones least recently used
+ * first, until usage fits [budgetBytes] and [freeSpace] leaves [minFreeBytes] spare.
+ *
+ * Files being downloaded or about to be installed are [pin]ned and never evicted. The
+ * index is kept in [INDEX_FILE_NAME] inside the directory (temp file + rename).
+ *
+ * Writers of the same file (a background prefetch and a download the user started) take
+ * its [lock] first, so only one of them appends to a staging file at a time.
+ */
+class ArtifactCache(
+    private val directory: File,
+    @Volatile var budgetBytes: Long,
+    private val freeSpace: (File) -> Long = { it.usableSpace },
+    private val minFreeBytes: Long = DEFAULT_MIN_FREE_BYTES,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    companion object {
+        const val INDEX_FILE_NAME = ".artifact-index"
+        const val DEFAULT_MIN_FREE_BYTES = 64L * 1024 * 1024
+        private const val SEPARATOR = '\t'
+    }
+
+    private class Entry(var size: Long, var lastUsed: Long, var sha256: String?)
+
+    /**
+     * Keeps its files from being evicted until closed.
+     */
+    inner class Pin internal constructor(private val names: List<String>) : Closeable {
+        private var closed = false
+
+        override fun close() {
+            synchronized(this@ArtifactCache) {
+                if (closed) return
+                closed = true
+                for (name in names) {
+                    val count = (pins[name] ?: 0) - 1
+                    if (count > 0) pins[name] = count else pins.remove(name)
+                }
+            }
+        }
+    }
+
+    private class FileMutex(val mutex: Mutex = Mutex(), var holders: Int = 0)
+
+    /**
+     * Exclusive hold on one file, released when closed.
+     */
+    inner class Lock internal constructor(private val name: String, private val entry: FileMutex) : Closeable {
+        private var closed = false
+
+        override fun close() {
+            synchronized(this@ArtifactCache) {
+                if (closed) return
+                closed = true
+                entry.mutex.unlock()
+                releaseMutex(name, entry)
+            }
+        }
+    }
+
+    private val indexFile = File(directory, INDEX_FILE_NAME)
+    private val entries = HashMap<String, Entry>()
+    private val pins = HashMap<String, Int>()
+    private val mutexes = HashMap<String, FileMutex>()
+    private var loaded = false
+
+    /**
+     * Bytes currently held by tracked files.
+     */
+    val usedBytes: Long
+        @Synchronized get() {
+            ensureLoaded()
+            return trackedBytes()
+        }
+
+    @Synchronized
+    fun pin(vararg files: File): Pin {
+        val names = files.map { it.name }
+        for (name in names) pins[name] = (pins[name] ?: 0) + 1
+        return Pin(names)
+    }
+
+    /**
+     * Suspend until no other holder has [file] locked, then lock it.
+     */
+    suspend fun lock(file: File): Lock {
+        val name = file.name
+        val entry = synchronized(this) {
+            mutexes.getOrPut(name) { FileMutex() }.also { it.holders++ }
+        }
+        try {
+            entry.mutex.lock()
+        } catch (e: Throwable) {
+            synchronized(this) { releaseMutex(name, entry) }
+            throw e
+        }
+        return Lock(name, entry)
+    }
+
+    private fun releaseMutex(name: String, entry: FileMutex) {
+        entry.holders--
+        if (entry.holders == 0) mutexes.remove(name)
+    }
+
+    @Synchronized
+    fun isPinned(file: File): Boolean = pins.containsKey(file.name)
+
+    /**
+     * True if [file] was verified against [sha256] and is still intact on disk. Counts as a use.
+     */
+    @Synchronized
+    fun isVerified(file: File, sha256: String): Boolean {
+        ensureLoaded()
+        val entry = entries[file.name] ?: return false
+        val intact = file.isFile && file.length() == entry.size && entry.sha256.equals(sha256, ignoreCase = true)
+        if (intact) {
+            entry.lastUsed = clock()
+            persist()
+        }
+        return intact
+    }
+
+    /**
+     * Record that [file] hashed to [sha256].
+     */
+    @Synchronized
+    fun markVerified(file: File, sha256: String) {
+        ensureLoaded()
+        entries[file.name] = Entry(file.length(), clock(), sha256.lowercase())
+        persist()
+    }
+
+    /**
+     * Make room for a download of [bytes], evicting unpinned files as needed.
+     *
+     * @throws InsufficientSpaceException if the disk cannot fit it even after eviction
+     */
+    @Synchronized
+    fun reserve(bytes: Long) {
+        ensureLoaded()
+        evictWhile { trackedBytes() + bytes > budgetBytes || freeSpace(directory) - bytes < minFreeBytes }
+        val available = freeSpace(directory)
+        if (available - bytes < minFreeBytes) {
+            throw InsufficientSpaceException(bytes + minFreeBytes, available)
+        }
+    }
+
+    /**
+     * Evict unpinned files until usage fits [budgetBytes].
+     */
+    @Synchronized
+    fun trim() {
+        ensureLoaded()
+        evictWhile { trackedBytes() > budgetBytes }
+    }
+
+    /**
+     * Delete [file] and forget it. A pinned file is kept but no longer counts as verified.
+     */
+    @Synchronized
+    fun remove(file: File): Boolean {
+        ensureLoaded()
+        if (isPinned(file)) {
+            entries[file.name]?.sha256 = null
+            persist()
+            return false
+        }
+        entries.remove(file.name)
+        file.delete()
+        persist()
+        return true
+    }
+
+    /**
+     * Delete every unpinned file.
+     */
+    @Synchronized
+    fun clear() {
+        ensureLoaded()
+        evictWhile { true }
+    }
+
+    private fun trackedBytes(): Long = entries.values.sumOf { it.size }
+
+    private fun evictWhile(condition: () -> Boolean) {
+        // Refresh sizes of files still being written before deciding what to drop
+        for ((name, entry) in entries) {
+            if (entry.sha256 == null) entry.size = File(directory, name).length()
+        }
+        val candidates = entries.entries
+            .filter { !pins.containsKey(it.key) }
+            .sortedWith(compareBy({ it.value.sha256 != null }, { it.value.lastUsed }))
+        var changed = false
+        for (candidate in candidates) {
+            if (!condition()) break
+            File(directory, candidate.key).delete()
+            entries.remove(candidate.key)
+            changed = true
+        }
+        if (changed) persist()
+    }
+
+    private fun ensureLoaded() {
+        if (loaded) return
+        loaded = true
+        directory.mkdirs()
+        if (indexFile.isFile) {
+            try {
+                indexFile.forEachLine { line ->
+                    val parts = line.split(SEPARATOR)
+                    if (parts.size == 4) {
+                        entries[parts[0]] = Entry(parts[1].toLong(), parts[2].toLong(), parts[3].ifEmpty { null })
+                    }
+                }
+            } catch (e: Exception) {
+                // An unreadable index only loses verification state; files are rescanned below
+                entries.clear()
+            }
+        }
+
+        // Drop entries whose file is gone or changed, and track untracked files as unverified
+        val files = directory.listFiles()?.filter { it.isFile && it.name != indexFile.name && !it.name.endsWith(".tmp") }.orEmpty()
+        val names = files.map { it.name }.toSet()
+        entries.keys.retainAll(names)
+        for (file in files) {
+            val entry = entries[file.name]
+            if (entry == null) {
+                entries[file.name] = Entry(file.length(), file.lastModified(), null)
+            } else if (entry.size != file.length()) {
+                entry.size = file.length()
+                entry.sha256 = null
+            }
+        }
+    }
+
+    private fun persist() {
+        try {
+            val tmp = File(indexFile.path + ".tmp")
+            tmp.bufferedWriter().use { writer ->
+                for ((name, entry) in entries) {
+                    writer.append(name).append(SEPARATOR)
+                        .append(entry.size.toString()).append(SEPARATOR)
+                        .append(entry.lastUsed.toString()).append(SEPARATOR)
+                        .append(entry.sha256 ?: "").append('\n')
+                }
+            }
+            if (!tmp.renameTo(indexFile)) tmp.delete()
+        } catch (e: IOException) {
+            // Index is advisory; a lost write only costs a re-download
+        }
+    }
+}
+
+/**
+ * Not enough free space for a download, even after evicting cached artifacts.
+ */
+class InsufficientSpaceException(
+    val requiredBytes: Long,
+    val availableBytes: Long
+) : IOException("Not enough storage: ${requiredBytes / (1024 * 1024)} MB needed, ${availableBytes / (1024 * 1024)} MB available")
@@ -0,0 +1,198 @@
+package com.bearmod.loader.ota
+
+import com.bearmod.loader.utils.FileHashing
+import com.bearmod.loader.utils.Hex
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+
+/**
+ * Android-free download/verify engine.
+ *
+ * [download] runs fetch → write → verify → commit for one artifact: the body is streamed
+ * into the staging file while the SHA-256 is updated from the same buffer, so verifying
+ * needs no second read of the file. A verified file is moved to its target; a mismatch
+ * deletes the staged bytes and fails with [OtaVerificationException]. Progress is emitted
+ * at most every [progressStepBytes] to keep per-chunk overhead off the copy loop.
+ *
+ * A `tee` stream passed to [download] receives the same bytes as they arrive (e.g. an
+ * install session), so a consumer does not have to re-read the file afterwards. Consumers
+ * must not act on those bytes until the COMMITTED emission.
+ *
+ * With a [cache], a target already verified against the same SHA-256 is reused (replayed
+ * into the tee) instead of downloaded, the artifact's files are pinned while in flight, and
+ * space for the download is reserved up front so a full disk fails before any bytes move.
+ * Downloads of the same staging file, even from different engines sharing the cache, run
+ * one at a time; one that waited usually finds the target already verified.
+ *
+ * With [keepPartial], a download that fails for any reason other than a hash mismatch
+ * leaves its staging file, and the next [download] of the artifact re-hashes those bytes
+ * and asks the transport for the rest. The final SHA-256 check still covers the whole file.
+ */
+class DownloadEngine(
+    private val transport: OtaTransport,
+    private val storage: OtaStorage,
+    private val bufferSize: Int = FileHashing.DEFAULT_BUFFER_SIZE,
+    private val progressStepBytes: Long = 256 * 1024L,
+    private val dispatcher: CoroutineDispatcher = Dispatchers.IO,
+    private val cache: ArtifactCache? = null,
+    private val keepPartial: Boolean = false
+) {
+
+    /**
+     * Download, verify and commit [artifact]. Completes after the COMMITTED emission; errors
+     * (transport, I/O, hash mismatch, cancellation) leave no target file behind. [tee] is
+     * written to but not closed.
+     */
+    fun download(artifact: OtaArtifact, tee: OutputStream? = null): Flow<OtaProgress> = flow {
+        val staged = storage.stagingFile(artifact)
+        val target = storage.targetFile(artifact)
+        staged.parentFile?.mkdirs()
+        val lock = cache?.lock(staged)
+        val pin = cache?.pin(staged, target)
+
+        var committed = false
+        try {
+            if (cache != null && cache.isVerified(target, artifact.sha256)) {
+                val length = target.length()
+                if (tee != null) {
+                    target.inputStream().use { it.copyTo(tee, bufferSize) }
+                }
+                committed = true
+                emit(OtaProgress(artifact, OtaProgress.Stage.COMMITTED, length, length))
+                return@flow
+            }
+
+            // A partial file at least as long as the artifact cannot be resumed
+            var resumeFrom = if (keepPartial && staged.isFile) staged.length() else 0L
+            if (resumeFrom > 0 && artifact.size != null && resumeFrom >= artifact.size) {
+                staged.delete()
+                resumeFrom = 0L
+            }
+
+            emit(OtaProgress(artifact, OtaProgress.Stage.FETCHING, resumeFrom, artifact.size ?: -1L))
+            artifact.size?.let { cache?.reserve(it - resumeFrom) }
+
+            val digest = MessageDigest.getInstance("SHA-256")
+            var written = 0L
+            var total = -1L
+            val opened = if (resumeFrom > 0) transport.open(artifact.url, resumeFrom) else transport.open(artifact.url)
+            opened.use { stream ->
+                val append = when (stream.offset) {
+                    0L -> false
+                    resumeFrom -> true
+                    else -> throw IOException("Server resumed ${artifact.name} at ${stream.offset}, expected $resumeFrom")
+                }
+                total = if (stream.contentLength >= 0) stream.offset + stream.contentLength else artifact.size ?: -1L
+                if (artifact.size == null && total > 0) cache?.reserve(total - stream.offset)
+                if (append) {
+                    written = hashExisting(staged, digest, tee)
+                }
+                emit(OtaProgress(artifact, OtaProgress.Stage.WRITING, written, total))
+
+                FileOutputStream(staged, append).use { output ->
+                    val buffer = ByteArray(bufferSize)
+                    var nextProgressAt = written + progressStepBytes
+                    while (true) {
+                        val read = stream.input.read(buffer)
+                        if (read == -1) break
+                        output.write(buffer, 0, read)
+                        digest.update(buffer, 0, read)
+                        tee?.write(buffer, 0, read)
+                        written += read
+                        if (written >= nextProgressAt) {
+                            // emit() also checks for cancellation
+                            emit(OtaProgress(artifact, OtaProgress.Stage.WRITING, written, total))
+                            nextProgressAt = written + progressStepBytes
+                        }
+                    }
+                }
+            }
+            if (total >= 0 && written != total) {
+                throw IOException("Incomplete download of ${artifact.name}: $written of $total bytes")
+            }
+            emit(OtaProgress(artifact, OtaProgress.Stage.WRITING, written, total))
+
+            emit(OtaProgress(artifact, OtaProgress.Stage.VERIFYING, written, total))
+            val actual = Hex.encode(digest.digest())
+            if (!actual.equals(artifact.sha256, ignoreCase = true)) {
+                staged.delete()
+                throw OtaVerificationException(artifact, actual)
+            }
+
+            storage.commit(staged, target)
+            committed = true
+            cache?.markVerified(target, actual)
+            emit(OtaProgress(artifact, OtaProgress.Stage.COMMITTED, written, total))
+        } finally {
+            if (!committed && !keepPartial) staged.delete()
+            pin?.close()
+            lock?.close()
+        }
+    }.flowOn(dispatcher)
+
+    /**
+     * Feed the bytes already in [file] to [digest] (and [tee], so it sees the whole file).
+     */
+    private fun hashExisting(file: File, digest: MessageDigest, tee: OutputStream?): Long {
+        var total = 0L
+        file.inputStream().use { input ->
+            val buffer = ByteArray(bufferSize)
+            while (true) {
+                val read = input.read(buffer)
+                if (read == -1) break
+                digest.update(buffer, 0, read)
+                tee?.write(buffer, 0, read)
+                total += read
+            }
+        }
+        return total
+    }
+
+    /**
+     * Re-hash an existing file, e.g. a previously committed artifact.
+     */
+    suspend fun verify(file: File, sha256: String): Boolean = withContext(dispatcher) {
+        file.isFile && FileHashing.sha256Hex(file, bufferSize).equals(sha256, ignoreCase = true)
+    }
+
+    /**
+     * Copy a committed artifact to its final location (e.g. the OBB directory), keeping the
+     * source. Uses a channel transfer so large files are not copied through a heap buffer.
+     */
+    suspend fun place(source: File, target: File): Boolean = withContext(dispatcher) {
+        target.parentFile?.mkdirs()
+        val tmp = File(target.path + ".part")
+        FileChannel.open(source.toPath(), StandardOpenOption.READ).use { input ->
+            FileChannel.open(
+                tmp.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            ).use { output ->
+                var position = 0L
+                val size = input.size()
+                while (position < size) {
+                    position += input.transferTo(position, size - position, output)
+                }
+                output.force(true)
+            }
+        }
+        if (target.exists()) target.delete()
+        if (!tmp.renameTo(target)) {
+            tmp.delete()
+            throw IOException("Cannot move ${tmp.name} into place")
+        }
+        target.length() == source.length()
+    }
+}
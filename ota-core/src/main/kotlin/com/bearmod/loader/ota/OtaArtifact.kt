@@ -0,0 +1,41 @@
+package com.bearmod.loader.ota
+
+/**
+ * One downloadable file: where to fetch it and the SHA-256 (hex) it must hash to.
+ * [size] is the expected length if the manifest provides one.
+ */
+data class OtaArtifact(
+    val name: String,
+    val url: String,
+    val sha256: String,
+    val size: Long? = null
+)
+
+/**
+ * Progress of one artifact through the engine's fetch, write, verify and commit stages.
+ * [totalBytes] is -1 while unknown.
+ */
+data class OtaProgress(
+    val artifact: OtaArtifact,
+    val stage: Stage,
+    val bytesWritten: Long,
+    val totalBytes: Long
+) {
+    enum class Stage {
+        FETCHING,
+        WRITING,
+        VERIFYING,
+        COMMITTED
+    }
+
+    val fraction: Float
+        get() = if (totalBytes > 0) (bytesWritten.toDouble() / totalBytes).toFloat().coerceIn(0f, 1f) else 0f
+}
+
+/**
+ * The downloaded bytes did not hash to the expected value. The staged file has been removed.
+ */
+class OtaVerificationException(
+    val artifact: OtaArtifact,
+    val actualSha256: String
+) : java.io.IOException("Hash mismatch for ${artifact.name}: expected ${artifact.sha256.take(12)}…, got ${actualSha256.take(12)}…")
@@ -0,0 +1,47 @@
+package com.bearmod.loader.ota
+
+import java.io.File
+import java.io.IOException
+
+/**
+ * Where the engine writes artifacts. Bytes go to [stagingFile] and are moved to [targetFile]
+ * only once verified, so a target file is always complete.
+ */
+interface OtaStorage {
+
+    fun stagingFile(artifact: OtaArtifact): File
+
+    fun targetFile(artifact: OtaArtifact): File
+
+    /**
+     * Move a verified staging file into place, replacing any previous target.
+     */
+    fun commit(staged: File, target: File) {
+        target.parentFile?.mkdirs()
+        if (target.exists() && !target.delete()) throw IOException("Cannot replace ${target.name}")
+        if (!staged.renameTo(target)) {
+            staged.copyTo(target, overwrite = true)
+            staged.delete()
+        }
+    }
+}
+
+/**
+ * Stores artifacts in [directory] as `<prefix><name>`, staging them as
+ * `<prefix><name>.<sha256 prefix>.part`. The hash in the staging name keeps a partial file
+ * of one build from being resumed as another build that reuses the file name.
+ */
+class DirectoryStorage(
+    private val directory: File,
+    private val prefix: String = ""
+) : OtaStorage {
+
+    companion object {
+        private const val STAGING_HASH_CHARS = 16
+    }
+
+    override fun stagingFile(artifact: OtaArtifact): File =
+        File(directory, "$prefix${artifact.name}.${artifact.sha256.take(STAGING_HASH_CHARS).lowercase()}.part")
+
+    override fun targetFile(artifact: OtaArtifact): File = File(directory, "$prefix${artifact.name}")
+}
@@ -0,0 +1,42 @@
+package com.bearmod.loader.ota
+
+import java.io.Closeable
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Source of artifact bytes (HTTP client, test double, local mirror).
+ */
+interface OtaTransport {
+
+    /**
+     * Open [url] for streaming. Throws [IOException] for transport and HTTP errors.
+     */
+    suspend fun open(url: String): OtaStream
+
+    /**
+     * Open [url] from byte [offset] to resume a partial download. The body starts at the
+     * returned [OtaStream.offset]; transports without range support send it all from 0.
+     */
+    suspend fun open(url: String, offset: Long): OtaStream = open(url)
+}
+
+/**
+ * An open response body starting at byte [offset] of the file. [contentLength] counts the
+ * bytes in this body and is -1 if the server did not send one.
+ */
+class OtaStream(
+    val contentLength: Long,
+    val input: InputStream,
+    private val onClose: () -> Unit = {},
+    val offset: Long = 0L
+) : Closeable {
+
+    override fun close() {
+        try {
+            input.close()
+        } finally {
+            onClose()
+        }
+    }
+}
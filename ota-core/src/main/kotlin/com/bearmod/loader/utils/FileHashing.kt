@@ -0,0 +1,37 @@
+package com.bearmod.loader.utils
+
+import java.io.File
+import java.security.MessageDigest
+
+/**
+ * SHA-256 helpers for verifying downloaded OTA artifacts.
+ */
+object FileHashing {
+
+    const val DEFAULT_BUFFER_SIZE = 64 * 1024
+
+    /**
+     * Lower-case hex SHA-256 of [file], streamed through a [bufferSize] buffer.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun sha256Hex(file: File, bufferSize: Int = DEFAULT_BUFFER_SIZE): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        file.inputStream().use { input ->
+            val buffer = ByteArray(bufferSize)
+            while (true) {
+                val read = input.read(buffer)
+                if (read == -1) break
+                digest.update(buffer, 0, read)
+            }
+        }
+        return Hex.encode(digest.digest())
+    }
+
+    /**
+     * True if [file] hashes to [expectedHash] (hex, either case).
+     */
+    @JvmStatic
+    fun matches(file: File, expectedHash: String): Boolean =
+        sha256Hex(file).equals(expectedHash, ignoreCase = true)
+}
@@ -0,0 +1,26 @@
+package com.bearmod.loader.utils
+
+/**
+ * Table-driven hex encoding shared by file hashing and HWID generation.
+ *
+ * Replaces per-byte `"%02x".format(b)`, which allocates a Formatter and a String for every
+ * byte of a digest.
+ */
+object Hex {
+
+    private val LOWER = "0123456789abcdef".toCharArray()
+    private val UPPER = "0123456789ABCDEF".toCharArray()
+
+    @JvmStatic
+    @JvmOverloads
+    fun encode(bytes: ByteArray, upperCase: Boolean = false): String {
+        val digits = if (upperCase) UPPER else LOWER
+        val chars = CharArray(bytes.size * 2)
+        for (i in bytes.indices) {
+            val v = bytes[i].toInt() and 0xFF
+            chars[i * 2] = digits[v ushr 4]
+            chars[i * 2 + 1] = digits[v and 0x0F]
+        }
+        return String(chars)
+    }
+}
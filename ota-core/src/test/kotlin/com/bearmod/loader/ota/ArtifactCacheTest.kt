@@ -0,0 +1,106 @@
+package com.bearmod.loader.ota
+
+import com.bearmod.loader.utils.Hex
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.security.MessageDigest
+
+/**
+ * Tests for ArtifactCache eviction, pinning, space checks and reuse by DownloadEngine
+ */
+class ArtifactCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private var now = 0L
+
+    private fun cache(budget: Long = 1_000L, free: Long = Long.MAX_VALUE / 2) =
+        ArtifactCache(folder.root, budget, freeSpace = { free }, minFreeBytes = 0L, clock = { now })
+
+    private fun file(name: String, size: Int) = folder.root.resolve(name).apply { writeBytes(ByteArray(size)) }
+
+    private fun sha256(bytes: ByteArray) = Hex.encode(MessageDigest.getInstance("SHA-256").digest(bytes))
+
+    @Test
+    fun `unverified files go first, then least recently used`() {
+        val cache = cache()
+        val old = file("old.apk", 400)
+        val recent = file("recent.apk", 400)
+        val abandoned = file("abandoned.obb.part", 100)
+        now = 1L
+        cache.markVerified(old, "aa")
+        now = 2L
+        cache.markVerified(recent, "bb")
+
+        cache.reserve(300)
+
+        assertFalse(abandoned.exists())
+        assertFalse(old.exists())
+        assertTrue(recent.exists())
+        assertEquals(400L, cache.usedBytes)
+    }
+
+    @Test
+    fun `pinned files survive eviction until released`() {
+        val cache = cache(budget = 100L)
+        val apk = file("app.apk", 400)
+        cache.markVerified(apk, "aa")
+
+        cache.pin(apk).use { cache.trim() }
+        assertTrue(apk.exists())
+
+        cache.trim()
+        assertFalse(apk.exists())
+    }
+
+    @Test
+    fun `reserve fails fast when the disk is full`() {
+        val cache = cache(free = 500L)
+        try {
+            cache.reserve(800L)
+            fail("Expected insufficient space")
+        } catch (e: InsufficientSpaceException) {
+            assertEquals(500L, e.availableBytes)
+        }
+    }
+
+    @Test
+    fun `verification state survives a restart`() {
+        val apk = file("app.apk", 10)
+        cache().markVerified(apk, "AB12")
+
+        assertTrue(cache().isVerified(apk, "ab12"))
+        apk.appendBytes(ByteArray(1))
+        assertFalse(cache().isVerified(apk, "ab12"))
+    }
+
+    @Test
+    fun `engine reuses a verified artifact without fetching`() = runBlocking {
+        val payload = ByteArray(5_000) { it.toByte() }
+        val artifact = OtaArtifact("app.apk", "mem://app.apk", sha256(payload), payload.size.toLong())
+        val cache = cache(budget = 10_000L)
+        var opens = 0
+        val transport = object : OtaTransport {
+            override suspend fun open(url: String): OtaStream {
+                if (++opens > 1) throw IOException("fetched twice")
+                return OtaStream(payload.size.toLong(), payload.inputStream())
+            }
+        }
+        val engine = DownloadEngine(transport, DirectoryStorage(folder.root), cache = cache)
+
+        engine.download(artifact).toList()
+        val tee = ByteArrayOutputStream()
+        val replay = engine.download(artifact, tee).toList()
+
+        assertEquals(1, opens)
+        assertEquals(listOf(OtaProgress.Stage.COMMITTED), replay.map { it.stage })
+        assertArrayEquals(payload, tee.toByteArray())
+    }
+}
@@ -0,0 +1,185 @@
+package com.bearmod.loader.ota
+
+import com.bearmod.loader.utils.Hex
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+
+/**
+ * Tests for DownloadEngine staging, verification and commit
+ */
+class DownloadEngineTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val payload = Random(3).nextBytes(1_000_000)
+    private val sha256 = Hex.encode(MessageDigest.getInstance("SHA-256").digest(payload))
+
+    private class BytesTransport(private val bytes: ByteArray, private val advertisedLength: Long = bytes.size.toLong()) : OtaTransport {
+        override suspend fun open(url: String): OtaStream = OtaStream(advertisedLength, ByteArrayInputStream(bytes))
+    }
+
+    private fun engine(transport: OtaTransport) =
+        DownloadEngine(transport, DirectoryStorage(folder.root, prefix = "v_"), bufferSize = 8192, progressStepBytes = 100_000L)
+
+    @Test
+    fun `verified download is committed to the target`() = runBlocking {
+        val artifact = OtaArtifact("app.apk", "mem://app.apk", sha256.uppercase())
+
+        val progress = engine(BytesTransport(payload)).download(artifact).toList()
+
+        assertEquals(OtaProgress.Stage.COMMITTED, progress.last().stage)
+        assertTrue(progress.count { it.stage == OtaProgress.Stage.WRITING } in 3..15)
+        assertArrayEquals(payload, folder.root.resolve("v_app.apk").readBytes())
+        assertFalse(DirectoryStorage(folder.root, prefix = "v_").stagingFile(artifact).exists())
+    }
+
+    @Test
+    fun `tee receives every byte as it is written`() = runBlocking {
+        val artifact = OtaArtifact("app.apk", "mem://app.apk", sha256)
+        val tee = ByteArrayOutputStream()
+
+        engine(BytesTransport(payload)).download(artifact, tee).toList()
+
+        assertArrayEquals(payload, tee.toByteArray())
+    }
+
+    @Test
+    fun `hash mismatch leaves no file behind`() = runBlocking {
+        val artifact = OtaArtifact("app.apk", "mem://app.apk", "00".repeat(32))
+
+        try {
+            engine(BytesTransport(payload)).download(artifact).toList()
+            fail("Expected verification failure")
+        } catch (e: OtaVerificationException) {
+            assertEquals(sha256, e.actualSha256)
+        }
+        assertEquals(0, folder.root.listFiles()!!.size)
+    }
+
+    @Test
+    fun `short body is rejected before verification`() = runBlocking {
+        val artifact = OtaArtifact("main.obb", "mem://main.obb", sha256)
+
+        try {
+            engine(BytesTransport(payload.copyOf(500_000), advertisedLength = payload.size.toLong())).download(artifact).toList()
+            fail("Expected incomplete download")
+        } catch (e: IOException) {
+            assertFalse(e is OtaVerificationException)
+        }
+        assertEquals(0, folder.root.listFiles()!!.size)
+    }
+
+    @Test
+    fun `interrupted download resumes from the partial file`() = runBlocking {
+        val artifact = OtaArtifact("main.obb", "mem://main.obb", sha256, payload.size.toLong())
+        val offsets = mutableListOf<Long>()
+        val transport = object : OtaTransport {
+            override suspend fun open(url: String): OtaStream {
+                offsets.add(0L)
+                // Connection drops after 400 KB
+                val cut = object : java.io.InputStream() {
+                    private val source = ByteArrayInputStream(payload, 0, 400_000)
+                    override fun read(): Int = throw UnsupportedOperationException()
+                    override fun read(b: ByteArray, off: Int, len: Int): Int =
+                        source.read(b, off, len).takeIf { it != -1 } ?: throw IOException("connection reset")
+                }
+                return OtaStream(payload.size.toLong(), cut)
+            }
+
+            override suspend fun open(url: String, offset: Long): OtaStream {
+                offsets.add(offset)
+                val rest = payload.copyOfRange(offset.toInt(), payload.size)
+                return OtaStream(rest.size.toLong(), ByteArrayInputStream(rest), offset = offset)
+            }
+        }
+        val engine = DownloadEngine(transport, DirectoryStorage(folder.root, prefix = "v_"), bufferSize = 8192, keepPartial = true)
+
+        try {
+            engine.download(artifact).toList()
+            fail("Expected connection reset")
+        } catch (e: IOException) {
+            assertEquals(400_000L, DirectoryStorage(folder.root, prefix = "v_").stagingFile(artifact).length())
+        }
+        val tee = ByteArrayOutputStream()
+        engine.download(artifact, tee).toList()
+
+        assertEquals(listOf(0L, 400_000L), offsets)
+        assertArrayEquals(payload, folder.root.resolve("v_main.obb").readBytes())
+        assertArrayEquals(payload, tee.toByteArray())
+    }
+
+    @Test
+    fun `partial file of another build is not resumed`() = runBlocking {
+        val storage = DirectoryStorage(folder.root, prefix = "v_")
+        val previous = OtaArtifact("main.obb", "mem://main.obb", "0".repeat(64), payload.size.toLong())
+        storage.stagingFile(previous).writeBytes(ByteArray(400_000) { 1 })
+        val offsets = mutableListOf<Long>()
+        val transport = object : OtaTransport {
+            override suspend fun open(url: String): OtaStream {
+                offsets.add(0L)
+                return OtaStream(payload.size.toLong(), ByteArrayInputStream(payload))
+            }
+        }
+        val engine = DownloadEngine(transport, storage, bufferSize = 8192, keepPartial = true)
+
+        val artifact = OtaArtifact("main.obb", "mem://main.obb", sha256, payload.size.toLong())
+        assertEquals(OtaProgress.Stage.COMMITTED, engine.download(artifact).toList().last().stage)
+
+        assertEquals(listOf(0L), offsets)
+        assertArrayEquals(payload, folder.root.resolve("v_main.obb").readBytes())
+    }
+
+    @Test
+    fun `concurrent downloads of one artifact fetch it once`() = runBlocking {
+        val opens = AtomicInteger()
+        val opened = CompletableDeferred<Unit>()
+        val release = CompletableDeferred<Unit>()
+        val transport = object : OtaTransport {
+            override suspend fun open(url: String): OtaStream {
+                opens.incrementAndGet()
+                opened.complete(Unit)
+                release.await()
+                return OtaStream(payload.size.toLong(), ByteArrayInputStream(payload))
+            }
+        }
+        // Separate engines sharing one cache, like a prefetch job and the update screen
+        val cache = ArtifactCache(folder.root, 10_000_000L, freeSpace = { Long.MAX_VALUE }, minFreeBytes = 0L)
+        fun engine() = DownloadEngine(transport, DirectoryStorage(folder.root, prefix = "v_"), cache = cache, keepPartial = true)
+        val artifact = OtaArtifact("main.obb", "mem://main.obb", sha256, payload.size.toLong())
+
+        val first = async { engine().download(artifact).toList() }
+        opened.await()
+        val second = async { engine().download(artifact).toList() }
+        delay(200)
+        release.complete(Unit)
+
+        assertEquals(OtaProgress.Stage.COMMITTED, first.await().last().stage)
+        assertEquals(listOf(OtaProgress.Stage.COMMITTED), second.await().map { it.stage })
+        assertEquals(1, opens.get())
+        assertArrayEquals(payload, folder.root.resolve("v_main.obb").readBytes())
+    }
+
+    @Test
+    fun `place copies and keeps the source`() = runBlocking {
+        val source = folder.root.resolve("v_main.obb").apply { writeBytes(payload) }
+        val target = folder.root.resolve("obb/main.obb")
+
+        assertTrue(engine(BytesTransport(payload)).place(source, target))
+        assertTrue(source.exists())
+        assertArrayEquals(payload, target.readBytes())
+    }
+}
@@ -0,0 +1,67 @@
+#!/usr/bin/env python3
+"""
+Compare two JMH JSON reports (e.g. from two commits).
+
+Usage:
+    ./gradlew :benchmark:jmh && cp benchmark/build/results/jmh/results.json /tmp/base.json
+    # ...check out the other commit and run again...
+    python3 scripts/compare_jmh.py /tmp/base.json benchmark/build/results/jmh/results.json [--threshold 5]
+
+Prints the score of every benchmark/parameter combination in both reports and the relative
+change. Exits with status 1 if any benchmark regressed by more than --threshold percent
+(lower is better for the AverageTime mode used by the :benchmark module).
+"""
+
+import argparse
+import json
+import sys
+
+
+def load(path):
+    with open(path) as f:
+        results = {}
+        for entry in json.load(f):
+            params = entry.get("params") or {}
+            key = entry["benchmark"].rsplit(".", 2)[-2:]
+            name = ".".join(key)
+            if params:
+                name += " [" + ", ".join(f"{k}={v}" for k, v in sorted(params.items())) + "]"
+            metric = entry["primaryMetric"]
+            alloc = entry.get("secondaryMetrics", {}).get("gc.alloc.rate.norm", {}).get("score")
+            results[name] = (metric["score"], metric["scoreError"], metric["scoreUnit"], alloc)
+        return results
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Compare two JMH JSON reports")
+    parser.add_argument("baseline")
+    parser.add_argument("candidate")
+    parser.add_argument("--threshold", type=float, default=5.0, help="regression threshold in percent")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    candidate = load(args.candidate)
+    regressed = []
+
+    print(f"{'benchmark':60} {'baseline':>14} {'candidate':>14} {'change':>9} {'alloc B/op':>12}")
+    for name in sorted(set(baseline) | set(candidate)):
+        base = baseline.get(name)
+        cand = candidate.get(name)
+        if base is None or cand is None:
+            print(f"{name:60} {'-' if base is None else f'{base[0]:.3f}':>14} {'-' if cand is None else f'{cand[0]:.3f}':>14}")
+            continue
+        change = (cand[0] - base[0]) / base[0] * 100 if base[0] else 0.0
+        alloc = "-" if cand[3] is None else f"{cand[3]:.0f}"
+        print(f"{name:60} {base[0]:>11.3f} {base[2].split('/')[0]:>2} {cand[0]:>11.3f} {cand[2].split('/')[0]:>2} {change:>+8.1f}% {alloc:>12}")
+        if change > args.threshold:
+            regressed.append(name)
+
+    if regressed:
+        print(f"\n{len(regressed)} benchmark(s) regressed by more than {args.threshold}%:")
+        for name in regressed:
+            print(f"  {name}")
+        sys.exit(1)
+
+
+if __name__ == "__main__":
+    main()
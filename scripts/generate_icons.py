@@ -2,11 +2,14 @@
 """
 PUBG Mobile KeyAuth Loader Icon Generator
 
-This script generates PNG icons from the vector drawables for different density buckets.
-Requires: Python 3, cairosvg, Pillow
+This script generates PNG icons from the vector drawables for different density buckets,
+and per-density WebP variants of the raster drawables (branding and variant icons).
+Requires: Python 3, cairosvg (launcher icons), Pillow (raster variants)
 
 Usage:
-    python scripts/generate_icons.py
+    python scripts/generate_icons.py            # launcher icons
+    python scripts/generate_icons.py --raster   # per-density WebP raster drawables
+    python scripts/generate_icons.py --all      # both
 
 This will generate:
 - app/src/main/res/mipmap-mdpi/ic_launcher.png (48x48)
@@ -16,9 +19,16 @@ This will generate:
 - app/src/main/res/mipmap-xxxhdpi/ic_launcher.png (192x192)
 
 And corresponding round versions.
+
+With --raster, every entry in RASTER_ASSETS is resized from its density-less source in
+app/src/main/res/drawable to app/src/main/res/drawable-<density>/<name>.webp. The source is
+then moved to art/drawable-sources/ so the full-size PNG no longer ships in the APK and
+Android picks the matching density bucket instead of upscaling a single large bitmap.
 """
 
+import argparse
 import os
+import shutil
 import sys
 from pathlib import Path
 
@@ -31,6 +41,31 @@ ICON_SIZES = {
     'xxxhdpi': 192
 }
 
+# Scale factors relative to mdpi for drawable density buckets
+DENSITY_SCALES = {
+    'mdpi': 1.0,
+    'hdpi': 1.5,
+    'xhdpi': 2.0,
+    'xxhdpi': 3.0,
+    'xxxhdpi': 4.0
+}
+
+# Raster drawables and the largest size (in dp) they are displayed at
+RASTER_ASSETS = {
+    'bear_logo': 120,
+    'bear_icon': 170,
+    'bear_photo': 170,
+    'ic_pubg_gl': 72,
+    'ic_pubg_kr': 72,
+    'ic_pubg_tw': 72,
+    'ic_pubg_vng': 72,
+    'battleground_mobile_india': 72
+}
+
+RES_DIR = Path("app/src/main/res")
+SOURCE_ARCHIVE_DIR = Path("art/drawable-sources")
+WEBP_QUALITY = 90
+
 def create_svg_from_vector(size, output_svg_path):
     """Create SVG for PUBG Mobile icon at specified size"""
 
@@ -121,8 +156,62 @@ def generate_png_icons():
     print("Icon generation complete!")
     return True
 
+def find_raster_source(name):
+    """Locate the full-size source for a raster asset (res/drawable first, then the archive)"""
+    for directory in (RES_DIR / "drawable", SOURCE_ARCHIVE_DIR):
+        for ext in ('.png', '.webp', '.jpg'):
+            candidate = directory / f"{name}{ext}"
+            if candidate.exists():
+                return candidate
+    return None
+
+def generate_raster_variants():
+    """Generate per-density WebP variants for every raster drawable"""
+
+    try:
+        from PIL import Image
+    except ImportError:
+        print("Error: Pillow not found.")
+        print("Please install: pip install Pillow")
+        return False
+
+    for name, size_dp in RASTER_ASSETS.items():
+        source = find_raster_source(name)
+        if source is None:
+            print(f"Skipping {name}: no source image found")
+            continue
+
+        with Image.open(source) as image:
+            image = image.convert("RGBA")
+            for density, scale in DENSITY_SCALES.items():
+                target = round(size_dp * scale)
+                # Preserve aspect ratio and never upscale beyond the source
+                ratio = min(target / image.width, target / image.height, 1.0)
+                width = max(1, round(image.width * ratio))
+                height = max(1, round(image.height * ratio))
+
+                drawable_dir = RES_DIR / f"drawable-{density}"
+                drawable_dir.mkdir(parents=True, exist_ok=True)
+                output = drawable_dir / f"{name}.webp"
+                image.resize((width, height), Image.LANCZOS).save(output, "WEBP", quality=WEBP_QUALITY, method=6)
+                print(f"Generated {output} ({width}x{height}px, {output.stat().st_size // 1024} KB)")
+
+        # Move the density-less original out of res/ so aapt does not package it
+        if source.parent == RES_DIR / "drawable":
+            SOURCE_ARCHIVE_DIR.mkdir(parents=True, exist_ok=True)
+            shutil.move(str(source), SOURCE_ARCHIVE_DIR / source.name)
+            print(f"Moved source {source} -> {SOURCE_ARCHIVE_DIR / source.name}")
+
+    print("Raster variant generation complete!")
+    return True
+
 def main():
     """Main function"""
+    parser = argparse.ArgumentParser(description="PUBG Mobile KeyAuth Loader Icon Generator")
+    parser.add_argument("--raster", action="store_true", help="generate per-density WebP raster drawables only")
+    parser.add_argument("--all", action="store_true", help="generate launcher icons and raster drawables")
+    args = parser.parse_args()
+
     print("PUBG Mobile KeyAuth Loader Icon Generator")
     print("=" * 50)
     
@@ -132,13 +221,21 @@ def main():
         sys.exit(1)
     
     # Generate icons
-    if generate_png_icons():
-        print("\nSuccess! PNG icons generated for all density buckets.")
-        print("The adaptive icons will automatically use the vector drawables on Android 8.0+")
-        print("and fall back to PNG icons on older devices.")
-    else:
-        print("\nFailed to generate icons. Please check the error messages above.")
-        sys.exit(1)
+    if not args.raster or args.all:
+        if generate_png_icons():
+            print("\nSuccess! PNG icons generated for all density buckets.")
+            print("The adaptive icons will automatically use the vector drawables on Android 8.0+")
+            print("and fall back to PNG icons on older devices.")
+        else:
+            print("\nFailed to generate icons. Please check the error messages above.")
+            sys.exit(1)
+
+    if args.raster or args.all:
+        if generate_raster_variants():
+            print("\nSuccess! WebP drawables generated for all density buckets.")
+        else:
+            print("\nFailed to generate raster drawables. Please check the error messages above.")
+            sys.exit(1)
 
 if __name__ == "__main__":
     main()
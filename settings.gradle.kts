@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Bear-Loader"
 include(":app")
+include(":ota-core")
+include(":benchmark")